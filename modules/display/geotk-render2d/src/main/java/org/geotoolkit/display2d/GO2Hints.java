@@ -81,6 +81,17 @@ public final class GO2Hints extends Static {
      */
     public static final Key KEY_GENERALIZE_FACTOR = new NamedKey(Number.class, "GO2 - Generalize factor");
 
+    /**
+     * Configure the clipping of the geometries to the painted area by the featurestore.
+     * Geometries are clipped only if the style draws lines and polygons with a known
+     * margin and if there is no geometry cache. Clipping is done in the featurestore
+     * if it supports it, the PostGIS featurestore does.
+     * Set to false to always fetch complete geometries.
+     *
+     * Default value is true.
+     */
+    public static final Key KEY_CLIP_GEOMETRIES = new NamedKey(Boolean.class, "GO2 - Clip geometries");
+
     /**
      * Configure maximum number of tiles to render before skiping mosaic.
      * default value is 500.
@@ -143,6 +154,30 @@ public final class GO2Hints extends Static {
      */
     public static final Key KEY_PARALLAL_BUFFER = new NamedKey(Boolean.class, "GO2 - Parallal Buffer");
 
+    /**
+     * Configure the go2 engine to paint feature layers using several threads.
+     * The features are split in chunks, each chunk is painted in it's own buffer
+     * and the buffers are merged back in the feature order, the result is the same
+     * as a single thread rendering. This consume one image per symbolizer depth and
+     * per chunk in progress, layers using group symbolizers are rendered on a single thread.
+     *
+     * Default value is false.
+     */
+    public static final Key KEY_PARALLEL_RENDERING = new NamedKey(Boolean.class, "GO2 - Parallel rendering");
+
+    /**
+     * Configure the maximum size in bytes of the generalized geometry cache
+     * attached to each feature layer. When set the reprojected and generalized
+     * geometries are kept on the layer and reused by the following renderings
+     * at the same resolution band. The cache is invalidated when the layer
+     * features are modified. This is only useful if the map layers are reused
+     * between renderings.
+     *
+     * Default value is null : no cache.
+     * @see org.geotoolkit.display2d.container.stateless.GeneralizedGeometryCache
+     */
+    public static final Key KEY_GEOMETRY_CACHE_SIZE = new NamedKey(Long.class, "GO2 - Geometry cache size");
+
     /**
      * When the raster symbolizer requieres an elevation model and the MapLayer
      * does not define any then a rendering engine search for a default one in the
@@ -184,6 +219,8 @@ public final class GO2Hints extends Static {
     public static final Boolean COVERAGE_WRITER_OFF = Boolean.FALSE;
     public static final Boolean PARALLAL_BUFFER_ON = Boolean.TRUE;
     public static final Boolean PARALLAL_BUFFER_OFF = Boolean.FALSE;
+    public static final Boolean PARALLEL_RENDERING_ON = Boolean.TRUE;
+    public static final Boolean PARALLEL_RENDERING_OFF = Boolean.FALSE;
     public static final Boolean VIEW_TILE_ON  = Boolean.TRUE;
     public static final Boolean VIEW_TILE_OFF = Boolean.FALSE;
 
@@ -640,13 +640,27 @@ public class RenderingContext2D implements RenderingContext{
      * @return RenderingContext2D
      */
     public RenderingContext2D create(final Graphics2D g2d){
+        return create(g2d, getLabelRenderer(true));
+    }
+
+    /**
+     * Same as {@link #create(java.awt.Graphics2D) } but the created context will
+     * use the given label renderer. This is used when rendering in several threads,
+     * since label renderers are not concurrent, each thread must collect it's labels
+     * separately.
+     *
+     * @param g2d Graphics2D
+     * @param labelRenderer label renderer used by the new context
+     * @return RenderingContext2D
+     */
+    public RenderingContext2D create(final Graphics2D g2d, final LabelRenderer labelRenderer){
         final RenderingContext2D context = new RenderingContext2D(canvas);
         context.initParameters(objectiveToDisplay, monitor,
                                paintingDisplayShape, paintingObjectiveShape,
                                canvasDisplayShape, canvasObjectiveShape, dpi);
         context.initGraphic(g2d);
         g2d.setRenderingHints(this.graphics.getRenderingHints());
-        context.labelRenderer = getLabelRenderer(true);
+        context.labelRenderer = labelRenderer;
         return context;
     }
 
@@ -0,0 +1,316 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.container.stateless;
+
+import com.vividsolutions.jts.geom.Geometry;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.geotoolkit.data.FeatureStoreContentEvent;
+import org.geotoolkit.data.FeatureStoreListener;
+import org.geotoolkit.data.FeatureStoreManagementEvent;
+import org.geotoolkit.data.session.Session;
+import org.geotoolkit.feature.type.Name;
+import org.geotoolkit.map.FeatureMapLayer;
+import org.opengis.filter.Id;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Cache of the generalized geometries of a feature layer in objective CRS.
+ * Geometries are stored by feature identifier, objective CRS and resolution band,
+ * a band covers all resolutions between two consecutive powers of two.
+ *
+ * The cache size is limited in bytes, the least recently used geometries
+ * are removed first. The cache listen to the layer session and remove the
+ * geometries of modified or deleted features.
+ *
+ * The cache is stored in the layer user properties, it is shared by all
+ * graphics rendering the layer.
+ *
+ * @module pending
+ */
+public final class GeneralizedGeometryCache implements FeatureStoreListener {
+
+    /**
+     * Key used to store the cache in the layer user properties.
+     */
+    public static final String USERKEY_GEOMETRY_CACHE = "GO2 - Generalized geometry cache";
+
+    /**
+     * Estimated size of a cache entry, key and geometry object excluded.
+     */
+    private static final int ENTRY_SIZE = 96;
+    /**
+     * Estimated size of each geometry component.
+     */
+    private static final int GEOMETRY_SIZE = 64;
+    /**
+     * Estimated size of a coordinate.
+     */
+    private static final int COORDINATE_SIZE = 48;
+
+    private final FeatureStoreListener.Weak weakListener = new FeatureStoreListener.Weak(this);
+    private final Session session;
+    private final Name typeName;
+    private final Map<Key,Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long maxSize;
+    private long size = 0;
+
+    private GeneralizedGeometryCache(final Session session, final Name typeName, final long maxSize) {
+        this.session = session;
+        this.typeName = typeName;
+        this.maxSize = maxSize;
+        weakListener.registerSource(session);
+    }
+
+    /**
+     * Get or create the cache of the given layer.
+     *
+     * @param layer feature layer
+     * @param maxSize maximum cache size in bytes
+     * @return GeneralizedGeometryCache, never null
+     */
+    public static GeneralizedGeometryCache getCache(final FeatureMapLayer layer, final long maxSize){
+        synchronized(layer){
+            final Session session = layer.getCollection().getSession();
+            final Object candidate = layer.getUserProperty(USERKEY_GEOMETRY_CACHE);
+            if(candidate instanceof GeneralizedGeometryCache){
+                final GeneralizedGeometryCache cache = (GeneralizedGeometryCache) candidate;
+                if(cache.session == session){
+                    cache.setMaxSize(maxSize);
+                    return cache;
+                }
+                //layer collection has changed
+                cache.dispose();
+            }
+            final GeneralizedGeometryCache cache = new GeneralizedGeometryCache(
+                    session, layer.getCollection().getFeatureType().getName(), maxSize);
+            layer.setUserProperty(USERKEY_GEOMETRY_CACHE, cache);
+            return cache;
+        }
+    }
+
+    /**
+     * Resolution band of the given resolution.
+     *
+     * @param resolution resolution, must be strictly positive
+     * @return band index
+     */
+    public static int band(final double resolution){
+        return Math.getExponent(resolution);
+    }
+
+    /**
+     * Finest resolution of the given band, geometries generalized at this
+     * resolution can be used for the whole band.
+     *
+     * @param band band index
+     * @return resolution
+     */
+    public static double bandResolution(final int band){
+        return Math.scalb(1.0, band);
+    }
+
+    /**
+     * Get a cached geometry.
+     *
+     * @param id feature identifier
+     * @param geometry geometry property
+     * @param crs geometry CRS
+     * @param band resolution band
+     * @return cached geometry or null
+     */
+    public synchronized Geometry get(final String id, final String geometry,
+            final CoordinateReferenceSystem crs, final int band){
+        final Entry entry = entries.get(new Key(id, geometry, crs, band));
+        return (entry != null) ? entry.geometry : null;
+    }
+
+    /**
+     * Store a geometry in the cache.
+     * Cached geometries are shared and must not be modified.
+     *
+     * @param id feature identifier
+     * @param geometry geometry property
+     * @param crs geometry CRS
+     * @param band resolution band
+     * @param geom geometry to cache
+     */
+    public synchronized void put(final String id, final String geometry,
+            final CoordinateReferenceSystem crs, final int band, final Geometry geom){
+        final int geomSize = ENTRY_SIZE
+                + geom.getNumGeometries() * GEOMETRY_SIZE
+                + geom.getNumPoints() * COORDINATE_SIZE;
+        if(geomSize > maxSize){
+            return;
+        }
+        final Entry old = entries.put(new Key(id, geometry, crs, band), new Entry(geom, geomSize));
+        if(old != null){
+            size -= old.size;
+        }
+        size += geomSize;
+
+        //remove the least recently used geometries
+        final Iterator<Entry> ite = entries.values().iterator();
+        while(size > maxSize && ite.hasNext()){
+            size -= ite.next().size;
+            ite.remove();
+        }
+    }
+
+    /**
+     * @return estimated size of the cached geometries in bytes
+     */
+    public synchronized long getSize(){
+        return size;
+    }
+
+    /**
+     * @return maximum cache size in bytes
+     */
+    public synchronized long getMaxSize(){
+        return maxSize;
+    }
+
+    /**
+     * Change the maximum cache size, geometries are removed if needed.
+     *
+     * @param maxSize maximum cache size in bytes
+     */
+    public synchronized void setMaxSize(final long maxSize){
+        this.maxSize = maxSize;
+        final Iterator<Entry> ite = entries.values().iterator();
+        while(size > maxSize && ite.hasNext()){
+            size -= ite.next().size;
+            ite.remove();
+        }
+    }
+
+    /**
+     * Remove all cached geometries.
+     */
+    public synchronized void clear(){
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Remove the cached geometries of the given features.
+     *
+     * @param ids feature identifiers
+     */
+    public synchronized void remove(final Set<String> ids){
+        final Iterator<Map.Entry<Key,Entry>> ite = entries.entrySet().iterator();
+        while(ite.hasNext()){
+            final Map.Entry<Key,Entry> entry = ite.next();
+            if(ids.contains(entry.getKey().id)){
+                size -= entry.getValue().size;
+                ite.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all geometries and stop listening to the layer session.
+     */
+    public void dispose(){
+        weakListener.unregisterAll();
+        clear();
+    }
+
+    @Override
+    public void structureChanged(final FeatureStoreManagementEvent event) {
+        clear();
+    }
+
+    @Override
+    public void contentChanged(final FeatureStoreContentEvent event) {
+        final Name name = event.getFeatureTypeName();
+        if(name != null && !name.equals(typeName)){
+            //event on another type
+            return;
+        }
+
+        final Id ids = event.getIds();
+        switch(event.getType()){
+            case ADD :
+                //new features are not in the cache
+                return;
+            case UPDATE :
+            case DELETE :
+                if(ids != null){
+                    final Set<String> strs = new HashSet<>();
+                    for(Object id : ids.getIDs()){
+                        strs.add(String.valueOf(id));
+                    }
+                    remove(strs);
+                    return;
+                }
+            default :
+                //we don't know which features have changed
+                clear();
+        }
+    }
+
+    private static final class Key {
+
+        private final String id;
+        private final String geometry;
+        private final CoordinateReferenceSystem crs;
+        private final int band;
+
+        private Key(final String id, final String geometry, final CoordinateReferenceSystem crs, final int band) {
+            this.id = id;
+            this.geometry = geometry;
+            this.crs = crs;
+            this.band = band;
+        }
+
+        @Override
+        public int hashCode() {
+            return (id.hashCode()*31 + geometry.hashCode())*31 + band;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if(!(obj instanceof Key)){
+                return false;
+            }
+            final Key other = (Key) obj;
+            return band == other.band
+                && id.equals(other.id)
+                && geometry.equals(other.geometry)
+                && (crs == other.crs || (crs != null && crs.equals(other.crs)));
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final Geometry geometry;
+        private final int size;
+
+        private Entry(final Geometry geometry, final int size) {
+            this.geometry = geometry;
+            this.size = size;
+        }
+
+    }
+
+}
@@ -16,18 +16,33 @@
  */
 package org.geotoolkit.display2d.container.stateless;
 
+import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.SampleModel;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import org.geotoolkit.display.canvas.RenderingContext;
 import org.geotoolkit.display.VisitFilter;
@@ -43,21 +58,31 @@ import org.geotoolkit.display2d.container.ContextContainer2D;
 import org.geotoolkit.display2d.primitive.DefaultProjectedObject;
 import org.geotoolkit.display2d.primitive.GraphicJ2D;
 import org.geotoolkit.display2d.primitive.ProjectedObject;
+import org.geotoolkit.display2d.style.CachedLineSymbolizer;
+import org.geotoolkit.display2d.style.CachedPolygonSymbolizer;
 import org.geotoolkit.display2d.style.CachedRule;
 import org.geotoolkit.display2d.style.CachedSymbolizer;
+import org.geotoolkit.display2d.style.labeling.LabelLayer;
+import org.geotoolkit.display2d.style.labeling.LabelRenderer;
 import org.geotoolkit.display2d.style.renderer.SymbolizerRenderer;
 import org.geotoolkit.factory.FactoryFinder;
 import org.geotoolkit.filter.identity.DefaultFeatureId;
 import org.geotoolkit.map.CollectionMapLayer;
 import org.geotoolkit.map.GraphicBuilder;
+import org.geotoolkit.style.AbstractSymbolizer;
 import org.geotoolkit.style.MutableRule;
 import org.geotoolkit.style.MutableStyle;
 import org.opengis.display.primitive.Graphic;
 import org.geotoolkit.feature.type.ComplexType;
 import org.geotoolkit.feature.type.FeatureType;
 import org.opengis.filter.Filter;
+import org.opengis.filter.expression.Expression;
 import org.opengis.filter.expression.Literal;
 import org.opengis.filter.identity.FeatureId;
+import org.opengis.referencing.operation.TransformException;
+import org.opengis.style.Displacement;
+import org.opengis.style.LineSymbolizer;
+import org.opengis.style.PolygonSymbolizer;
 import org.opengis.style.Rule;
 import org.opengis.style.Style;
 import org.opengis.style.Symbolizer;
@@ -75,6 +100,31 @@ public class StatelessCollectionLayerJ2D<T extends CollectionMapLayer> extends S
 
     private static final Literal ID_EXPRESSION = FactoryFinder.getFilterFactory(null).literal("@id");
 
+    /**
+     * Number of candidates painted by each task when rendering in parallel.
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    /**
+     * Executor used to paint chunks of candidates concurrently.
+     * @see GO2Hints#KEY_PARALLEL_RENDERING
+     */
+    private static final ThreadPoolExecutor CHUNK_PAINTER;
+    static {
+        final int nbThread = Runtime.getRuntime().availableProcessors();
+        CHUNK_PAINTER = new ThreadPoolExecutor(nbThread, nbThread, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger inc = new AtomicInteger();
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, "Feature chunk painter "+inc.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        CHUNK_PAINTER.allowCoreThreadTimeOut(true);
+    }
+
     protected final StatelessContextParams params;
     
     public StatelessCollectionLayerJ2D(final J2DCanvas canvas, final T layer){
@@ -274,17 +324,28 @@ public class StatelessCollectionLayerJ2D<T extends CollectionMapLayer> extends S
         if(monitor.stopRequested()) return;
 
         //check if we have group symbolizers, if it's the case we must render by symbol order.
-        boolean symbolOrder = false;
+        boolean groupSymbolizer = false;
         for(CachedRule rule : rules){
             for(CachedSymbolizer symbolizer : rule.symbolizers()){
                 if(symbolizer.getRenderer().isGroupSymbolizer()){
-                    symbolOrder = true;
+                    groupSymbolizer = true;
                     break;
                 }
             }
         }
         
-        symbolOrder = symbolOrder || Boolean.TRUE.equals(canvas.getRenderingHint(GO2Hints.KEY_SYMBOL_RENDERING_ORDER));
+        final boolean symbolOrder = groupSymbolizer || Boolean.TRUE.equals(canvas.getRenderingHint(GO2Hints.KEY_SYMBOL_RENDERING_ORDER));
+
+        //group symbolizers need the complete collection, they can not be split in chunks
+        if(!groupSymbolizer && Boolean.TRUE.equals(canvas.getRenderingHint(GO2Hints.KEY_PARALLEL_RENDERING))){
+            try{
+                renderParallel(candidates, context, rules, symbolOrder);
+            }catch(PortrayalException ex){
+                monitor.exceptionOccured(ex, Level.WARNING);
+            }
+            return;
+        }
+
         if(symbolOrder){
             try{
                 renderBySymbolOrder(candidates, context, rules, params);
@@ -537,6 +598,472 @@ public class StatelessCollectionLayerJ2D<T extends CollectionMapLayer> extends S
         }
     }
     
+    /**
+     * Render the candidates using several threads.
+     * Candidates are read by chunks on the calling thread, each chunk is painted
+     * by a painter in it's own buffers, one per symbolizer depth, then the buffers
+     * are merged back in the chunk order. The result is the same as a single thread
+     * rendering by object or by symbol order.
+     * There is at most one painter per thread plus one, painters are reused once
+     * their chunk is merged.
+     */
+    private void renderParallel(final Collection<?> candidates, final RenderingContext2D context,
+            final CachedRule[] rules, final boolean symbolOrder) throws PortrayalException {
+
+        final CanvasMonitor monitor = context.getMonitor();
+        final int elseRuleIndex = DefaultCachedRule.sortByElseRule(rules);
+
+        //number of buffers needed for each chunk
+        int depth = 1;
+        if(symbolOrder){
+            for(CachedRule rule : rules){
+                final CachedSymbolizer[] css = rule.symbolizers();
+                //do not count text symbolizers at the end
+                int len = css.length;
+                for(int k=css.length-1;k>=0;k--){
+                    if(css[k].getSource() instanceof TextSymbolizer){
+                        len--;
+                    }else{
+                        break;
+                    }
+                }
+                depth = Math.max(depth, len);
+            }
+        }
+
+        final Rectangle bounds = context.getCanvasDisplayBounds();
+        final Rectangle canvasArea = new Rectangle(0, 0, bounds.x+bounds.width, bounds.y+bounds.height);
+        final ColorModel cm = ColorModel.getRGBdefault();
+        final SampleModel sm = cm.createCompatibleSampleModel(canvasArea.width, canvasArea.height);
+        final LabelRenderer labelRenderer = context.getLabelRenderer(true);
+        final float margin = paintedMargin(rules, context);
+
+        //images accumulating the symbolizers of depth 1 and more
+        final BufferedImage[] layers = new BufferedImage[depth];
+        final Graphics2D[] layerGraphics = new Graphics2D[depth];
+        context.switchToDisplayCRS();
+        layerGraphics[0] = context.getGraphics();
+        layerGraphics[0].setComposite(ALPHA_COMPOSITE_1F);
+        for(int k=1;k<depth;k++){
+            layers[k] = createBufferedImage(cm, sm);
+            layerGraphics[k] = (Graphics2D) layers[k].getGraphics();
+            layerGraphics[k].setComposite(ALPHA_COMPOSITE_1F);
+        }
+
+        final int maxPending = CHUNK_PAINTER.getMaximumPoolSize() + 1;
+        final Deque<Future<ChunkPainter>> pending = new ArrayDeque<Future<ChunkPainter>>(maxPending);
+        final Deque<ChunkPainter> idle = new ArrayDeque<ChunkPainter>(maxPending);
+        final Iterator<?> ite = candidates.iterator();
+        try{
+            while(ite.hasNext()){
+                if(monitor.stopRequested()) return;
+
+                final List<Object> chunk = new ArrayList<Object>(CHUNK_SIZE);
+                while(chunk.size()<CHUNK_SIZE && ite.hasNext()){
+                    chunk.add(ite.next());
+                }
+
+                if(pending.size() >= maxPending){
+                    final ChunkPainter done = pending.poll().get();
+                    done.merge(layerGraphics, labelRenderer);
+                    idle.add(done);
+                }
+                ChunkPainter painter = idle.poll();
+                if(painter == null){
+                    painter = new ChunkPainter(context, rules, elseRuleIndex, symbolOrder, cm, depth, canvasArea, margin);
+                }
+                painter.chunk = chunk;
+                pending.add(CHUNK_PAINTER.submit(painter));
+            }
+
+            while(!pending.isEmpty()){
+                if(monitor.stopRequested()) return;
+                final ChunkPainter done = pending.poll().get();
+                done.merge(layerGraphics, labelRenderer);
+                idle.add(done);
+            }
+
+            //merge the symbolizer depths
+            for(int k=1;k<depth;k++){
+                layerGraphics[0].drawImage(layers[k], 0, 0, null);
+            }
+
+        }catch(InterruptedException ex){
+            throw new PortrayalException(ex);
+        }catch(ExecutionException ex){
+            final Throwable cause = ex.getCause();
+            if(cause instanceof PortrayalException){
+                throw (PortrayalException) cause;
+            }else if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new PortrayalException(cause);
+        }finally{
+            for(Future<ChunkPainter> future : pending){
+                future.cancel(true);
+            }
+            //painters still pending may be running, their buffers are left to the garbage collector
+            for(ChunkPainter painter : idle){
+                painter.dispose();
+            }
+            for(int k=1;k<depth;k++){
+                layerGraphics[k].dispose();
+                recycleBufferedImage(layers[k]);
+            }
+            if(ite instanceof Closeable){
+                try {
+                    ((Closeable)ite).close();
+                } catch (IOException ex) {
+                    getLogger().log(Level.WARNING, null, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lines and polygons are painted around their geometry within a margin known
+     * before the rendering, other symbols may be placed anywhere on the canvas.
+     * Texts are ignored, labels are not painted in the chunk buffers.
+     *
+     * @return maximum margin of the symbols in display unit, NaN if the painted area can not be predicted
+     */
+    private static float paintedMargin(final CachedRule[] rules, final RenderingContext2D context){
+        float margin = 0;
+        for(CachedRule rule : rules){
+            for(CachedSymbolizer cached : rule.symbolizers()){
+                final Symbolizer symbol = cached.getSource();
+                if(symbol instanceof TextSymbolizer){
+                    continue;
+                }
+
+                final float coeff = context.getUnitCoefficient(symbol.getUnitOfMeasure());
+                float symbolMargin = cached.getMargin(null, context);
+                if(cached instanceof CachedLineSymbolizer){
+                    if(!isStatic(((LineSymbolizer)symbol).getPerpendicularOffset())){
+                        return Float.NaN;
+                    }
+                    symbolMargin += Math.abs(((CachedLineSymbolizer)cached).getOffset(null, coeff));
+                }else if(cached instanceof CachedPolygonSymbolizer){
+                    final PolygonSymbolizer ps = (PolygonSymbolizer) symbol;
+                    final Displacement disp = ps.getDisplacement();
+                    if(!isStatic(ps.getPerpendicularOffset()) || (disp != null
+                            && !(isStatic(disp.getDisplacementX()) && isStatic(disp.getDisplacementY())))){
+                        return Float.NaN;
+                    }
+                    final CachedPolygonSymbolizer cps = (CachedPolygonSymbolizer) cached;
+                    final float[] disps = cps.getDisplacement(null);
+                    symbolMargin += Math.abs(cps.getOffset(null, coeff))
+                                  + Math.max(Math.abs(disps[0]), Math.abs(disps[1]));
+                }else{
+                    return Float.NaN;
+                }
+                if(Float.isNaN(symbolMargin)){
+                    //dynamic width
+                    return Float.NaN;
+                }
+                margin = Math.max(margin, symbolMargin);
+            }
+        }
+        return margin;
+    }
+
+    /**
+     * Paint chunks of candidates in it's own buffers.
+     * The painter and it's rules are created on the calling thread, only
+     * the painting is done in the executor. Style caches are not thread safe,
+     * each painter works on it's own copy of the rules.
+     * Buffers only cover the area painted by the chunk when it can be predicted
+     * from the symbols margin, they grow as needed and are reused by the next chunks.
+     * A painter is used by one thread at a time, it is given back to the calling
+     * thread with the future result.
+     */
+    private final class ChunkPainter implements Callable<ChunkPainter>{
+
+        private final RenderingContext2D context;
+        private final CanvasMonitor monitor;
+        private final CachedRule[] rules;
+        private final int elseRuleIndex;
+        private final boolean symbolOrder;
+        private final ColorModel cm;
+        private final Rectangle canvasArea;
+        private final float margin;
+        private final StatelessContextParams params;
+        private final List<Expression> geometries = new ArrayList<Expression>();
+        private final BufferedImage[] images;
+        private final RenderingContext2D[] ctxs;
+        private final SymbolizerRenderer[][] renderers;
+        private final DeferredLabelRenderer labels;
+        private List<Object> chunk;
+        /** Display area covered by the buffers for the current chunk. */
+        private Rectangle area;
+
+        /**
+         * @param rules rules sorted by else rule
+         * @param canvasArea display area of the complete canvas
+         * @param margin symbols margin, NaN if the painted area can not be predicted
+         */
+        private ChunkPainter(final RenderingContext2D context, final CachedRule[] rules,
+                final int elseRuleIndex, final boolean symbolOrder, final ColorModel cm,
+                final int depth, final Rectangle canvasArea, final float margin){
+            this.context = context;
+            this.monitor = context.getMonitor();
+            this.elseRuleIndex = elseRuleIndex;
+            this.symbolOrder = symbolOrder;
+            this.cm = cm;
+            this.canvasArea = canvasArea;
+            this.margin = margin;
+            this.labels = new DeferredLabelRenderer(context.getLabelRenderer(true));
+            this.images = new BufferedImage[depth];
+            this.ctxs = new RenderingContext2D[depth];
+
+            //each painter has it's own parameters, geometry transformers are not concurrent
+            this.params = new StatelessContextParams(canvas, item);
+            this.params.update(context);
+            this.params.geometryCache = StatelessCollectionLayerJ2D.this.params.geometryCache;
+            this.params.geometryCacheBand = StatelessCollectionLayerJ2D.this.params.geometryCacheBand;
+
+            //copy the rules, the order is preserved
+            this.rules = new CachedRule[rules.length];
+            this.renderers = new SymbolizerRenderer[rules.length][0];
+            for(int i=0;i<rules.length;i++){
+                this.rules[i] = rules[i].copy();
+                final CachedSymbolizer[] css = this.rules[i].symbolizers();
+                renderers[i] = new SymbolizerRenderer[css.length];
+                for(CachedSymbolizer cs : css){
+                    final Symbolizer symbol = cs.getSource();
+                    if(symbol instanceof TextSymbolizer) continue;
+                    //same geometry as the symbolizer renderers
+                    final Expression geometry;
+                    if(symbol instanceof AbstractSymbolizer){
+                        geometry = ((AbstractSymbolizer)symbol).getGeometry();
+                    }else if(symbol.getGeometryPropertyName() != null){
+                        geometry = FILTER_FACTORY.property(symbol.getGeometryPropertyName());
+                    }else{
+                        geometry = null;
+                    }
+                    if(!geometries.contains(geometry)){
+                        geometries.add(geometry);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public ChunkPainter call() throws PortrayalException {
+            //one projected object per candidate, projections are shared with the renderers
+            final List<ProjectedObject> objects = new ArrayList<ProjectedObject>(chunk.size());
+            for(Object candidate : chunk){
+                final DefaultProjectedObject projected = createProjectedObject(params);
+                projected.setCandidate(candidate);
+                objects.add(projected);
+            }
+            prepare(paintedArea(objects));
+
+            for(ProjectedObject projectedCandidate : objects){
+                if(monitor.stopRequested()) break;
+
+                boolean painted = false;
+                for(int i=0; i<elseRuleIndex; i++){
+                    final Filter ruleFilter = rules[i].getFilter();
+                    //test if the rule is valid for this feature
+                    if (ruleFilter == null || ruleFilter.evaluate(projectedCandidate.getCandidate())) {
+                        painted = true;
+                        for (final SymbolizerRenderer renderer : renderers[i]) {
+                            renderer.portray(projectedCandidate);
+                        }
+                    }
+                }
+
+                //the feature hasn't been painted, paint it with the 'else' rules
+                if(!painted){
+                    for(int i=elseRuleIndex; i<rules.length; i++){
+                        final Filter ruleFilter = rules[i].getFilter();
+                        //test if the rule is valid for this feature
+                        if (ruleFilter == null || ruleFilter.evaluate(projectedCandidate.getCandidate())) {
+                            for (final SymbolizerRenderer renderer : renderers[i]) {
+                                renderer.portray(projectedCandidate);
+                            }
+                        }
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @return display area painted by the chunk, the complete canvas if it can not be predicted
+         */
+        private Rectangle paintedArea(final List<ProjectedObject> objects){
+            if(Float.isNaN(margin)){
+                return canvasArea;
+            }
+
+            Rectangle2D painted = null;
+            try{
+                for(ProjectedObject projected : objects){
+                    for(Expression geometry : geometries){
+                        final Shape[] shapes = projected.getGeometry(geometry).getDisplayShape();
+                        if(shapes == null) continue;
+                        for(Shape shape : shapes){
+                            if(shape == null) continue;
+                            if(painted == null){
+                                painted = new Rectangle2D.Double();
+                                painted.setRect(shape.getBounds2D());
+                            }else{
+                                painted.add(shape.getBounds2D());
+                            }
+                        }
+                    }
+                }
+            }catch(TransformException ex){
+                //the renderers will report the error
+                return canvasArea;
+            }
+
+            final Rectangle result;
+            if(painted == null){
+                result = new Rectangle();
+            }else{
+                //miter joins of the strokes can extend up to 5 times the stroke width, plus antialiasing
+                final double m = 5 * margin + 2;
+                painted.setRect(painted.getX()-m, painted.getY()-m, painted.getWidth()+2*m, painted.getHeight()+2*m);
+                result = painted.getBounds().intersection(canvasArea);
+            }
+            if(result.isEmpty()){
+                //nothing is visible but texts must still be given to the label renderer
+                result.setBounds(0, 0, 1, 1);
+            }
+            return result;
+        }
+
+        /**
+         * Prepare the buffers and renderers to paint the given display area.
+         */
+        private void prepare(final Rectangle area){
+            this.area = area;
+            for(int k=0;k<images.length;k++){
+                if(images[k] == null || images[k].getWidth() < area.width || images[k].getHeight() < area.height){
+                    int width = area.width;
+                    int height = area.height;
+                    if(images[k] != null){
+                        width = Math.max(width, images[k].getWidth());
+                        height = Math.max(height, images[k].getHeight());
+                        recycleBufferedImage(images[k]);
+                    }
+                    images[k] = createBufferedImage(cm, cm.createCompatibleSampleModel(width, height));
+                }
+                //nothing is painted outside the area, the rest of the buffer stays clear
+                final Graphics2D g = images[k].createGraphics();
+                g.translate(-area.x, -area.y);
+                g.clipRect(area.x, area.y, area.width, area.height);
+                ctxs[k] = context.create(g, labels);
+            }
+
+            //renderers keep the graphics of their context
+            for(int i=0;i<rules.length;i++){
+                final CachedSymbolizer[] css = rules[i].symbolizers();
+                for(int k=0;k<css.length;k++){
+                    final RenderingContext2D ctx;
+                    if(!symbolOrder || css[k].getSource() instanceof TextSymbolizer){
+                        ctx = ctxs[0];
+                    }else{
+                        ctx = ctxs[k];
+                    }
+                    renderers[i][k] = css[k].getRenderer().createRenderer(css[k], ctx);
+                }
+            }
+        }
+
+        /**
+         * Draw the chunk buffers and labels, must be called on the rendering thread
+         * in the chunk order. Buffers are cleared for the next chunk.
+         */
+        private void merge(final Graphics2D[] layerGraphics, final LabelRenderer labelRenderer){
+            chunk = null;
+            for(int k=0;k<images.length;k++){
+                layerGraphics[k].drawImage(images[k],
+                        area.x, area.y, area.x+area.width, area.y+area.height,
+                        0, 0, area.width, area.height, null);
+                ctxs[k].getGraphics().dispose();
+                ctxs[k] = null;
+                final Graphics2D g = images[k].createGraphics();
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, area.width, area.height);
+                g.dispose();
+            }
+            for(int i=0;i<renderers.length;i++){
+                Arrays.fill(renderers[i], null);
+            }
+            for(LabelLayer layer : labels.layers){
+                labelRenderer.append(layer);
+            }
+            labels.layers.clear();
+        }
+
+        /**
+         * Release the painter buffers.
+         */
+        private void dispose(){
+            for(int k=0;k<images.length;k++){
+                if(ctxs[k] != null){
+                    ctxs[k].getGraphics().dispose();
+                }
+                recycleBufferedImage(images[k]);
+            }
+        }
+
+    }
+
+    /**
+     * Label renderer used by the chunk painters, labels layers are stored
+     * until the chunk is merged to preserve the label order.
+     */
+    private static final class DeferredLabelRenderer implements LabelRenderer{
+
+        private final LabelRenderer target;
+        private final List<LabelLayer> layers = new ArrayList<LabelLayer>();
+        private RenderingContext2D context;
+
+        private DeferredLabelRenderer(final LabelRenderer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void setRenderingContext(final RenderingContext2D context) {
+            this.context = context;
+        }
+
+        @Override
+        public RenderingContext2D getRenderingContext() {
+            return (context != null) ? context : target.getRenderingContext();
+        }
+
+        @Override
+        public LabelLayer createLabelLayer() {
+            synchronized(target){
+                return target.createLabelLayer();
+            }
+        }
+
+        @Override
+        public void append(final LabelLayer layer) {
+            layers.add(layer);
+        }
+
+        @Override
+        public void portrayLabels() throws TransformException {
+            //labels are portrayed by the target renderer
+        }
+
+        @Override
+        public void portrayImmidiately(final LabelLayer layer) {
+            synchronized(target){
+                target.portrayImmidiately(layer);
+            }
+        }
+
+    }
+
     protected boolean contain(final Set<FeatureId> ids, final Object candidate){
         return ids.contains(id(candidate));
     }
@@ -562,8 +1089,17 @@ public class StatelessCollectionLayerJ2D<T extends CollectionMapLayer> extends S
     protected RenderingIterator getIterator(final Collection<?> features,
             final RenderingContext2D renderingContext, final StatelessContextParams params){
         final Iterator<?> iterator = features.iterator();
-        final DefaultProjectedObject projectedFeature = new DefaultProjectedObject(params);
-        return new GraphicIterator(iterator, projectedFeature);
+        return new GraphicIterator(iterator, createProjectedObject(params));
+    }
+
+    /**
+     * Create the reusable projected object used to iterate over the candidates.
+     *
+     * @param params rendering parameters
+     * @return DefaultProjectedObject
+     */
+    protected DefaultProjectedObject createProjectedObject(final StatelessContextParams params){
+        return new DefaultProjectedObject(params);
     }
 
     protected static interface RenderingIterator extends Iterator<ProjectedObject>,Closeable{}
@@ -50,6 +50,10 @@ public class StatelessContextParams<T extends MapLayer> {
     //clipping geometries
     public Rectangle2D displayClipRect;
     public Polygon displayClip;
+
+    //generalized geometry cache, null if not used
+    public GeneralizedGeometryCache geometryCache;
+    public int geometryCacheBand;
     
     public StatelessContextParams(final AbstractCanvas2D canvas, final T layer){
         this.canvas = canvas;
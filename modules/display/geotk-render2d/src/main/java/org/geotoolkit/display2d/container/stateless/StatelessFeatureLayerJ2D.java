@@ -52,11 +52,14 @@ import static org.geotoolkit.display2d.GO2Utilities.*;
 import org.geotoolkit.display2d.canvas.J2DCanvas;
 import org.geotoolkit.display2d.canvas.RenderingContext2D;
 import org.geotoolkit.display2d.container.stateless.StatelessCollectionLayerJ2D.RenderingIterator;
+import org.geotoolkit.display2d.primitive.DefaultProjectedObject;
 import org.geotoolkit.display2d.primitive.DefaultSearchAreaJ2D;
 import org.geotoolkit.display2d.primitive.GraphicJ2D;
 import org.geotoolkit.display2d.primitive.ProjectedFeature;
 import org.geotoolkit.display2d.primitive.ProjectedObject;
 import org.geotoolkit.display2d.primitive.SearchAreaJ2D;
+import org.geotoolkit.display2d.style.CachedLineSymbolizer;
+import org.geotoolkit.display2d.style.CachedPolygonSymbolizer;
 import org.geotoolkit.display2d.style.CachedRule;
 import org.geotoolkit.display2d.style.CachedSymbolizer;
 import org.geotoolkit.display2d.style.renderer.SymbolizerRenderer;
@@ -78,16 +81,22 @@ import org.geotoolkit.geometry.DefaultBoundingBox;
 import org.geotoolkit.map.FeatureMapLayer;
 import org.geotoolkit.map.GraphicBuilder;
 import org.geotoolkit.map.MapLayer;
+import org.geotoolkit.style.AbstractSymbolizer;
 import org.geotoolkit.style.MutableRule;
 import org.geotoolkit.style.StyleUtilities;
 import org.opengis.display.primitive.Graphic;
 import org.opengis.filter.Filter;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.identity.FeatureId;
 import org.opengis.geometry.BoundingBox;
 import org.opengis.geometry.Envelope;
 import org.opengis.metadata.extent.GeographicBoundingBox;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.TransformException;
+import org.opengis.style.Displacement;
+import org.opengis.style.LineSymbolizer;
+import org.opengis.style.PolygonSymbolizer;
 import org.opengis.style.Rule;
 import org.opengis.style.Symbolizer;
 
@@ -100,6 +109,15 @@ import org.opengis.style.Symbolizer;
  */
 public class StatelessFeatureLayerJ2D extends StatelessCollectionLayerJ2D<FeatureMapLayer> implements FeatureStoreListener{
 
+    /**
+     * Clipped geometries have artificial borders along the clip envelope, they
+     * are moved out of the painted area by the symbols margin multiplied by
+     * this factor, miter joins of the strokes can extend up to 5 times the stroke width,
+     * plus a few pixels for antialiasing.
+     */
+    private static final float CLIP_MARGIN_FACTOR = 5f;
+    private static final float CLIP_MARGIN = 2f;
+
     protected FeatureStoreListener.Weak weakSessionListener = new FeatureStoreListener.Weak(this);
 
     protected Query currentQuery = null;
@@ -236,6 +254,7 @@ public class StatelessFeatureLayerJ2D extends StatelessCollectionLayerJ2D<Featur
     protected Collection<?> optimizeCollection(final RenderingContext2D context,
             final Set<String> requieredAtts, final List<Rule> rules) throws Exception {
         currentQuery = prepareQuery(context, item, requieredAtts, rules);
+        prepareGeometryCache(context, currentQuery);
         //we detach feature since we are going to use a cache.
         currentQuery.getHints().put(HintsPending.FEATURE_DETACHED,Boolean.TRUE);
         final Query query = currentQuery;
@@ -246,6 +265,7 @@ public class StatelessFeatureLayerJ2D extends StatelessCollectionLayerJ2D<Featur
     
     protected Collection<?> optimizeCollection(final RenderingContext2D context) throws Exception {
         currentQuery = prepareQuery(context, item);
+        prepareGeometryCache(context, currentQuery);
         //we detach feature since we are going to use a cache.
         currentQuery.getHints().put(HintsPending.FEATURE_DETACHED,Boolean.TRUE);
         final Query query = currentQuery;
@@ -253,6 +273,28 @@ public class StatelessFeatureLayerJ2D extends StatelessCollectionLayerJ2D<Featur
         col = GenericCachedFeatureIterator.wrap(col, 1000);
         return col;
     }
+
+    /**
+     * Configure the generalized geometry cache used by the rendering parameters.
+     * The cache is only used when the query has a resolution.
+     */
+    private void prepareGeometryCache(final RenderingContext2D context, final Query query){
+        params.geometryCache = null;
+        final long size = geometryCacheSize(context.getRenderingHints());
+        final double[] res = query.getResolution();
+        if(size > 0 && res != null){
+            params.geometryCache = GeneralizedGeometryCache.getCache(item, size);
+            params.geometryCacheBand = GeneralizedGeometryCache.band(res[0]);
+        }
+    }
+
+    /**
+     * @return size of the generalized geometry cache, 0 if the cache is not enabled
+     */
+    private static long geometryCacheSize(final RenderingHints hints){
+        final Object size = (hints == null) ? null : hints.get(GO2Hints.KEY_GEOMETRY_CACHE_SIZE);
+        return (size instanceof Number) ? Math.max(0, ((Number)size).longValue()) : 0;
+    }
     
 
     @Override
@@ -269,6 +311,11 @@ public class StatelessFeatureLayerJ2D extends StatelessCollectionLayerJ2D<Featur
         return new GraphicIterator(iterator, projectedFeature);
     }
 
+    @Override
+    protected DefaultProjectedObject createProjectedObject(final StatelessContextParams params) {
+        return new ProjectedFeature(params);
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -587,7 +634,32 @@ public class StatelessFeatureLayerJ2D extends StatelessCollectionLayerJ2D<Featur
                 }
                 res[0] *= factor;
                 res[1] *= factor;
+                if(geometryCacheSize(hints) > 0){
+                    //align on the generalized geometry cache resolution band
+                    final double scale = GeneralizedGeometryCache.bandResolution(
+                            GeneralizedGeometryCache.band(res[0])) / res[0];
+                    res[0] *= scale;
+                    res[1] *= scale;
+                }
                 qb.setResolution(res);
+                queryHints.put(HintsPending.KEY_SNAP_TO_RESOLUTION, Boolean.TRUE);
+            }
+
+            //add clipping ---------------------------------------------------------
+            //cached geometries are reused by the next renderings, they must be complete
+            final Boolean clip = (hints == null) ? null : (Boolean) hints.get(GO2Hints.KEY_CLIP_GEOMETRIES);
+            if(!Boolean.FALSE.equals(clip) && bbox != null
+                    && geometryCacheSize(hints) == 0){
+                final float margin = clipMargin(renderingContext, rules, expected, geomAttName);
+                if(!Float.isNaN(margin)){
+                    final double[] pixel = renderingContext.getResolution(layerCRS);
+                    final GeneralEnvelope clipEnv = new GeneralEnvelope(bbox);
+                    for(int i=0; i<2; i++){
+                        final double m = (CLIP_MARGIN_FACTOR * margin + CLIP_MARGIN) * pixel[i];
+                        clipEnv.setRange(i, clipEnv.getMinimum(i) - m, clipEnv.getMaximum(i) + m);
+                    }
+                    queryHints.put(HintsPending.KEY_CLIP_ENVELOPE, clipEnv);
+                }
             }
 
             //add ignore flag ------------------------------------------------------
@@ -708,7 +780,15 @@ public class StatelessFeatureLayerJ2D extends StatelessCollectionLayerJ2D<Featur
                 }
                 res[0] *= factor;
                 res[1] *= factor;
+                if(geometryCacheSize(hints) > 0){
+                    //align on the generalized geometry cache resolution band
+                    final double scale = GeneralizedGeometryCache.bandResolution(
+                            GeneralizedGeometryCache.band(res[0])) / res[0];
+                    res[0] *= scale;
+                    res[1] *= scale;
+                }
                 qb.setResolution(res);
+                queryHints.put(HintsPending.KEY_SNAP_TO_RESOLUTION, Boolean.TRUE);
             }
 
             //add ignore flag ------------------------------------------------------
@@ -732,6 +812,68 @@ public class StatelessFeatureLayerJ2D extends StatelessCollectionLayerJ2D<Featur
         return qb.buildQuery();
     }
 
+    /**
+     * Geometries can be clipped to the painted area only if the rules draw lines and
+     * polygons of the default geometry with a margin known before the rendering.
+     * Other symbolizers, like points or texts, are placed using the complete geometry.
+     *
+     * @return maximum margin of the symbols in display unit, NaN if geometries can not be clipped
+     */
+    private static float clipMargin(final RenderingContext2D renderingContext, final List<Rule> rules,
+            final FeatureType expected, final String geomAttName){
+        if(rules == null || rules.isEmpty()){
+            return Float.NaN;
+        }
+
+        float margin = 0;
+        for(final Rule rule : rules){
+            for(final Symbolizer symbol : rule.symbolizers()){
+                if(!(symbol instanceof LineSymbolizer || symbol instanceof PolygonSymbolizer)){
+                    return Float.NaN;
+                }
+
+                //symbol must be applied on the default geometry
+                if(symbol instanceof AbstractSymbolizer){
+                    final Expression geom = ((AbstractSymbolizer)symbol).getGeometry();
+                    if(!isNullorEmpty(geom) && !(geom instanceof PropertyName
+                            && ((PropertyName)geom).getPropertyName().equals(geomAttName))){
+                        return Float.NaN;
+                    }
+                }else if(symbol.getGeometryPropertyName() != null
+                        && !symbol.getGeometryPropertyName().equals(geomAttName)){
+                    return Float.NaN;
+                }
+
+                final CachedSymbolizer cached = GO2Utilities.getCached(symbol, expected);
+                final float coeff = renderingContext.getUnitCoefficient(symbol.getUnitOfMeasure());
+                float symbolMargin = cached.getMargin(null, renderingContext);
+                if(symbol instanceof LineSymbolizer){
+                    if(!isStatic(((LineSymbolizer)symbol).getPerpendicularOffset())){
+                        return Float.NaN;
+                    }
+                    symbolMargin += Math.abs(((CachedLineSymbolizer)cached).getOffset(null, coeff));
+                }else{
+                    final PolygonSymbolizer ps = (PolygonSymbolizer) symbol;
+                    final Displacement disp = ps.getDisplacement();
+                    if(!isStatic(ps.getPerpendicularOffset()) || (disp != null
+                            && !(isStatic(disp.getDisplacementX()) && isStatic(disp.getDisplacementY())))){
+                        return Float.NaN;
+                    }
+                    final CachedPolygonSymbolizer cps = (CachedPolygonSymbolizer) cached;
+                    final float[] disps = cps.getDisplacement(null);
+                    symbolMargin += Math.abs(cps.getOffset(null, coeff))
+                                  + Math.max(Math.abs(disps[0]), Math.abs(disps[1]));
+                }
+                if(Float.isNaN(symbolMargin)){
+                    //dynamic width
+                    return Float.NaN;
+                }
+                margin = Math.max(margin, symbolMargin);
+            }
+        }
+        return margin;
+    }
+
     private static BoundingBox optimizeBBox(RenderingContext2D renderingContext, FeatureMapLayer layer){
         BoundingBox bbox                                         = renderingContext.getPaintingObjectiveBounds2D();
         final CoordinateReferenceSystem bboxCRS                  = bbox.getCoordinateReferenceSystem();
@@ -126,6 +126,10 @@ public class ProjectedFeature extends DefaultProjectedObject<Feature> {
         //check that the geometry is set
         if(!proj.isSet()){
             proj.setDataGeometry(GO2Utilities.getGeometry(candidate, geomExp),dataCRS);
+            final FeatureId id = candidate.getIdentifier();
+            if(params.geometryCache != null && id != null){
+                proj.setCacheKey(id.getID(), String.valueOf(geomExp));
+            }
         }
 
         return proj;
@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.geotoolkit.display.shape.ProjectedShape;
+import org.geotoolkit.display2d.container.stateless.GeneralizedGeometryCache;
 import org.geotoolkit.display2d.container.stateless.StatelessContextParams;
 import org.geotoolkit.display2d.primitive.jts.JTSGeometryJ2D;
 import org.geotoolkit.geometry.isoonjts.JTSUtils;
@@ -30,6 +31,7 @@ import org.geotoolkit.geometry.jts.JTS;
 import org.geotoolkit.geometry.jts.transform.CoordinateSequenceMathTransformer;
 import org.geotoolkit.geometry.jts.transform.CoordinateSequenceWrapTransformer;
 import org.geotoolkit.geometry.jts.transform.GeometryCSTransformer;
+import org.geotoolkit.geometry.jts.transform.GeometryScaleTransformer;
 import org.geotoolkit.internal.referencing.CRSUtilities;
 import org.geotoolkit.referencing.CRS;
 import org.opengis.geometry.Envelope;
@@ -74,6 +76,10 @@ public class ProjectedGeometry  {
 
     private CoordinateReferenceSystem dataCRS = null;
 
+    //identifier in the generalized geometry cache
+    private String cacheId = null;
+    private String cacheGeometry = null;
+
     public ProjectedGeometry(final StatelessContextParams params){
         this.params = params;
     }
@@ -121,6 +127,18 @@ public class ProjectedGeometry  {
         }
     }
 
+    /**
+     * Set the key used to store the objective geometry in the parameters
+     * generalized geometry cache. The key is reset when the data geometry changes.
+     *
+     * @param id feature identifier
+     * @param geometry geometry property
+     */
+    public void setCacheKey(final String id, final String geometry){
+        this.cacheId = id;
+        this.cacheGeometry = geometry;
+    }
+
     public MathTransform2D getDataToDisplay() {
         return dataToDisplay;
     }
@@ -139,6 +157,7 @@ public class ProjectedGeometry  {
 
     public void clearDataCache(){
         clearObjectiveCache();
+        cacheId = null;
         dataGeometryISO = null;
         dataGeometryJTS = null;
         dataShape = null;
@@ -185,9 +204,22 @@ public class ProjectedGeometry  {
             objectiveGeometryJTS = new com.vividsolutions.jts.geom.Geometry[1];
             
             com.vividsolutions.jts.geom.Geometry objBase;
+            final GeneralizedGeometryCache cache = params.geometryCache;
             if(dataToObjective == null){
                 //we assume data and objective are in the same crs
                 objBase = dataGeometryJTS;
+            }else if(cache != null && cacheId != null && !dataToObjective.isIdentity()){
+                //reuse the geometry of a previous rendering at the same resolution band
+                final int band = params.geometryCacheBand;
+                objBase = cache.get(cacheId, cacheGeometry, params.objectiveCRS, band);
+                if(objBase == null){
+                    //generalize the geometry for the whole band before caching it
+                    final double res = GeneralizedGeometryCache.bandResolution(band);
+                    objBase = new GeometryScaleTransformer(res, res).transform(getDataGeometryJTS());
+                    final GeometryCSTransformer transformer = new GeometryCSTransformer(new CoordinateSequenceMathTransformer(dataToObjective));
+                    objBase = transformer.transform(objBase);
+                    cache.put(cacheId, cacheGeometry, params.objectiveCRS, band, objBase);
+                }
             }else{
                 final GeometryCSTransformer transformer = new GeometryCSTransformer(new CoordinateSequenceMathTransformer(dataToObjective));
                 objBase = transformer.transform(getDataGeometryJTS());
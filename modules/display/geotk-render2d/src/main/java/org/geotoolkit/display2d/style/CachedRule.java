@@ -38,9 +38,11 @@ public class CachedRule extends Cache<Rule>{
 
     private final CachedSymbolizer[] symbols;
     private final Filter preparedFilter;
+    private final ComplexType expected;
 
     public CachedRule(final Rule source,final ComplexType expected){
         super(source);
+        this.expected = expected;
 
         final List<? extends Symbolizer> ruleSymbols = source.symbolizers();
         final CachedSymbolizer[] array = new CachedSymbolizer[ruleSymbols.size()];
@@ -64,6 +66,16 @@ public class CachedRule extends Cache<Rule>{
         this.preparedFilter = FilterUtilities.prepare(source.getFilter(),Feature.class,expected);
     }
 
+    /**
+     * Create a new cached rule for the same rule and type.
+     * Cached elements are not thread safe, each rendering thread must use it's own copy.
+     *
+     * @return new CachedRule, not yet evaluated.
+     */
+    public CachedRule copy(){
+        return new CachedRule(styleElement, expected);
+    }
+
     /**
      * @return Rule optimized filter.
      */
@@ -0,0 +1,123 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.container.stateless;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import java.util.Collections;
+import org.apache.sis.referencing.CommonCRS;
+import org.geotoolkit.data.FeatureCollection;
+import org.geotoolkit.data.FeatureStoreContentEvent;
+import org.geotoolkit.data.FeatureStoreUtilities;
+import org.geotoolkit.factory.FactoryFinder;
+import org.geotoolkit.feature.FeatureTypeBuilder;
+import org.geotoolkit.feature.simple.SimpleFeatureType;
+import org.geotoolkit.map.FeatureMapLayer;
+import org.geotoolkit.map.MapBuilder;
+import org.geotoolkit.style.DefaultStyleFactory;
+import org.junit.Test;
+import org.opengis.filter.FilterFactory;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the generalized geometry cache.
+ *
+ * @module pending
+ */
+public class GeneralizedGeometryCacheTest {
+
+    private static final GeometryFactory GF = new GeometryFactory();
+    private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
+
+    private static FeatureMapLayer createLayer(){
+        final FeatureTypeBuilder sftb = new FeatureTypeBuilder();
+        sftb.setName("test");
+        sftb.add("geom", Point.class, CommonCRS.WGS84.normalizedGeographic());
+        final SimpleFeatureType sft = sftb.buildSimpleFeatureType();
+        final FeatureCollection col = FeatureStoreUtilities.collection("id", sft);
+        return MapBuilder.createFeatureLayer(col, new DefaultStyleFactory().style());
+    }
+
+    @Test
+    public void testBand(){
+        assertEquals(0, GeneralizedGeometryCache.band(1.0));
+        assertEquals(0, GeneralizedGeometryCache.band(1.9));
+        assertEquals(1, GeneralizedGeometryCache.band(2.0));
+        assertEquals(-2, GeneralizedGeometryCache.band(0.3));
+        assertEquals(0.25, GeneralizedGeometryCache.bandResolution(-2), 0.0);
+        assertEquals(4.0, GeneralizedGeometryCache.bandResolution(2), 0.0);
+    }
+
+    @Test
+    public void testCache(){
+        final FeatureMapLayer layer = createLayer();
+        final GeneralizedGeometryCache cache = GeneralizedGeometryCache.getCache(layer, 1024*1024);
+        assertSame(cache, GeneralizedGeometryCache.getCache(layer, 1024*1024));
+
+        final CoordinateReferenceSystem crs = CommonCRS.WGS84.normalizedGeographic();
+        final Geometry geom = GF.createPoint(new Coordinate(1, 2));
+        cache.put("f1", "geom", crs, 3, geom);
+        assertSame(geom, cache.get("f1", "geom", crs, 3));
+        assertNull(cache.get("f1", "geom", crs, 4));
+        assertNull(cache.get("f2", "geom", crs, 3));
+        assertTrue(cache.getSize() > 0);
+
+        //modified features must be removed
+        cache.put("f2", "geom", crs, 3, geom);
+        cache.contentChanged(FeatureStoreContentEvent.createUpdateEvent(this,
+                layer.getCollection().getFeatureType().getName(),
+                FF.id(Collections.singleton(FF.featureId("f1")))));
+        assertNull(cache.get("f1", "geom", crs, 3));
+        assertSame(geom, cache.get("f2", "geom", crs, 3));
+
+        //added features do not change the cache
+        cache.contentChanged(FeatureStoreContentEvent.createAddEvent(this,
+                layer.getCollection().getFeatureType().getName(),
+                FF.id(Collections.singleton(FF.featureId("f3")))));
+        assertSame(geom, cache.get("f2", "geom", crs, 3));
+
+        cache.contentChanged(FeatureStoreContentEvent.createSessionEvent(this));
+        assertNull(cache.get("f2", "geom", crs, 3));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testEviction(){
+        final FeatureMapLayer layer = createLayer();
+        final GeneralizedGeometryCache cache = GeneralizedGeometryCache.getCache(layer, 1024);
+        final CoordinateReferenceSystem crs = CommonCRS.WGS84.normalizedGeographic();
+
+        for(int i=0;i<100;i++){
+            cache.put("f"+i, "geom", crs, 0, GF.createPoint(new Coordinate(i, i)));
+            //keep the first geometry used
+            assertNotNull(cache.get("f0", "geom", crs, 0));
+        }
+        assertTrue(cache.getSize() <= 1024);
+        assertNotNull(cache.get("f0", "geom", crs, 0));
+        assertNotNull(cache.get("f99", "geom", crs, 0));
+        assertNull(cache.get("f1", "geom", crs, 0));
+
+        cache.setMaxSize(0);
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get("f0", "geom", crs, 0));
+    }
+
+}
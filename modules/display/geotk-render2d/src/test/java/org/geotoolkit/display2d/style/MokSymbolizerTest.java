@@ -20,7 +20,9 @@ import org.geotoolkit.style.MutableStyleFactory;
 import org.geotoolkit.style.DefaultStyleFactory;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
 import org.geotoolkit.data.FeatureStoreUtilities;
 import org.geotoolkit.data.FeatureCollection;
 import org.geotoolkit.data.FeatureWriter;
@@ -29,22 +31,29 @@ import org.geotoolkit.feature.simple.SimpleFeature;
 import org.geotoolkit.feature.simple.SimpleFeatureType;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.Random;
 import org.geotoolkit.display.PortrayalException;
 import org.geotoolkit.display2d.GO2Hints;
 import org.geotoolkit.display2d.service.CanvasDef;
 import org.geotoolkit.display2d.service.DefaultPortrayalService;
 import org.geotoolkit.display2d.service.SceneDef;
 import org.geotoolkit.display2d.service.ViewDef;
+import org.geotoolkit.factory.FactoryFinder;
 import org.geotoolkit.factory.Hints;
 import org.apache.sis.geometry.GeneralEnvelope;
 import org.geotoolkit.map.MapBuilder;
 import org.geotoolkit.map.MapContext;
+import org.geotoolkit.style.MutableFeatureTypeStyle;
+import org.geotoolkit.style.MutableRule;
+import org.geotoolkit.style.MutableStyle;
 import org.apache.sis.referencing.CommonCRS;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.opengis.filter.FilterFactory;
 import static org.junit.Assert.*;
 
 /**
@@ -57,6 +66,7 @@ public class MokSymbolizerTest {
 
     private static final GeometryFactory GF = new GeometryFactory();
     private static final MutableStyleFactory SF = new DefaultStyleFactory();
+    private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
 
 
     private final MapContext context;
@@ -181,7 +191,113 @@ public class MokSymbolizerTest {
         assertEquals(5, MokSymbolizerRenderer.called);
 
 
+        //test parallel rendering
+        hints = new Hints();
+        hints.put(GO2Hints.KEY_PARALLEL_RENDERING, GO2Hints.PARALLEL_RENDERING_ON);
+        hints.put(GO2Hints.KEY_SYMBOL_RENDERING_ORDER, GO2Hints.SYMBOL_RENDERING_SECOND);
+
+        MokSymbolizerRenderer.called = 0;
+        DefaultPortrayalService.portray(
+                new CanvasDef(new Dimension(500, 500),Color.WHITE),
+                new SceneDef(context,hints),
+                new ViewDef(env));
+
+        assertEquals(5, MokSymbolizerRenderer.called);
+
+
+        //test parallel rendering + symbol rendering order
+        hints = new Hints();
+        hints.put(GO2Hints.KEY_PARALLEL_RENDERING, GO2Hints.PARALLEL_RENDERING_ON);
+        hints.put(GO2Hints.KEY_SYMBOL_RENDERING_ORDER, GO2Hints.SYMBOL_RENDERING_PRIME);
+
+        MokSymbolizerRenderer.called = 0;
+        DefaultPortrayalService.portray(
+                new CanvasDef(new Dimension(500, 500),Color.WHITE),
+                new SceneDef(context,hints),
+                new ViewDef(env));
+
+        assertEquals(5, MokSymbolizerRenderer.called);
 
     }
 
+    /**
+     * Parallel rendering must produce the same image as the single thread rendering,
+     * by object and by symbol order, with overlapping features spread over several chunks
+     * and labels.
+     */
+    @Test
+    public void testParallelRendering() throws Exception {
+
+        final FeatureTypeBuilder sftb = new FeatureTypeBuilder();
+        sftb.setName("test");
+        sftb.add("geom", Polygon.class, CommonCRS.WGS84.normalizedGeographic());
+        sftb.add("att1", String.class);
+        sftb.add("att2", Double.class);
+        final SimpleFeatureType sft = sftb.buildSimpleFeatureType();
+        final FeatureCollection col = FeatureStoreUtilities.collection("id", sft);
+
+        final Random random = new Random(42);
+        final FeatureWriter writer = col.getSession().getFeatureStore().getFeatureWriterAppend(sft.getName());
+        for(int i=0;i<2500;i++){
+            final double x = random.nextDouble()*340 - 170;
+            final double y = random.nextDouble()*160 - 80;
+            final double size = 1 + random.nextDouble()*10;
+            final SimpleFeature sf = (SimpleFeature) writer.next();
+            sf.setAttribute("geom", GF.toGeometry(new Envelope(x, x+size, y, y+size)));
+            sf.setAttribute("att1", "label"+i);
+            sf.setAttribute("att2", random.nextDouble());
+            writer.write();
+        }
+        writer.close();
+
+        //lines and polygons, the painted area of each chunk is known
+        final MutableRule rule = SF.rule(
+                SF.polygonSymbolizer(SF.stroke(Color.BLACK, 1), SF.fill(Color.RED), null),
+                SF.lineSymbolizer(SF.stroke(Color.BLUE, 3), null),
+                SF.textSymbolizer(SF.fill(Color.BLACK), SF.font(10), SF.halo(Color.WHITE, 1),
+                        FF.property("att1"), SF.pointPlacement(), null));
+        rule.setFilter(FF.less(FF.property("att2"), FF.literal(0.5)));
+        final MutableRule elseRule = SF.rule(
+                SF.polygonSymbolizer(SF.stroke(Color.GREEN, 2), SF.fill(Color.YELLOW), null),
+                SF.lineSymbolizer(SF.stroke(Color.MAGENTA, 1), null));
+        elseRule.setElseFilter(true);
+        final MutableStyle style = SF.style();
+        final MutableFeatureTypeStyle fts = SF.featureTypeStyle();
+        fts.rules().add(rule);
+        fts.rules().add(elseRule);
+        style.featureTypeStyles().add(fts);
+        assertParallelRendering(col, style);
+
+        //points, chunks are painted on the complete canvas
+        assertParallelRendering(col, SF.style(
+                SF.pointSymbolizer(),
+                SF.polygonSymbolizer(SF.stroke(Color.BLACK, 1), SF.fill(Color.RED), null)));
+    }
+
+    private void assertParallelRendering(final FeatureCollection col, final MutableStyle style) throws PortrayalException {
+        final MapContext context = MapBuilder.createContext();
+        context.layers().add(MapBuilder.createFeatureLayer(col, style));
+
+        for(Object order : new Object[]{GO2Hints.SYMBOL_RENDERING_SECOND, GO2Hints.SYMBOL_RENDERING_PRIME}){
+            final BufferedImage serial = portray(context, GO2Hints.PARALLEL_RENDERING_OFF, order);
+            final BufferedImage parallel = portray(context, GO2Hints.PARALLEL_RENDERING_ON, order);
+            for(int y=0;y<serial.getHeight();y++){
+                for(int x=0;x<serial.getWidth();x++){
+                    assertEquals("pixel "+x+","+y, serial.getRGB(x, y), parallel.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    private BufferedImage portray(final MapContext context, final Boolean parallel, final Object order) throws PortrayalException {
+        final Hints hints = new Hints();
+        hints.put(GO2Hints.KEY_MULTI_THREAD, Boolean.FALSE);
+        hints.put(GO2Hints.KEY_PARALLEL_RENDERING, parallel);
+        hints.put(GO2Hints.KEY_SYMBOL_RENDERING_ORDER, order);
+        return DefaultPortrayalService.portray(
+                new CanvasDef(new Dimension(500, 500),Color.WHITE),
+                new SceneDef(context,hints),
+                new ViewDef(env));
+    }
+
 }
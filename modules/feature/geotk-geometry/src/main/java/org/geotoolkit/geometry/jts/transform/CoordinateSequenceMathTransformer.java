@@ -25,6 +25,7 @@ import java.util.Arrays;
 import org.opengis.geometry.MismatchedDimensionException;
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
+import org.geotoolkit.referencing.operation.transform.BatchTransform;
 
 /**
  * A default implementation of {@linkplain CoordinateSequenceTransformer coordinate sequence
@@ -60,6 +61,11 @@ public class CoordinateSequenceMathTransformer implements CoordinateSequenceTran
 
     private MathTransform transform = null;
 
+    /**
+     * Applies all steps of the transform on the buffer in a single pass.
+     */
+    private BatchTransform batch = null;
+
     /**
      * Constructs a default coordinate sequence transformer.
      */
@@ -76,11 +82,13 @@ public class CoordinateSequenceMathTransformer implements CoordinateSequenceTran
         }else{
             this.csf = csf;
         }
-        this.transform =transform;
+        this.transform = transform;
+        this.batch = (transform != null) ? BatchTransform.create(transform) : null;
     }
 
     public synchronized void setTransform(final MathTransform transform) {
         this.transform = transform;
+        this.batch = (transform != null) ? BatchTransform.create(transform) : null;
     }
 
     public synchronized MathTransform getTransform() {
@@ -121,7 +129,7 @@ public class CoordinateSequenceMathTransformer implements CoordinateSequenceTran
                 assert (ib % sourceDim) == 0;
 
                 final int n = ib / sourceDim;
-                transform.transform(buffer, 0, buffer, 0, n);
+                batch.transform(buffer, 0, buffer, 0, n);
                 ib = 0;
 
                 for (int j = 0; j < n; j++) {
@@ -0,0 +1,390 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.quadtree.fs;
+
+import com.vividsolutions.jts.geom.Envelope;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import org.apache.sis.util.ArgumentChecks;
+import org.geotoolkit.index.quadtree.QuadTree;
+import org.geotoolkit.index.quadtree.StoreException;
+
+import static org.geotoolkit.index.quadtree.fs.IndexHeader.*;
+
+/**
+ * Bulk loader writing a packed Hilbert R-tree in the '.qix' file format.
+ * <p>
+ * Entries are added in any order, then sorted on the Hilbert value of their
+ * envelope center and grouped in fully filled nodes, bottom-up. The resulting
+ * tree is balanced and each node holds exactly {@code nodeCapacity} entries
+ * except the last one of each level.
+ * <p>
+ * The qix format stores for each node its envelope, shape ids and sub nodes,
+ * it does not require the nodes to be quadrants, the produced file can be
+ * opened with {@link FileSystemIndexStore#load()} and searched like any quad tree.
+ * <p>
+ * Envelopes are stored off-heap in a memory mapped temporary file while
+ * loading, only one long per entry is kept in the heap for sorting.
+ *
+ * @module pending
+ */
+public class PackedTreeBuilder {
+
+    /** Size of the buffer used to write the file, a whole node must fit in it. */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    /** offset(4) + envelope(32) + nbIds(4) + nbSubNodes(4). */
+    private static final int NODE_HEADER_SIZE = 44;
+
+    /** Default number of entries or sub nodes per node. */
+    public static final int DEFAULT_NODE_CAPACITY = 16;
+    /** Largest capacity for which a leaf node with all its ids fits in the write buffer. */
+    public static final int MAX_NODE_CAPACITY = (WRITE_BUFFER_SIZE - NODE_HEADER_SIZE) / 4;
+
+    /** Hilbert curve order, 2 x 15 bits keeps the value positive once shifted in a long. */
+    private static final int HILBERT_ORDER = 15;
+    private static final int HILBERT_SIZE = 1 << HILBERT_ORDER;
+
+    /** minx, maxx, miny, maxy, id. */
+    private static final int ENTRY_SIZE = 4*8 + 4;
+    private static final int SEGMENT_ENTRIES = 1 << 20;
+    private static final long SEGMENT_SIZE = (long) SEGMENT_ENTRIES * ENTRY_SIZE;
+
+    private final File file;
+    private final byte byteOrder;
+    private final Envelope bounds;
+    private final int nodeCapacity;
+
+    private final File tempFile;
+    private final RandomAccessFile temp;
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+    /** hilbert value << 32 | entry index. */
+    private long[] keys = new long[1024];
+    private int size = 0;
+
+    /**
+     * @param file output qix file
+     * @param byteOrder one of {@link IndexHeader#NEW_MSB_ORDER} or {@link IndexHeader#NEW_LSB_ORDER}
+     * @param bounds envelope containing all entries, used to compute Hilbert values
+     * @param nodeCapacity maximum number of entries or sub nodes per node
+     * @throws IOException if temporary storage can not be created
+     */
+    public PackedTreeBuilder(final File file, final byte byteOrder, final Envelope bounds,
+            final int nodeCapacity) throws IOException {
+        ArgumentChecks.ensureNonNull("file", file);
+        ArgumentChecks.ensureNonNull("bounds", bounds);
+        ArgumentChecks.ensureBetween("nodeCapacity", 2, MAX_NODE_CAPACITY, nodeCapacity);
+        this.file = file;
+        this.byteOrder = byteOrder;
+        this.bounds = bounds;
+        this.nodeCapacity = nodeCapacity;
+        this.tempFile = File.createTempFile("geotk-packedtree", ".tmp");
+        this.temp = new RandomAccessFile(tempFile, "rw");
+    }
+
+    /**
+     * Add an entry in the tree.
+     *
+     * @param id shape id, usually the record number.
+     */
+    public void add(final int id, final double minx, final double maxx,
+            final double miny, final double maxy) throws IOException {
+        if (size == Integer.MAX_VALUE) {
+            throw new IOException("Too many entries.");
+        }
+        final int index = size;
+        final ByteBuffer segment = segment(index);
+        int pos = (index % SEGMENT_ENTRIES) * ENTRY_SIZE;
+        segment.putDouble(pos, minx); pos += 8;
+        segment.putDouble(pos, maxx); pos += 8;
+        segment.putDouble(pos, miny); pos += 8;
+        segment.putDouble(pos, maxy); pos += 8;
+        segment.putInt(pos, id);
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, (int) Math.min(Integer.MAX_VALUE - 8, keys.length * 2L));
+        }
+        final long hilbert = hilbertValue((minx + maxx) / 2.0, (miny + maxy) / 2.0);
+        keys[size++] = (hilbert << 32) | index;
+    }
+
+    /**
+     * @return number of entries added.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Sort the entries, write the tree file and release temporary storage.
+     *
+     * @return number of entries written
+     * @throws StoreException if writing failed
+     */
+    public int build() throws StoreException {
+        try {
+            Arrays.sort(keys, 0, size);
+            write();
+            return size;
+        } catch (IOException ex) {
+            throw new StoreException(ex);
+        } finally {
+            dispose();
+        }
+    }
+
+    /**
+     * Release temporary storage, the builder can not be used anymore.
+     */
+    public void dispose() {
+        keys = null;
+        segments.clear();
+        try {
+            temp.close();
+        } catch (IOException ex) {
+            QuadTree.LOGGER.log(Level.WARNING, ex.getMessage(), ex);
+        }
+        if (!tempFile.delete()) {
+            //the mapping may still retain the file on some systems
+            tempFile.deleteOnExit();
+        }
+    }
+
+    private ByteBuffer segment(final int index) throws IOException {
+        final int segIndex = index / SEGMENT_ENTRIES;
+        while (segments.size() <= segIndex) {
+            final long position = segments.size() * SEGMENT_SIZE;
+            segments.add(temp.getChannel().map(FileChannel.MapMode.READ_WRITE, position, SEGMENT_SIZE));
+        }
+        return segments.get(segIndex);
+    }
+
+    private long hilbertValue(final double x, final double y) {
+        final double spanx = bounds.getWidth();
+        final double spany = bounds.getHeight();
+        final int hx = (spanx > 0) ? clamp((x - bounds.getMinX()) / spanx * (HILBERT_SIZE - 1)) : 0;
+        final int hy = (spany > 0) ? clamp((y - bounds.getMinY()) / spany * (HILBERT_SIZE - 1)) : 0;
+        return hilbertValue(hx, hy, HILBERT_SIZE);
+    }
+
+    private static int clamp(final double value) {
+        if (!(value > 0)) return 0; //also NaN
+        if (value >= HILBERT_SIZE - 1) return HILBERT_SIZE - 1;
+        return (int) value;
+    }
+
+    /**
+     * Distance of the cell (x,y) along a Hilbert curve filling a n*n grid.
+     */
+    static long hilbertValue(int x, int y, final int n) {
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            final int rx = (x & s) > 0 ? 1 : 0;
+            final int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            //rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                final int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Writing /////////////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////
+
+    /** Envelopes of each node, per level, level 0 are the leaves. */
+    private double[][] levelEnvelopes;
+    /** Size in bytes of each node and all its sub nodes, per level. */
+    private int[][] levelSizes;
+
+    private void write() throws IOException {
+        computeLevels();
+
+        final FileOutputStream fos = new FileOutputStream(file);
+        try {
+            final FileChannel channel = fos.getChannel();
+            final ByteOrder order = byteToOrder(byteOrder);
+            final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+            if (byteOrder > NATIVE_ORDER) {
+                new IndexHeader(byteOrder).writeTo(buffer);
+            }
+            buffer.order(order);
+            buffer.putInt(size);
+            //the quad tree max depth counts the root and the leaves,
+            //which is the number of levels of the packed tree
+            buffer.putInt(levelEnvelopes.length);
+
+            final int rootLevel = levelEnvelopes.length - 1;
+            writeNode(channel, buffer, rootLevel, 0);
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            fos.close();
+        }
+    }
+
+    private void computeLevels() throws IOException {
+        final List<double[]> envelopes = new ArrayList<double[]>();
+        final List<int[]> sizes = new ArrayList<int[]>();
+
+        //leaves
+        int count = Math.max(1, ceilDiv(size, nodeCapacity));
+        double[] envs = new double[count * 4];
+        int[] sz = new int[count];
+        for (int i = 0; i < count; i++) {
+            final int start = i * nodeCapacity;
+            final int end = Math.min(size, start + nodeCapacity);
+            double minx = Double.POSITIVE_INFINITY, maxx = Double.NEGATIVE_INFINITY;
+            double miny = Double.POSITIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY;
+            for (int k = start; k < end; k++) {
+                final int index = (int) keys[k];
+                final ByteBuffer segment = segment(index);
+                final int pos = (index % SEGMENT_ENTRIES) * ENTRY_SIZE;
+                minx = Math.min(minx, segment.getDouble(pos));
+                maxx = Math.max(maxx, segment.getDouble(pos + 8));
+                miny = Math.min(miny, segment.getDouble(pos + 16));
+                maxy = Math.max(maxy, segment.getDouble(pos + 24));
+            }
+            if (end <= start) {
+                //empty tree, use the given bounds
+                minx = bounds.getMinX(); maxx = bounds.getMaxX();
+                miny = bounds.getMinY(); maxy = bounds.getMaxY();
+            }
+            envs[i*4  ] = minx;
+            envs[i*4+1] = miny;
+            envs[i*4+2] = maxx;
+            envs[i*4+3] = maxy;
+            sz[i] = NODE_HEADER_SIZE + (end - start) * 4;
+        }
+        envelopes.add(envs);
+        sizes.add(sz);
+
+        //upper levels
+        while (count > 1) {
+            final double[] childEnvs = envs;
+            final int[] childSizes = sz;
+            final int childCount = count;
+            count = ceilDiv(childCount, nodeCapacity);
+            envs = new double[count * 4];
+            sz = new int[count];
+            for (int i = 0; i < count; i++) {
+                final int start = i * nodeCapacity;
+                final int end = Math.min(childCount, start + nodeCapacity);
+                double minx = Double.POSITIVE_INFINITY, maxx = Double.NEGATIVE_INFINITY;
+                double miny = Double.POSITIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY;
+                long nodeSize = NODE_HEADER_SIZE;
+                for (int k = start; k < end; k++) {
+                    minx = Math.min(minx, childEnvs[k*4  ]);
+                    miny = Math.min(miny, childEnvs[k*4+1]);
+                    maxx = Math.max(maxx, childEnvs[k*4+2]);
+                    maxy = Math.max(maxy, childEnvs[k*4+3]);
+                    nodeSize += childSizes[k];
+                }
+                if (nodeSize > Integer.MAX_VALUE) {
+                    throw new IOException("Tree too large for the qix format.");
+                }
+                envs[i*4  ] = minx;
+                envs[i*4+1] = miny;
+                envs[i*4+2] = maxx;
+                envs[i*4+3] = maxy;
+                sz[i] = (int) nodeSize;
+            }
+            envelopes.add(envs);
+            sizes.add(sz);
+        }
+
+        levelEnvelopes = envelopes.toArray(new double[envelopes.size()][]);
+        levelSizes = sizes.toArray(new int[sizes.size()][]);
+    }
+
+    private void writeNode(final FileChannel channel, final ByteBuffer buffer,
+            final int level, final int index) throws IOException {
+
+        final int[] ids;
+        final int firstChild;
+        final int nbChildren;
+        if (level == 0) {
+            final int start = index * nodeCapacity;
+            final int end = Math.min(size, start + nodeCapacity);
+            ids = new int[Math.max(0, end - start)];
+            for (int k = start; k < end; k++) {
+                final int entry = (int) keys[k];
+                ids[k-start] = segment(entry).getInt((entry % SEGMENT_ENTRIES) * ENTRY_SIZE + 32);
+            }
+            //sorted ids makes record lookup more sequential
+            Arrays.sort(ids);
+            firstChild = 0;
+            nbChildren = 0;
+        } else {
+            ids = new int[0];
+            firstChild = index * nodeCapacity;
+            nbChildren = Math.min(levelSizes[level-1].length, firstChild + nodeCapacity) - firstChild;
+        }
+
+        final int nodeSize = NODE_HEADER_SIZE + ids.length * 4;
+        if (buffer.remaining() < nodeSize) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        final double[] envs = levelEnvelopes[level];
+        buffer.putInt(levelSizes[level][index] - nodeSize);
+        buffer.putDouble(envs[index*4  ]);
+        buffer.putDouble(envs[index*4+1]);
+        buffer.putDouble(envs[index*4+2]);
+        buffer.putDouble(envs[index*4+3]);
+        buffer.putInt(ids.length);
+        for (int id : ids) {
+            buffer.putInt(id);
+        }
+        buffer.putInt(nbChildren);
+
+        for (int i = 0; i < nbChildren; i++) {
+            writeNode(channel, buffer, level - 1, firstChild + i);
+        }
+    }
+
+    private static int ceilDiv(final int a, final int b) {
+        return (int) ((a + (long) b - 1) / b);
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.quadtree.fs;
+
+import com.vividsolutions.jts.geom.Envelope;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import org.geotoolkit.index.CloseableCollection;
+import org.geotoolkit.index.Data;
+import org.geotoolkit.index.DataDefinition;
+import org.geotoolkit.index.DefaultData;
+import org.geotoolkit.index.quadtree.DataReader;
+import org.geotoolkit.index.quadtree.QuadTree;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test packed Hilbert R-tree bulk loading in qix files.
+ *
+ * @module pending
+ */
+public class PackedTreeBuilderTest {
+
+    private static final DataDefinition DATA_DEFINITION = new DataDefinition("US-ASCII", Integer.class);
+
+    private static final DataReader READER = new DataReader() {
+        @Override
+        public Data read(final int id) throws IOException {
+            return new DefaultData(DATA_DEFINITION){
+                @Override
+                public String toString() {
+                    return Integer.toString(id);
+                }
+            };
+        }
+
+        @Override
+        public void read(final int[] ids, final Data[] buffer, final int size) throws IOException {
+            for(int i=0;i<size;i++){
+                buffer[i] = read(ids[i]);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    };
+
+    @Test
+    public void testHilbertValue() {
+        assertEquals(0, PackedTreeBuilder.hilbertValue(0, 0, 2));
+        assertEquals(1, PackedTreeBuilder.hilbertValue(0, 1, 2));
+        assertEquals(2, PackedTreeBuilder.hilbertValue(1, 1, 2));
+        assertEquals(3, PackedTreeBuilder.hilbertValue(1, 0, 2));
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        final int nb = 5000;
+        final Envelope bounds = new Envelope(-180, 180, -90, 90);
+        final Envelope[] envelopes = new Envelope[nb];
+        final Random random = new Random(42);
+
+        final File file = File.createTempFile("packed", ".qix");
+        file.deleteOnExit();
+        final PackedTreeBuilder builder = new PackedTreeBuilder(file, IndexHeader.NEW_MSB_ORDER, bounds, 8);
+        for(int i=0;i<nb;i++){
+            final double x = -180 + random.nextDouble() * 350;
+            final double y = -90 + random.nextDouble() * 170;
+            envelopes[i] = new Envelope(x, x + random.nextDouble() * 10, y, y + random.nextDouble() * 10);
+            builder.add(i, envelopes[i].getMinX(), envelopes[i].getMaxX(),
+                           envelopes[i].getMinY(), envelopes[i].getMaxY());
+        }
+        assertEquals(nb, builder.build());
+
+        final QuadTree tree = new FileSystemIndexStore(file).load();
+        try{
+            assertEquals(nb, tree.getNumShapes());
+            //625 leaves, then 79, 10, 2 and 1 nodes
+            assertEquals(5, tree.getMaxDepth());
+
+            //all entries must be found once
+            final Set<String> all = search(tree, bounds);
+            assertEquals(nb, all.size());
+
+            for(int k=0;k<20;k++){
+                final double x = -180 + random.nextDouble() * 300;
+                final double y = -90 + random.nextDouble() * 140;
+                final Envelope area = new Envelope(x, x + 40, y, y + 30);
+                final Set<String> result = search(tree, area);
+                for(int i=0;i<nb;i++){
+                    if(envelopes[i].intersects(area)){
+                        assertTrue(result.contains(Integer.toString(i)));
+                    }
+                }
+            }
+        }finally{
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        final File file = File.createTempFile("packed", ".qix");
+        file.deleteOnExit();
+        final PackedTreeBuilder builder = new PackedTreeBuilder(file, IndexHeader.NEW_LSB_ORDER,
+                new Envelope(0, 10, 0, 10), 16);
+        assertEquals(0, builder.build());
+
+        final QuadTree tree = new FileSystemIndexStore(file).load();
+        try{
+            assertEquals(0, tree.getNumShapes());
+            assertTrue(search(tree, new Envelope(0, 10, 0, 10)).isEmpty());
+        }finally{
+            tree.close();
+        }
+    }
+
+    /**
+     * Compares the build and search times of a quad tree and a packed tree.
+     * Ignored by default since it is a benchmark.
+     */
+    @Test
+    @Ignore
+    public void benchmark() throws Exception {
+        final int nb = 1000000;
+        final Envelope bounds = new Envelope(-180, 180, -90, 90);
+        final Envelope[] envelopes = new Envelope[nb];
+        final Random random = new Random(42);
+        for(int i=0;i<nb;i++){
+            final double x = -180 + random.nextDouble() * 359;
+            final double y = -90 + random.nextDouble() * 179;
+            envelopes[i] = new Envelope(x, x + random.nextDouble(), y, y + random.nextDouble());
+        }
+        final Envelope[] areas = new Envelope[2000];
+        for(int k=0;k<areas.length;k++){
+            final double x = -180 + random.nextDouble() * 355;
+            final double y = -90 + random.nextDouble() * 175;
+            areas[k] = new Envelope(x, x + 5, y, y + 5);
+        }
+
+        final File quadFile = File.createTempFile("quad", ".qix");
+        final File packedFile = File.createTempFile("packed", ".qix");
+        quadFile.deleteOnExit();
+        packedFile.deleteOnExit();
+
+        long start = System.nanoTime();
+        final QuadTree quad = new QuadTree(nb, 50, bounds);
+        for(int i=0;i<nb;i++){
+            quad.insert(i, envelopes[i]);
+        }
+        new FileSystemIndexStore(quadFile, IndexHeader.NEW_MSB_ORDER).store(quad);
+        final long quadBuild = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        final PackedTreeBuilder builder = new PackedTreeBuilder(packedFile, IndexHeader.NEW_MSB_ORDER,
+                bounds, PackedTreeBuilder.DEFAULT_NODE_CAPACITY);
+        for(int i=0;i<nb;i++){
+            builder.add(i, envelopes[i].getMinX(), envelopes[i].getMaxX(),
+                           envelopes[i].getMinY(), envelopes[i].getMaxY());
+        }
+        builder.build();
+        final long packedBuild = System.nanoTime() - start;
+
+        System.out.println("build : quad tree " + quadBuild/1000000 + "ms " + quadFile.length()/1024 + "kb"
+                + ", packed tree " + packedBuild/1000000 + "ms " + packedFile.length()/1024 + "kb");
+
+        for(int r=0;r<5;r++){
+            System.out.println("search : quad tree " + searchTime(quadFile, areas)
+                    + ", packed tree " + searchTime(packedFile, areas));
+        }
+    }
+
+    private static String searchTime(final File file, final Envelope[] areas) throws Exception {
+        final long start = System.nanoTime();
+        int candidates = 0;
+        final QuadTree tree = new FileSystemIndexStore(file).load();
+        try{
+            for(Envelope area : areas){
+                candidates += search(tree, area).size();
+            }
+        }finally{
+            tree.close();
+        }
+        return (System.nanoTime() - start)/1000000 + "ms " + candidates + " candidates";
+    }
+
+    private static Set<String> search(final QuadTree tree, final Envelope area) throws Exception {
+        final Set<String> ids = new HashSet<String>();
+        final CloseableCollection<Data> col = tree.search(READER, area);
+        final Iterator<Data> ite = col.iterator();
+        try{
+            while(ite.hasNext()){
+                assertTrue(ids.add(ite.next().toString()));
+            }
+        }finally{
+            col.closeIterator(ite);
+        }
+        return ids;
+    }
+
+}
@@ -32,18 +32,25 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.measure.converter.UnitConverter;
 import javax.measure.unit.Unit;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.geotoolkit.filter.SpatialFilterType;
 import org.geotoolkit.geometry.Envelopes;
 import org.apache.sis.geometry.GeneralEnvelope;
 import org.geotoolkit.geometry.jts.SRIDGenerator;
 import org.apache.sis.measure.Units;
+import org.apache.sis.referencing.CommonCRS;
 import org.geotoolkit.referencing.CRS;
 import org.apache.sis.util.logging.Logging;
 import org.geotoolkit.index.tree.manager.NamedEnvelope;
+import org.geotoolkit.lucene.filter.LuceneOGCFilter;
 import org.opengis.filter.Filter;
 import org.opengis.filter.spatial.*;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -209,6 +216,51 @@ public class LuceneUtils {
         return new NamedEnvelope(Envelopes.transform(bound, crs), id);
     }
 
+    /**
+     * Adds the identifier and the envelope of a geometry as doc values in the specified document.
+     * The envelope is expressed in the WGS84 {@linkplain CommonCRS#normalizedGeographic() normalized geographic CRS}.
+     * Those columnar values allow {@link LuceneOGCFilter} to match the identifiers returned by the R-tree
+     * and to pre-filter the documents on their envelope without loading the stored fields.
+     * If the document already contains an envelope, it is expanded in order to include the new geometry.
+     *
+     * @param doc  The lucene document currently building.
+     * @param id   The document identifier, or {@code null} if none.
+     * @param geom The geometry added to the document.
+     */
+    public static void addSpatialDocValues(final Document doc, final String id, final Geometry geom)
+            throws FactoryException, TransformException
+    {
+        final GeneralEnvelope env = getNamedEnvelope(id, geom, CommonCRS.WGS84.normalizedGeographic());
+        if (id != null && doc.getField(LuceneOGCFilter.IDENTIFIER_DOCVALUES_FIELD_NAME) == null) {
+            doc.add(new SortedDocValuesField(LuceneOGCFilter.IDENTIFIER_DOCVALUES_FIELD_NAME, new BytesRef(id)));
+        }
+        final double minx = env.getMinimum(0);
+        final double maxx = env.getMaximum(0);
+        final double miny = env.getMinimum(1);
+        final double maxy = env.getMaximum(1);
+        if (Double.isNaN(minx) || Double.isNaN(maxx) || Double.isNaN(miny) || Double.isNaN(maxy)) {
+            return;
+        }
+        setDocValue(doc, LuceneOGCFilter.ENVELOPE_MINX_FIELD_NAME, minx, true);
+        setDocValue(doc, LuceneOGCFilter.ENVELOPE_MAXX_FIELD_NAME, maxx, false);
+        setDocValue(doc, LuceneOGCFilter.ENVELOPE_MINY_FIELD_NAME, miny, true);
+        setDocValue(doc, LuceneOGCFilter.ENVELOPE_MAXY_FIELD_NAME, maxy, false);
+    }
+
+    /**
+     * Adds a double doc value in the given document, or expands the existing one.
+     */
+    private static void setDocValue(final Document doc, final String name, double value, final boolean isMinimum) {
+        final IndexableField field = doc.getField(name);
+        if (field instanceof DoubleDocValuesField) {
+            final double old = Double.longBitsToDouble(field.numericValue().longValue());
+            value = isMinimum ? Math.min(old, value) : Math.max(old, value);
+            ((DoubleDocValuesField) field).setDoubleValue(value);
+        } else {
+            doc.add(new DoubleDocValuesField(name, value));
+        }
+    }
+
     /**
      * Return a JTS polygon from bounding box coordinate.
      *
@@ -23,18 +23,28 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.*;
 
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Polygon;
+
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.DocIdBitSet;
 
 import org.geotoolkit.factory.FactoryFinder;
 import org.geotoolkit.filter.SpatialFilterType;
+import org.geotoolkit.geometry.jts.SRIDGenerator;
+import org.geotoolkit.referencing.CRS;
 import org.apache.sis.geometry.GeneralEnvelope;
+import org.apache.sis.referencing.CommonCRS;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
 import org.geotoolkit.index.tree.Tree;
 import org.apache.sis.util.logging.Logging;
 import org.geotoolkit.index.tree.StoreIndexException;
@@ -49,6 +59,8 @@ import org.opengis.filter.expression.Literal;
 import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.spatial.*;
 import org.opengis.geometry.Envelope;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.Matrix;
 import org.opengis.util.FactoryException;
 
 /**
@@ -61,6 +73,18 @@ public class LuceneOGCFilter extends org.apache.lucene.search.Filter implements
 
     public static final String GEOMETRY_FIELD_NAME     = "idx_lucene_geometry";
     public static final String IDENTIFIER_FIELD_NAME   = "id";
+
+    /**
+     * Names of the doc values fields holding the document identifier and the envelope of its
+     * geometries in the normalized WGS84 geographic CRS.
+     *
+     * @see org.geotoolkit.lucene.LuceneUtils#addSpatialDocValues(Document, String, Geometry)
+     */
+    public static final String IDENTIFIER_DOCVALUES_FIELD_NAME = "idx_lucene_id",
+                               ENVELOPE_MINX_FIELD_NAME        = "idx_lucene_minx",
+                               ENVELOPE_MAXX_FIELD_NAME        = "idx_lucene_maxx",
+                               ENVELOPE_MINY_FIELD_NAME        = "idx_lucene_miny",
+                               ENVELOPE_MAXY_FIELD_NAME        = "idx_lucene_maxy";
     public static final PropertyName GEOMETRY_PROPERTY = FactoryFinder.getFilterFactory(null).property(GEOMETRY_FIELD_NAME);
     public static final Term GEOMETRY_FIELD            = new Term(GEOMETRY_FIELD_NAME);
     public static final Term META_FIELD                = new Term("metafile", "doc");
@@ -84,6 +108,33 @@ public class LuceneOGCFilter extends org.apache.lucene.search.Filter implements
     private Tree tree;
     
     private boolean envelopeOnly = false;
+
+    /**
+     * Tolerance in degrees when comparing the document envelopes with the filter envelope,
+     * in order to be safe against rounding errors of the envelope reprojections.
+     */
+    private static final double EPS = 1E-6;
+
+    /**
+     * Result of the comparison of a document envelope with the filter envelope.
+     */
+    private static final int OUTSIDE = 0, BOUNDARY = 1, INSIDE = 2;
+
+    /**
+     * The envelope of the filter literal in the normalized geographic CRS as (xmin, ymin, xmax, ymax),
+     * or {@code null} if the doc values can not be used for this filter. Computed when first needed.
+     */
+    private double[] literalBound;
+
+    /**
+     * {@code true} if the filter literal is exactly the rectangle given by {@link #literalBound}.
+     */
+    private boolean literalIsRectangle;
+
+    /**
+     * {@code true} if {@link #literalBound} has been computed.
+     */
+    private boolean literalBoundComputed;
     
     private LuceneOGCFilter(final Filter filter){
         this.filter = filter;
@@ -202,13 +253,50 @@ public class LuceneOGCFilter extends org.apache.lucene.search.Filter implements
 
         final AtomicReader reader = ctx.reader();
         final DocIdBitSet set = new DocIdBitSet(new BitSet(reader.maxDoc()));
+        /*
+         * Converts the identifiers found by the R-tree to ordinals of the identifier doc values,
+         * and reads the document envelopes from the doc values, in order to avoid loading the
+         * stored fields of each document. Documents indexed without doc values use the stored fields.
+         */
+        final SortedDocValues ids = reader.getSortedDocValues(IDENTIFIER_DOCVALUES_FIELD_NAME);
+        BitSet matchingOrds = null;
+        if (treeSearch && ids != null) {
+            matchingOrds = new BitSet(ids.getValueCount());
+            final BytesRef term = new BytesRef();
+            for (final String id : treeMatching) {
+                term.copyChars(id);
+                final int ord = ids.lookupTerm(term);
+                if (ord >= 0) {
+                    matchingOrds.set(ord);
+                }
+            }
+        }
+        DocEnvelopes envelopes = null;
+        if (!envelopeOnly || distanceFilter) {
+            envelopes = DocEnvelopes.create(reader);
+            if (envelopes != null && getLiteralBound() == null) {
+                envelopes = null;
+            }
+        }
+        final boolean outsideMatch = (filterType == SpatialFilterType.DISJOINT);
+        final boolean insideMatch  = (filterType == SpatialFilterType.BBOX)
+                                  || (filterType == SpatialFilterType.INTERSECTS)
+                                  || (filterType == SpatialFilterType.WITHIN);
+
         final DocsEnum termDocs = reader.termDocsEnum(META_FIELD);
         int n = termDocs.nextDoc();
         while (n != DocsEnum.NO_MORE_DOCS){
-            final int docId     = termDocs.docID();
-            final Document doc  = reader.document(docId, ID_FIELDS);
-            final String id     = doc.get(IDENTIFIER_FIELD_NAME);
-            final boolean match = treeMatching.contains(id);
+            final int docId = termDocs.docID();
+            boolean match = false;
+            if (treeSearch) {
+                final int ord = (matchingOrds != null) ? ids.getOrd(docId) : -1;
+                if (ord >= 0) {
+                    match = matchingOrds.get(ord);
+                } else {
+                    final Document doc = reader.document(docId, ID_FIELDS);
+                    match = treeMatching.contains(doc.get(IDENTIFIER_FIELD_NAME));
+                }
+            }
             if (treeSearch && reverse && !match) {
                 set.getBitSet().set(docId);
 
@@ -216,9 +304,20 @@ public class LuceneOGCFilter extends org.apache.lucene.search.Filter implements
                 if (envelopeOnly && !distanceFilter) {
                     set.getBitSet().set(docId);
                 } else {
-                    final Document geoDoc = reader.document(docId, GEOMETRY_FIELDS);
-                    if (filter.evaluate(geoDoc)) {
-                        set.getBitSet().set(docId);
+                    final int position = (envelopes != null) ? envelopes.compare(docId, literalBound, literalIsRectangle) : BOUNDARY;
+                    if (position == OUTSIDE) {
+                        if (outsideMatch) {
+                            set.getBitSet().set(docId);
+                        }
+                    } else if (position == INSIDE) {
+                        if (insideMatch) {
+                            set.getBitSet().set(docId);
+                        }
+                    } else {
+                        final Document geoDoc = reader.document(docId, GEOMETRY_FIELDS);
+                        if (filter.evaluate(geoDoc)) {
+                            set.getBitSet().set(docId);
+                        }
                     }
                 }
             }
@@ -228,10 +327,137 @@ public class LuceneOGCFilter extends org.apache.lucene.search.Filter implements
         return set;
     }
 
+    /**
+     * Returns the envelope of the filter literal in the normalized geographic CRS, or {@code null}
+     * if the filter can not be evaluated on the document envelopes. Distance filters are excluded
+     * since the buffer can not be expressed exactly as an envelope in degrees.
+     */
+    private double[] getLiteralBound() {
+        if (!literalBoundComputed) {
+            literalBoundComputed = true;
+            if (filter instanceof BinarySpatialOperator && !(filter instanceof DistanceBufferOperator)
+                    && ((BinarySpatialOperator) filter).getExpression2() instanceof Literal)
+            {
+                final Object value = ((Literal) ((BinarySpatialOperator) filter).getExpression2()).getValue();
+                final CoordinateReferenceSystem crs = CommonCRS.WGS84.normalizedGeographic();
+                final GeneralEnvelope bound = getReprojectedEnvelope(value, crs);
+                if (bound != null) {
+                    literalBound = new double[] {
+                        bound.getMinimum(0), bound.getMinimum(1),
+                        bound.getMaximum(0), bound.getMaximum(1)
+                    };
+                    for (final double v : literalBound) {
+                        if (Double.isNaN(v)) {
+                            literalBound = null;
+                            return null;
+                        }
+                    }
+                    literalIsRectangle = isRectangle(value, crs);
+                }
+            }
+        }
+        return literalBound;
+    }
+
+    /**
+     * Returns {@code true} if the given literal is a rectangle which stay a rectangle
+     * when transformed to the given CRS.
+     */
+    private static boolean isRectangle(final Object value, final CoordinateReferenceSystem target) {
+        final CoordinateReferenceSystem crs;
+        try {
+            if (value instanceof Envelope) {
+                crs = ((Envelope) value).getCoordinateReferenceSystem();
+            } else if (value instanceof Polygon && ((Polygon) value).isRectangle()) {
+                crs = CRS.decode(SRIDGenerator.toSRS(((Geometry) value).getSRID(), SRIDGenerator.Version.V1));
+            } else {
+                return false;
+            }
+            if (crs == null) {
+                return false;
+            }
+            final Matrix m = MathTransforms.getMatrix(CRS.findMathTransform(crs, target, true));
+            if (m == null) {
+                return false;
+            }
+            for (int j=0; j<2; j++) {
+                if ((m.getElement(j, 0) != 0) == (m.getElement(j, 1) != 0)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (FactoryException ex) {
+            LOGGER.log(Level.FINER, "Unable to determine the CRS of the filter literal", ex);
+            return false;
+        }
+    }
+
+    /**
+     * The envelopes of the documents of an index segment, read from the doc values.
+     */
+    private static final class DocEnvelopes {
+        private final NumericDocValues minx, maxx, miny, maxy;
+        private final Bits hasEnvelope;
+
+        private DocEnvelopes(final AtomicReader reader, final Bits hasEnvelope) throws IOException {
+            this.hasEnvelope = hasEnvelope;
+            minx = reader.getNumericDocValues(ENVELOPE_MINX_FIELD_NAME);
+            maxx = reader.getNumericDocValues(ENVELOPE_MAXX_FIELD_NAME);
+            miny = reader.getNumericDocValues(ENVELOPE_MINY_FIELD_NAME);
+            maxy = reader.getNumericDocValues(ENVELOPE_MAXY_FIELD_NAME);
+        }
+
+        /**
+         * Returns the envelopes of the given segment, or {@code null} if the segment has no envelope doc values.
+         */
+        static DocEnvelopes create(final AtomicReader reader) throws IOException {
+            final Bits hasEnvelope = reader.getDocsWithField(ENVELOPE_MINX_FIELD_NAME);
+            return (hasEnvelope != null) ? new DocEnvelopes(reader, hasEnvelope) : null;
+        }
+
+        /**
+         * Compares the envelope of the given document with the given bound. Returns {@link #OUTSIDE} if the
+         * envelopes are disjoint, {@link #INSIDE} if the document envelope is strictly inside a rectangular
+         * bound, or {@link #BOUNDARY} if the geometry needs to be tested.
+         */
+        int compare(final int docId, final double[] bound, final boolean isRectangle) {
+            if (!hasEnvelope.get(docId)) {
+                return BOUNDARY;
+            }
+            final double xmin = Double.longBitsToDouble(minx.get(docId));
+            final double xmax = Double.longBitsToDouble(maxx.get(docId));
+            final double ymin = Double.longBitsToDouble(miny.get(docId));
+            final double ymax = Double.longBitsToDouble(maxy.get(docId));
+            if (xmin > bound[2] + EPS || xmax < bound[0] - EPS || ymin > bound[3] + EPS || ymax < bound[1] - EPS) {
+                return OUTSIDE;
+            }
+            if (isRectangle && xmin > bound[0] + EPS && xmax < bound[2] - EPS && ymin > bound[1] + EPS && ymax < bound[3] - EPS) {
+                return INSIDE;
+            }
+            return BOUNDARY;
+        }
+    }
+
     public static LuceneOGCFilter wrap(final Filter filter){
         return new LuceneOGCFilter(filter);
     }
 
+    /**
+     * Returns {@code true} if the given object is a Lucene filter wrapping an equal OGC filter.
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj instanceof LuceneOGCFilter) {
+            return filter.equals(((LuceneOGCFilter) obj).filter);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return filter.hashCode() ^ 0x5A3C96E1;
+    }
+
     @Override
     public String toString() {
         return "[LuceneOGCFilter] " + filter.toString();
@@ -486,6 +486,11 @@ public abstract class AbstractIndexer<E> extends IndexLucene {
         } catch (TransformException | FactoryException | MismatchedReferenceSystemException | StoreIndexException | IOException ex) {
             LOGGER.log(Level.WARNING, "Unable to insert envelope in R-Tree.", ex);
         }
+        try {
+            LuceneUtils.addSpatialDocValues(doc, doc.get("id"), geom);
+        } catch (TransformException | FactoryException ex) {
+            LOGGER.log(Level.WARNING, "Unable to add the envelope doc values.", ex);
+        }
         doc.add(new StoredField(LuceneOGCFilter.GEOMETRY_FIELD_NAME,WKBUtils.toWKBwithSRID(geom)));
         return namedBound;
     }
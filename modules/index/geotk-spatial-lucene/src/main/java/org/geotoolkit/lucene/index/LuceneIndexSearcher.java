@@ -20,14 +20,12 @@ package org.geotoolkit.lucene.index;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
@@ -69,14 +67,29 @@ public class LuceneIndexSearcher extends IndexLucene {
     private final static Query SIMPLE_QUERY = new TermQuery(new Term("metafile", "doc"));
 
     /**
-     * A map of cached request
+     * The maximum number of cached queries.
      */
-    private final Map<SpatialQuery, Set<String>> cachedQueries = new ConcurrentHashMap<>();
+    private static final int MAX_CACHED_QUERIES_SIZE = 50;
 
     /**
-     * The maximum size of the map of queries.
+     * The maximum memory used by the cached query results, in bytes.
      */
-    private static final int MAX_CACHED_QUERIES_SIZE = 50;
+    private static final long MAX_CACHED_QUERIES_MEMORY = 16L * 1024 * 1024;
+
+    /**
+     * The cache of the documents matching a query.
+     */
+    private final QueryCache cachedQueries = new QueryCache(MAX_CACHED_QUERIES_SIZE, MAX_CACHED_QUERIES_MEMORY);
+
+    /**
+     * The index generation, incremented each time the searcher is opened on a new version of the index.
+     */
+    private long generation;
+
+    /**
+     * The version of the index opened by the current searcher.
+     */
+    private long indexVersion = -1;
 
     /**
      * A flag indicating if the cache system for query is enabled.
@@ -84,9 +97,9 @@ public class LuceneIndexSearcher extends IndexLucene {
     private final boolean isCacheEnabled;
 
     /**
-     * A Map of DocID -> metadata ID .
+     * The metadata identifiers indexed by document number.
      */
-    private final Map<Integer, String> identifiers = new HashMap<>();
+    private String[] identifiers = new String[0];
     
     /**
      * A list of numeric fields names.
@@ -177,7 +190,6 @@ public class LuceneIndexSearcher extends IndexLucene {
             }
             isCacheEnabled        = true;
             initSearcher();
-            initIdentifiersList();
 
         } catch (CorruptIndexException ex) {
             throw new IndexingException("Corruption encountered during index searcher creation", ex);
@@ -188,13 +200,24 @@ public class LuceneIndexSearcher extends IndexLucene {
     }
 
     /**
-     * initialize the IndexSearcher of this index.
+     * initialize the IndexSearcher of this index, and the list of identifiers.
+     * The cached queries are invalidated if the index has changed.
      */
     private void initSearcher() throws CorruptIndexException, IOException {
         final File indexDirectory = getFileDirectory();
         this.rTree = SQLRtreeManager.get(indexDirectory, this);
-        final IndexReader reader  = DirectoryReader.open(LuceneUtils.getAppropriateDirectory(indexDirectory));
-        searcher                  = new IndexSearcher(reader);
+        final DirectoryReader reader = DirectoryReader.open(LuceneUtils.getAppropriateDirectory(indexDirectory));
+        final IndexSearcher newSearcher = new IndexSearcher(reader);
+        final String[] newIdentifiers   = initIdentifiersList(newSearcher);
+        synchronized (this) {
+            searcher    = newSearcher;
+            identifiers = newIdentifiers;
+            if (reader.getVersion() != indexVersion) {
+                indexVersion = reader.getVersion();
+                generation++;
+            }
+            cachedQueries.invalidate(generation);
+        }
         LOGGER.log(Level.INFO, "Creating new Index Searcher with index directory:{0}", indexDirectory.getPath());
        
     }
@@ -202,16 +225,14 @@ public class LuceneIndexSearcher extends IndexLucene {
     /**
      * Fill the list of identifiers ordered by doc ID
      */
-    private void initIdentifiersList() throws IOException {
-        final Map<Integer, String> temp = new HashMap<>();
-        final long nbDoc = searcher.collectionStatistics("id").maxDoc();
+    private String[] initIdentifiersList(final IndexSearcher searcher) throws IOException {
+        final int nbDoc = (int) searcher.collectionStatistics("id").maxDoc();
+        final String[] temp = new String[nbDoc];
         for (int i = 0; i < nbDoc; i++) {
-            final String metadataID = getMatchingID(searcher.doc(i));
-            temp.put(i, metadataID);
+            temp[i] = getMatchingID(searcher.doc(i));
         }
-        identifiers.clear();
-        identifiers.putAll(temp);
-        LOGGER.log(logLevel, "{0} records found.", identifiers.size());
+        LOGGER.log(logLevel, "{0} records found.", temp.length);
+        return temp;
     }
 
     /**
@@ -222,8 +243,6 @@ public class LuceneIndexSearcher extends IndexLucene {
     public void refresh() throws IndexingException {
         try {
             initSearcher();
-            initIdentifiersList();
-            cachedQueries.clear();
             LOGGER.log(logLevel, "refreshing index searcher");
         } catch (CorruptIndexException ex) {
             throw new IndexingException("Corruption exception encountered during refreshing the index searcher", ex);
@@ -233,14 +252,19 @@ public class LuceneIndexSearcher extends IndexLucene {
     }
 
     /**
-     * Add the metadata id to the list of result if its present in the identifiers.
+     * Add the metadata id to the results if its present in the identifiers.
+     * The results map each metadata id to the first matching document number.
+     *
      * @param results
+     * @param identifiers
      * @param docID
      */
-    private void addToResult(final Set<String> results, final int docID) {
-        final String metadataID = identifiers.get(docID);
+    private static void addToResult(final Map<String,Integer> results, final String[] identifiers, final int docID) {
+        final String metadataID = (docID < identifiers.length) ? identifiers[docID] : null;
         if (metadataID != null) {
-            results.add(metadataID);
+            if (!results.containsKey(metadataID)) {
+                results.put(metadataID, docID);
+            }
         } else {
             LOGGER.log(Level.WARNING, "Unable to find a metadata ID for doc :{0}", docID);
         }
@@ -295,6 +319,15 @@ public class LuceneIndexSearcher extends IndexLucene {
         return numericFields;
     }
 
+    /**
+     * Returns the cache of query results, for example in order to monitor its usage.
+     *
+     * @return The cache of query results.
+     */
+    public QueryCache getQueryCache() {
+        return cachedQueries;
+    }
+
     /**
      * This method return the database ID of a matching Document
      *
@@ -315,16 +348,40 @@ public class LuceneIndexSearcher extends IndexLucene {
      * @throws SearchingException
      */
     public Set<String> doSearch(final SpatialQuery spatialQuery) throws SearchingException {
+        return new LinkedHashSet<>(search(spatialQuery).keySet());
+    }
+
+    /**
+     * Implementation of {@link #doSearch(SpatialQuery)} returning the document number of each result.
+     */
+    private Map<String,Integer> search(final SpatialQuery spatialQuery) throws SearchingException {
         try {
             final long start = System.currentTimeMillis();
-            final Set<String> results = new LinkedHashSet<>();
+            final Map<String,Integer> results = new LinkedHashMap<>();
             spatialQuery.applyRtreeOnFilter(rTree, envelopeOnly);
 
+            // the searcher, identifiers and generation are changed together by refresh()
+            final IndexSearcher searcher;
+            final String[] identifiers;
+            final long generation;
+            synchronized (this) {
+                searcher    = this.searcher;
+                identifiers = this.identifiers;
+                generation  = this.generation;
+            }
+
             //we look for a cached Query
-            if (isCacheEnabled && cachedQueries.containsKey(spatialQuery)) {
-                final Set<String> cachedResults = cachedQueries.get(spatialQuery);
-                LOGGER.log(logLevel, "returning result from cache ({0} matching documents)", results.size());
-                return cachedResults;
+            QueryCache.Key key = null;
+            if (isCacheEnabled) {
+                key = new QueryCache.Key(spatialQuery);
+                final int[] cachedResults = cachedQueries.get(key, generation);
+                if (cachedResults != null) {
+                    for (int docID : cachedResults) {
+                        addToResult(results, identifiers, docID);
+                    }
+                    LOGGER.log(logLevel, "returning result from cache ({0} matching documents)", results.size());
+                    return results;
+                }
             }
 
             int maxRecords = (int) searcher.collectionStatistics("id").maxDoc();
@@ -390,7 +447,7 @@ public class LuceneIndexSearcher extends IndexLucene {
                     docs = searcher.search(query, filter, maxRecords);
                 }
                 for (ScoreDoc doc : docs.scoreDocs) {
-                    addToResult(results, doc.doc);
+                    addToResult(results, identifiers, doc.doc);
                 }
 
             // for a OR we need to perform many request
@@ -405,10 +462,10 @@ public class LuceneIndexSearcher extends IndexLucene {
                     hits2 = searcher.search(SIMPLE_QUERY, spatialQuery.getSpatialFilter(), maxRecords);
                 }
                 for (ScoreDoc doc : hits1.scoreDocs) {
-                    addToResult(results, doc.doc);
+                    addToResult(results, identifiers, doc.doc);
                 }
                 for (ScoreDoc doc : hits2.scoreDocs) {
-                    addToResult(results, doc.doc);
+                    addToResult(results, identifiers, doc.doc);
                 }
 
             // for a NOT we need to perform many request
@@ -419,9 +476,9 @@ public class LuceneIndexSearcher extends IndexLucene {
                 } else {
                     hits1 = searcher.search(query, filter, maxRecords);
                 }
-                final Set<String> unWanteds = new LinkedHashSet<>();
+                final Map<String,Integer> unWanteds = new HashMap<>();
                 for (ScoreDoc doc : hits1.scoreDocs) {
-                    addToResult(unWanteds, doc.doc);
+                    addToResult(unWanteds, identifiers, doc.doc);
                 }
 
                 final TopDocs hits2;
@@ -431,9 +488,9 @@ public class LuceneIndexSearcher extends IndexLucene {
                     hits2 = searcher.search(SIMPLE_QUERY, maxRecords);
                 }
                 for (ScoreDoc doc : hits2.scoreDocs) {
-                    final String id = identifiers.get(doc.doc);
-                    if (id != null && !unWanteds.contains(id)) {
-                        results.add(id);
+                    final String id = (doc.doc < identifiers.length) ? identifiers[doc.doc] : null;
+                    if (id != null && !unWanteds.containsKey(id) && !results.containsKey(id)) {
+                        results.put(id, doc.doc);
                     }
                 }
 
@@ -449,17 +506,15 @@ public class LuceneIndexSearcher extends IndexLucene {
                 }
                 
                 for (SpatialQuery sub : spatialQuery.getSubQueries()) {
-                    final Set<String> subResults = doSearch(sub);
+                    final Map<String,Integer> subResults = search(sub);
                     if (operator == SerialChainFilter.AND) {
-                        final Set<String> toRemove   = new HashSet<>();
-                        for (String r : results) {
-                            if (!subResults.contains(r)) {
-                                toRemove.add(r);
+                        results.keySet().retainAll(subResults.keySet());
+                    } else if (operator == SerialChainFilter.OR){
+                        for (Map.Entry<String,Integer> entry : subResults.entrySet()) {
+                            if (!results.containsKey(entry.getKey())) {
+                                results.put(entry.getKey(), entry.getValue());
                             }
                         }
-                        results.removeAll(toRemove);
-                    } else if (operator == SerialChainFilter.OR){
-                        results.addAll(subResults);
                         
                     } else {
                         LOGGER.warning("unimplemented case in doSearch");
@@ -468,7 +523,14 @@ public class LuceneIndexSearcher extends IndexLucene {
             }
 
             //we put the query in cache
-            putInCache(spatialQuery, results);
+            if (key != null) {
+                final int[] docs = new int[results.size()];
+                int i = 0;
+                for (int docID : results.values()) {
+                    docs[i++] = docID;
+                }
+                cachedQueries.put(key, generation, docs);
+            }
             
             LOGGER.log(logLevel, results.size() + " total matching documents (" + (System.currentTimeMillis() - start) + "ms)");
             return results;
@@ -495,23 +557,6 @@ public class LuceneIndexSearcher extends IndexLucene {
         return s;
     }
     
-    /**
-     * Add a query and its results to the cache.
-     * if the map has reach the maximum size the older query is removed from the cache.
-     *
-     * @param query a Lucene spatial query.
-     * @param results A list of metadataIdentifier.
-     */
-    private void putInCache(final SpatialQuery query, final Set<String> results) {
-        if (isCacheEnabled) {
-            // if we had reach the maximum cache size we remove the first request
-            if (cachedQueries.size() >= MAX_CACHED_QUERIES_SIZE) {
-                cachedQueries.remove(cachedQueries.keySet().iterator().next());
-            }
-            cachedQueries.put(query, results);
-        }
-    }
-
     /**
      * Free the resources when closing the searcher.
      */
@@ -0,0 +1,261 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.lucene.index;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Sort;
+import org.geotoolkit.lucene.filter.SpatialQuery;
+
+
+/**
+ * A cache of the documents matching a {@link SpatialQuery}, bounded in number of queries and in memory.
+ * The least recently used queries are discarded first. Results are stored as arrays of Lucene document
+ * numbers in the order of the results, which are valid only for the index generation used for computing
+ * them. The whole cache is invalidated when the searcher is opened on a new version of the index.
+ * <p>
+ * Queries are compared by a normalized snapshot of their content, so the same query built twice shares
+ * the same entry, and later changes to a {@code SpatialQuery} instance do not alter the cache.
+ * <p>
+ * This class is thread safe.
+ *
+ * @module pending
+ *
+ * @see LuceneIndexSearcher#getQueryCache()
+ */
+public final class QueryCache {
+    /**
+     * Approximative memory used by an entry, in addition to the document numbers and the query string.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /**
+     * The cached document numbers, in least recently used order.
+     */
+    private final LinkedHashMap<Key, int[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The maximum number of queries and the maximum memory used by the cache, in bytes.
+     */
+    private final int maxEntries;
+    private final long maxMemory;
+
+    /**
+     * The index generation of the cached entries.
+     */
+    private long generation;
+
+    /**
+     * Approximative memory used by the cached entries, in bytes.
+     */
+    private long memory;
+
+    /**
+     * Usage statistics.
+     */
+    private long hitCount, missCount, evictionCount;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries The maximum number of queries to keep in the cache.
+     * @param maxMemory  The maximum memory used by the cached results, in bytes.
+     */
+    QueryCache(final int maxEntries, final long maxMemory) {
+        this.maxEntries = maxEntries;
+        this.maxMemory  = maxMemory;
+    }
+
+    /**
+     * A normalized and immutable snapshot of a {@link SpatialQuery}.
+     */
+    static final class Key {
+        private final String query;
+        private final Filter filter;
+        private final int operator;
+        private final Sort sort;
+        private final List<Key> subQueries;
+
+        /**
+         * Creates a snapshot of the given query. Consecutive white spaces in the query string are collapsed.
+         */
+        Key(final SpatialQuery q) {
+            query    = q.getQuery().trim().replaceAll("\\s+", " ");
+            filter   = q.getSpatialFilter();
+            operator = q.getLogicalOperator();
+            sort     = q.getSort();
+            subQueries = new ArrayList<>(q.getSubQueries().size());
+            for (final SpatialQuery sub : q.getSubQueries()) {
+                subQueries.add(new Key(sub));
+            }
+        }
+
+        /**
+         * Returns an approximation of the memory used by this key, in bytes.
+         */
+        long memory() {
+            long size = ENTRY_OVERHEAD + 2L * query.length();
+            for (final Key sub : subQueries) {
+                size += sub.memory();
+            }
+            return size;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (object instanceof Key) {
+                final Key that = (Key) object;
+                return operator == that.operator && query.equals(that.query)
+                        && Objects.equals(filter, that.filter)
+                        && Objects.equals(sort, that.sort)
+                        && subQueries.equals(that.subQueries);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, filter, operator, sort, subQueries);
+        }
+    }
+
+    /**
+     * Returns the document numbers cached for the given query in the given index generation,
+     * or {@code null} if none.
+     */
+    synchronized int[] get(final Key key, final long generation) {
+        final int[] docs = (generation == this.generation) ? entries.get(key) : null;
+        if (docs != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return docs;
+    }
+
+    /**
+     * Caches the document numbers matching the given query in the given index generation.
+     * If the generation is more recent than the cached entries, all entries are discarded.
+     * If the generation is older, the result is not cached since it is already stale.
+     */
+    synchronized void put(final Key key, final long generation, final int[] docs) {
+        if (generation != this.generation) {
+            if (generation < this.generation) {
+                return;
+            }
+            invalidate(generation);
+        }
+        final long size = key.memory() + 4L * docs.length;
+        if (size > maxMemory) {
+            final int[] old = entries.remove(key);
+            if (old != null) {
+                memory -= key.memory() + 4L * old.length;
+            }
+            return;
+        }
+        final int[] old = entries.put(key, docs);
+        if (old != null) {
+            memory -= key.memory() + 4L * old.length;
+        }
+        memory += size;
+        final Iterator<Map.Entry<Key, int[]>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || memory > maxMemory) && it.hasNext()) {
+            final Map.Entry<Key, int[]> eldest = it.next();
+            memory -= eldest.getKey().memory() + 4L * eldest.getValue().length;
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Discards all entries if the given index generation is not the generation of the cached entries.
+     */
+    synchronized void invalidate(final long generation) {
+        if (generation != this.generation) {
+            this.generation = generation;
+            clear();
+        }
+    }
+
+    /**
+     * Removes all entries from this cache. The statistics are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        memory = 0;
+    }
+
+    /**
+     * Returns the number of queries in this cache.
+     *
+     * @return The number of cached queries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns an approximation of the memory used by the cached results, in bytes.
+     *
+     * @return The memory used by the cache.
+     */
+    public synchronized long getMemoryUsage() {
+        return memory;
+    }
+
+    /**
+     * Returns the number of queries answered by the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of queries which were not in the cache.
+     *
+     * @return The number of cache misses.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of queries discarded because the cache was full.
+     *
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns a string representation of the cache statistics.
+     */
+    @Override
+    public synchronized String toString() {
+        return "QueryCache[" + entries.size() + " queries, " + memory + " bytes, hits=" + hitCount
+                + ", misses=" + missCount + ", evictions=" + evictionCount + ']';
+    }
+}
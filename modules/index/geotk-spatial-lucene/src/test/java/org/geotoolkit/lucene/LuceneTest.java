@@ -25,6 +25,7 @@ import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.Point;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 import java.io.File;
@@ -36,6 +37,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
@@ -105,7 +107,7 @@ public class LuceneTest {
         directory.mkdir();
         
         final Analyzer analyzer = new StandardAnalyzer(org.apache.lucene.util.Version.LUCENE_4_9);
-        final DocumentIndexer indexer = new DocumentIndexer(directory, fillTestData(), analyzer);
+        final DocumentIndexer indexer = new DocumentIndexer(directory, fillTestData(false), analyzer);
         indexer.createIndex();
         indexer.destroy();
 
@@ -2980,7 +2982,83 @@ public class LuceneTest {
         assertTrue(results.contains("line 1 projected"));
     }
 
-    private static List<DocumentEnvelope> fillTestData() throws Exception {
+    /**
+     * Test that the doc values path of the spatial filters returns the same hits
+     * than the stored fields path.
+     */
+    @Test
+    public void docValuesTest() throws Exception {
+        final File dvDirectory = new File("luceneDocValuesTest");
+        if (dvDirectory.exists()) {
+            FileUtilities.deleteDirectory(dvDirectory);
+        }
+        dvDirectory.mkdir();
+        try {
+            final Analyzer analyzer = new StandardAnalyzer(org.apache.lucene.util.Version.LUCENE_4_9);
+            final DocumentIndexer indexer = new DocumentIndexer(dvDirectory, fillTestData(true), analyzer);
+            indexer.createIndex();
+            indexer.destroy();
+
+            final IndexReader reader = DirectoryReader.open(LuceneUtils.getAppropriateDirectory(dvDirectory.listFiles()[0]));
+            try {
+                for (AtomicReaderContext ctx : reader.leaves()) {
+                    assertNotNull(ctx.reader().getSortedDocValues(IDENTIFIER_DOCVALUES_FIELD_NAME));
+                    assertNotNull(ctx.reader().getNumericDocValues(ENVELOPE_MINX_FIELD_NAME));
+                }
+                final IndexSearcher dvSearcher = new IndexSearcher(reader);
+
+                final GeneralEnvelope bbox = new GeneralEnvelope(new double[] {-20, -20}, new double[] {20, 20});
+                bbox.setCoordinateReferenceSystem(WGS84);
+                final Geometry point = GF.createPoint(new Coordinate(-10, 10));
+                point.setSRID(SRIDGenerator.toSRID(WGS84, Version.V1));
+                final Geometry line = GF.createLineString(new Coordinate[] {
+                    new Coordinate(-40, 0),
+                    new Coordinate(30, 40)
+                });
+                line.setSRID(SRIDGenerator.toSRID(WGS84, Version.V1));
+
+                final org.opengis.filter.Filter[] filters = {
+                    FF.bbox(GEOMETRY_PROPERTY, -20, -20, 20, 20, "CRS:84"),
+                    FF.bbox(GEOMETRY_PROPERTY, 40, -9, 50, -5, "CRS:84"),
+                    FF.intersects(GEOMETRY_PROPERTY, FF.literal(bbox)),
+                    FF.intersects(GEOMETRY_PROPERTY, FF.literal(line)),
+                    FF.within(GEOMETRY_PROPERTY, FF.literal(bbox)),
+                    FF.contains(GEOMETRY_PROPERTY, FF.literal(point)),
+                    FF.disjoint(GEOMETRY_PROPERTY, FF.literal(bbox)),
+                    FF.touches(GEOMETRY_PROPERTY, FF.literal(point)),
+                    FF.crosses(GEOMETRY_PROPERTY, FF.literal(line)),
+                    FF.overlaps(GEOMETRY_PROPERTY, FF.literal(bbox)),
+                    FF.equal(GEOMETRY_PROPERTY, FF.literal(point)),
+                    FF.dwithin(GEOMETRY_PROPERTY, FF.literal(point), 1500, "kilometers"),
+                    FF.beyond(GEOMETRY_PROPERTY, FF.literal(point), 1500, "kilometers")
+                };
+                for (org.opengis.filter.Filter f : filters) {
+                    final List<String> expected = search(searcher, f);
+                    assertEquals(f.toString(), expected, search(dvSearcher, f));
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            FileUtilities.deleteDirectory(dvDirectory);
+        }
+    }
+
+    /**
+     * Returns the sorted identifiers of the documents matching the given spatial filter.
+     */
+    private static List<String> search(final IndexSearcher searcher, final org.opengis.filter.Filter spaFilter) throws Exception {
+        final SpatialQuery spatialQuery = new SpatialQuery(wrap(spaFilter));
+        final TopDocs docs = searcher.search(simpleQuery, spatialQuery.getSpatialFilter(), 20);
+        final List<String> results = new ArrayList<>();
+        for (int i = 0; i < docs.totalHits; i++) {
+            results.add(searcher.doc(docs.scoreDocs[i].doc).get("id"));
+        }
+        Collections.sort(results);
+        return results;
+    }
+
+    private static List<DocumentEnvelope> fillTestData(final boolean docValues) throws Exception {
 
         final List<DocumentEnvelope> docs = new ArrayList<>();
         final int srid4326 = SRIDGenerator.toSRID(WGS84, Version.V1);
@@ -2990,105 +3068,105 @@ public class LuceneTest {
         doc.add(new StringField("id", "point 1", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addPoint      (doc,           -10,                10, srid4326);
+        addPoint      (doc,           -10,                10, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "point 1 projected", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addPoint      (doc,           -1111475.102852225,   1113194.9079327357, srid3395); // attention !! reprojeté
+        addPoint      (doc,           -1111475.102852225,   1113194.9079327357, srid3395, docValues); // attention !! reprojeté
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "point 2", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addPoint      (doc,           -10,                 0, srid4326);
+        addPoint      (doc,           -10,                 0, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "point 3", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addPoint      (doc,             0,                 0, srid4326);
+        addPoint      (doc,             0,                 0, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "point 4", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addPoint      (doc,            40,                20, srid4326);
+        addPoint      (doc,            40,                20, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "point 5", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addPoint      (doc,           -40,                30, srid4326);
+        addPoint      (doc,           -40,                30, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "box 1", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addBoundingBox(doc,           -40,                -25,           -50,               -40, srid4326);
+        addBoundingBox(doc,           -40,                -25,           -50,               -40, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "box 2", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addBoundingBox(doc,             5,                 10,            10,                15, srid4326);
+        addBoundingBox(doc,             5,                 10,            10,                15, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "box 2 projected", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addBoundingBox(doc,             556597.4539663679,  1113194.9079327357,  1111475.1028522244, 1678147.5163917788, srid3395); // attention !! reprojeté
+        addBoundingBox(doc,             556597.4539663679,  1113194.9079327357,  1111475.1028522244, 1678147.5163917788, srid3395, docValues); // attention !! reprojeté
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "box 3", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addBoundingBox(doc,            30,                 50,             0,                15, srid4326);
+        addBoundingBox(doc,            30,                 50,             0,                15, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "box 4", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addBoundingBox(doc,           -30,                -15,             0,                10, srid4326);
+        addBoundingBox(doc,           -30,                -15,             0,                10, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "box 5", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addBoundingBox(doc,        44.792,             51.126,        -6.171,             -2.28, srid4326);
+        addBoundingBox(doc,        44.792,             51.126,        -6.171,             -2.28, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "line 1", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addLine       (doc,             0,                  0,            25,                 0, srid4326);
+        addLine       (doc,             0,                  0,            25,                 0, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "line 1 projected", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addLine       (doc,             0,        0,      2857692.6111605316,                 0, srid3395); // attention !! reprojeté
+        addLine       (doc,             0,        0,      2857692.6111605316,                 0, srid3395, docValues); // attention !! reprojeté
         docs.add(new DocumentEnvelope(doc, null));
 
         doc = new Document();
         doc.add(new StringField("id", "line 2", Field.Store.YES));
         doc.add(new StringField("docid", docs.size() + "", Field.Store.YES));
         doc.add(new StringField("metafile", "doc",   Field.Store.YES));
-        addLine       (doc,             0,                  0,             0,               -15, srid4326);
+        addLine       (doc,             0,                  0,             0,               -15, srid4326, docValues);
         docs.add(new DocumentEnvelope(doc, null));
 
         return docs;
@@ -3103,8 +3181,9 @@ public class LuceneTest {
      * @param x2  the X coordinate of the second point of the line.
      * @param y2  the Y coordinate of the first point of the line.
      * @param crsName The coordinate reference system in witch the coordinates are expressed.
+     * @param docValues {@code true} for adding the identifier and envelope doc values.
      */
-    private static NamedEnvelope addLine(final Document doc, final double x1, final double y1, final double x2, final double y2, final int srid) throws Exception {
+    private static NamedEnvelope addLine(final Document doc, final double x1, final double y1, final double x2, final double y2, final int srid, final boolean docValues) throws Exception {
 
         LineString line = GF.createLineString(new Coordinate[]{
             new Coordinate(x1,y1),
@@ -3115,6 +3194,9 @@ public class LuceneTest {
         final String id = doc.get("id");
         NamedEnvelope namedBound      = LuceneUtils.getNamedEnvelope(id, line, WGS84);
         doc.add(new StoredField(LuceneOGCFilter.GEOMETRY_FIELD_NAME,WKBUtils.toWKBwithSRID(line)));
+        if (docValues) {
+            LuceneUtils.addSpatialDocValues(doc, id, line);
+        }
 
         return namedBound;
     }
@@ -3126,8 +3208,9 @@ public class LuceneTest {
      * @param x       The x coordinate of the point.
      * @param y       The y coordinate of the point.
      * @param crsName The coordinate reference system in witch the coordinates are expressed.
+     * @param docValues {@code true} for adding the identifier and envelope doc values.
      */
-    private static NamedEnvelope addPoint(final Document doc, final double x, final double y, final int srid) throws Exception {
+    private static NamedEnvelope addPoint(final Document doc, final double x, final double y, final int srid, final boolean docValues) throws Exception {
 
         Point pt = GF.createPoint(new Coordinate(x, y));
         pt.setSRID(srid);
@@ -3135,6 +3218,9 @@ public class LuceneTest {
         final String id = doc.get("id");
         NamedEnvelope namedBound      = LuceneUtils.getNamedEnvelope(id, pt, WGS84);
         doc.add(new StoredField(LuceneOGCFilter.GEOMETRY_FIELD_NAME,WKBUtils.toWKBwithSRID(pt)));
+        if (docValues) {
+            LuceneUtils.addSpatialDocValues(doc, id, pt);
+        }
 
         return namedBound;
     }
@@ -3148,13 +3234,17 @@ public class LuceneTest {
      * @param miny the minimun Y coordinate of the bounding box.
      * @param maxy the maximum Y coordinate of the bounding box.
      * @param crsName The coordinate reference system in witch the coordinates are expressed.
+     * @param docValues {@code true} for adding the identifier and envelope doc values.
      */
-    private static NamedEnvelope addBoundingBox(final Document doc, final double minx, final double maxx, final double miny, final double maxy, final int srid) throws Exception {
+    private static NamedEnvelope addBoundingBox(final Document doc, final double minx, final double maxx, final double miny, final double maxy, final int srid, final boolean docValues) throws Exception {
 
         final Geometry poly = LuceneUtils.getPolygon(minx, maxx, miny, maxy, srid);
         final String id = doc.get("id");
         NamedEnvelope namedBound      = LuceneUtils.getNamedEnvelope(id, poly, WGS84);
         doc.add(new StoredField(LuceneOGCFilter.GEOMETRY_FIELD_NAME,WKBUtils.toWKBwithSRID(poly)));
+        if (docValues) {
+            LuceneUtils.addSpatialDocValues(doc, id, poly);
+        }
 
         return namedBound;
     }
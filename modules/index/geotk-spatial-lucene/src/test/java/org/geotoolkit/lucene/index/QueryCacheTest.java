@@ -0,0 +1,94 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.lucene.index;
+
+import org.geotoolkit.lucene.filter.SpatialQuery;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests {@link QueryCache}.
+ */
+public class QueryCacheTest {
+
+    /**
+     * Tests that equal queries share the same entry, and that the statistics count hits and misses.
+     */
+    @Test
+    public void testNormalizedKey() {
+        final QueryCache cache = new QueryCache(10, 1000000);
+        final SpatialQuery query = new SpatialQuery("Title:water  AND  Abstract:sea");
+        final int[] docs = {4, 2, 7};
+        assertNull(cache.get(new QueryCache.Key(query), 1));
+        cache.put(new QueryCache.Key(query), 1, docs);
+        assertArrayEquals(docs, cache.get(new QueryCache.Key(new SpatialQuery(" Title:water AND Abstract:sea")), 1));
+
+        // Changes in the query after it has been cached do not change the cached entry.
+        query.appendToQuery(" AND Subject:river");
+        assertNull(cache.get(new QueryCache.Key(query), 1));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /**
+     * Tests that results are not returned for an other index generation, and that stale results are not cached.
+     */
+    @Test
+    public void testGeneration() {
+        final QueryCache cache = new QueryCache(10, 1000000);
+        final QueryCache.Key key = new QueryCache.Key(new SpatialQuery("Title:water"));
+        cache.put(key, 1, new int[] {1, 2});
+        assertNotNull(cache.get(key, 1));
+        assertNull(cache.get(key, 2));
+
+        cache.invalidate(2);
+        assertEquals(0, cache.size());
+        cache.put(key, 1, new int[] {1, 2});
+        assertEquals("Results of an older generation shall not be cached.", 0, cache.size());
+        cache.put(key, 2, new int[] {3});
+        assertArrayEquals(new int[] {3}, cache.get(key, 2));
+    }
+
+    /**
+     * Tests the eviction of the least recently used entries when the number of queries
+     * or the memory reach the limits.
+     */
+    @Test
+    public void testEviction() {
+        final QueryCache cache = new QueryCache(2, 1800);
+        final QueryCache.Key k1 = new QueryCache.Key(new SpatialQuery("Title:a"));
+        final QueryCache.Key k2 = new QueryCache.Key(new SpatialQuery("Title:b"));
+        final QueryCache.Key k3 = new QueryCache.Key(new SpatialQuery("Title:c"));
+        cache.put(k1, 1, new int[] {1});
+        cache.put(k2, 1, new int[] {2});
+        assertNotNull(cache.get(k1, 1));    // k2 is now the least recently used.
+        cache.put(k3, 1, new int[] {3});
+        assertEquals(2, cache.size());
+        assertNull(cache.get(k2, 1));
+        assertNotNull(cache.get(k1, 1));
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.put(k2, 1, new int[400]);     // Fills most of the memory.
+        assertEquals(1, cache.size());
+        assertTrue(cache.getMemoryUsage() <= 1800);
+        cache.put(k3, 1, new int[1000]);    // Larger than the whole cache.
+        assertNull(cache.get(k3, 1));
+        assertNotNull(cache.get(k2, 1));
+    }
+}
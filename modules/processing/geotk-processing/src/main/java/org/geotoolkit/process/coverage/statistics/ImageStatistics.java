@@ -62,6 +62,24 @@ public class ImageStatistics implements Serializable{
         return bands[bandNumber];
     }
 
+    /**
+     * Merge statistics of another part of the image in this object.
+     * Merge is associative, partial statistics computed on image tiles can be
+     * merged in any grouping to obtain the statistics of the whole image.
+     *
+     * @param other statistics to merge, must have the same number of bands.
+     * @see Band#merge(org.geotoolkit.process.coverage.statistics.ImageStatistics.Band)
+     */
+    public void merge(final ImageStatistics other) {
+        if (other.bands.length != bands.length) {
+            throw new IllegalArgumentException("Statistics do not have the same number of bands : "
+                    + bands.length + " and " + other.bands.length);
+        }
+        for (int i = 0; i < bands.length; i++) {
+            bands[i].merge(other.bands[i]);
+        }
+    }
+
     @Override
     public String toString() {
         return "StatisticContainer{\n" +
@@ -83,6 +101,14 @@ public class ImageStatistics implements Serializable{
         private Double min = null;
         private Double max = null;
 
+        /**
+         * Number of values, mean and sum of squares of differences from the mean,
+         * updated with Welford algorithm.
+         */
+        private long count = 0;
+        private double mean = Double.NaN;
+        private double m2 = 0;
+
         /**
          * no data values
          */
@@ -201,12 +227,108 @@ public class ImageStatistics implements Serializable{
             this.max = max;
         }
 
+        /**
+         * Get number of values used to compute mean and variance.
+         * @return number of values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get mean of the values.
+         * @return mean value, NaN if no value has been added
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * Get population variance of the values.
+         * @return variance, NaN if no value has been added
+         */
+        public double getVariance() {
+            return count == 0 ? Double.NaN : m2 / count;
+        }
+
+        /**
+         * Get population standard deviation of the values.
+         * @return standard deviation, NaN if no value has been added
+         */
+        public double getStandardDeviation() {
+            return Math.sqrt(getVariance());
+        }
+
+        /**
+         * Add a value to the mean and variance of this band.
+         * Minimum and maximum values are not modified.
+         *
+         * @param value sample value
+         */
+        public void addValue(final double value) {
+            count++;
+            if (count == 1) {
+                mean = value;
+            } else {
+                final double delta = value - mean;
+                mean += delta / count;
+                m2 += delta * (value - mean);
+            }
+        }
+
+        /**
+         * Merge statistics of the same band computed on another part of the image.
+         * Minimum and maximum are merged if defined, mean and variance are combined
+         * using Chan et al. formula and histograms are summed.
+         * Histograms must have the same number of bins and have been computed
+         * on the same value range.
+         *
+         * @param other band to merge in this band.
+         */
+        public void merge(final Band other) {
+            if (other.min != null) {
+                min = (min == null) ? other.min : Math.min(min, other.min);
+            }
+            if (other.max != null) {
+                max = (max == null) ? other.max : Math.max(max, other.max);
+            }
+
+            if (other.count > 0) {
+                if (count == 0) {
+                    count = other.count;
+                    mean  = other.mean;
+                    m2    = other.m2;
+                } else {
+                    final long total = count + other.count;
+                    final double delta = other.mean - mean;
+                    mean += delta * other.count / total;
+                    m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+                    count = total;
+                }
+            }
+
+            if (other.histogram != null) {
+                if (histogram == null) {
+                    histogram = other.histogram.clone();
+                } else if (histogram.length != other.histogram.length) {
+                    throw new IllegalArgumentException("Histograms do not have the same number of bins : "
+                            + histogram.length + " and " + other.histogram.length);
+                } else {
+                    for (int i = 0; i < histogram.length; i++) {
+                        histogram[i] += other.histogram[i];
+                    }
+                }
+            }
+        }
+
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
             sb.append("Band ").append(bandIndex).append(" {")
                     .append(" min=").append(min)
                     .append(", max=").append(max)
+                    .append(", mean=").append(mean)
+                    .append(", variance=").append(getVariance())
                     .append(", dataType=").append(dataType.name())
                     .append(", histogram=")
                     .append(Arrays.toString(histogram))
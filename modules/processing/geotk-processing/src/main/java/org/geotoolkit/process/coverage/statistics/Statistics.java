@@ -17,6 +17,7 @@
 package org.geotoolkit.process.coverage.statistics;
 
 import org.apache.sis.geometry.GeneralEnvelope;
+import org.apache.sis.storage.DataStoreException;
 import org.geotoolkit.coverage.*;
 import org.geotoolkit.coverage.grid.GeneralGridGeometry;
 import org.geotoolkit.coverage.grid.GridCoverage2D;
@@ -42,7 +43,11 @@ import java.awt.*;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import static org.geotoolkit.parameter.Parameters.getOrCreate;
 import static org.geotoolkit.parameter.Parameters.value;
@@ -63,6 +68,11 @@ import static org.geotoolkit.process.coverage.statistics.StatisticsDescriptor.*;
  */
 public class Statistics extends AbstractProcess{
 
+    /**
+     * Pool used to analyse image tiles in parallel.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
     public Statistics(final RenderedImage image, boolean excludeNoData){
         this(toParameters(image, null, null, null, 0, excludeNoData));
     }
@@ -95,6 +105,43 @@ public class Statistics extends AbstractProcess{
         return params;
     }
 
+    /**
+     * Run Statistics process with a RenderedImage and return ImageStatistics
+     * @param image RenderedImage to analyse
+     * @param excludeNoData exclude no-data flag (NaN values)
+     * @param parallel analyse image tiles concurrently
+     * @return ImageStatistics
+     * @throws ProcessException
+     */
+    public static ImageStatistics analyse(RenderedImage image, boolean excludeNoData, boolean parallel) throws ProcessException {
+        final ParameterValueGroup params = toParameters(image, null, null, null, 0, excludeNoData);
+        ParametersExt.getOrCreateValue(params, PARALLEL.getName().getCode()).setValue(parallel);
+        final ParameterValueGroup out = new Statistics(params).call();
+        return value(OUTCOVERAGE, out);
+    }
+
+    /**
+     * Run Statistics process with a CoverageReference and return ImageStatistics.
+     * If the reference is a {@link PyramidalCoverageReference} and an overview level is given,
+     * statistics are approximated using the mosaic at this level instead of reading
+     * the coverage at full resolution.
+     *
+     * @param ref CoverageReference
+     * @param excludeNoData exclude no-data flag
+     * @param parallel analyse image tiles concurrently
+     * @param overviewLevel pyramid level to analyse, 0 is the finest level, can be null
+     * @return ImageStatistics
+     * @throws ProcessException
+     */
+    public static ImageStatistics analyse(CoverageReference ref, boolean excludeNoData, boolean parallel,
+                                          Integer overviewLevel) throws ProcessException {
+        final ParameterValueGroup params = toParameters(null, null, ref, null, 0, excludeNoData);
+        ParametersExt.getOrCreateValue(params, PARALLEL.getName().getCode()).setValue(parallel);
+        ParametersExt.getOrCreateValue(params, OVERVIEW_LEVEL.getName().getCode()).setValue(overviewLevel);
+        final ParameterValueGroup out = new Statistics(params).call();
+        return value(OUTCOVERAGE, out);
+    }
+
     /**
      * Run Statistics process with a RenderedImage and return ImageStatistics
      * @param image RenderedImage to analyse
@@ -158,6 +205,8 @@ public class Statistics extends AbstractProcess{
 
         final RenderedImage inImage = value(IMAGE, inputParameters);
         final boolean excludeNoData = value(EXCLUDE_NO_DATA, inputParameters);
+        final Boolean parallelParam = value(PARALLEL, inputParameters);
+        final boolean parallel = parallelParam != null && parallelParam;
 
         fireProgressing("Pre-analysing", 0f, false);
         final RenderedImage image;
@@ -175,7 +224,10 @@ public class Statistics extends AbstractProcess{
         } else {
 
             final GridCoverage2D inCoverage = value(COVERAGE, inputParameters);
+            final Integer overviewLevel = value(OVERVIEW_LEVEL, inputParameters);
             GridCoverage2D candidate = null;
+            RenderedImage overview = null;
+            GridSampleDimension[] sampleDimensions = null;
             if (inCoverage != null) {
                 candidate = inCoverage;
             } else {
@@ -186,32 +238,48 @@ public class Statistics extends AbstractProcess{
                     candidate = getCoverage(reader, imageIdx);
                 } else {
                     final CoverageReference ref = value(REF, inputParameters);
-                    if (ref != null) {
+                    if (ref instanceof PyramidalCoverageReference && overviewLevel != null) {
+                        //approximate statistics, analyse a lower resolution of the pyramid
+                        final PyramidalCoverageReference pyramidRef = (PyramidalCoverageReference) ref;
+                        overview = getOverview(pyramidRef, overviewLevel);
+                        try {
+                            final List<GridSampleDimension> dims = pyramidRef.getSampleDimensions();
+                            if (dims != null) {
+                                sampleDimensions = dims.toArray(new GridSampleDimension[dims.size()]);
+                            }
+                        } catch (DataStoreException e) {
+                            throw new ProcessException(e.getMessage(), this, e);
+                        }
+                    } else if (ref != null) {
                         candidate = getCoverage(ref);
                     }
                 }
             }
 
-            if (candidate == null) {
+            if (candidate != null) {
+                //TODO extract view as process input parameter.
+                //candidate = candidate.view(ViewType.GEOPHYSICS);
+                image = candidate.getRenderedImage();
+                sampleDimensions = candidate.getSampleDimensions();
+            } else if (overview != null) {
+                image = overview;
+            } else {
                 throw new ProcessException("Null Coverage.", this, null);
             }
 
-            //TODO extract view as process input parameter.
-            //candidate = candidate.view(ViewType.GEOPHYSICS);
-            image = candidate.getRenderedImage();
-
             final SampleModel sm = image.getSampleModel();
             final SampleType sampleType = SampleType.valueOf(sm.getDataType());
             final int nbBands = sm.getNumBands();
             sc = new ImageStatistics(nbBands, sampleType);
 
-            final GridSampleDimension[] sampleDimensions = candidate.getSampleDimensions();
             //add no data values and name on bands
-            for (int i = 0; i < sampleDimensions.length; i++) {
-                sc.getBand(i).setNoData(sampleDimensions[i].getNoDataValues());
-                sc.getBand(i).setName(sampleDimensions[i].getDescription().toString());
-                sc.getBand(i).setMin(sampleDimensions[i].getMinimumValue());
-                sc.getBand(i).setMax(sampleDimensions[i].getMaximumValue());
+            if (sampleDimensions != null) {
+                for (int i = 0; i < sampleDimensions.length; i++) {
+                    sc.getBand(i).setNoData(sampleDimensions[i].getNoDataValues());
+                    sc.getBand(i).setName(sampleDimensions[i].getDescription().toString());
+                    sc.getBand(i).setMin(sampleDimensions[i].getMinimumValue());
+                    sc.getBand(i).setMax(sampleDimensions[i].getMaximumValue());
+                }
             }
 
             getOrCreate(OUTCOVERAGE, outputParameters).setValue(sc);
@@ -224,7 +292,15 @@ public class Statistics extends AbstractProcess{
 
         //optimization for GridMosaicRenderedImage impl
         NumericHistogram[] histo = new NumericHistogram[nbBands];
-        if (image instanceof GridMosaicRenderedImage) {
+        if (parallel) {
+            //mosaic tiles range is merged with declared sample dimensions range
+            //as in the sequential mode
+            if (!(image instanceof GridMosaicRenderedImage)) {
+                resetRange(bands);
+            }
+            analyseParallel(image, sc, excludeNoData);
+
+        } else if (image instanceof GridMosaicRenderedImage) {
             final GridMosaicRenderedImage mosaicImage = (GridMosaicRenderedImage) image;
             final GridMosaic gridMosaic = mosaicImage.getGridMosaic();
             final Dimension gridSize = gridMosaic.getGridSize();
@@ -254,7 +330,7 @@ public class Statistics extends AbstractProcess{
                         tile = mosaicImage.getTile(x, y);
                         pix = PixelIteratorFactory.createDefaultIterator(tile);
 
-                        analyseRange(pix, bands, true);
+                        sc.merge(analyseRange(pix, bands, excludeNoData));
                         pix.rewind();
 
                         mergeHistograms(histo, analyseHistogram(pix, bands, excludeNoData));
@@ -271,7 +347,8 @@ public class Statistics extends AbstractProcess{
             final PixelIterator pix = PixelIteratorFactory.createDefaultIterator(image);
 
             //get min/max
-            analyseRange(pix, bands, false);
+            resetRange(bands);
+            sc.merge(analyseRange(pix, bands, excludeNoData));
             fireProgressing("Start histogram computing", 55f, true);
 
             //reset iterator
@@ -283,6 +360,62 @@ public class Statistics extends AbstractProcess{
         }
     }
 
+    /**
+     * Analyse image tiles concurrently.
+     * A first pass computes the range, mean and variance of each tile, partial
+     * results are merged to obtain the image range. A second pass computes the
+     * histograms of each tile using this range, so all partial histograms share
+     * the same bins and are merged without loss.
+     *
+     * @param image image to analyse
+     * @param sc statistics to update
+     * @param excludeNoData exclude no-data flag
+     */
+    private void analyseParallel(final RenderedImage image, final ImageStatistics sc, final boolean excludeNoData) {
+        final ImageStatistics.Band[] bands = sc.getBands();
+        final List<Point> tiles = new ArrayList<>();
+        if (image instanceof GridMosaicRenderedImage) {
+            final GridMosaic gridMosaic = ((GridMosaicRenderedImage) image).getGridMosaic();
+            Rectangle dataArea = gridMosaic.getDataArea();
+            if (dataArea == null) {
+                dataArea = new Rectangle(gridMosaic.getGridSize());
+            }
+            for (int y = dataArea.y, endY = dataArea.y + dataArea.height; y < endY; y++) {
+                for (int x = dataArea.x, endX = dataArea.x + dataArea.width; x < endX; x++) {
+                    if (!gridMosaic.isMissing(x, y)) {
+                        tiles.add(new Point(x, y));
+                    }
+                }
+            }
+        } else {
+            for (int y = image.getMinTileY(), endY = y + image.getNumYTiles(); y < endY; y++) {
+                for (int x = image.getMinTileX(), endX = x + image.getNumXTiles(); x < endX; x++) {
+                    tiles.add(new Point(x, y));
+                }
+            }
+        }
+        if (tiles.isEmpty()) {
+            return;
+        }
+
+        //first pass : range, mean and variance
+        sc.merge(POOL.invoke(new TileTask(image, tiles, 0, tiles.size(), bands, excludeNoData, false)));
+        fireProgressing("Start histogram computing", 55f, true);
+
+        //second pass : histograms with fixed bins
+        sc.merge(POOL.invoke(new TileTask(image, tiles, 0, tiles.size(), bands, excludeNoData, true)));
+    }
+
+    /**
+     * Clear bands range, analysed range replaces declared range.
+     */
+    private static void resetRange(final ImageStatistics.Band[] bands) {
+        for (ImageStatistics.Band band : bands) {
+            band.setMin(null);
+            band.setMax(null);
+        }
+    }
+
     private void updateBands(ImageStatistics.Band[] bands,NumericHistogram[] histo) {
 
         for (int i = 0; i < bands.length; i++) {
@@ -335,39 +468,49 @@ public class Statistics extends AbstractProcess{
         return resultHisto;
     }
 
-    private void analyseRange(final PixelIterator pix, final ImageStatistics.Band[] bands, boolean mergeWithBands) {
+    /**
+     * Compute range, mean and variance of each band using a PixelIterator.
+     * NaN and infinite values are ignored, no-data values are ignored in
+     * the mean and variance if excludeNoData is set.
+     *
+     * @param pix PixelIterator
+     * @param imageBands image bands, containing the no-data values
+     * @param excludeNoData exclude no-data flag
+     * @return partial statistics, without histograms
+     */
+    private static ImageStatistics analyseRange(final PixelIterator pix, final ImageStatistics.Band[] imageBands,
+                                                final boolean excludeNoData) {
 
-        int nbBands = bands.length;
-        double[][] ranges = new double[nbBands][2];
+        final int nbBands = imageBands.length;
+        final ImageStatistics stats = new ImageStatistics(nbBands);
+        final ImageStatistics.Band[] bands = stats.getBands();
+        final double[][] ranges = new double[nbBands][2];
         for (double[] range : ranges) {
-            range[0] = Double.MAX_VALUE;
-            range[1] = Double.MIN_VALUE;
+            range[0] = Double.POSITIVE_INFINITY;
+            range[1] = Double.NEGATIVE_INFINITY;
         }
 
         //first pass to compute min/max values
         int b = 0;
         while (pix.next()) {
             final double d = pix.getSampleDouble();
-            if (Double.isNaN(d) || Double.isInfinite(d)) {
-                continue;
+            if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+                ranges[b][0] = Math.min(ranges[b][0], d);
+                ranges[b][1] = Math.max(ranges[b][1], d);
+                if (!excludeNoData || !isNoData(imageBands[b], d)) {
+                    bands[b].addValue(d);
+                }
             }
 
-            ranges[b][0] = Math.min(ranges[b][0], d);
-            ranges[b][1] = Math.max(ranges[b][1], d);
-
             //reset b to loop on first band
             if (++b == nbBands) b = 0;
         }
 
         for (int i = 0; i < nbBands; i++) {
-            if (mergeWithBands) {
-                bands[i].setMin(Math.min(bands[i].getMin(), ranges[i][0]));
-                bands[i].setMax(Math.max(bands[i].getMax(), ranges[i][1]));
-            } else {
-                bands[i].setMin(ranges[i][0]);
-                bands[i].setMax(ranges[i][1]);
-            }
+            bands[i].setMin(ranges[i][0]);
+            bands[i].setMax(ranges[i][1]);
         }
+        return stats;
     }
 
     /**
@@ -376,8 +519,8 @@ public class Statistics extends AbstractProcess{
      * @param bands
      * @param excludeNoData
      */
-    private NumericHistogram[] analyseHistogram(final PixelIterator pix, final ImageStatistics.Band[] bands,
-                                                final boolean excludeNoData) {
+    private static NumericHistogram[] analyseHistogram(final PixelIterator pix, final ImageStatistics.Band[] bands,
+                                                       final boolean excludeNoData) {
 
         int nbBands = bands.length;
         final NumericHistogram[] histograms = new NumericHistogram[nbBands];
@@ -397,8 +540,7 @@ public class Statistics extends AbstractProcess{
                 final double d = pix.getSampleDouble();
 
                 //add value if not NaN or is flag as no-data
-                if (!Double.isNaN(d) &&
-                        (bands[b].getNoData() == null || !(Arrays.binarySearch(bands[b].getNoData(), d) >= 0))) {
+                if (!Double.isNaN(d) && !isNoData(bands[b], d)) {
                     histograms[b].addValue(d);
                 }
 
@@ -418,13 +560,56 @@ public class Statistics extends AbstractProcess{
         return histograms;
     }
 
-    private int getNbBins(SampleType dataType) {
+    /**
+     * @return true if the value is one of the band no-data values,
+     *         which are not sorted and usually few
+     */
+    private static boolean isNoData(final ImageStatistics.Band band, final double d) {
+        final double[] noData = band.getNoData();
+        if (noData != null) {
+            for (double candidate : noData) {
+                if (candidate == d) return true;
+            }
+        }
+        return false;
+    }
+
+    private static int getNbBins(SampleType dataType) {
         if (dataType != null && dataType.equals(SampleType.Byte)) {
             return 255;
         }
         return 1000;
     }
 
+    /**
+     * Get the image of a pyramid level.
+     * Multidimensional pyramids may contain several mosaics at the same scale,
+     * the first one is used.
+     *
+     * @param ref pyramidal reference
+     * @param level pyramid level, 0 is the finest scale
+     * @return mosaic image at given level
+     * @throws ProcessException if reference has no pyramid or level does not exist
+     */
+    private RenderedImage getOverview(PyramidalCoverageReference ref, int level) throws ProcessException {
+        try {
+            final Collection<Pyramid> pyramids = ref.getPyramidSet().getPyramids();
+            if (pyramids.isEmpty()) {
+                throw new ProcessException("Coverage reference has no pyramid.", this, null);
+            }
+            final Pyramid pyramid = pyramids.iterator().next();
+            final double[] scales = pyramid.getScales();
+            if (level < 0 || level >= scales.length) {
+                throw new ProcessException("Overview level " + level + " does not exist, pyramid has "
+                        + scales.length + " levels.", this, null);
+            }
+            final GridMosaic mosaic = pyramid.getMosaics(level).iterator().next();
+            return new GridMosaicRenderedImage(mosaic);
+        } catch (DataStoreException e) {
+            throw new ProcessException(e.getMessage(), this, e);
+        }
+    }
+
     /**
      * Read coverage from CoverageReference
      * @param ref
@@ -482,4 +667,64 @@ public class Statistics extends AbstractProcess{
             throw new ProcessException(e.getMessage(), this, e);
         }
     }
+
+    /**
+     * Analyse a range of image tiles, split in two halves until a single tile remains.
+     * Partial statistics are merged when joining the sub tasks.
+     */
+    private static final class TileTask extends RecursiveTask<ImageStatistics> {
+
+        private final RenderedImage image;
+        private final List<Point> tiles;
+        private final int start;
+        private final int end;
+        private final ImageStatistics.Band[] bands;
+        private final boolean excludeNoData;
+        private final boolean histogram;
+
+        /**
+         * @param image image to analyse
+         * @param tiles tile indices
+         * @param start first tile to analyse, inclusive
+         * @param end last tile to analyse, exclusive
+         * @param bands image bands, histograms are computed on the bands range
+         * @param excludeNoData exclude no-data flag
+         * @param histogram true to compute histograms, false to compute range, mean and variance
+         */
+        private TileTask(final RenderedImage image, final List<Point> tiles, final int start, final int end,
+                final ImageStatistics.Band[] bands, final boolean excludeNoData, final boolean histogram) {
+            this.image = image;
+            this.tiles = tiles;
+            this.start = start;
+            this.end = end;
+            this.bands = bands;
+            this.excludeNoData = excludeNoData;
+            this.histogram = histogram;
+        }
+
+        @Override
+        protected ImageStatistics compute() {
+            if (end - start > 1) {
+                final int middle = (start + end) >>> 1;
+                final TileTask left = new TileTask(image, tiles, start, middle, bands, excludeNoData, histogram);
+                final TileTask right = new TileTask(image, tiles, middle, end, bands, excludeNoData, histogram);
+                left.fork();
+                final ImageStatistics result = right.compute();
+                result.merge(left.join());
+                return result;
+            }
+
+            final Point index = tiles.get(start);
+            final PixelIterator pix = PixelIteratorFactory.createDefaultIterator(image.getTile(index.x, index.y));
+            if (!histogram) {
+                return analyseRange(pix, bands, excludeNoData);
+            }
+            final NumericHistogram[] histo = analyseHistogram(pix, bands, excludeNoData);
+            final ImageStatistics stats = new ImageStatistics(bands.length);
+            for (int i = 0; i < histo.length; i++) {
+                stats.getBand(i).setHistogram(histo[i].getHist());
+            }
+            return stats;
+        }
+    }
 }
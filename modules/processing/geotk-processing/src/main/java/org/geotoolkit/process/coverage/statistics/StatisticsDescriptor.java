@@ -51,6 +51,8 @@ public class StatisticsDescriptor extends AbstractProcessDescriptor{
     private static final String IN_READER_KEY       = "statistic.inReader";
     private static final String IN_IMAGE_IDX_KEY    = "statistic.inImageIdx";
     private static final String IN_EXCLUDE_NO_DATA_KEY = "statistic.inExcludeNoData";
+    private static final String IN_PARALLEL_KEY     = "statistic.inParallel";
+    private static final String IN_OVERVIEW_LEVEL_KEY = "statistic.inOverviewLevel";
     private static final String OUT_STATISTIC_KEY   = "statistic.outStatistic";
 
 
@@ -103,11 +105,29 @@ public class StatisticsDescriptor extends AbstractProcessDescriptor{
     public static final ParameterDescriptor<Boolean> EXCLUDE_NO_DATA =
             new DefaultParameterDescriptor(IN_EXCLUDE_NO_DATA_PARAM_NAME, IN_EXCLUDE_NO_DATA_PARAM_REMARKS, Boolean.class, true, true);
 
+    /*
+     * Flag to analyse image tiles concurrently
+     */
+    public static final String IN_PARALLEL_PARAM_NAME = "inParallel";
+    public static final InternationalString IN_PARALLEL_PARAM_REMARKS = new ResourceInternationalString(BUNDLE_PATH, IN_PARALLEL_KEY);
+    public static final ParameterDescriptor<Boolean> PARALLEL =
+            new DefaultParameterDescriptor(IN_PARALLEL_PARAM_NAME, IN_PARALLEL_PARAM_REMARKS, Boolean.class, false, false);
+
+    /*
+     * Overview level to analyse when input is a pyramidal coverage reference,
+     * 0 is the finest resolution. If not set the coverage is read at full resolution.
+     */
+    public static final String IN_OVERVIEW_LEVEL_PARAM_NAME = "inOverviewLevel";
+    public static final InternationalString IN_OVERVIEW_LEVEL_PARAM_REMARKS = new ResourceInternationalString(BUNDLE_PATH, IN_OVERVIEW_LEVEL_KEY);
+    public static final ParameterDescriptor<Integer> OVERVIEW_LEVEL =
+            new DefaultParameterDescriptor(IN_OVERVIEW_LEVEL_PARAM_NAME, IN_OVERVIEW_LEVEL_PARAM_REMARKS, Integer.class, null, false);
+
 
     /**Input parameters */
     public static final ParameterDescriptorGroup INPUT_DESC =
             new DefaultParameterDescriptorGroup("InputParameters",
-                    new GeneralParameterDescriptor[]{IMAGE, COVERAGE, REF, READER, IMAGE_IDX, EXCLUDE_NO_DATA});
+                    new GeneralParameterDescriptor[]{IMAGE, COVERAGE, REF, READER, IMAGE_IDX, EXCLUDE_NO_DATA,
+                            PARALLEL, OVERVIEW_LEVEL});
 
     /*
      * Coverage result
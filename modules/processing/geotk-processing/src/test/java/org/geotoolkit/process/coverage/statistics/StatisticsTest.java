@@ -16,10 +16,28 @@
  */
 package org.geotoolkit.process.coverage.statistics;
 
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.util.Collections;
+import java.util.Random;
+import javax.media.jai.TiledImage;
+import org.apache.sis.geometry.GeneralDirectPosition;
 import org.apache.sis.geometry.GeneralEnvelope;
 import org.apache.sis.referencing.CommonCRS;
+import org.apache.sis.storage.DataStoreException;
+import org.geotoolkit.coverage.Category;
+import org.geotoolkit.coverage.GridMosaic;
+import org.geotoolkit.coverage.GridSampleDimension;
+import org.geotoolkit.coverage.Pyramid;
+import org.geotoolkit.coverage.PyramidalCoverageReference;
 import org.geotoolkit.coverage.grid.GridCoverage2D;
 import org.geotoolkit.coverage.grid.GridCoverageBuilder;
+import org.geotoolkit.coverage.memory.MPCoverageStore;
+import org.geotoolkit.feature.type.DefaultName;
 import org.geotoolkit.image.internal.SampleType;
 import org.geotoolkit.process.ProcessDescriptor;
 import org.geotoolkit.process.ProcessException;
@@ -28,6 +46,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.util.NoSuchIdentifierException;
 
 /**
@@ -36,6 +55,11 @@ import org.opengis.util.NoSuchIdentifierException;
  */
 public class StatisticsTest {
 
+    /**
+     * Tile size of the test pyramid.
+     */
+    private static final int TILE = 32;
+
     private GeneralEnvelope env = new GeneralEnvelope(CommonCRS.WGS84.normalizedGeographic());
     private GridCoverageBuilder gcb = new GridCoverageBuilder();
     private GridCoverage2D coverage;
@@ -175,4 +199,184 @@ public class StatisticsTest {
         Assert.assertEquals(expectSum, resultSum);
     }
 
+    @Test
+    public void mergeStatisticsTest() {
+        final Random random = new Random(12);
+        final double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 50 + 1000;
+        }
+
+        //reference statistics
+        double mean = 0;
+        for (double v : values) mean += v;
+        mean /= values.length;
+        double variance = 0;
+        for (double v : values) variance += (v - mean) * (v - mean);
+        variance /= values.length;
+
+        //split values in uneven parts and merge them in different orders
+        final int[] splits = {0, 10, 11, 400, 1000};
+        final ImageStatistics[] parts = new ImageStatistics[splits.length - 1];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new ImageStatistics(1);
+            for (int k = splits[i]; k < splits[i + 1]; k++) {
+                parts[i].getBand(0).addValue(values[k]);
+            }
+            parts[i].getBand(0).setHistogram(new long[]{i, 1});
+        }
+
+        final ImageStatistics left = new ImageStatistics(1);
+        for (ImageStatistics part : parts) {
+            left.merge(part);
+        }
+        final ImageStatistics right = new ImageStatistics(1);
+        right.merge(parts[2]);
+        right.merge(parts[3]);
+        final ImageStatistics first = new ImageStatistics(1);
+        first.merge(parts[0]);
+        first.merge(parts[1]);
+        first.merge(right);
+
+        for (ImageStatistics stats : new ImageStatistics[]{left, first}) {
+            final ImageStatistics.Band band = stats.getBand(0);
+            Assert.assertEquals(values.length, band.getCount());
+            Assert.assertEquals(mean, band.getMean(), 1e-9);
+            Assert.assertEquals(variance, band.getVariance(), 1e-6);
+            Assert.assertArrayEquals(new long[]{6, 4}, band.getHistogram());
+        }
+        //merged parts are not modified
+        Assert.assertArrayEquals(new long[]{0, 1}, parts[0].getBand(0).getHistogram());
+    }
+
+    @Test
+    public void parallelTest() throws ProcessException {
+        //100 x 100 image with 32 x 32 tiles, last tiles are partially filled
+        final TiledImage image = new TiledImage(0, 0, 100, 100, 0, 0,
+                new BandedSampleModel(DataBuffer.TYPE_FLOAT, 32, 32, 2), null);
+        final Random random = new Random(42);
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                image.setSample(x, y, 0, random.nextFloat() * 1000 - 500);
+                image.setSample(x, y, 1, (x + y) % 17 == 0 ? Float.NaN : random.nextInt(50));
+            }
+        }
+
+        final ImageStatistics sequential = Statistics.analyse(image, true);
+        final ImageStatistics parallel = Statistics.analyse(image, true, true);
+
+        for (int i = 0; i < 2; i++) {
+            final ImageStatistics.Band expected = sequential.getBand(i);
+            final ImageStatistics.Band result = parallel.getBand(i);
+            Assert.assertEquals(expected.getMin(), result.getMin(), 0d);
+            Assert.assertEquals(expected.getMax(), result.getMax(), 0d);
+            Assert.assertEquals(expected.getCount(), result.getCount());
+            Assert.assertEquals(expected.getMean(), result.getMean(), 1e-6);
+            Assert.assertEquals(expected.getVariance(), result.getVariance(), 1e-3);
+            Assert.assertArrayEquals(expected.getHistogram(), result.getHistogram());
+        }
+    }
+
+    /**
+     * Sample of the finest mosaic of the test pyramid, 0 is the no-data value.
+     */
+    private static int fineSample(final int tx, final int ty, final int x, final int y) {
+        return ((x + y + tx * 3 + ty * 5) % 10 == 0) ? 0 : 1 + (x * y + tx + ty) % 200;
+    }
+
+    private static BufferedImage createTile(final int tx, final int ty, final boolean fine) {
+        final BufferedImage tile = new BufferedImage(TILE, TILE, BufferedImage.TYPE_BYTE_GRAY);
+        final WritableRaster raster = tile.getRaster();
+        for (int y = 0; y < TILE; y++) {
+            for (int x = 0; x < TILE; x++) {
+                raster.setSample(x, y, 0, fine ? fineSample(tx, ty, x, y) : 100);
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Creates a pyramid with a mosaic of 2x2 tiles at scale 1 and a mosaic of a single tile at scale 2.
+     * Sample 0 is declared as no-data.
+     */
+    private static PyramidalCoverageReference createPyramid() throws DataStoreException {
+        final CoordinateReferenceSystem crs = CommonCRS.WGS84.normalizedGeographic();
+        final GeneralDirectPosition upperLeft = new GeneralDirectPosition(crs);
+        upperLeft.setCoordinate(-180, 90);
+
+        final MPCoverageStore store = new MPCoverageStore();
+        final PyramidalCoverageReference ref = (PyramidalCoverageReference) store.create(new DefaultName(null, "statistics"));
+        final Category data = new Category("data", new Color[]{Color.BLACK, Color.WHITE}, 1, 255, 1.0, 0.0);
+        ref.setSampleDimensions(Collections.singletonList(
+                new GridSampleDimension("band", new Category[]{Category.NODATA, data}, null)));
+
+        final Pyramid pyramid = ref.createPyramid(crs);
+        final GridMosaic fine = ref.createMosaic(pyramid.getId(), new Dimension(2, 2), new Dimension(TILE, TILE), upperLeft, 1);
+        for (int ty = 0; ty < 2; ty++) {
+            for (int tx = 0; tx < 2; tx++) {
+                ref.writeTile(pyramid.getId(), fine.getId(), tx, ty, createTile(tx, ty, true));
+            }
+        }
+        final GridMosaic coarse = ref.createMosaic(pyramid.getId(), new Dimension(1, 1), new Dimension(TILE, TILE), upperLeft, 2);
+        ref.writeTile(pyramid.getId(), coarse.getId(), 0, 0, createTile(0, 0, false));
+        return ref;
+    }
+
+    @Test
+    public void noDataTest() throws Exception {
+        final PyramidalCoverageReference ref = createPyramid();
+
+        long count = 0;
+        double sum = 0;
+        for (int ty = 0; ty < 2; ty++) {
+            for (int tx = 0; tx < 2; tx++) {
+                for (int y = 0; y < TILE; y++) {
+                    for (int x = 0; x < TILE; x++) {
+                        final int sample = fineSample(tx, ty, x, y);
+                        if (sample != 0) {
+                            count++;
+                            sum += sample;
+                        }
+                    }
+                }
+            }
+        }
+        final long total = 4 * TILE * TILE;
+        Assert.assertTrue(count < total);
+
+        for (boolean parallel : new boolean[]{false, true}) {
+            //no-data samples are excluded from the mean
+            ImageStatistics.Band band = Statistics.analyse(ref, true, parallel, 0).getBand(0);
+            Assert.assertArrayEquals(new double[]{0}, band.getNoData(), 0d);
+            Assert.assertEquals(count, band.getCount());
+            Assert.assertEquals(sum / count, band.getMean(), 1e-9);
+
+            //no-data samples are included
+            band = Statistics.analyse(ref, false, parallel, 0).getBand(0);
+            Assert.assertEquals(total, band.getCount());
+            Assert.assertEquals(sum / total, band.getMean(), 1e-9);
+        }
+    }
+
+    @Test
+    public void overviewTest() throws Exception {
+        final PyramidalCoverageReference ref = createPyramid();
+
+        //level 1 is the coarse mosaic, filled with 100
+        for (boolean parallel : new boolean[]{false, true}) {
+            final ImageStatistics.Band band = Statistics.analyse(ref, true, parallel, 1).getBand(0);
+            Assert.assertEquals("band", band.getName());
+            Assert.assertEquals(TILE * TILE, band.getCount());
+            Assert.assertEquals(100, band.getMean(), 0d);
+            Assert.assertEquals(0, band.getVariance(), 0d);
+        }
+
+        try {
+            Statistics.analyse(ref, true, false, 2);
+            Assert.fail("Pyramid has only two levels.");
+        } catch (ProcessException ex) {
+            //ok
+        }
+    }
+
 }
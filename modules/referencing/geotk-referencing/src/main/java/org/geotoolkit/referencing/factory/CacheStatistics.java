@@ -0,0 +1,167 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.referencing.factory;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import net.jcip.annotations.Immutable;
+
+
+/**
+ * A snapshot of the usage of a caching factory. Those statistics help to determine
+ * if threads are contending for the cache, for example in a server reprojecting
+ * many requests concurrently.
+ * <p>
+ * The statistics distinguish the requests answered by the lock-free fast path from the
+ * requests which required a lookup by value equality, and count how many times a thread
+ * had to wait for a lock held by an other thread.
+ *
+ * @version 4.0
+ *
+ * @see CachingAuthorityFactory#getCacheStatistics()
+ * @see org.geotoolkit.referencing.operation.CachingCoordinateOperationFactory#getCacheStatistics()
+ *
+ * @since 4.0
+ * @module
+ */
+@Immutable
+public final class CacheStatistics implements Serializable {
+    /**
+     * For cross-version compatibility.
+     */
+    private static final long serialVersionUID = -3413398474561924519L;
+
+    /**
+     * The number of requests answered without lock.
+     */
+    private final long fastHitCount;
+
+    /**
+     * The number of requests answered by the cache after a lookup by value equality.
+     */
+    private final long hitCount;
+
+    /**
+     * The number of requests which required the creation of a new object.
+     */
+    private final long missCount;
+
+    /**
+     * The number of times a thread had to wait for a lock held by an other thread.
+     */
+    private final long contentionCount;
+
+    /**
+     * The cumulated time spent in waiting for locks, in nanoseconds.
+     */
+    private final long waitTime;
+
+    /**
+     * Creates a new snapshot with the given counts.
+     *
+     * @param fastHitCount    The number of requests answered without lock.
+     * @param hitCount        The number of requests answered after a lookup by value equality.
+     * @param missCount       The number of requests which required the creation of a new object.
+     * @param contentionCount The number of times a thread had to wait for an other thread.
+     * @param waitTime        The cumulated time spent in waiting for locks, in nanoseconds.
+     */
+    public CacheStatistics(final long fastHitCount, final long hitCount, final long missCount,
+            final long contentionCount, final long waitTime)
+    {
+        this.fastHitCount    = fastHitCount;
+        this.hitCount        = hitCount;
+        this.missCount       = missCount;
+        this.contentionCount = contentionCount;
+        this.waitTime        = waitTime;
+    }
+
+    /**
+     * Creates a snapshot of the given counters, in the order of the constructor arguments.
+     */
+    static CacheStatistics snapshot(final AtomicLong[] counters) {
+        return new CacheStatistics(counters[0].get(), counters[1].get(), counters[2].get(),
+                counters[3].get(), counters[4].get());
+    }
+
+    /**
+     * Returns the number of requests answered without lock.
+     *
+     * @return Number of requests answered by the lock-free fast path.
+     */
+    public long getFastHitCount() {
+        return fastHitCount;
+    }
+
+    /**
+     * Returns the number of requests answered by the cache after a lookup by value equality.
+     *
+     * @return Number of requests answered by the slower path.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of requests which required the creation of a new object.
+     *
+     * @return Number of cache misses.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of times a thread had to wait for a lock held by an other thread.
+     *
+     * @return Number of contended lock acquisitions.
+     */
+    public long getContentionCount() {
+        return contentionCount;
+    }
+
+    /**
+     * Returns the cumulated time spent by all threads in waiting for locks.
+     *
+     * @param  unit The desired unit of time.
+     * @return The cumulated wait time in the given unit.
+     */
+    public long getWaitTime(final TimeUnit unit) {
+        return unit.convert(waitTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the fraction of requests answered by the cache, from 0 to 1.
+     *
+     * @return The ratio of hits (fast or not) over the total number of requests.
+     */
+    public double getHitRatio() {
+        final long hits = fastHitCount + hitCount;
+        final long total = hits + missCount;
+        return (total != 0) ? hits / (double) total : 0;
+    }
+
+    /**
+     * Returns a string representation of those statistics for debugging purpose.
+     */
+    @Override
+    public String toString() {
+        return "CacheStatistics[fastHits=" + fastHitCount + ", hits=" + hitCount
+                + ", misses=" + missCount + ", contentions=" + contentionCount
+                + ", waitTime=" + getWaitTime(TimeUnit.MILLISECONDS) + "ms]";
+    }
+}
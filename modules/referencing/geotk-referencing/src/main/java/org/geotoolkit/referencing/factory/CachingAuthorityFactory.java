@@ -27,6 +27,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.WeakHashMap;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.LogRecord;
 import java.util.logging.Level;
 import javax.measure.unit.Unit;
@@ -79,9 +81,13 @@ import static org.geotoolkit.util.collection.XCollections.unmodifiableOrCopy;
  * one. This means that this caching factory will continue to returns them as long as
  * they are in use somewhere else in the Java virtual machine, but will be discarded
  * (and recreated on the fly if needed) otherwise.
+ * <p>
+ * Objects already in the cache are returned without lock. The cache usage, including the
+ * number of times a thread had to wait for an other thread, can be monitored with
+ * {@link #getCacheStatistics()}.
  *
  * @author Martin Desruisseaux (IRD, Geomatys)
- * @version 3.14
+ * @version 4.0
  *
  * @since 2.1
  * @module
@@ -127,13 +133,40 @@ public class CachingAuthorityFactory extends AbstractAuthorityFactory {
     private final Cache<Object,Object> cache;
 
     /**
-     * The pool of objects identified by {@link #find} for each comparison modes. Values may be
-     * {@link NilReferencingObject} if an object has been searched but has not been found.
-     * <p>
-     * Every access to this pool must be synchronized on {@code findPool}.
+     * Number of stripes in the {@link #findPool}. Must be a power of 2.
+     */
+    private static final int FIND_STRIPES = 16;
+
+    /**
+     * A part of the pool of objects identified by {@link #find}. Objects are assigned to
+     * a stripe according their hash code, so threads searching different objects are
+     * unlikely to contend for the same lock.
+     */
+    @SuppressWarnings("serial")
+    private static final class FindStripe extends ReentrantLock {
+        /**
+         * The objects identified by {@link #find} for each comparison modes. Values may be
+         * {@link NilReferencingObject} if an object has been searched but has not been found.
+         */
+        @GuardedBy("this")
+        final Map<IdentifiedObject, Map<ComparisonMode,IdentifiedObject>> pool = new WeakHashMap<>();
+    }
+
+    /**
+     * The pool of objects identified by {@link #find}, divided in {@value #FIND_STRIPES}
+     * stripes. Every access to a stripe must be done while holding the stripe lock.
+     */
+    private final FindStripe[] findPool;
+
+    /**
+     * Indices of the counters in the {@link #statistics} array.
+     */
+    private static final int FAST_HITS = 0, HITS = 1, MISSES = 2, CONTENTIONS = 3, WAIT_TIME = 4;
+
+    /**
+     * The counters for {@link CacheStatistics}, in the order of the constructor arguments.
      */
-    @GuardedBy("self")
-    private final Map<IdentifiedObject, Map<ComparisonMode,IdentifiedObject>> findPool = new WeakHashMap<>();
+    private final AtomicLong[] statistics;
 
     /**
      * Constructs an instance wrapping the specified factory with a default number
@@ -170,6 +203,8 @@ public class CachingAuthorityFactory extends AbstractAuthorityFactory {
         backingStore = factory;
         ensureNotSmaller("maxStrongReferences", maxStrongReferences, 0);
         cache = new Cache<>(20, maxStrongReferences, false);
+        findPool = createFindPool();
+        statistics = createStatistics();
         final Map<RenderingHints.Key, Object> hints = this.hints;
         if (factory instanceof DatumAuthorityFactory) {
             hints.put(Hints.DATUM_AUTHORITY_FACTORY, factory);
@@ -199,9 +234,65 @@ public class CachingAuthorityFactory extends AbstractAuthorityFactory {
         super(userHints);
         ensureNotSmaller("maxStrongReferences", maxStrongReferences, 0);
         cache = new Cache<>(20, maxStrongReferences, false);
+        findPool = createFindPool();
+        statistics = createStatistics();
         backingStore = null;
     }
 
+    /**
+     * Creates the stripes of the {@link #findPool}.
+     */
+    private static FindStripe[] createFindPool() {
+        final FindStripe[] stripes = new FindStripe[FIND_STRIPES];
+        for (int i=0; i<stripes.length; i++) {
+            stripes[i] = new FindStripe();
+        }
+        return stripes;
+    }
+
+    /**
+     * Creates the counters for {@link CacheStatistics}.
+     */
+    private static AtomicLong[] createStatistics() {
+        final AtomicLong[] counters = new AtomicLong[WAIT_TIME + 1];
+        for (int i=0; i<counters.length; i++) {
+            counters[i] = new AtomicLong();
+        }
+        return counters;
+    }
+
+    /**
+     * Acquires the given lock, counting the contention if the lock is held by an other thread.
+     */
+    private void lock(final ReentrantLock lock) {
+        if (!lock.tryLock()) {
+            final long start = System.nanoTime();
+            lock.lock();
+            contended(start);
+        }
+    }
+
+    /**
+     * Records that a thread has waited for an other thread since the given time.
+     */
+    private void contended(final long start) {
+        statistics[CONTENTIONS].incrementAndGet();
+        statistics[WAIT_TIME].addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Returns statistics about the usage of the cache since this factory creation. The fast hits
+     * are objects found in the cache without lock, the other hits are objects found in the pool
+     * of objects identified by the {@linkplain #getIdentifiedObjectFinder finder}.
+     *
+     * @return A snapshot of the cache statistics.
+     *
+     * @since 4.0
+     */
+    public CacheStatistics getCacheStatistics() {
+        return CacheStatistics.snapshot(statistics);
+    }
+
     /**
      * Ensures that the given value is equals or greater than the given minimum.
      */
@@ -577,11 +668,18 @@ public class CachingAuthorityFactory extends AbstractAuthorityFactory {
         final Class<T> type = proxy.type;
         final Key key = new Key(type, trimAuthority(code));
         Object value = cache.peek(key);
-        if (!type.isInstance(value)) {
+        if (type.isInstance(value)) {
+            statistics[FAST_HITS].incrementAndGet();
+        } else {
+            final long start = System.nanoTime();
             final Cache.Handler<Object> handler = cache.lock(key);
             try {
                 value = handler.peek();
-                if (!type.isInstance(value)) {
+                if (type.isInstance(value)) {
+                    // An other thread created the object while we were waiting for the lock.
+                    contended(start);
+                } else {
+                    statistics[MISSES].incrementAndGet();
                     final T result;
                     final AbstractAuthorityFactory factory = getBackingStore();
                     try {
@@ -948,11 +1046,17 @@ public class CachingAuthorityFactory extends AbstractAuthorityFactory {
     {
         final CodePair key = new CodePair(trimAuthority(sourceCRS), trimAuthority(targetCRS));
         Object value = cache.peek(key);
-        if (!(value instanceof Set<?>)) {
+        if (value instanceof Set<?>) {
+            statistics[FAST_HITS].incrementAndGet();
+        } else {
+            final long start = System.nanoTime();
             final Cache.Handler<Object> handler = cache.lock(key);
             try {
                 value = handler.peek();
-                if (!(value instanceof Set<?>)) {
+                if (value instanceof Set<?>) {
+                    contended(start);
+                } else {
+                    statistics[MISSES].incrementAndGet();
                     final AbstractAuthorityFactory factory = getBackingStore();
                     try {
                         final Set<CoordinateOperation> result = unmodifiableOrCopy(
@@ -1177,16 +1281,21 @@ public class CachingAuthorityFactory extends AbstractAuthorityFactory {
         @Override
         public IdentifiedObject find(final IdentifiedObject object) throws FactoryException {
             final ComparisonMode mode = getComparisonMode();
-            final Map<IdentifiedObject, Map<ComparisonMode,IdentifiedObject>> pool = findPool;
-            synchronized (pool) {
-                final Map<ComparisonMode,IdentifiedObject> byMode = pool.get(object);
+            final FindStripe stripe = findPool[object.hashCode() & (FIND_STRIPES - 1)];
+            lock(stripe);
+            try {
+                final Map<ComparisonMode,IdentifiedObject> byMode = stripe.pool.get(object);
                 if (byMode != null) {
                     final IdentifiedObject candidate = byMode.get(mode);
                     if (candidate != null) {
+                        statistics[HITS].incrementAndGet();
                         return (candidate == NilReferencingObject.INSTANCE) ? null : candidate;
                     }
                 }
+            } finally {
+                stripe.unlock();
             }
+            statistics[MISSES].incrementAndGet();
             /*
              * Nothing has been found in the cache. Delegates the search to the backing store.
              */
@@ -1206,13 +1315,16 @@ public class CachingAuthorityFactory extends AbstractAuthorityFactory {
              * we can remember that no object has been found for the given argument.
              */
             if (candidate != null || isFullScanAllowed()) {
-                synchronized (pool) {
-                    Map<ComparisonMode,IdentifiedObject> byMode = pool.get(object);
+                lock(stripe);
+                try {
+                    Map<ComparisonMode,IdentifiedObject> byMode = stripe.pool.get(object);
                     if (byMode == null) {
                         byMode = new EnumMap<>(ComparisonMode.class);
-                        pool.put(object, byMode);
+                        stripe.pool.put(object, byMode);
                     }
                     byMode.put(mode, (candidate == null) ? NilReferencingObject.INSTANCE : candidate);
+                } finally {
+                    stripe.unlock();
                 }
             }
             return candidate;
@@ -19,6 +19,9 @@ package org.geotoolkit.referencing.operation;
 
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import net.jcip.annotations.ThreadSafe;
 
 import org.opengis.util.FactoryException;
@@ -34,6 +37,7 @@ import org.geotoolkit.lang.Decorator;
 import org.geotoolkit.factory.Hints;
 import org.geotoolkit.factory.FactoryFinder;
 import org.geotoolkit.factory.FactoryNotFoundException;
+import org.geotoolkit.referencing.factory.CacheStatistics;
 import org.geotoolkit.resources.Errors;
 import org.apache.sis.util.collection.Cache;
 
@@ -47,10 +51,15 @@ import org.apache.sis.util.collection.Cache;
  * In most cases, users should not need to create an instance of this class explicitly. An instance
  * of {@code CachingCoordinateOperationFactory} should be automatically registered and returned
  * by {@link FactoryFinder} in default Geotk configuration.
+ * <p>
+ * The most recently requested operations are also indexed by the identity of their source and
+ * target CRS instances. Applications like map servers typically reproject many requests between
+ * the same CRS instances; those requests are answered without lock and without computing the
+ * hash code of the CRS. The cache usage can be monitored with {@link #getCacheStatistics()}.
  *
  * @author Simone Giannecchini (Geosolutions)
  * @author Martin Desruisseaux (IRD, Geomatys)
- * @version 3.19
+ * @version 4.0
  *
  * @since 2.3
  * @level advanced
@@ -129,6 +138,53 @@ public class CachingCoordinateOperationFactory extends AbstractCoordinateOperati
         }
     }
 
+    /**
+     * A key for the {@link CachingCoordinateOperationFactory#recent} map, comparing
+     * the CRS and the method by identity.
+     */
+    private static final class IdentityPair {
+        /**
+         * The source and target CRS, and the method or {@code null}.
+         */
+        private final Object sourceCRS, targetCRS, method;
+
+        /**
+         * Creates a key for the given CRS and method.
+         */
+        IdentityPair(final Object sourceCRS, final Object targetCRS, final Object method) {
+            this.sourceCRS = sourceCRS;
+            this.targetCRS = targetCRS;
+            this.method    = method;
+        }
+
+        /**
+         * Returns a hash code value computed from the identities.
+         */
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(sourceCRS) * 31 + System.identityHashCode(targetCRS)) * 31
+                    + System.identityHashCode(method);
+        }
+
+        /**
+         * Compares the given object by identity.
+         */
+        @Override
+        public boolean equals(final Object object) {
+            if (object instanceof IdentityPair) {
+                final IdentityPair that = (IdentityPair) object;
+                return sourceCRS == that.sourceCRS && targetCRS == that.targetCRS && method == that.method;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Maximal number of entries in the {@link #recent} map. When this limit is exceeded,
+     * the map is cleared. Entries will be added again from the main cache when needed.
+     */
+    private static final int MAX_RECENT = 256;
+
     /**
      * The wrapped factory. If {@code null}, will be fetched when first needed.
      * We should not initialize this field with {@link FactoryFinder} from the
@@ -144,6 +200,19 @@ public class CachingCoordinateOperationFactory extends AbstractCoordinateOperati
      */
     private final Cache<CRSPair, CoordinateOperation> cache = new Cache<>();
 
+    /**
+     * The operations most recently returned, indexed by the identity of their CRS. This map is
+     * read without lock and without computing the potentially costly CRS hash codes. It holds
+     * at most {@value #MAX_RECENT} operations by strong references.
+     */
+    private final ConcurrentMap<IdentityPair, CoordinateOperation> recent = new ConcurrentHashMap<>();
+
+    /**
+     * Counters for the {@link CacheStatistics}: fast hits, hits, misses, contentions and wait time.
+     */
+    private final AtomicLong fastHits = new AtomicLong(), hits = new AtomicLong(), misses = new AtomicLong(),
+            contentions = new AtomicLong(), waitTime = new AtomicLong();
+
     /**
      * Creates a buffered factory wrapping the {@linkplain AuthorityBackedFactory default one}.
      */
@@ -212,25 +281,64 @@ public class CachingCoordinateOperationFactory extends AbstractCoordinateOperati
 
     /**
      * Implementations of the public {@code createOperation(sourceCRS, targetCRS)} methods.
+     * This method first looks in the map of recent operations by identity, then in the cache
+     * by value equality, and finally delegates to the backing factory.
      */
-    private CoordinateOperation createOperation(final CRSPair key)
+    private CoordinateOperation getOrCreate(final CoordinateReferenceSystem sourceCRS,
+                                            final CoordinateReferenceSystem targetCRS,
+                                            final OperationMethod method)
             throws OperationNotFoundException, FactoryException
     {
-        CoordinateOperation op = cache.peek(key);
-        if (op == null) {
+        final IdentityPair id = new IdentityPair(sourceCRS, targetCRS, method);
+        CoordinateOperation op = recent.get(id);
+        if (op != null) {
+            fastHits.incrementAndGet();
+            return op;
+        }
+        final CRSPair key = new CRSPair(sourceCRS, targetCRS, method);
+        op = cache.peek(key);
+        if (op != null) {
+            hits.incrementAndGet();
+        } else {
+            final long start = System.nanoTime();
             final Cache.Handler<CoordinateOperation> handler = cache.lock(key);
             try {
                 op = handler.peek();
-                if (op == null) {
-                    op = getBackingFactory().createOperation(key.sourceCRS, key.targetCRS);
+                if (op != null) {
+                    // An other thread created the operation while we were waiting for the lock.
+                    contentions.incrementAndGet();
+                    waitTime.addAndGet(System.nanoTime() - start);
+                } else {
+                    misses.incrementAndGet();
+                    final CoordinateOperationFactory factory = getBackingFactory();
+                    if (method != null) {
+                        op = factory.createOperation(sourceCRS, targetCRS, method);
+                    } else {
+                        op = factory.createOperation(sourceCRS, targetCRS);
+                    }
                 }
             } finally {
                 handler.putAndUnlock(op);
             }
         }
+        if (recent.size() >= MAX_RECENT) {
+            recent.clear();
+        }
+        recent.put(id, op);
         return op;
     }
 
+    /**
+     * Returns statistics about the usage of the cache since this factory creation.
+     *
+     * @return A snapshot of the cache statistics.
+     *
+     * @since 4.0
+     */
+    public CacheStatistics getCacheStatistics() {
+        return new CacheStatistics(fastHits.get(), hits.get(), misses.get(), contentions.get(), waitTime.get());
+    }
+
     /**
      * Returns an operation for conversion or transformation between two coordinate reference
      * systems. If an operation was already created and still in the cache, the cached operation
@@ -251,7 +359,7 @@ public class CachingCoordinateOperationFactory extends AbstractCoordinateOperati
     {
         ensureNonNull("sourceCRS", sourceCRS);
         ensureNonNull("targetCRS", targetCRS);
-        return createOperation(new CRSPair(sourceCRS, targetCRS, null));
+        return getOrCreate(sourceCRS, targetCRS, null);
     }
 
     /**
@@ -277,7 +385,7 @@ public class CachingCoordinateOperationFactory extends AbstractCoordinateOperati
         ensureNonNull("sourceCRS", sourceCRS);
         ensureNonNull("targetCRS", targetCRS);
         ensureNonNull("method",    method);
-        return createOperation(new CRSPair(sourceCRS, targetCRS, method));
+        return getOrCreate(sourceCRS, targetCRS, method);
     }
 
     /**
@@ -0,0 +1,324 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.referencing.operation.transform;
+
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opengis.geometry.MismatchedDimensionException;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.Matrix;
+import org.opengis.referencing.operation.TransformException;
+import org.apache.sis.referencing.operation.transform.LinearTransform;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
+
+import static org.apache.sis.util.ArgumentChecks.ensureNonNull;
+
+
+/**
+ * Bulk transformation of two-dimensional coordinates through a chain of transforms.
+ * <p>
+ * A map projection created by the referencing factories is a chain of concatenated transforms
+ * (<cite>normalize</cite> affine &ndash; unitary projection &ndash; <cite>denormalize</cite> affine),
+ * often concatenated again with datum shifts or axis swaps. When transforming an array of points,
+ * each step of the chain makes its own pass over the whole array. For large arrays this means the
+ * coordinates are loaded from main memory once per step.
+ * <p>
+ * This class decomposes the transform in its steps, merges the consecutive linear steps in a
+ * single set of affine coefficients applied inline, and transforms the points by blocks small
+ * enough to stay in the processor cache while all steps are applied. Coordinates can be given
+ * either as an array of interleaved (<var>x</var>,<var>y</var>) tuples or as two separated arrays
+ * of <var>x</var> and <var>y</var> ordinates.
+ * <p>
+ * Transforms which can not be decomposed in two-dimensional steps are delegated to the
+ * {@link MathTransform#transform(double[],int,double[],int,int)} method unchanged.
+ * <p>
+ * Instances of this class are immutable and thread-safe if the underlying transform is thread-safe.
+ *
+ * @version 4.0
+ *
+ * @since 4.0
+ * @module
+ */
+public final class BatchTransform {
+    /**
+     * Number of points transformed together by each step. 256 points use 4 kb,
+     * which fit in the first level cache of most processors.
+     */
+    static final int BLOCK_SIZE = 256;
+
+    /**
+     * The transform given at construction time.
+     */
+    private final MathTransform transform;
+
+    /**
+     * The non-linear steps, or {@code null} if the transform could not be decomposed
+     * in two-dimensional steps.
+     */
+    private final MathTransform[] kernels;
+
+    /**
+     * The affine coefficients to apply before each kernel, and after the last kernel. Coefficients
+     * are stored in the (m00, m10, m01, m11, m02, m12) order. Null elements are identity transforms.
+     * The length of this array is the number of kernels + 1.
+     */
+    private final double[][] affines;
+
+    /**
+     * Creates a new batch transform for the given transform.
+     */
+    private BatchTransform(final MathTransform transform) {
+        this.transform = transform;
+        final List<MathTransform> ks = new ArrayList<>();
+        final List<double[]> as = new ArrayList<>();
+        boolean decomposed = true;
+        AffineTransform current = new AffineTransform();
+        for (final MathTransform step : MathTransforms.getSteps(transform)) {
+            if (step.getSourceDimensions() != 2 || step.getTargetDimensions() != 2) {
+                decomposed = false;
+                break;
+            }
+            final AffineTransform linear = toAffine(step);
+            if (linear != null) {
+                current.preConcatenate(linear);
+            } else {
+                as.add(coefficients(current));
+                ks.add(step);
+                current = new AffineTransform();
+            }
+        }
+        if (decomposed) {
+            as.add(coefficients(current));
+            kernels = ks.toArray(new MathTransform[ks.size()]);
+            affines = as.toArray(new double[as.size()][]);
+        } else {
+            kernels = null;
+            affines = null;
+        }
+    }
+
+    /**
+     * Creates a batch transform for the given transform.
+     *
+     * @param  transform The transform to apply on coordinates.
+     * @return The batch transform.
+     */
+    public static BatchTransform create(final MathTransform transform) {
+        ensureNonNull("transform", transform);
+        return new BatchTransform(transform);
+    }
+
+    /**
+     * Returns the transform given at construction time.
+     *
+     * @return The transform applied by this object.
+     */
+    public MathTransform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Returns {@code true} if the transform has been decomposed in two-dimensional steps.
+     * If {@code false}, the transform methods delegate to the transform unchanged.
+     *
+     * @return {@code true} if the steps of the transform are applied by blocks.
+     */
+    public boolean isDecomposed() {
+        return kernels != null;
+    }
+
+    /**
+     * Returns the number of non-linear steps in the transform, or -1 if the
+     * transform has not been {@linkplain #isDecomposed() decomposed}.
+     *
+     * @return Number of non-linear steps.
+     */
+    public int getKernelCount() {
+        return (kernels != null) ? kernels.length : -1;
+    }
+
+    /**
+     * Returns the given step as an affine transform, or {@code null} if the step is not affine.
+     */
+    private static AffineTransform toAffine(final MathTransform step) {
+        if (step instanceof AffineTransform) {
+            return (AffineTransform) step;
+        }
+        if (step instanceof LinearTransform) {
+            final Matrix m = ((LinearTransform) step).getMatrix();
+            if (m.getNumRow() == 3 && m.getNumCol() == 3 &&
+                    m.getElement(2,0) == 0 && m.getElement(2,1) == 0 && m.getElement(2,2) == 1)
+            {
+                return new AffineTransform(m.getElement(0,0), m.getElement(1,0),
+                                           m.getElement(0,1), m.getElement(1,1),
+                                           m.getElement(0,2), m.getElement(1,2));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the coefficients of the given affine transform, or {@code null} for identity.
+     */
+    private static double[] coefficients(final AffineTransform at) {
+        if (at.isIdentity()) {
+            return null;
+        }
+        final double[] m = new double[6];
+        at.getMatrix(m);
+        return m;
+    }
+
+    /**
+     * Transforms a list of (<var>x</var>,<var>y</var>) tuples. This method gives the same result
+     * than {@link MathTransform#transform(double[],int,double[],int,int)}. The source and
+     * destination arrays may overlap.
+     *
+     * @param  srcPts The array containing the source point coordinates.
+     * @param  srcOff The offset to the first point to be transformed in the source array.
+     * @param  dstPts The array into which the transformed point coordinates are returned.
+     *                May be the same than {@code srcPts}.
+     * @param  dstOff The offset to the location of the first transformed point in the destination array.
+     * @param  numPts The number of points to be transformed.
+     * @throws TransformException if a point can't be transformed.
+     */
+    public void transform(final double[] srcPts, int srcOff,
+                          final double[] dstPts, int dstOff, int numPts) throws TransformException
+    {
+        if (kernels == null) {
+            transform.transform(srcPts, srcOff, dstPts, dstOff, numPts);
+            return;
+        }
+        if (srcPts == dstPts && srcOff < dstOff && dstOff < srcOff + 2*numPts) {
+            /*
+             * Blocks are processed in increasing order, writing a block would overwrite the
+             * source of the next blocks. Move the source to the destination and work in place.
+             */
+            System.arraycopy(srcPts, srcOff, dstPts, dstOff, 2*numPts);
+            srcOff = dstOff;
+        }
+        while (numPts > 0) {
+            final int n = Math.min(numPts, BLOCK_SIZE);
+            transformBlock(srcPts, srcOff, dstPts, dstOff, n);
+            srcOff += 2*n;
+            dstOff += 2*n;
+            numPts -= n;
+        }
+    }
+
+    /**
+     * Transforms a list of points given as separated arrays of <var>x</var> and <var>y</var>
+     * ordinates. The source and destination arrays may be the same.
+     *
+     * @param  srcX   The array containing the source <var>x</var> ordinates.
+     * @param  srcY   The array containing the source <var>y</var> ordinates.
+     * @param  srcOff The offset to the first point to be transformed in the source arrays.
+     * @param  dstX   The array into which the transformed <var>x</var> ordinates are returned.
+     * @param  dstY   The array into which the transformed <var>y</var> ordinates are returned.
+     * @param  dstOff The offset to the location of the first transformed point in the destination arrays.
+     * @param  numPts The number of points to be transformed.
+     * @throws MismatchedDimensionException if the transform is not two-dimensional.
+     * @throws TransformException if a point can't be transformed.
+     */
+    public void transform(final double[] srcX, final double[] srcY, int srcOff,
+                          final double[] dstX, final double[] dstY, int dstOff, int numPts)
+            throws TransformException
+    {
+        if (transform.getSourceDimensions() != 2 || transform.getTargetDimensions() != 2) {
+            throw new MismatchedDimensionException("Transform is not two-dimensional.");
+        }
+        double[] sourceX = srcX;
+        double[] sourceY = srcY;
+        if ((srcX == dstX || srcY == dstY) && srcOff < dstOff && dstOff < srcOff + numPts) {
+            //same reason than the interleaved case, both arrays are moved since
+            //the source of the next blocks is now read in the destination arrays
+            System.arraycopy(srcX, srcOff, dstX, dstOff, numPts);
+            System.arraycopy(srcY, srcOff, dstY, dstOff, numPts);
+            sourceX = dstX;
+            sourceY = dstY;
+            srcOff  = dstOff;
+        }
+        final double[] buffer = new double[2 * Math.min(numPts, BLOCK_SIZE)];
+        while (numPts > 0) {
+            final int n = Math.min(numPts, BLOCK_SIZE);
+            for (int i=0, j=srcOff; i<2*n; j++) {
+                buffer[i++] = sourceX[j];
+                buffer[i++] = sourceY[j];
+            }
+            if (kernels != null) {
+                transformBlock(buffer, 0, buffer, 0, n);
+            } else {
+                transform.transform(buffer, 0, buffer, 0, n);
+            }
+            for (int i=0, j=dstOff; i<2*n; j++) {
+                dstX[j] = buffer[i++];
+                dstY[j] = buffer[i++];
+            }
+            srcOff += n;
+            dstOff += n;
+            numPts -= n;
+        }
+    }
+
+    /**
+     * Applies all steps on a block of points. The first step reads the source array,
+     * next steps work in place in the destination array.
+     */
+    private void transformBlock(final double[] srcPts, final int srcOff,
+                                final double[] dstPts, final int dstOff, final int numPts)
+            throws TransformException
+    {
+        double[] src = srcPts;
+        int offset = srcOff;
+        for (int i=0; i<kernels.length; i++) {
+            final double[] m = affines[i];
+            if (m != null) {
+                affine(m, src, offset, dstPts, dstOff, numPts);
+                src = dstPts;
+                offset = dstOff;
+            }
+            kernels[i].transform(src, offset, dstPts, dstOff, numPts);
+            src = dstPts;
+            offset = dstOff;
+        }
+        final double[] m = affines[kernels.length];
+        if (m != null) {
+            affine(m, src, offset, dstPts, dstOff, numPts);
+        } else if (src != dstPts || offset != dstOff) {
+            System.arraycopy(src, offset, dstPts, dstOff, 2*numPts);
+        }
+    }
+
+    /**
+     * Applies the given affine coefficients on a list of (<var>x</var>,<var>y</var>) tuples.
+     * The destination offset must be lower or equal to the source offset if the arrays are
+     * the same.
+     */
+    private static void affine(final double[] m, final double[] srcPts, int srcOff,
+                               final double[] dstPts, int dstOff, int numPts)
+    {
+        final double m00 = m[0], m10 = m[1], m01 = m[2], m11 = m[3], m02 = m[4], m12 = m[5];
+        while (--numPts >= 0) {
+            final double x = srcPts[srcOff++];
+            final double y = srcPts[srcOff++];
+            dstPts[dstOff++] = m00*x + m01*y + m02;
+            dstPts[dstOff++] = m10*x + m11*y + m12;
+        }
+    }
+}
@@ -17,6 +17,14 @@
  */
 package org.geotoolkit.referencing.operation.transform;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URISyntaxException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 import java.lang.reflect.UndeclaredThrowableException;
@@ -38,11 +46,24 @@ import org.apache.sis.util.Classes;
  * @module
  */
 class GridLoader {
+    /**
+     * The maximal amount of grid data, in bytes, to retain by strong references in the cache.
+     * Memory-mapped grids cost only their header, so they are retained much longer than grids
+     * loaded in the Java heap.
+     */
+    private static final long CACHE_LIMIT = 16 * 1024 * 1024;
+
     /**
      * The cache of grids loaded so far. Keys are instances of the exact {@code GridLoader} class,
-     * which values are instances of subclasses. Grids are retained by soft references only.
+     * which values are instances of subclasses. Grids are retained by strong references up to
+     * {@value #CACHE_LIMIT} bytes of heap memory, and by soft references after that limit.
      */
-    private static final Cache<GridLoader,GridLoader> CACHE = new Cache<>(4, 0, true);
+    private static final Cache<GridLoader,GridLoader> CACHE = new Cache<GridLoader,GridLoader>(12, CACHE_LIMIT, true) {
+        @Override
+        protected int cost(final GridLoader loader) {
+            return loader.cost();
+        }
+    };
 
     /**
      * The type of the grid loader. This is not necessarily the same than
@@ -101,6 +122,60 @@ class GridLoader {
         return type.cast(grid);
     }
 
+    /**
+     * Returns an estimation of the heap memory used by this loader, in bytes.
+     * Subclasses loading the grid values in the Java heap shall override this method.
+     *
+     * @return The memory used by this loader.
+     */
+    int cost() {
+        return 1024;
+    }
+
+    /**
+     * Returns the given grid file as a {@link File} if it is on the local file system,
+     * or {@code null} otherwise (for example if the file is an entry in a JAR file).
+     *
+     * @param  path The grid file as a {@link File} or {@link URL}.
+     * @return The grid file, or {@code null} if it can not be mapped in memory.
+     */
+    static File toLocalFile(final Object path) {
+        if (path instanceof File) {
+            return (File) path;
+        }
+        if (path instanceof URL && "file".equalsIgnoreCase(((URL) path).getProtocol())) {
+            try {
+                return new File(((URL) path).toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // Not a valid file URL, fallback on stream reading.
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Maps the given region of a grid file in memory. The file pages are loaded by the operating
+     * system only when a value in that page is requested, and are shared by all transforms using
+     * the same loader. The file channel is closed immediately since the mapping stays valid.
+     *
+     * @param  file     The grid file, as returned by {@link #toLocalFile(Object)}.
+     * @param  position The position of the region to map, in bytes.
+     * @param  size     The size of the region to map, in bytes.
+     * @param  order    The byte order of the values in the file.
+     * @return The mapped region.
+     * @throws IOException If the file can not be mapped.
+     */
+    static MappedByteBuffer map(final File file, final long position, final long size,
+            final ByteOrder order) throws IOException
+    {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        }
+        buffer.order(order);
+        return buffer;
+    }
+
     /**
      * Returns {@code true} if the given object is equals to the given {@code GridLoader}.
      * Only the source files and the type are compared. All other fields defined in subclasses
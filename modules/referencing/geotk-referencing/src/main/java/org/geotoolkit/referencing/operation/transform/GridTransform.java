@@ -582,6 +582,9 @@ public class GridTransform extends AbstractMathTransform implements Serializable
                 Utilities.equals(scaleX,  that.scaleX)  &&
                 Utilities.equals(scaleY,  that.scaleY))
             {
+                if (grid == that.grid) {
+                    return true; // Shared grids, typically memory-mapped files.
+                }
                 final int dstDim = grid.getNumBanks();
                 if (dstDim == that.grid.getNumBanks()) {
                     final int size = width * height;
@@ -607,6 +610,10 @@ public class GridTransform extends AbstractMathTransform implements Serializable
      */
     private void writeObject(final ObjectOutputStream out) throws IOException {
         out.defaultWriteObject();
+        DataBuffer grid = this.grid;
+        if (grid instanceof MappedGridBuffer) {
+            grid = ((MappedGridBuffer) grid).toHeap();
+        }
         final int size = grid.getSize();
         final int[] offsets = grid.getOffsets();
         final Class<? extends DataBuffer> type = grid.getClass();
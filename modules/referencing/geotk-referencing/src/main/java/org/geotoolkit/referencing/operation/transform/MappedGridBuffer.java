@@ -0,0 +1,149 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.referencing.operation.transform;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferFloat;
+import java.nio.FloatBuffer;
+
+import org.geotoolkit.resources.Errors;
+
+
+/**
+ * A read-only data buffer of {@code float} values read directly from a memory-mapped grid file.
+ * The grid values are not copied in the Java heap; the operating system loads the pages of the
+ * file only when a value in that page is requested, and shares those pages between all transforms
+ * (and all processes) using the same file.
+ * <p>
+ * The values of a bank are located in the file at the following position, in number of floats:
+ *
+ * <blockquote><code>
+ * bankOffset[bank] + row*rowStride + column*pixelStride
+ * </code></blockquote>
+ *
+ * where <var>row</var> and <var>column</var> are computed from the element index as
+ * ({@code index / width}, {@code index % width}). This layout covers both the NTv2 files
+ * (interleaved records of 4 floats) and the NADCON binary files (one file per bank, rows
+ * separated by a padding value).
+ * <p>
+ * Instances of this class are thread-safe since the {@link FloatBuffer#get(int)} absolute
+ * method does not modify the buffer state.
+ *
+ * @version 4.0
+ *
+ * @since 4.0
+ * @module
+ */
+final class MappedGridBuffer extends DataBuffer {
+    /**
+     * The mapped file content for each bank. Many banks may share the same buffer.
+     */
+    private final FloatBuffer[] banks;
+
+    /**
+     * The position of the first value of each bank, in number of floats.
+     */
+    private final int[] bankOffsets;
+
+    /**
+     * The number of columns in the grid.
+     */
+    private final int width;
+
+    /**
+     * The distance between two consecutive columns and two consecutive rows, in number of floats.
+     */
+    private final int pixelStride, rowStride;
+
+    /**
+     * Creates a new buffer for the given mapped file content.
+     *
+     * @param banks       The mapped file content for each bank.
+     * @param bankOffsets The position of the first value of each bank, in number of floats.
+     * @param width       The number of columns in the grid.
+     * @param height      The number of rows in the grid.
+     * @param pixelStride The distance between two consecutive columns, in number of floats.
+     * @param rowStride   The distance between two consecutive rows, in number of floats.
+     */
+    MappedGridBuffer(final FloatBuffer[] banks, final int[] bankOffsets, final int width,
+            final int height, final int pixelStride, final int rowStride)
+    {
+        super(TYPE_FLOAT, width * height, banks.length);
+        this.banks       = banks;
+        this.bankOffsets = bankOffsets;
+        this.width       = width;
+        this.pixelStride = pixelStride;
+        this.rowStride   = rowStride;
+    }
+
+    /**
+     * Returns the position in the mapped buffer of the element at the given index.
+     */
+    private int position(final int bank, final int i) {
+        final int row = i / width;
+        return bankOffsets[bank] + row*rowStride + (i - row*width)*pixelStride;
+    }
+
+    /**
+     * Returns the value of the element at the given index in the given bank.
+     */
+    @Override
+    public float getElemFloat(final int bank, final int i) {
+        return banks[bank].get(position(bank, i));
+    }
+
+    /**
+     * Returns the value of the element at the given index in the given bank.
+     */
+    @Override
+    public double getElemDouble(final int bank, final int i) {
+        return getElemFloat(bank, i);
+    }
+
+    /**
+     * Returns the value of the element at the given index in the given bank, cast to an integer.
+     */
+    @Override
+    public int getElem(final int bank, final int i) {
+        return (int) getElemFloat(bank, i);
+    }
+
+    /**
+     * Unsupported operation, since the grid file is mapped in read-only mode.
+     */
+    @Override
+    public void setElem(final int bank, final int i, final int val) {
+        throw new UnsupportedOperationException(Errors.format(
+                Errors.Keys.UNMODIFIABLE_OBJECT_1, MappedGridBuffer.class));
+    }
+
+    /**
+     * Copies all values in a new buffer stored in the Java heap.
+     * This is used for serialization, since mapped buffers are not serializable.
+     */
+    final DataBufferFloat toHeap() {
+        final int size = getSize();
+        final float[][] data = new float[banks.length][size];
+        for (int b=0; b<data.length; b++) {
+            final float[] bank = data[b];
+            for (int i=0; i<size; i++) {
+                bank[i] = getElemFloat(b, i);
+            }
+        }
+        return new DataBufferFloat(data, size);
+    }
+}
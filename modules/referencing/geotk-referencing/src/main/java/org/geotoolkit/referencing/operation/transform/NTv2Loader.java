@@ -17,23 +17,29 @@
  */
 package org.geotoolkit.referencing.operation.transform;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.concurrent.Callable;
 import java.awt.Dimension;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferFloat;
+import java.io.File;
 import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.ByteOrder;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.nio.charset.Charset;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 import org.opengis.util.FactoryException;
 
@@ -49,10 +55,17 @@ import static org.geotoolkit.internal.io.Installation.NTv2;
 /**
  * Loaders of {@link NTV2Transform} data. This is a temporary object used only at loading time
  * and discarded once the transform is built.
+ * <p>
+ * A NTv2 file contains one or many subgrids, where each subgrid may be the child of a parent
+ * subgrid covering a larger area at a coarser resolution. Only the headers of the subgrids are
+ * read at loading time. If the file is on the local file system, the grid values are not read:
+ * the file is mapped in memory and the operating system loads only the pages containing the
+ * queried cells.
+ * Otherwise (for example a file in a JAR), the values are loaded in the Java heap.
  *
  * @author Simon Reynard (Geomatys)
  * @author Martin Desruisseaux (Geomatys)
- * @version 3.12
+ * @version 4.0
  *
  * @since 3.12
  * @module
@@ -70,6 +83,11 @@ final class NTv2Loader extends GridLoader {
      */
     private static final int RECORD_LENGTH = 16;
 
+    /**
+     * The value of the {@code PARENT} header for subgrids without parent.
+     */
+    private static final String NO_PARENT = "NONE";
+
     /**
      * The types of some know parameters. Parameters not in this list will be ignored.
      */
@@ -102,43 +120,36 @@ final class NTv2Loader extends GridLoader {
     }
 
     /**
-     * The header content. Keys are strings like {@code VERSION}, {@code SYSTEM_F},
-     * <var>etc.</var>. Values are {@link String}, {@link Integer} or {@link Double}.
+     * The header content of the overview and the first subgrid. Keys are strings like
+     * {@code VERSION}, {@code SYSTEM_F}, <var>etc.</var>. Values are {@link String},
+     * {@link Integer} or {@link Double}.
      */
     private final Map<String,Comparable<?>> header;
 
     /**
-     * The number of columns (width) and rows (height) in the grid.
-     */
-    private int width, height;
-
-    /**
-     * The minimum longitude and latitude value covered by this grid (decimal degrees).
-     */
-    private double xmin, ymin;
-
-    /**
-     * The difference between longitude (dx) and latitude (dy) grid points (decimal degrees).
+     * All subgrids in the order they appear in the file. The first subgrid is the one
+     * used by {@link #getDataBuffer()}, {@link #getSize()} and {@link #getArea()}.
      */
-    private double dx, dy;
+    private final List<Subgrid> subgrids;
 
     /**
-     * The latitude/longitude Shift and Precision (optional).
+     * The subgrids without parent.
      */
-    private float[] latitudeShift, longitudeShift, latitudePrecision, longitudePrecision;
+    private final List<Subgrid> roots;
 
     /**
-     * The buffer, created from the {@link #longitudeShift} and {@link #latitudeShift}
-     * when first needed.
+     * {@code true} if the precision should also be provided in the data buffers.
      */
-    private transient DataBuffer buffer;
+    private boolean loadPrecision;
 
     /**
      * Create a new loader
      */
     NTv2Loader() {
         super(NTv2Loader.class);
-        header = new LinkedHashMap<>();
+        header   = new LinkedHashMap<>();
+        subgrids = new ArrayList<>();
+        roots    = new ArrayList<>();
     }
 
     /**
@@ -198,17 +209,22 @@ final class NTv2Loader extends GridLoader {
     }
 
     /**
-     * Loads the grid data.
+     * Loads the headers of all subgrids, and the grid data if the file can not be mapped.
      *
      * @param  loadPrecision {@code true} if the precision should also be loaded.
      * @throws IOException If there is an error reading the grid files.
      */
     private void load(final boolean loadPrecision) throws IOException {
-        try (ReadableByteChannel channel = Channels.newChannel(IOUtilities.open(latitudeGridFile))) {
+        this.loadPrecision = loadPrecision;
+        final File file = toLocalFile(latitudeGridFile);
+        try (ReadableByteChannel channel = (file != null)
+                ? FileChannel.open(file.toPath(), StandardOpenOption.READ)
+                : Channels.newChannel(IOUtilities.open(latitudeGridFile)))
+        {
             /*
-             * Extracts the two first header records wich contain the length of the header.
-             * Note that the buffer need to be large enough for containing fully the header.
-             * The typical header length is 704 bytes.
+             * Extracts the two first header records wich contain the length of the headers.
+             * Note that the buffer need to be large enough for containing fully a header.
+             * The typical header length is 176 bytes for the overview and subgrid headers.
              *
              * This code also tries to auto-detect the endieness.
              */
@@ -225,75 +241,49 @@ final class NTv2Loader extends GridLoader {
                 // Restore the big original order.
                 buffer.order(ByteOrder.BIG_ENDIAN);
             }
-            final int headerLimit = (numRecords - 2) * RECORD_LENGTH;
-            /*
-             * Initializes members with header's parameters values.
-             */
-            buffer.rewind().limit(headerLimit);
-            readFully(channel, buffer);
-            final byte[] array = buffer.array();
-            final Charset charset = Charset.forName("US-ASCII");
-            for (int i=0; i<headerLimit; i+=RECORD_LENGTH) {
-                String key = new String(array, i, HEADER_KEY_LENGTH, charset).trim().toUpperCase(Locale.US);
-                final Class<?> type = TYPES.get(key);
-                if (type != null) {
-                    final int p = i + HEADER_KEY_LENGTH;
-                    final Comparable<?> value;
-                    if (type.equals(Double.class)) {
-                        value = buffer.getDouble(p);
-                    } else if (type.equals(Integer.class)) {
-                        value = buffer.getInt(p);
-                    } else {
-                        value = new String(array, p, RECORD_LENGTH - HEADER_KEY_LENGTH, charset).trim();
-                    }
-                    key = key.intern(); // Same instance than the one in the TYPES map.
-                    header.put(key, value);
-                }
-            }
-            /*
-             * Get the bounding box in seconds of angle.
-             */
-            final double xmax, ymax;
-            ymin   = getDouble("S_LAT");
-            ymax   = getDouble("N_LAT");
-            xmin   = getDouble("E_LONG");
-            xmax   = getDouble("W_LONG");
-            dy     = getDouble("LAT_INC");
-            dx     = getDouble("LONG_INC");
-            width  = (int) Math.round((xmax - xmin) / dx) + 1;
-            height = (int) Math.round((ymax - ymin) / dy) + 1;
-            xmin /= 3600;
-            ymin /= 3600;
-            dx   /= 3600;
-            dy   /= 3600;
-            /*
-             * Initialize values tables.
-             */
-            final int count = getInteger("GS_COUNT");
-            latitudeShift  = new float[count];
-            longitudeShift = new float[count];
-            if (loadPrecision) {
-                latitudePrecision  = new float[count];
-                longitudePrecision = new float[count];
+            final ByteOrder order = buffer.order();
+            final int numOverviewRecords = buffer.getInt(HEADER_KEY_LENGTH);
+            final int numSubgridRecords  = buffer.getInt(RECORD_LENGTH + HEADER_KEY_LENGTH);
+            if (Math.max(numOverviewRecords, numSubgridRecords) * RECORD_LENGTH > buffer.capacity()) {
+                throw new ContentFormatException(Errors.format(
+                        Errors.Keys.UNEXPECTED_HEADER_LENGTH_1, numRecords));
             }
             /*
-             * At this point, the header is read. Now prepare a buffer for reading the records.
+             * Initializes members with overview header's parameters values,
+             * then read the header of each subgrid.
              */
-            final int rowsPerBulk = buffer.capacity() / RECORD_LENGTH;
-            for (int index=0; index < count;) {
-                buffer.rewind().limit(Math.min(rowsPerBulk, count - index) * RECORD_LENGTH);
-                readFully(channel, buffer);
-                buffer.rewind();
-                while (buffer.hasRemaining()) {
-                    latitudeShift [index] = buffer.getFloat();
-                    longitudeShift[index] = buffer.getFloat();
-                    if (loadPrecision) {
-                        latitudePrecision [index] = buffer.getFloat();
-                        longitudePrecision[index] = buffer.getFloat();
-                    } else {
-                        buffer.position(buffer.position() + 2*(Float.SIZE / Byte.SIZE));
+            readHeader(channel, buffer, numOverviewRecords - 2, header);
+            final int numSubgrids = getInteger(header, "NUM_FILE");
+            final Map<String,Subgrid> byName = new HashMap<>();
+            for (int i=0; i<numSubgrids; i++) {
+                final Map<String,Comparable<?>> fields = new LinkedHashMap<>();
+                readHeader(channel, buffer, numSubgridRecords, fields);
+                if (i == 0) {
+                    header.putAll(fields);
+                }
+                final Subgrid subgrid = new Subgrid(i, fields);
+                subgrids.add(subgrid);
+                byName.put(subgrid.name, subgrid);
+                if (file != null) {
+                    /*
+                     * Map the values in memory. Records are (latitude shift, longitude shift,
+                     * latitude precision, longitude precision) tuples. Nothing is read here,
+                     * the pages are loaded when a cell is queried.
+                     */
+                    final FileChannel fc = (FileChannel) channel;
+                    final long position = fc.position();
+                    final long length = subgrid.count * (long) RECORD_LENGTH;
+                    final FloatBuffer floats = map(file, position, length, order).asFloatBuffer();
+                    final FloatBuffer[] banks = new FloatBuffer[loadPrecision ? 4 : 2];
+                    for (int b=0; b<banks.length; b++) {
+                        banks[b] = floats;
                     }
-                    index++;
+                    final int stride = RECORD_LENGTH / (Float.SIZE / Byte.SIZE);
+                    subgrid.buffer = new MappedGridBuffer(banks, new int[] {1, 0, 3, 2},
+                            subgrid.width, subgrid.height, stride, stride * subgrid.width);
+                    fc.position(position + length);
+                } else {
+                    subgrid.load(channel, buffer, loadPrecision);
                 }
             }
             /*
@@ -301,10 +291,52 @@ final class NTv2Loader extends GridLoader {
              */
             buffer.rewind().limit(RECORD_LENGTH);
             readFully(channel, buffer);
-            String key = new String(array, 0, HEADER_KEY_LENGTH, charset).trim().toUpperCase(Locale.US);
+            final Charset charset = Charset.forName("US-ASCII");
+            String key = new String(buffer.array(), 0, HEADER_KEY_LENGTH, charset).trim().toUpperCase(Locale.US);
             if (!key.equals("END")) {
                 throw new IOException(Errors.format(Errors.Keys.FILE_HAS_TOO_MANY_DATA));
             }
+            /*
+             * Build the subgrid hierarchy.
+             */
+            for (final Subgrid subgrid : subgrids) {
+                final Subgrid parent = NO_PARENT.equalsIgnoreCase(subgrid.parent) ? null : byName.get(subgrid.parent);
+                if (parent != null && parent != subgrid) {
+                    parent.children.add(subgrid);
+                } else {
+                    roots.add(subgrid);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the given number of header records and stores the known parameters in the given map.
+     */
+    private static void readHeader(final ReadableByteChannel channel, final ByteBuffer buffer,
+            final int numRecords, final Map<String,Comparable<?>> fields) throws IOException
+    {
+        final int headerLimit = numRecords * RECORD_LENGTH;
+        buffer.rewind().limit(headerLimit);
+        readFully(channel, buffer);
+        final byte[] array = buffer.array();
+        final Charset charset = Charset.forName("US-ASCII");
+        for (int i=0; i<headerLimit; i+=RECORD_LENGTH) {
+            String key = new String(array, i, HEADER_KEY_LENGTH, charset).trim().toUpperCase(Locale.US);
+            final Class<?> type = TYPES.get(key);
+            if (type != null) {
+                final int p = i + HEADER_KEY_LENGTH;
+                final Comparable<?> value;
+                if (type.equals(Double.class)) {
+                    value = buffer.getDouble(p);
+                } else if (type.equals(Integer.class)) {
+                    value = buffer.getInt(p);
+                } else {
+                    value = new String(array, p, RECORD_LENGTH - HEADER_KEY_LENGTH, charset).trim();
+                }
+                key = key.intern(); // Same instance than the one in the TYPES map.
+                fields.put(key, value);
+            }
         }
     }
 
@@ -337,8 +369,10 @@ final class NTv2Loader extends GridLoader {
      * Returns the double value for the given key, or thrown an exception if the
      * value is not found.
      */
-    private double getDouble(final String key) throws ContentFormatException {
-        final Comparable<?> value = header.get(key);
+    private static double getDouble(final Map<String,Comparable<?>> fields, final String key)
+            throws ContentFormatException
+    {
+        final Comparable<?> value = fields.get(key);
         if (value instanceof Number) {
             return ((Number) value).doubleValue();
         }
@@ -349,8 +383,10 @@ final class NTv2Loader extends GridLoader {
      * Returns the integer value for the given key, or thrown an exception if the
      * value is not found.
      */
-    private int getInteger(final String key) throws ContentFormatException {
-        final Comparable<?> value = header.get(key);
+    private static int getInteger(final Map<String,Comparable<?>> fields, final String key)
+            throws ContentFormatException
+    {
+        final Comparable<?> value = fields.get(key);
         if (value instanceof Number) {
             return ((Number) value).intValue();
         }
@@ -358,36 +394,219 @@ final class NTv2Loader extends GridLoader {
     }
 
     /**
-     * Return the grid dimension
+     * Returns all subgrids in the order they appear in the file.
+     */
+    final List<Subgrid> getSubgrids() {
+        return subgrids;
+    }
+
+    /**
+     * Returns the subgrids without parent.
+     */
+    final List<Subgrid> getRoots() {
+        return roots;
+    }
+
+    /**
+     * Return the grid dimension of the first subgrid.
      *
      * @return Dimension
      */
     public final Dimension getSize() {
-        return new Dimension(width, height);
+        return subgrids.get(0).getSize();
     }
 
     /**
-     * Returns the geographic area covered by the grid.
+     * Returns the geographic area covered by the first subgrid.
      */
     public final Rectangle2D getArea() {
-        return new Rectangle2D.Double(xmin, ymin, dx*width, dy*height);
+        return subgrids.get(0).getArea();
     }
 
     /**
-     * Creates and returns the data buffer.
+     * Creates and returns the data buffer of the first subgrid.
      */
-    public final synchronized DataBuffer getDataBuffer() {
-        if (buffer == null) {
-            final boolean hasPrecision = (latitudePrecision != null);
-            final float[][] buffers = new float[hasPrecision ? 4 : 2][];
-            if (hasPrecision) {
-                buffers[3] = latitudePrecision;
-                buffers[2] = longitudeShift;
+    public final DataBuffer getDataBuffer() {
+        return getDataBuffer(subgrids.get(0));
+    }
+
+    /**
+     * Creates and returns the data buffer of the given subgrid. Bank 0 is the longitude shift and
+     * bank 1 the latitude shift, optionally followed by the longitude and latitude precisions.
+     * If the file is mapped in memory, the buffer has been created at loading time.
+     *
+     * @param  subgrid A subgrid of this loader.
+     * @return The data buffer of the given subgrid.
+     */
+    final synchronized DataBuffer getDataBuffer(final Subgrid subgrid) {
+        if (subgrid.buffer == null) {
+            final float[][] buffers = new float[loadPrecision ? 4 : 2][];
+            if (loadPrecision) {
+                buffers[3] = subgrid.latitudePrecision;
+                buffers[2] = subgrid.longitudePrecision;
             }
-            buffers[1] = latitudeShift;
-            buffers[0] = longitudeShift;
-            buffer = new DataBufferFloat(buffers, width*height);
+            buffers[1] = subgrid.latitudeShift;
+            buffers[0] = subgrid.longitudeShift;
+            subgrid.buffer = new DataBufferFloat(buffers, subgrid.width * subgrid.height);
+        }
+        return subgrid.buffer;
+    }
+
+    /**
+     * Returns an estimation of the heap memory used by this loader, in bytes.
+     */
+    @Override
+    int cost() {
+        int cost = super.cost();
+        for (final Subgrid subgrid : subgrids) {
+            if (subgrid.latitudeShift != null) {
+                cost += subgrid.count * (loadPrecision ? 4 : 2) * (Float.SIZE / Byte.SIZE);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * The header and the values of a subgrid. The values are either stored in the Java heap,
+     * or read from the mapped file by the {@linkplain #buffer}.
+     *
+     * @version 4.0
+     *
+     * @since 4.0
+     * @module
+     */
+    static final class Subgrid {
+        /**
+         * The index of this subgrid in the file.
+         */
+        final int index;
+
+        /**
+         * The name of this subgrid and the name of its parent ({@code "NONE"} if none).
+         */
+        final String name, parent;
+
+        /**
+         * The number of columns (width) and rows (height) in the grid.
+         */
+        final int width, height;
+
+        /**
+         * The number of records in the grid, which should be {@code width*height}.
+         */
+        final int count;
+
+        /**
+         * The minimum longitude (positive west) and latitude value covered by this grid (decimal degrees).
+         */
+        final double xmin, ymin;
+
+        /**
+         * The difference between longitude (dx) and latitude (dy) grid points (decimal degrees).
+         */
+        final double dx, dy;
+
+        /**
+         * The subgrids having this subgrid as parent.
+         */
+        final List<Subgrid> children;
+
+        /**
+         * The latitude/longitude Shift and Precision (optional). Used only if the file is not mapped.
+         */
+        float[] latitudeShift, longitudeShift, latitudePrecision, longitudePrecision;
+
+        /**
+         * The buffer, created when first needed or at loading time if the file is mapped.
+         */
+        DataBuffer buffer;
+
+        /**
+         * Creates a new subgrid from the given header parameters.
+         */
+        Subgrid(final int index, final Map<String,Comparable<?>> fields) throws ContentFormatException {
+            this.index = index;
+            final Comparable<?> n = fields.get("SUB_NAME");
+            final Comparable<?> p = fields.get("PARENT");
+            name   = (n != null) ? n.toString() : String.valueOf(index);
+            parent = (p != null) ? p.toString() : NO_PARENT;
+            /*
+             * Get the bounding box in seconds of angle.
+             */
+            final double xmin, ymin, xmax, ymax, dx, dy;
+            ymin   = getDouble(fields, "S_LAT");
+            ymax   = getDouble(fields, "N_LAT");
+            xmin   = getDouble(fields, "E_LONG");
+            xmax   = getDouble(fields, "W_LONG");
+            dy     = getDouble(fields, "LAT_INC");
+            dx     = getDouble(fields, "LONG_INC");
+            width  = (int) Math.round((xmax - xmin) / dx) + 1;
+            height = (int) Math.round((ymax - ymin) / dy) + 1;
+            count  = getInteger(fields, "GS_COUNT");
+            if (count < width * height) {
+                throw new ContentFormatException(Errors.format(Errors.Keys.FILE_HAS_TOO_FEW_DATA));
+            }
+            this.xmin = xmin / 3600;
+            this.ymin = ymin / 3600;
+            this.dx   = dx   / 3600;
+            this.dy   = dy   / 3600;
+            children  = new ArrayList<>();
+        }
+
+        /**
+         * Loads the values of this subgrid in the Java heap.
+         */
+        final void load(final ReadableByteChannel channel, final ByteBuffer buffer,
+                final boolean loadPrecision) throws IOException
+        {
+            latitudeShift  = new float[count];
+            longitudeShift = new float[count];
+            if (loadPrecision) {
+                latitudePrecision  = new float[count];
+                longitudePrecision = new float[count];
+            }
+            final int rowsPerBulk = buffer.capacity() / RECORD_LENGTH;
+            for (int index=0; index < count;) {
+                buffer.rewind().limit(Math.min(rowsPerBulk, count - index) * RECORD_LENGTH);
+                readFully(channel, buffer);
+                buffer.rewind();
+                while (buffer.hasRemaining()) {
+                    latitudeShift [index] = buffer.getFloat();
+                    longitudeShift[index] = buffer.getFloat();
+                    if (loadPrecision) {
+                        latitudePrecision [index] = buffer.getFloat();
+                        longitudePrecision[index] = buffer.getFloat();
+                    } else {
+                        buffer.position(buffer.position() + 2*(Float.SIZE / Byte.SIZE));
+                    }
+                    index++;
+                }
+            }
+        }
+
+        /**
+         * Returns {@code true} if this subgrid contains the given point.
+         *
+         * @param x The longitude in decimal degrees, positive west.
+         * @param y The latitude in decimal degrees.
+         */
+        final boolean contains(final double x, final double y) {
+            return x >= xmin && x <= xmin + dx*(width  - 1) &&
+                   y >= ymin && y <= ymin + dy*(height - 1);
+        }
+
+        /**
+         * Return the grid dimension.
+         */
+        final Dimension getSize() {
+            return new Dimension(width, height);
+        }
+
+        /**
+         * Returns the geographic area covered by the grid.
+         */
+        final Rectangle2D getArea() {
+            return new Rectangle2D.Double(xmin, ymin, dx*width, dy*height);
         }
-        return buffer;
     }
 }
@@ -19,6 +19,12 @@ package org.geotoolkit.referencing.operation.transform;
 
 import java.net.URL;
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.opengis.referencing.operation.Matrix;
 
 import org.opengis.util.FactoryException;
 import org.opengis.parameter.ParameterValueGroup;
@@ -47,8 +53,12 @@ import static org.geotoolkit.referencing.operation.provider.NTv2.*;
  *        performs the sign reversal by itself, so inputs given to <code>NTv2Transform</code>
  *        have longitudes positive east.}
  *
+ * If the file contains many subgrids, each point is transformed using the most detailed subgrid
+ * containing that point. The subgrids are loaded (or mapped in memory) only when a point falls
+ * in their area. Points outside every subgrid are transformed using the first grid of the file.
+ *
  * @author Simon Reynard (Geomatys)
- * @version 3.12
+ * @version 4.0
  *
  * @see <a href="http://www.killetsoft.de/p_trdn_e.htm">List of some NTv2 files</a>
  *
@@ -72,6 +82,18 @@ public class NTv2Transform extends GridTransform2D {
      */
     private final String gridFile;
 
+    /**
+     * The loader of the grid file, or {@code null} if the file contains only one grid.
+     * Used for creating the transforms of the other subgrids when first needed.
+     */
+    private transient NTv2Loader loader;
+
+    /**
+     * The transforms of the subgrids, created when first needed. Indices are the subgrid
+     * indices in the file. The element at index 0 is unused, since it is this transform.
+     */
+    private transient AtomicReferenceArray<GridTransform2D> subgrids;
+
     /**
      * Constructs a grid from the specified shift file. The argument may be a file path and name,
      * or just the file name. It is resolved as below:
@@ -110,6 +132,162 @@ public class NTv2Transform extends GridTransform2D {
             throw new FactoryException(Errors.format(Errors.Keys.ILLEGAL_PARAMETER_VALUE_2, "GS_TYPE", units));
         }
         gridFile  = (String) loader.latitudeGridFile;
+        setLoader(loader);
+    }
+
+    /**
+     * Keeps a reference to the given loader if the file contains more than one grid.
+     */
+    private void setLoader(final NTv2Loader loader) {
+        final int count = loader.getSubgrids().size();
+        if (count > 1) {
+            this.loader = loader;
+            subgrids = new AtomicReferenceArray<>(count);
+        }
+    }
+
+    /**
+     * Returns the transform for the most detailed subgrid containing the given point,
+     * or {@code null} if the point should be transformed by this grid.
+     *
+     * @param  x The longitude in decimal degrees, positive east.
+     * @param  y The latitude in decimal degrees.
+     * @return The subgrid transform, or {@code null} for this transform.
+     */
+    private GridTransform2D subgrid(final double x, final double y) {
+        NTv2Loader.Subgrid found = null;
+        List<NTv2Loader.Subgrid> candidates = loader.getRoots();
+search: while (!candidates.isEmpty()) {
+            for (final NTv2Loader.Subgrid candidate : candidates) {
+                if (candidate.contains(-x, y)) {
+                    found = candidate;
+                    candidates = candidate.children;
+                    continue search;
+                }
+            }
+            break;
+        }
+        if (found == null || found.index == 0) {
+            return null;
+        }
+        GridTransform2D tr = subgrids.get(found.index);
+        if (tr == null) {
+            tr = new GridTransform2D(GridType.NTv2, loader.getDataBuffer(found), found.getSize(), found.getArea());
+            if (!subgrids.compareAndSet(found.index, null, tr)) {
+                tr = subgrids.get(found.index);
+            }
+        }
+        return tr;
+    }
+
+    /**
+     * Transforms a single coordinate using the most detailed subgrid containing that coordinate.
+     */
+    @Override
+    public Matrix transform(final double[] srcPts, final int srcOff,
+                            final double[] dstPts, final int dstOff,
+                            final boolean derivate)
+    {
+        if (loader != null) {
+            final GridTransform2D tr = subgrid(srcPts[srcOff], srcPts[srcOff+1]);
+            if (tr != null) {
+                return tr.transform(srcPts, srcOff, dstPts, dstOff, derivate);
+            }
+        }
+        return super.transform(srcPts, srcOff, dstPts, dstOff, derivate);
+    }
+
+    /**
+     * Transforms a list of coordinates using the most detailed subgrid containing each coordinate.
+     */
+    @Override
+    public void transform(final double[] srcPts, final int srcOff,
+                          final double[] dstPts, final int dstOff, final int numPts)
+    {
+        if (loader == null) {
+            super.transform(srcPts, srcOff, dstPts, dstOff, numPts);
+        } else {
+            transform(null, srcPts, srcOff, null, dstPts, dstOff, numPts);
+        }
+    }
+
+    /**
+     * Transforms a list of coordinates using the most detailed subgrid containing each coordinate.
+     */
+    @Override
+    public void transform(final float[] srcPts, final int srcOff,
+                          final float[] dstPts, final int dstOff, final int numPts)
+    {
+        if (loader == null) {
+            super.transform(srcPts, srcOff, dstPts, dstOff, numPts);
+        } else {
+            transform(srcPts, null, srcOff, dstPts, null, dstOff, numPts);
+        }
+    }
+
+    /**
+     * Transforms a list of coordinates using the most detailed subgrid containing each coordinate.
+     */
+    @Override
+    public void transform(final double[] srcPts, final int srcOff,
+                          final float [] dstPts, final int dstOff, final int numPts)
+    {
+        if (loader == null) {
+            super.transform(srcPts, srcOff, dstPts, dstOff, numPts);
+        } else {
+            transform(null, srcPts, srcOff, dstPts, null, dstOff, numPts);
+        }
+    }
+
+    /**
+     * Transforms a list of coordinates using the most detailed subgrid containing each coordinate.
+     */
+    @Override
+    public void transform(final float [] srcPts, final int srcOff,
+                          final double[] dstPts, final int dstOff, final int numPts)
+    {
+        if (loader == null) {
+            super.transform(srcPts, srcOff, dstPts, dstOff, numPts);
+        } else {
+            transform(srcPts, null, srcOff, null, dstPts, dstOff, numPts);
+        }
+    }
+
+    /**
+     * Implementation of the transformation of a list of coordinates when there is subgrids.
+     * The source coordinates are copied first, so the source and destination arrays may overlap.
+     */
+    private void transform(final float[] srcPts1, final double[] srcPts2, final int srcOff,
+                           final float[] dstPts1, final double[] dstPts2, int dstOff,
+                           final int numPts)
+    {
+        final double[] buffer = new double[2 * numPts];
+        for (int i=0; i<buffer.length; i++) {
+            buffer[i] = (srcPts2 != null) ? srcPts2[srcOff + i] : srcPts1[srcOff + i];
+        }
+        for (int i=0; i<buffer.length; i += 2) {
+            transform(buffer, i, buffer, i, false);
+        }
+        for (int i=0; i<buffer.length; i++) {
+            if (dstPts2 != null) {
+                dstPts2[dstOff++] = buffer[i];
+            } else {
+                dstPts1[dstOff++] = (float) buffer[i];
+            }
+        }
+    }
+
+    /**
+     * Restores the reference to the loader after deserialization. If the grid file is not
+     * available, the subgrids are ignored and all points are transformed by this grid.
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        try {
+            setLoader(NTv2Loader.loadIfAbsent(gridFile, false));
+        } catch (FactoryException e) {
+            // The grid serialized with this transform is still usable.
+        }
     }
 
     /**
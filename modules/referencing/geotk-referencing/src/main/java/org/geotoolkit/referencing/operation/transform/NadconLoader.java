@@ -76,15 +76,15 @@ abstract class NadconLoader extends GridLoader {
     private float dx, dy;
 
     /**
-     * The longitude and latitude shifts.
+     * The longitude and latitude shifts, or {@code null} if the grid files are mapped in memory.
      */
     float[] longitudeShift, latitudeShift;
 
     /**
      * The buffer, created from the {@link #longitudeShift} and {@link #latitudeShift}
-     * when first needed.
+     * when first needed, or at loading time if the grid files are mapped in memory.
      */
-    private transient DataBuffer buffer;
+    transient DataBuffer buffer;
 
     /**
      * Creates a new loader.
@@ -222,6 +222,13 @@ abstract class NadconLoader extends GridLoader {
         dx     = (Float)   header[4];
         ymin   = (Float)   header[5];
         dy     = (Float)   header[6];
+    }
+
+    /**
+     * Allocates the arrays where to store the longitude and latitude shifts.
+     * This is invoked by subclasses only, when the grids are loaded in the Java heap.
+     */
+    final void allocate() {
         final int size = width * height;
         latitudeShift  = new float[size];
         longitudeShift = new float[size];
@@ -244,6 +251,18 @@ abstract class NadconLoader extends GridLoader {
         return buffer;
     }
 
+    /**
+     * Returns an estimation of the heap memory used by this loader, in bytes.
+     */
+    @Override
+    int cost() {
+        int cost = super.cost();
+        if (latitudeShift != null) {
+            cost += 2 * width * height * (Float.SIZE / Byte.SIZE);
+        }
+        return cost;
+    }
+
     /**
      * Returns the grid dimension.
      */
@@ -324,6 +343,7 @@ abstract class NadconLoader extends GridLoader {
                 throw new ContentFormatException(Errors.format(Errors.Keys.GRID_LOCATIONS_UNEQUAL));
             }
             NADCON(header);
+            allocate();
             rx = false; read(latitudeReader,  latitudeShift);
             rx = true;  read(longitudeReader, longitudeShift);
         }
@@ -373,6 +393,10 @@ abstract class NadconLoader extends GridLoader {
      * (with the grid shift values) are all floats and have a 4 byte separator (0's) before the
      * data. Row records are organized from low <var>y</var> (latitude) to high and columns are
      * orderd from low longitude to high. Everything is written in low byte order.
+     * <p>
+     * If both files are on the local file system, they are mapped in memory instead than
+     * loaded in the Java heap. The operating system loads only the pages containing the
+     * cells queried by the transforms.
      */
     private static final class Binary extends NadconLoader {
         /**
@@ -402,6 +426,29 @@ abstract class NadconLoader extends GridLoader {
             }
         }
 
+        /**
+         * Maps the given grid file in memory, after verifying its length.
+         *
+         * @param  file         The file to map.
+         * @param  dataStart    The position of the first data record, in bytes.
+         * @param  recordLength The length of a data record, in bytes.
+         * @return The whole file content as floats.
+         * @throws IOException if the file can not be mapped or does not have the expected length.
+         */
+        private FloatBuffer map(final File file, final int dataStart, final int recordLength)
+                throws IOException
+        {
+            final long size = dataStart + height * (long) recordLength;
+            final long length = file.length();
+            if (length < size) {
+                throw new EOFException(Errors.format(Errors.Keys.FILE_HAS_TOO_FEW_DATA));
+            }
+            if (length > size) {
+                throw new IOException(Errors.format(Errors.Keys.FILE_HAS_TOO_MANY_DATA));
+            }
+            return GridLoader.map(file, 0, size, ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+
         /**
          * Reads the header of a binary file.
          *
@@ -431,6 +478,8 @@ abstract class NadconLoader extends GridLoader {
          */
         @Override
         void load() throws IOException {
+            final File latitudeFile  = toLocalFile(latitudeGridFile);
+            final File longitudeFile = toLocalFile(longitudeGridFile);
             final ReadableByteChannel latitudeChannel, longitudeChannel;
             rx = true; longitudeChannel = newChannel(open(longitudeGridFile));
             rx = false; latitudeChannel = newChannel(open(latitudeGridFile));
@@ -443,12 +492,28 @@ abstract class NadconLoader extends GridLoader {
                 throw new ContentFormatException(Errors.format(Errors.Keys.GRID_LOCATIONS_UNEQUAL));
             }
             NADCON(header);
+            final int recordLength = (width + 1) * (Float.SIZE / Byte.SIZE);
+            if (latitudeFile != null && longitudeFile != null) {
+                /*
+                 * Map the files in memory. Values are located after the header record,
+                 * each row starting with a separator.
+                 */
+                latitudeChannel.close();
+                longitudeChannel.close();
+                final int dataStart = Math.max(recordLength, HEADER_LENGTH);
+                rx = false; final FloatBuffer latitudes  = map(latitudeFile,  dataStart, recordLength);
+                rx = true;  final FloatBuffer longitudes = map(longitudeFile, dataStart, recordLength);
+                final int offset = dataStart / (Float.SIZE / Byte.SIZE) + 1;
+                this.buffer = new MappedGridBuffer(new FloatBuffer[] {longitudes, latitudes},
+                             new int[] {offset, offset}, width, height, 1, width + 1);
+                return;
+            }
+            allocate();
             /*
              * At this point, the headers are read in both files and consistent. Now prepare a
              * buffer for reading the records. This reader if long enough for at least one row,
              * and may be long enough for many rows up to a maximum of 4 kb of memory used.
              */
-            final int recordLength = (width + 1) * (Float.SIZE / Byte.SIZE);
             final int rowsPerBulk  = Math.max(1, Math.min(height, 4096/recordLength));
             buffer = ByteBuffer.allocateDirect(rowsPerBulk * recordLength);
             buffer.order(ByteOrder.LITTLE_ENDIAN);
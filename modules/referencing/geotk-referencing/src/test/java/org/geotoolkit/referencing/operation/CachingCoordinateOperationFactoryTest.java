@@ -0,0 +1,155 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.referencing.operation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.CoordinateOperation;
+import org.opengis.referencing.operation.CoordinateOperationFactory;
+import org.opengis.referencing.operation.MathTransform;
+
+import org.geotoolkit.factory.FactoryFinder;
+import org.geotoolkit.referencing.CRS;
+import org.geotoolkit.referencing.factory.CacheStatistics;
+import org.apache.sis.referencing.CommonCRS;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link CachingCoordinateOperationFactory} class.
+ *
+ * @version 4.0
+ *
+ * @since 4.0
+ */
+public final strictfp class CachingCoordinateOperationFactoryTest {
+    /**
+     * Number of threads requesting operations concurrently.
+     */
+    private static final int NUM_THREADS = 64;
+
+    /**
+     * Tests that the same operation is returned for the same CRS, and that the
+     * statistics count the lock-free hits.
+     *
+     * @throws Exception Should never happen.
+     */
+    @Test
+    public void testCache() throws Exception {
+        final CachingCoordinateOperationFactory factory = new CachingCoordinateOperationFactory();
+        final CoordinateReferenceSystem source = CommonCRS.WGS84.geographic();
+        final CoordinateReferenceSystem target = CommonCRS.WGS84.geocentric();
+        final CoordinateOperation op = factory.createOperation(source, target);
+        assertSame(op, factory.createOperation(source, target));
+        assertSame(op, factory.createOperation(source, target));
+        final CacheStatistics stats = factory.getCacheStatistics();
+        assertEquals(1, stats.getMissCount());
+        assertEquals(2, stats.getFastHitCount());
+        assertEquals(0, stats.getHitCount());
+    }
+
+    /**
+     * Tests that concurrent requests for the same operation create the operation only once.
+     *
+     * @throws Exception Should never happen.
+     */
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        final CachingCoordinateOperationFactory factory = new CachingCoordinateOperationFactory();
+        final CoordinateReferenceSystem source = CommonCRS.WGS84.geographic();
+        final CoordinateReferenceSystem target = CommonCRS.WGS84.geocentric();
+        final List<Callable<CoordinateOperation>> tasks = new ArrayList<>(NUM_THREADS);
+        for (int i=0; i<NUM_THREADS; i++) {
+            tasks.add(new Callable<CoordinateOperation>() {
+                @Override public CoordinateOperation call() throws Exception {
+                    return factory.createOperation(source, target);
+                }
+            });
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            CoordinateOperation first = null;
+            for (final Future<CoordinateOperation> result : executor.invokeAll(tasks)) {
+                if (first == null) {
+                    first = result.get();
+                }
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final CacheStatistics stats = factory.getCacheStatistics();
+        assertEquals(1, stats.getMissCount());
+        assertEquals(NUM_THREADS, stats.getFastHitCount() + stats.getHitCount()
+                + stats.getContentionCount() + stats.getMissCount());
+    }
+
+    /**
+     * Measures the throughput of {@link CRS#findMathTransform} called by {@value #NUM_THREADS}
+     * threads concurrently, and prints the cache statistics. Ignored by default since it is a
+     * benchmark and requires the EPSG database.
+     *
+     * @throws Exception Should never happen.
+     */
+    @Test
+    @Ignore
+    public void benchmark() throws Exception {
+        final CoordinateReferenceSystem source = CRS.decode("EPSG:4326");
+        final CoordinateReferenceSystem target = CRS.decode("EPSG:3857");
+        final int iterations = 100000;
+        final List<Callable<MathTransform>> tasks = new ArrayList<>(NUM_THREADS);
+        for (int i=0; i<NUM_THREADS; i++) {
+            tasks.add(new Callable<MathTransform>() {
+                @Override public MathTransform call() throws Exception {
+                    MathTransform tr = null;
+                    for (int j=0; j<iterations; j++) {
+                        tr = CRS.findMathTransform(source, target, true);
+                    }
+                    return tr;
+                }
+            });
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            for (int k=0; k<5; k++) {
+                final long start = System.nanoTime();
+                for (final Future<MathTransform> result : executor.invokeAll(tasks)) {
+                    result.get();
+                }
+                final long time = System.nanoTime() - start;
+                System.out.println(NUM_THREADS * iterations / (time / 1E9) + " calls/s");
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final CoordinateOperationFactory factory = FactoryFinder.getCoordinateOperationFactory(null);
+        if (factory instanceof CachingCoordinateOperationFactory) {
+            final CacheStatistics stats = ((CachingCoordinateOperationFactory) factory).getCacheStatistics();
+            System.out.println(stats);
+            System.out.println("Wait time: " + stats.getWaitTime(TimeUnit.MILLISECONDS) + " ms");
+        }
+    }
+}
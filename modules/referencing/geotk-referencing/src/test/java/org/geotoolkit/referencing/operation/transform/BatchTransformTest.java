@@ -0,0 +1,240 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.referencing.operation.transform;
+
+import java.util.Random;
+
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.Matrix;
+import org.opengis.referencing.operation.TransformException;
+import org.apache.sis.internal.referencing.j2d.AffineTransform2D;
+import org.apache.sis.referencing.operation.matrix.Matrix2;
+import org.apache.sis.referencing.operation.transform.AbstractMathTransform2D;
+import org.apache.sis.referencing.operation.transform.MathTransforms;
+import org.geotoolkit.referencing.CRS;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@link BatchTransform} class.
+ *
+ * @version 4.0
+ *
+ * @since 4.0
+ */
+public final strictfp class BatchTransformTest {
+    /**
+     * Number of points to transform, spanning several blocks.
+     */
+    private static final int NUM_PTS = BatchTransform.BLOCK_SIZE * 3 + 17;
+
+    /**
+     * Creates a chain of (affine &ndash; kernel &ndash; affine &ndash; kernel &ndash; affine)
+     * transforms, similar to a projection followed by a second projection.
+     */
+    private static MathTransform createChain() {
+        MathTransform tr = MathTransforms.concatenate(
+                new AffineTransform2D(0.01, 0, 0, 0.02, -0.5, 0.3), new CurveTransform());
+        tr = MathTransforms.concatenate(tr, new AffineTransform2D(0, 2, 3, 0, 10, -4));
+        tr = MathTransforms.concatenate(tr, new CurveTransform());
+        return MathTransforms.concatenate(tr, new AffineTransform2D(100, 0, 0, 100, 500000, 0));
+    }
+
+    /**
+     * Creates random interleaved coordinates.
+     */
+    private static double[] createPoints(final int numPts) {
+        final Random random = new Random(31);
+        final double[] points = new double[numPts * 2];
+        for (int i=0; i<points.length; i++) {
+            points[i] = random.nextDouble() * 100 - 50;
+        }
+        return points;
+    }
+
+    /**
+     * Tests the decomposition of the transform in steps.
+     */
+    @Test
+    public void testDecomposition() {
+        final BatchTransform batch = BatchTransform.create(createChain());
+        assertTrue(batch.isDecomposed());
+        assertEquals(2, batch.getKernelCount());
+
+        final BatchTransform affine = BatchTransform.create(new AffineTransform2D(1, 0, 0, 1, 3, 4));
+        assertTrue(affine.isDecomposed());
+        assertEquals(0, affine.getKernelCount());
+
+        final BatchTransform other = BatchTransform.create(MathTransforms.identity(3));
+        assertFalse(other.isDecomposed());
+    }
+
+    /**
+     * Compares the result of interleaved transforms with the transform bulk method.
+     *
+     * @throws TransformException Should never happen.
+     */
+    @Test
+    public void testInterleaved() throws TransformException {
+        final MathTransform transform = createChain();
+        final BatchTransform batch = BatchTransform.create(transform);
+        final double[] source = createPoints(NUM_PTS);
+        final double[] expected = new double[source.length];
+        transform.transform(source, 0, expected, 0, NUM_PTS);
+
+        final double[] result = new double[source.length];
+        batch.transform(source, 0, result, 0, NUM_PTS);
+        assertArrayEquals(expected, result, 1E-8);
+
+        //in place, overlapping with a shift in both directions
+        for (final int shift : new int[] {0, 6, -6}) {
+            final double[] buffer = new double[source.length + 12];
+            System.arraycopy(source, 0, buffer, 6, source.length);
+            batch.transform(buffer, 6, buffer, 6 + shift, NUM_PTS);
+            for (int i=0; i<expected.length; i++) {
+                assertEquals(expected[i], buffer[i + 6 + shift], 1E-8);
+            }
+        }
+    }
+
+    /**
+     * Compares the result of separated <var>x</var> and <var>y</var> arrays with the transform bulk method.
+     *
+     * @throws TransformException Should never happen.
+     */
+    @Test
+    public void testSeparatedArrays() throws TransformException {
+        final MathTransform transform = createChain();
+        final BatchTransform batch = BatchTransform.create(transform);
+        final double[] source = createPoints(NUM_PTS);
+        final double[] expected = new double[source.length];
+        transform.transform(source, 0, expected, 0, NUM_PTS);
+
+        final double[] x = new double[NUM_PTS + 1];
+        final double[] y = new double[NUM_PTS + 1];
+        for (int i=0; i<NUM_PTS; i++) {
+            x[i + 1] = source[i*2];
+            y[i + 1] = source[i*2 + 1];
+        }
+        final double[] rx = new double[NUM_PTS];
+        final double[] ry = new double[NUM_PTS];
+        batch.transform(x, y, 1, rx, ry, 0, NUM_PTS);
+        //in place
+        batch.transform(x, y, 1, x, y, 1, NUM_PTS);
+        for (int i=0; i<NUM_PTS; i++) {
+            assertEquals(expected[i*2],     rx[i],    1E-8);
+            assertEquals(expected[i*2 + 1], ry[i],    1E-8);
+            assertEquals(expected[i*2],     x[i + 1], 1E-8);
+            assertEquals(expected[i*2 + 1], y[i + 1], 1E-8);
+        }
+    }
+
+    /**
+     * Tests separated arrays where only the <var>x</var> source and destination overlap.
+     *
+     * @throws TransformException Should never happen.
+     */
+    @Test
+    public void testSeparatedArraysPartialOverlap() throws TransformException {
+        final MathTransform transform = createChain();
+        final BatchTransform batch = BatchTransform.create(transform);
+        final double[] source = createPoints(NUM_PTS);
+        final double[] expected = new double[source.length];
+        transform.transform(source, 0, expected, 0, NUM_PTS);
+
+        final double[] x  = new double[NUM_PTS + 1];
+        final double[] y  = new double[NUM_PTS];
+        final double[] ry = new double[NUM_PTS + 1];
+        for (int i=0; i<NUM_PTS; i++) {
+            x[i] = source[i*2];
+            y[i] = source[i*2 + 1];
+        }
+        batch.transform(x, y, 0, x, ry, 1, NUM_PTS);
+        for (int i=0; i<NUM_PTS; i++) {
+            assertEquals(expected[i*2],     x [i + 1], 1E-8);
+            assertEquals(expected[i*2 + 1], ry[i + 1], 1E-8);
+        }
+    }
+
+    /**
+     * Compares the performance of the batch transform with the transform bulk method
+     * on a real map projection. Ignored by default since it is a benchmark.
+     *
+     * @throws Exception Should never happen.
+     */
+    @Test
+    @Ignore
+    public void benchmark() throws Exception {
+        final MathTransform transform = CRS.findMathTransform(
+                CRS.decode("EPSG:4326"), CRS.decode("EPSG:32631"), true);
+        final BatchTransform batch = BatchTransform.create(transform);
+        final int numPts = 1000000;
+        final double[] source = new double[numPts * 2];
+        final Random random = new Random(31);
+        for (int i=0; i<source.length; i += 2) {
+            source[i]   = random.nextDouble() * 60 + 10;
+            source[i+1] = random.nextDouble() * 6;
+        }
+        final double[] target = new double[source.length];
+        final double[] x = new double[numPts];
+        final double[] y = new double[numPts];
+
+        for (int k=0; k<10; k++) {
+            long start = System.nanoTime();
+            transform.transform(source, 0, target, 0, numPts);
+            final long standard = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            batch.transform(source, 0, target, 0, numPts);
+            final long interleaved = System.nanoTime() - start;
+
+            for (int i=0; i<numPts; i++) {
+                x[i] = source[i*2];
+                y[i] = source[i*2 + 1];
+            }
+            start = System.nanoTime();
+            batch.transform(x, y, 0, x, y, 0, numPts);
+            final long separated = System.nanoTime() - start;
+
+            System.out.println("standard : " + standard/1000000 + "ms, batch : " + interleaved/1000000
+                    + "ms, batch separated arrays : " + separated/1000000 + "ms");
+        }
+    }
+
+    /**
+     * A non linear transform.
+     */
+    private static final class CurveTransform extends AbstractMathTransform2D {
+        @Override
+        public Matrix transform(final double[] srcPts, final int srcOff,
+                final double[] dstPts, final int dstOff, final boolean derivate)
+        {
+            final double x = srcPts[srcOff];
+            final double y = srcPts[srcOff + 1];
+            if (dstPts != null) {
+                dstPts[dstOff]     = x + 0.1 * Math.sin(y);
+                dstPts[dstOff + 1] = y + 0.05 * x * x;
+            }
+            if (!derivate) {
+                return null;
+            }
+            return new Matrix2(1, 0.1 * Math.cos(y), 0.1 * x, 1);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.referencing.operation.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.util.FactoryException;
+import org.geotoolkit.referencing.operation.provider.NTv2;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests {@link NTv2Transform} with a memory-mapped file containing a parent grid and a subgrid.
+ *
+ * @version 4.0
+ *
+ * @since 4.0
+ */
+public final strictfp class NTv2SubgridTest {
+    /**
+     * The synthetic grid file.
+     */
+    private static File file;
+
+    /**
+     * Creates a grid file with a 2&deg;&times;2&deg; parent grid and a 1&deg;&times;1&deg;
+     * child grid in its south-east corner. The parent shifts are (2",1") and the child shifts
+     * are (20",10").
+     *
+     * @throws IOException Should never happen.
+     */
+    @BeforeClass
+    public static void createFile() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+        record(buffer, "NUM_OREC", 11);
+        record(buffer, "NUM_SREC", 11);
+        record(buffer, "NUM_FILE", 2);
+        record(buffer, "GS_TYPE",  "SECONDS");
+        record(buffer, "VERSION",  "NTv2.0");
+        record(buffer, "SYSTEM_F", "TEST");
+        record(buffer, "SYSTEM_T", "TEST");
+        record(buffer, "MAJOR_F",  6378137.0);
+        record(buffer, "MINOR_F",  6356752.3);
+        record(buffer, "MAJOR_T",  6378137.0);
+        record(buffer, "MINOR_T",  6356752.3);
+        subgrid(buffer, "PARENT", "NONE",   7200, 3600, 2, 1);
+        subgrid(buffer, "CHILD",  "PARENT", 3600, 1800, 20, 10);
+        record(buffer, "END", 0);
+        file = File.createTempFile("ntv2", ".gsb");
+        file.deleteOnExit();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.write(buffer.array(), 0, buffer.position());
+        }
+    }
+
+    /**
+     * Deletes the grid file.
+     */
+    @AfterClass
+    public static void deleteFile() {
+        file.delete();
+    }
+
+    /**
+     * Writes a subgrid header and its records. The grid covers the [0 &hellip; size] seconds
+     * range in latitude and in longitude (positive west), with constant shifts.
+     */
+    private static void subgrid(final ByteBuffer buffer, final String name, final String parent,
+            final double size, final double increment, final float lonShift, final float latShift)
+    {
+        record(buffer, "SUB_NAME", name);
+        record(buffer, "PARENT",   parent);
+        record(buffer, "CREATED",  "");
+        record(buffer, "UPDATED",  "");
+        record(buffer, "S_LAT",    0.0);
+        record(buffer, "N_LAT",    size);
+        record(buffer, "E_LONG",   0.0);
+        record(buffer, "W_LONG",   size);
+        record(buffer, "LAT_INC",  increment);
+        record(buffer, "LONG_INC", increment);
+        final int n = (int) (size / increment) + 1;
+        record(buffer, "GS_COUNT", n*n);
+        for (int i=0; i<n*n; i++) {
+            buffer.putFloat(latShift).putFloat(lonShift).putFloat(0).putFloat(0);
+        }
+    }
+
+    /**
+     * Writes a header record with the given key and value.
+     */
+    private static void record(final ByteBuffer buffer, final String key, final Object value) {
+        final Charset charset = Charset.forName("US-ASCII");
+        buffer.put(String.format("%-8s", key).getBytes(charset));
+        if (value instanceof Integer) {
+            buffer.putInt((Integer) value).putInt(0);
+        } else if (value instanceof Double) {
+            buffer.putDouble((Double) value);
+        } else {
+            buffer.put(String.format("%-8s", value).getBytes(charset));
+        }
+    }
+
+    /**
+     * Tests that points are transformed by the most detailed subgrid.
+     *
+     * @throws FactoryException Should never happen.
+     */
+    @Test
+    public void testSubgrids() throws FactoryException {
+        final NTv2Transform transform = new NTv2Transform(file.getPath());
+        assertTrue(transform.grid instanceof MappedGridBuffer);
+        final double[] points = {
+            -0.25, 0.25,    // In the child grid.
+            -1.50, 1.50     // In the parent grid only.
+        };
+        final double[] expected = {
+            -0.25 - 20.0/3600, 0.25 + 10.0/3600,
+            -1.50 -  2.0/3600, 1.50 +  1.0/3600
+        };
+        final double[] result = new double[4];
+        transform.transform(points, 0, result, 0, false);
+        transform.transform(points, 2, result, 2, false);
+        assertArrayEquals(expected, result, 1E-12);
+
+        transform.transform(points, 0, points, 0, 2);
+        assertArrayEquals(expected, points, 1E-12);
+        assertSame(transform.grid, new NTv2Transform(file.getPath()).grid);
+    }
+
+    /**
+     * Tests the parameters, which shall allow to create the same transform again,
+     * and the WKT formatting.
+     *
+     * @throws FactoryException Should never happen.
+     */
+    @Test
+    public void testParameters() throws FactoryException {
+        final NTv2Transform transform = new NTv2Transform(file.getPath());
+        assertSame(NTv2.PARAMETERS, transform.getParameterDescriptors());
+        final ParameterValueGroup values = transform.getParameterValues();
+        assertSame(NTv2.PARAMETERS, values.getDescriptor());
+        final String path = values.parameter("Latitude and longitude difference file").stringValue();
+        assertEquals(file.getPath(), path);
+        assertEquals(transform, new NTv2Transform(path));
+
+        final String wkt = transform.toWKT();
+        assertTrue(wkt, wkt.contains("NTv2"));
+        assertTrue(wkt, wkt.contains("Latitude and longitude difference file"));
+    }
+
+    /**
+     * Tests serialization, which needs to copy the mapped values in the Java heap.
+     *
+     * @throws Exception Should never happen.
+     */
+    @Test
+    public void testSerialization() throws Exception {
+        final NTv2Transform transform = new NTv2Transform(file.getPath());
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(transform);
+        }
+        final Object copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+            copy = in.readObject();
+        }
+        assertEquals(transform, copy);
+        final double[] point = {-0.25, 0.25};
+        ((NTv2Transform) copy).transform(point, 0, point, 0, false);
+        assertEquals(-0.25 - 20.0/3600, point[0], 1E-12);
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.plugin;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import javax.imageio.IIOException;
+
+import static org.geotoolkit.metadata.geotiff.GeoTiffConstants.*;
+
+
+/**
+ * Copies a TIFF file with the layout of a <cite>Cloud Optimized GeoTIFF</cite>. In the copy, all
+ * <cite>Image File Directories</cite> (IFD) and their tag values are written at the beginning of
+ * the file, in the same order than in the source file (full resolution image first, then the
+ * overviews from the largest to the smallest). The strips or tiles follow, starting with the
+ * smallest overview and ending with the full resolution image.
+ * <p>
+ * With this layout, a client reading the file through HTTP range requests gets the description
+ * of all images with a single read of the file head, then fetches any tile of any overview with
+ * a single ranged read. Reading a zoomed-out view needs only the small data at the head of the file.
+ *
+ * @module pending
+ */
+final class CloudOptimizedLayout {
+    /**
+     * Size in bytes of each TIFF type, indexed by the type code.
+     */
+    private static final int[] TYPE_SIZES = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8, 4, 0, 0, 8, 8, 8};
+
+    /**
+     * A directory entry, with its value in the byte order of the file.
+     */
+    private static final class Entry {
+        /** The tag and type codes. */
+        int tag, type;
+        /** Number of values. */
+        long count;
+        /** The values, in the byte order of the file. */
+        byte[] value;
+        /** Position of the value in the target file, or 0 if the value is stored in the entry. */
+        long position;
+    }
+
+    /**
+     * An image file directory, with the location of its strips or tiles.
+     */
+    private static final class Directory {
+        /** The entries, in increasing tag order. */
+        Entry[] entries;
+        /** The entries for the position and the length of strips or tiles. */
+        Entry offsets, byteCounts;
+        /** The position of this directory in the target file. */
+        long position;
+    }
+
+    /**
+     * Do not allow instantiation of this class.
+     */
+    private CloudOptimizedLayout() {
+    }
+
+    /**
+     * Copies the given TIFF file in the given target with the cloud optimized layout.
+     *
+     * @param  source The TIFF file to copy.
+     * @param  target Where to write the reorganized file.
+     * @throws IOException If an error occurred while reading or writing, or if the source file
+     *         contains tags referencing other positions in the file than strips or tiles.
+     */
+    static void copy(final FileChannel source, final WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = read(source, 0, 16);
+        final ByteOrder order = (buffer.get(0) == 'I') ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        buffer.order(order);
+        final boolean isBigTIFF  = (buffer.getShort(2) == 43);
+        final int     headerSize = isBigTIFF ? 16 : 8;
+        final int     countSize  = isBigTIFF ?  8 : 2;
+        final int     entrySize  = isBigTIFF ? 20 : 12;
+        final int     offsetSize = isBigTIFF ?  8 : 4;
+        /*
+         * Reads all directories of the source file.
+         */
+        final List<Directory> directories = new ArrayList<>();
+        long ifd = isBigTIFF ? buffer.getLong(8) : (buffer.getInt(4) & 0xFFFFFFFFL);
+        while (ifd != 0) {
+            buffer = read(source, ifd, countSize).order(order);
+            final int count = (int) (isBigTIFF ? buffer.getLong(0) : (buffer.getShort(0) & 0xFFFF));
+            buffer = read(source, ifd + countSize, count * entrySize + offsetSize).order(order);
+            final Directory dir = new Directory();
+            dir.entries = new Entry[count];
+            for (int i = 0; i < count; i++) {
+                final int p = i * entrySize;
+                final Entry entry = new Entry();
+                entry.tag   = buffer.getShort(p) & 0xFFFF;
+                entry.type  = buffer.getShort(p + 2) & 0xFFFF;
+                entry.count = isBigTIFF ? buffer.getLong(p + 4) : (buffer.getInt(p + 4) & 0xFFFFFFFFL);
+                final long size = entry.count * typeSize(entry.type);
+                final int valuePosition = p + (isBigTIFF ? 12 : 8);
+                if (size <= offsetSize) {
+                    entry.value = new byte[(int) size];
+                    buffer.position(valuePosition);
+                    buffer.get(entry.value);
+                } else {
+                    final long position = isBigTIFF ? buffer.getLong(valuePosition) : (buffer.getInt(valuePosition) & 0xFFFFFFFFL);
+                    entry.value = read(source, position, (int) size).array();
+                }
+                switch (entry.tag) {
+                    case TileOffsets:
+                    case StripOffsets:    dir.offsets    = entry; break;
+                    case TileByteCounts:
+                    case StripByteCounts: dir.byteCounts = entry; break;
+                    case 330:   // SubIFDs
+                    case 34665: // Exif IFD
+                    case 34853: // GPS IFD
+                    case 40965: throw new IIOException("Unsupported TIFF tag : " + entry.tag);
+                }
+                dir.entries[i] = entry;
+            }
+            if (dir.offsets == null || dir.byteCounts == null || dir.offsets.count != dir.byteCounts.count) {
+                throw new IIOException("Missing strip or tile offsets.");
+            }
+            directories.add(dir);
+            final int next = count * entrySize;
+            ifd = isBigTIFF ? buffer.getLong(next) : (buffer.getInt(next) & 0xFFFFFFFFL);
+        }
+        /*
+         * Computes the position of all directories and their values, then the position of the strips
+         * or tiles, from the smallest overview to the full resolution image.
+         */
+        long position = headerSize;
+        for (final Directory dir : directories) {
+            dir.position = position;
+            position += countSize + dir.entries.length * entrySize + offsetSize;
+            for (final Entry entry : dir.entries) {
+                if (entry.value.length > offsetSize) {
+                    entry.position = position;
+                    position += entry.value.length;
+                    position += (position & 1);
+                }
+            }
+        }
+        final int headSize = (int) position;
+        final long[][] sourceOffsets = new long[directories.size()][];
+        final long[][] byteCounts    = new long[directories.size()][];
+        for (int d = directories.size(); --d >= 0;) {
+            final Directory dir = directories.get(d);
+            final long[] offsets = getValues(dir.offsets, order);
+            final long[] counts  = getValues(dir.byteCounts, order);
+            sourceOffsets[d] = offsets.clone();
+            byteCounts[d]    = counts;
+            for (int i = 0; i < offsets.length; i++) {
+                if (counts[i] != 0) {
+                    offsets[i] = position;
+                    position  += counts[i];
+                }
+            }
+            if (!isBigTIFF && position > 0xFFFFFFFFL) {
+                throw new IIOException("File too large for standard TIFF.");
+            }
+            setValues(dir.offsets, offsets, order);
+        }
+        /*
+         * Writes the head of the file, then copies the strips or tiles.
+         */
+        buffer = ByteBuffer.allocate(headSize).order(order);
+        final byte mark = (order == ByteOrder.LITTLE_ENDIAN) ? (byte) 'I' : (byte) 'M';
+        buffer.put(mark).put(mark);
+        if (isBigTIFF) {
+            buffer.putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(headerSize);
+        } else {
+            buffer.putShort((short) 42).putInt(headerSize);
+        }
+        for (int d = 0; d < directories.size(); d++) {
+            final Directory dir = directories.get(d);
+            buffer.position((int) dir.position);
+            if (isBigTIFF) buffer.putLong(dir.entries.length);
+            else buffer.putShort((short) dir.entries.length);
+            for (final Entry entry : dir.entries) {
+                buffer.putShort((short) entry.tag).putShort((short) entry.type);
+                if (isBigTIFF) {
+                    buffer.putLong(entry.count);
+                } else {
+                    buffer.putInt((int) entry.count);
+                }
+                if (entry.position != 0) {
+                    if (isBigTIFF) buffer.putLong(entry.position);
+                    else buffer.putInt((int) entry.position);
+                    final int p = buffer.position();
+                    buffer.position((int) entry.position);
+                    buffer.put(entry.value);
+                    buffer.position(p);
+                } else {
+                    final int p = buffer.position();
+                    buffer.put(entry.value);
+                    buffer.position(p + offsetSize);
+                }
+            }
+            final long next = (d + 1 < directories.size()) ? directories.get(d + 1).position : 0;
+            if (isBigTIFF) buffer.putLong(next);
+            else buffer.putInt((int) next);
+        }
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        for (int d = directories.size(); --d >= 0;) {
+            final long[] offsets = sourceOffsets[d];
+            final long[] counts  = byteCounts[d];
+            for (int i = 0; i < offsets.length; i++) {
+                long done = 0;
+                while (done < counts[i]) {
+                    final long n = source.transferTo(offsets[i] + done, counts[i] - done, target);
+                    if (n <= 0) {
+                        throw new EOFException();
+                    }
+                    done += n;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the size of the given TIFF type, in bytes.
+     */
+    private static int typeSize(final int type) throws IIOException {
+        if (type < TYPE_SIZES.length && TYPE_SIZES[type] != 0) {
+            return TYPE_SIZES[type];
+        }
+        throw new IIOException("Unknown TIFF type : " + type);
+    }
+
+    /**
+     * Reads the given number of bytes at the given position.
+     */
+    private static ByteBuffer read(final FileChannel source, long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            final int n = source.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            position += n;
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the values of an entry of unsigned integers.
+     */
+    private static long[] getValues(final Entry entry, final ByteOrder order) throws IIOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(entry.value).order(order);
+        final long[] values = new long[(int) entry.count];
+        final int size = typeSize(entry.type);
+        for (int i = 0; i < values.length; i++) {
+            switch (size) {
+                case 2:  values[i] = buffer.getShort(i * 2) & 0xFFFF; break;
+                case 4:  values[i] = buffer.getInt(i * 4) & 0xFFFFFFFFL; break;
+                case 8:  values[i] = buffer.getLong(i * 8); break;
+                default: throw new IIOException("Unexpected TIFF type : " + entry.type);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Sets the values of an entry of unsigned integers, keeping its type.
+     */
+    private static void setValues(final Entry entry, final long[] values, final ByteOrder order) throws IIOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(entry.value).order(order);
+        final int size = typeSize(entry.type);
+        for (int i = 0; i < values.length; i++) {
+            switch (size) {
+                case 2: {
+                    if (values[i] > 0xFFFF) {
+                        throw new IIOException("Offset too large for TIFF type : " + entry.type);
+                    }
+                    buffer.putShort(i * 2, (short) values[i]);
+                    break;
+                }
+                case 4:  buffer.putInt(i * 4, (int) values[i]); break;
+                default: buffer.putLong(i * 8, values[i]); break;
+            }
+        }
+    }
+}
@@ -0,0 +1,599 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.plugin;
+
+import java.awt.Rectangle;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageInputStream;
+
+
+/**
+ * Decodes the strips or tiles of a TIFF image independently of each other, and writes the
+ * samples directly in the {@link DataBuffer} of the destination raster. Since each strip or
+ * tile is a self-contained compressed block, the blocks can be decoded in parallel: each task
+ * fetches its compressed bytes with a positional read on a {@link FileChannel} shared by all
+ * tasks, decompresses them in a private buffer, then copies the samples in a region of the
+ * destination raster which is not written by any other task.
+ * <p>
+ * This class supports the uncompressed, LZW, Deflate and PackBits compressions, with or without
+ * horizontal differencing predictor, in chunky or planar configuration. Only the sample sizes
+ * of 8, 16, 32 and 64 bits stored in the natural fill order are supported; callers shall check
+ * {@link #isSupported isSupported(...)} before to create an instance.
+ *
+ * @module pending
+ */
+final class TiffBlockReader {
+    /**
+     * Pool used to decode strips or tiles in parallel.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /**
+     * Special codes of the LZW compression.
+     */
+    private static final int LZW_CLEAR_CODE = 256, LZW_EOI_CODE = 257, LZW_FIRST_CODE = 258;
+
+    /**
+     * Maximal length of LZW codes, in bits.
+     */
+    private static final int LZW_MAX_CODE_LENGTH = 12;
+
+    /**
+     * The compression, predictor and planar configuration of the image.
+     */
+    private final int compression, predictor, planarConfiguration;
+
+    /**
+     * The image size in pixels.
+     */
+    private final int imageWidth, imageHeight;
+
+    /**
+     * The size of a block in pixels. For strips, this is the image width and the number of rows per strip.
+     */
+    private final int blockWidth, blockHeight;
+
+    /**
+     * {@code true} for tiles, {@code false} for strips. The last strip may have less rows than
+     * the other strips, while tiles always have the same size.
+     */
+    private final boolean tiled;
+
+    /**
+     * Number of blocks along the <var>x</var> and <var>y</var> axis, in one plane.
+     */
+    private final int blocksAcross, blocksDown;
+
+    /**
+     * Position and length in bytes of each block in the file.
+     */
+    private final long[] offsets, byteCounts;
+
+    /**
+     * Number of samples per pixel, and size of a sample in bytes.
+     */
+    private final int samplesPerPixel, sampleSize;
+
+    /**
+     * Byte order of the file.
+     */
+    private final ByteOrder order;
+
+    /**
+     * Creates a new reader for the blocks of an image.
+     *
+     * @param compression         The TIFF compression code.
+     * @param predictor           The TIFF predictor code (1 or 2).
+     * @param planarConfiguration 1 for chunky format, 2 for planar format.
+     * @param imageWidth          The image width in pixels.
+     * @param imageHeight         The image height in pixels.
+     * @param tiled               {@code true} if the image is tiled, or {@code false} for strips.
+     * @param blockWidth          The tile width, or the image width in the strip case.
+     * @param blockHeight         The tile height, or the number of rows per strip.
+     * @param offsets             Position of each block in the file.
+     * @param byteCounts          Length of each block in bytes.
+     * @param samplesPerPixel     Number of samples per pixel.
+     * @param sampleSize          Size of a sample in bytes.
+     * @param order               Byte order of the file.
+     */
+    TiffBlockReader(final int compression, final int predictor, final int planarConfiguration,
+            final int imageWidth, final int imageHeight, final boolean tiled,
+            final int blockWidth, final int blockHeight, final long[] offsets, final long[] byteCounts,
+            final int samplesPerPixel, final int sampleSize, final ByteOrder order)
+    {
+        this.compression         = compression;
+        this.predictor           = predictor;
+        this.planarConfiguration = planarConfiguration;
+        this.imageWidth          = imageWidth;
+        this.imageHeight         = imageHeight;
+        this.tiled               = tiled;
+        this.blockWidth          = blockWidth;
+        this.blockHeight         = (tiled || (blockHeight > 0 && blockHeight < imageHeight)) ? blockHeight : imageHeight;
+        this.offsets             = offsets;
+        this.byteCounts          = byteCounts;
+        this.samplesPerPixel     = samplesPerPixel;
+        this.sampleSize          = sampleSize;
+        this.order               = order;
+        blocksAcross = (imageWidth  + blockWidth  - 1) / blockWidth;
+        blocksDown   = (imageHeight + this.blockHeight - 1) / this.blockHeight;
+    }
+
+    /**
+     * Returns {@code true} if this class can decode an image of the given properties in the given raster.
+     *
+     * @param  compression     The TIFF compression code.
+     * @param  predictor       The TIFF predictor code.
+     * @param  fillOrder       The TIFF fill order code.
+     * @param  bitsPerSample   The number of bits of each sample.
+     * @param  samplesPerPixel Number of samples per pixel.
+     * @param  raster          The destination raster.
+     * @return {@code true} if the image can be read by this class.
+     */
+    static boolean isSupported(final int compression, final int predictor, final int fillOrder,
+            final long[] bitsPerSample, final int samplesPerPixel, final WritableRaster raster)
+    {
+        switch (compression) {
+            case 1: case 5: case 8: case 32946: case 32773: break;
+            default: return false;
+        }
+        final SampleModel sm = raster.getSampleModel();
+        if (fillOrder != 1 || !(sm instanceof ComponentSampleModel) || sm.getNumBands() != samplesPerPixel) {
+            return false;
+        }
+        final int dataType = sm.getDataType();
+        for (final long bits : bitsPerSample) {
+            if (bits != DataBuffer.getDataTypeSize(dataType)) {
+                return false;
+            }
+        }
+        switch (predictor) {
+            case 1: return true;
+            case 2: return dataType != DataBuffer.TYPE_FLOAT && dataType != DataBuffer.TYPE_DOUBLE;
+            default: return false;
+        }
+    }
+
+    /**
+     * Reads all blocks intersecting the source region in parallel, using positional reads on the given file.
+     *
+     * @param  file         The TIFF file.
+     * @param  raster       The raster where to store the pixel values.
+     * @param  srcRegion    The region to read in source image.
+     * @param  dstRegion    The region to write in the given raster.
+     * @param  xSubsampling The subsampling along the <var>x</var> axis.
+     * @param  ySubsampling The subsampling along the <var>y</var> axis.
+     * @throws IOException If an error occurred while reading or decoding a block.
+     */
+    void readParallel(final File file, final WritableRaster raster, final Rectangle srcRegion,
+            final Rectangle dstRegion, final int xSubsampling, final int ySubsampling) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final List<Callable<Object>> tasks = new ArrayList<>();
+            for (final int block : getBlocks(srcRegion)) {
+                tasks.add(new Callable<Object>() {
+                    @Override public Object call() throws IOException {
+                        final byte[] data = new byte[(int) byteCounts[block]];
+                        final ByteBuffer buffer = ByteBuffer.wrap(data);
+                        long position = offsets[block];
+                        while (buffer.hasRemaining()) {
+                            final int n = channel.read(buffer, position);
+                            if (n < 0) {
+                                throw new EOFException();
+                            }
+                            position += n;
+                        }
+                        copy(block, data, raster, srcRegion, dstRegion, xSubsampling, ySubsampling);
+                        return null;
+                    }
+                });
+            }
+            for (final Future<Object> result : POOL.invokeAll(tasks)) {
+                try {
+                    result.get();
+                } catch (InterruptedException e) {
+                    throw new IIOException(e.getLocalizedMessage(), e);
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IIOException(cause.getLocalizedMessage(), cause);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads all blocks intersecting the source region sequentially from the given stream.
+     * This is used when the input is not a file.
+     *
+     * @param  stream       The stream of the TIFF file.
+     * @param  raster       The raster where to store the pixel values.
+     * @param  srcRegion    The region to read in source image.
+     * @param  dstRegion    The region to write in the given raster.
+     * @param  xSubsampling The subsampling along the <var>x</var> axis.
+     * @param  ySubsampling The subsampling along the <var>y</var> axis.
+     * @throws IOException If an error occurred while reading or decoding a block.
+     */
+    void read(final ImageInputStream stream, final WritableRaster raster, final Rectangle srcRegion,
+            final Rectangle dstRegion, final int xSubsampling, final int ySubsampling) throws IOException
+    {
+        for (final int block : getBlocks(srcRegion)) {
+            final byte[] data = new byte[(int) byteCounts[block]];
+            stream.seek(offsets[block]);
+            stream.readFully(data);
+            copy(block, data, raster, srcRegion, dstRegion, xSubsampling, ySubsampling);
+        }
+    }
+
+    /**
+     * Returns the indices of all blocks intersecting the given region, in all planes.
+     */
+    private int[] getBlocks(final Rectangle srcRegion) {
+        final int minX =  srcRegion.x / blockWidth;
+        final int minY =  srcRegion.y / blockHeight;
+        final int maxX = (srcRegion.x + srcRegion.width  - 1) / blockWidth;
+        final int maxY = (srcRegion.y + srcRegion.height - 1) / blockHeight;
+        final int numPlanes = (planarConfiguration == 2) ? samplesPerPixel : 1;
+        int[] blocks = new int[(maxX - minX + 1) * (maxY - minY + 1) * numPlanes];
+        int n = 0;
+        for (int plane = 0; plane < numPlanes; plane++) {
+            for (int ty = minY; ty <= maxY; ty++) {
+                for (int tx = minX; tx <= maxX; tx++) {
+                    blocks[n++] = (plane * blocksDown + ty) * blocksAcross + tx;
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Decodes the given block and copies its samples in the destination raster.
+     * The samples written by this method are not written by any other block.
+     */
+    private void copy(final int block, final byte[] data, final WritableRaster raster, final Rectangle srcRegion,
+            final Rectangle dstRegion, final int xSubsampling, final int ySubsampling) throws IOException
+    {
+        final int blocksPerPlane = blocksAcross * blocksDown;
+        final int plane    = block / blocksPerPlane;
+        final int tx       = (block % blocksPerPlane) % blocksAcross;
+        final int ty       = (block % blocksPerPlane) / blocksAcross;
+        final int x0       = tx * blockWidth;
+        final int y0       = ty * blockHeight;
+        final int numRows  = tiled ? blockHeight : Math.min(blockHeight, imageHeight - y0);
+        final int pixelLength = (planarConfiguration == 2) ? 1 : samplesPerPixel;
+        final int firstBand   = (planarConfiguration == 2) ? plane : 0;
+        final int rowLength   = blockWidth * pixelLength;
+        final byte[] raw = decode(data, rowLength * numRows * sampleSize);
+        final ByteBuffer buffer = ByteBuffer.wrap(raw).order(order);
+        if (predictor == 2) {
+            undoDifferencing(raw, buffer, numRows, rowLength, pixelLength);
+        }
+        /*
+         * Computes the source pixels of this block which are read, taking subsampling in account.
+         */
+        int syStart = Math.max(y0, srcRegion.y);
+        int sxStart = Math.max(x0, srcRegion.x);
+        int r = (syStart - srcRegion.y) % ySubsampling;
+        if (r != 0) syStart += ySubsampling - r;
+        r = (sxStart - srcRegion.x) % xSubsampling;
+        if (r != 0) sxStart += xSubsampling - r;
+        final int syEnd = Math.min(y0 + numRows,    srcRegion.y + srcRegion.height);
+        final int sxEnd = Math.min(Math.min(x0 + blockWidth, imageWidth), srcRegion.x + srcRegion.width);
+        if (syStart >= syEnd || sxStart >= sxEnd) {
+            return;
+        }
+        final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+        final DataBuffer dataBuffer   = raster.getDataBuffer();
+        final int[] bankOffsets       = dataBuffer.getOffsets();
+        final int[] bankIndices       = sm.getBankIndices();
+        final int[] bandOffsets       = sm.getBandOffsets();
+        final int scanlineStride      = sm.getScanlineStride();
+        final int pixelStride         = sm.getPixelStride();
+        final int dx0 = dstRegion.x - raster.getSampleModelTranslateX() + (sxStart - srcRegion.x) / xSubsampling;
+        int       dy  = dstRegion.y - raster.getSampleModelTranslateY() + (syStart - srcRegion.y) / ySubsampling;
+        for (int sy = syStart; sy < syEnd; sy += ySubsampling, dy++) {
+            for (int s = 0; s < pixelLength; s++) {
+                final int band = firstBand + s;
+                final int bank = bankIndices[band];
+                int src = ((sy - y0) * blockWidth + (sxStart - x0)) * pixelLength + s;
+                int dst = bankOffsets[bank] + dy * scanlineStride + dx0 * pixelStride + bandOffsets[band];
+                final int srcStep = xSubsampling * pixelLength;
+                switch (dataBuffer.getDataType()) {
+                    case DataBuffer.TYPE_BYTE: {
+                        final byte[] target = ((DataBufferByte) dataBuffer).getData(bank);
+                        for (int sx = sxStart; sx < sxEnd; sx += xSubsampling, src += srcStep, dst += pixelStride) {
+                            target[dst] = raw[src];
+                        }
+                        break;
+                    }
+                    case DataBuffer.TYPE_USHORT: {
+                        final short[] target = ((DataBufferUShort) dataBuffer).getData(bank);
+                        for (int sx = sxStart; sx < sxEnd; sx += xSubsampling, src += srcStep, dst += pixelStride) {
+                            target[dst] = buffer.getShort(src << 1);
+                        }
+                        break;
+                    }
+                    case DataBuffer.TYPE_SHORT: {
+                        final short[] target = ((DataBufferShort) dataBuffer).getData(bank);
+                        for (int sx = sxStart; sx < sxEnd; sx += xSubsampling, src += srcStep, dst += pixelStride) {
+                            target[dst] = buffer.getShort(src << 1);
+                        }
+                        break;
+                    }
+                    case DataBuffer.TYPE_INT: {
+                        final int[] target = ((DataBufferInt) dataBuffer).getData(bank);
+                        for (int sx = sxStart; sx < sxEnd; sx += xSubsampling, src += srcStep, dst += pixelStride) {
+                            target[dst] = buffer.getInt(src << 2);
+                        }
+                        break;
+                    }
+                    case DataBuffer.TYPE_FLOAT: {
+                        final float[] target = ((DataBufferFloat) dataBuffer).getData(bank);
+                        for (int sx = sxStart; sx < sxEnd; sx += xSubsampling, src += srcStep, dst += pixelStride) {
+                            target[dst] = buffer.getFloat(src << 2);
+                        }
+                        break;
+                    }
+                    case DataBuffer.TYPE_DOUBLE: {
+                        final double[] target = ((DataBufferDouble) dataBuffer).getData(bank);
+                        for (int sx = sxStart; sx < sxEnd; sx += xSubsampling, src += srcStep, dst += pixelStride) {
+                            target[dst] = buffer.getDouble(src << 3);
+                        }
+                        break;
+                    }
+                    default: throw new IIOException("Unsupported data type : " + dataBuffer.getDataType());
+                }
+            }
+        }
+    }
+
+    /**
+     * Decompresses the given block.
+     *
+     * @param  data   The compressed bytes.
+     * @param  length The expected number of bytes after decompression.
+     * @return The decompressed bytes, of the given length.
+     */
+    private byte[] decode(final byte[] data, final int length) throws IOException {
+        switch (compression) {
+            case 1:     return (data.length == length) ? data : Arrays.copyOf(data, length);
+            case 5:     return decodeLZW(data, new byte[length]);
+            case 32773: return decodePackBits(data, new byte[length]);
+            default:    return inflate(data, new byte[length]);
+        }
+    }
+
+    /**
+     * Decompresses bytes compressed with the Deflate algorithm (compression 8 and 32946).
+     *
+     * @throws IIOException if the compressed bytes end before the expected length is decoded.
+     */
+    private static byte[] inflate(final byte[] data, final byte[] out) throws IIOException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            int n = 0;
+            while (n < out.length && !inflater.finished()) {
+                final int count = inflater.inflate(out, n, out.length - n);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += count;
+            }
+            if (n < out.length) {
+                throw truncated("Deflate", n, out.length);
+            }
+        } catch (DataFormatException e) {
+            throw new IIOException(e.getLocalizedMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        return out;
+    }
+
+    /**
+     * Decompresses bytes compressed with the PackBits algorithm (compression 32773).
+     *
+     * @throws IIOException if the compressed bytes end before the expected length is decoded.
+     */
+    private static byte[] decodePackBits(final byte[] data, final byte[] out) throws IIOException {
+        int in = 0, n = 0;
+        while (n < out.length) {
+            if (in >= data.length) {
+                throw truncated("PackBits", n, out.length);
+            }
+            final int header = data[in++];
+            if (header >= 0) {
+                final int count = header + 1;
+                if (in + count > data.length) {
+                    throw truncated("PackBits", n + data.length - in, out.length);
+                }
+                System.arraycopy(data, in, out, n, Math.min(count, out.length - n));
+                in += count;
+                n  += count;
+            } else if (header != -128) {
+                if (in >= data.length) {
+                    throw truncated("PackBits", n, out.length);
+                }
+                final int end = Math.min(n + 1 - header, out.length);
+                Arrays.fill(out, n, end, data[in++]);
+                n = end;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the exception to throw when compressed data end before the expected number of bytes.
+     */
+    private static IIOException truncated(final String compression, final int decoded, final int expected) {
+        return new IIOException("Truncated "+compression+" block : "+decoded+" bytes decoded, "+expected+" expected.");
+    }
+
+    /**
+     * Decompresses bytes compressed with the LZW algorithm (compression 5). Codes are read with the
+     * most significant bit first, and the code length increases one code before the table is full,
+     * as specified by TIFF 6.0.
+     *
+     * @throws IIOException if the compressed bytes end before the expected length is decoded.
+     */
+    private static byte[] decodeLZW(final byte[] data, final byte[] out) throws IIOException {
+        final int   tableSize = 1 << LZW_MAX_CODE_LENGTH;
+        final int[]  prefixes = new int [tableSize];
+        final int[]   lengths = new int [tableSize];
+        final byte[] suffixes = new byte[tableSize];
+        final byte[]   firsts = new byte[tableSize];
+        for (int i=0; i<256; i++) {
+            suffixes[i] = firsts[i] = (byte) i;
+            lengths[i]  = 1;
+        }
+        int nextCode   = LZW_FIRST_CODE;
+        int codeLength = 9;
+        int oldCode    = -1;
+        int bits = 0, bitCount = 0, in = 0, n = 0;
+        while (n < out.length) {
+            while (bitCount < codeLength) {
+                if (in >= data.length) {
+                    throw truncated("LZW", n, out.length);
+                }
+                bits = (bits << Byte.SIZE) | (data[in++] & 0xFF);
+                bitCount += Byte.SIZE;
+            }
+            bitCount -= codeLength;
+            final int code = (bits >>> bitCount) & ((1 << codeLength) - 1);
+            if (code == LZW_EOI_CODE) {
+                throw truncated("LZW", n, out.length);
+            }
+            if (code == LZW_CLEAR_CODE) {
+                nextCode   = LZW_FIRST_CODE;
+                codeLength = 9;
+                oldCode    = -1;
+                continue;
+            }
+            if (oldCode < 0) {
+                if (code > 255) {
+                    throw new IIOException("Invalid LZW code : " + code);
+                }
+                out[n++] = (byte) code;
+                oldCode = code;
+                continue;
+            }
+            final byte first;
+            if (code < nextCode) {
+                first = firsts[code];
+            } else if (code == nextCode) {
+                first = firsts[oldCode];
+            } else {
+                throw new IIOException("Invalid LZW code : " + code);
+            }
+            if (nextCode < tableSize) {
+                prefixes[nextCode] = oldCode;
+                suffixes[nextCode] = first;
+                firsts  [nextCode] = firsts[oldCode];
+                lengths [nextCode] = lengths[oldCode] + 1;
+                nextCode++;
+                if (nextCode >= (1 << codeLength) - 1 && codeLength < LZW_MAX_CODE_LENGTH) {
+                    codeLength++;
+                }
+            }
+            /*
+             * Writes the string of the code, from its last byte to its first byte.
+             */
+            final int length = lengths[code];
+            int c = code;
+            for (int i = n + length; --i >= n;) {
+                if (i < out.length) {
+                    out[i] = suffixes[c];
+                }
+                c = prefixes[c];
+            }
+            n += length;
+            oldCode = code;
+        }
+        return out;
+    }
+
+    /**
+     * Reverts the horizontal differencing (predictor 2) in place. Each sample of a row, except
+     * the first pixel, is stored as the difference with the same sample of the previous pixel.
+     */
+    private void undoDifferencing(final byte[] raw, final ByteBuffer buffer, final int numRows,
+            final int rowLength, final int pixelLength)
+    {
+        for (int row = 0; row < numRows; row++) {
+            final int start = row * rowLength;
+            final int end   = start + rowLength;
+            switch (sampleSize) {
+                case 1: {
+                    for (int i = start + pixelLength; i < end; i++) {
+                        raw[i] += raw[i - pixelLength];
+                    }
+                    break;
+                }
+                case 2: {
+                    for (int i = start + pixelLength; i < end; i++) {
+                        final int p = i << 1;
+                        buffer.putShort(p, (short) (buffer.getShort(p) + buffer.getShort(p - (pixelLength << 1))));
+                    }
+                    break;
+                }
+                case 4: {
+                    for (int i = start + pixelLength; i < end; i++) {
+                        final int p = i << 2;
+                        buffer.putInt(p, buffer.getInt(p) + buffer.getInt(p - (pixelLength << 2)));
+                    }
+                    break;
+                }
+                case 8: {
+                    for (int i = start + pixelLength; i < end; i++) {
+                        final int p = i << 3;
+                        buffer.putLong(p, buffer.getLong(p) + buffer.getLong(p - (pixelLength << 3)));
+                    }
+                    break;
+                }
+                default: throw new AssertionError(sampleSize);
+            }
+        }
+    }
+}
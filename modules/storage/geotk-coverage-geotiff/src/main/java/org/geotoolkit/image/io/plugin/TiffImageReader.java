@@ -297,6 +297,13 @@ public class TiffImageReader extends SpatialImageReader {
      * Define the databuffer type of the current read layer.
      */
     private int sourceDataBufferType;
+
+    /**
+     * {@code true} if strips and tiles should be decoded in parallel when possible.
+     *
+     * @see #setParallelDecoding(boolean)
+     */
+    private boolean parallelDecoding;
         
     /**
      * Creates a new reader.
@@ -325,6 +332,31 @@ public class TiffImageReader extends SpatialImageReader {
     public boolean isRandomAccessEasy(final int imageIndex) throws IOException {
         return true;
     }
+
+    /**
+     * Returns {@code true} if strips and tiles are decoded in parallel when possible.
+     *
+     * @return {@code true} if parallel decoding is enabled.
+     */
+    public boolean isParallelDecoding() {
+        return parallelDecoding;
+    }
+
+    /**
+     * Sets whether strips and tiles should be decoded in parallel. In parallel mode, each strip
+     * or tile is read with a positional read on a channel shared by all tasks, decompressed,
+     * then written directly in the {@link DataBuffer} of the destination image.
+     * <p>
+     * Parallel decoding is used only when the input is a {@link File}, the source and destination
+     * bands are not specified, the samples have a size of 8, 16, 32 or 64 bits in natural fill
+     * order and the destination image uses a {@link java.awt.image.ComponentSampleModel}.
+     * In other cases, the image is read sequentially.
+     *
+     * @param parallel {@code true} for decoding strips and tiles in parallel.
+     */
+    public void setParallelDecoding(final boolean parallel) {
+        parallelDecoding = parallel;
+    }
    
     /**
      * Return true if the current layer is a thumbnail else false.
@@ -742,7 +774,11 @@ public class TiffImageReader extends SpatialImageReader {
     @Override
     public BufferedImage read(final int imageIndex, final ImageReadParam param) throws IOException {
         checkLayers();
-        final BufferedImage image = readLayer(getLayerIndex(imageIndex), param);
+        final int layerIndex = getLayerIndex(imageIndex);
+        BufferedImage image = readOverview(layerIndex, param);
+        if (image == null) {
+            image = readLayer(layerIndex, param);
+        }
                 
         //if the image contains floats or double, datas are already in geophysic type
         //we must replace noData values by NaN.
@@ -771,6 +807,89 @@ public class TiffImageReader extends SpatialImageReader {
         return image;
     }
     
+    /**
+     * Reads the image from the reduced-resolution layer (overview) which best matches the subsampling
+     * of the given parameters, or returns {@code null} if there is no such overview. An overview is
+     * used only if it is a decimation of the full resolution image by an integer factor <var>f</var>
+     * which divides both subsampling values and both coordinates of the first pixel to read, as written
+     * by {@link TiffImageWriter} in
+     * {@linkplain TiffImageWriteParam#setCloudOptimized(boolean) cloud optimized} mode.
+     * The overview is read with the source region divided by <var>f</var> and the subsampling
+     * divided by <var>f</var>, which gives an image of the same size than the full resolution read.
+     *
+     * @param  layerIndex The index of the full resolution layer.
+     * @param  param Parameters used to control the reading process, or {@code null}.
+     * @return The image read from an overview, or {@code null} if no overview can be used.
+     * @throws IOException If an error occurred while reading the image.
+     */
+    private BufferedImage readOverview(final int layerIndex, final ImageReadParam param) throws IOException {
+        if (param == null || (param.getSourceXSubsampling() == 1 && param.getSourceYSubsampling() == 1)) {
+            return null;
+        }
+        final List<Integer> overviews = imgAndThumbs.get(layerIndex);
+        if (overviews == null || overviews.isEmpty()) {
+            return null;
+        }
+        selectLayer(layerIndex);
+        final int  width  = imageWidth;
+        final int  height = imageHeight;
+        final int  bands  = samplesPerPixel;
+        final long[] bits = bitsPerSample;
+        final int  type   = sourceDataBufferType;
+        /*
+         * The subsampling offsets are included in the region origin, so the first pixel read is the
+         * first pixel of the region. This pixel must exist in the overview, otherwise all pixels read
+         * from the overview would be shifted.
+         */
+        Rectangle region = new Rectangle(width, height);
+        if (param.getSourceRegion() != null) {
+            region = region.intersection(param.getSourceRegion());
+        }
+        region.x      += param.getSubsamplingXOffset();
+        region.y      += param.getSubsamplingYOffset();
+        region.width  -= param.getSubsamplingXOffset();
+        region.height -= param.getSubsamplingYOffset();
+        if (region.isEmpty()) {
+            return null;
+        }
+        int bestLayer  = -1;
+        int bestFactor = 1;
+        for (final int overview : overviews) {
+            selectLayer(overview);
+            final int factor = Math.round(width / (float) imageWidth);
+            if (factor > bestFactor
+                    && param.getSourceXSubsampling() % factor == 0
+                    && param.getSourceYSubsampling() % factor == 0
+                    && region.x % factor == 0
+                    && region.y % factor == 0
+                    && imageWidth  == (width  + factor - 1) / factor
+                    && imageHeight == (height + factor - 1) / factor
+                    && samplesPerPixel == bands && Arrays.equals(bitsPerSample, bits)
+                    && sourceDataBufferType == type)
+            {
+                bestLayer  = overview;
+                bestFactor = factor;
+            }
+        }
+        if (bestLayer < 0) {
+            return null;
+        }
+        /*
+         * Converts the source region in overview pixel coordinates.
+         */
+        final ImageReadParam overviewParam = getDefaultReadParam();
+        overviewParam.setDestination(param.getDestination());
+        overviewParam.setDestinationType(param.getDestinationType());
+        overviewParam.setDestinationOffset(param.getDestinationOffset());
+        overviewParam.setSourceBands(param.getSourceBands());
+        overviewParam.setDestinationBands(param.getDestinationBands());
+        overviewParam.setSourceRegion(new Rectangle(region.x / bestFactor, region.y / bestFactor,
+                (region.width + bestFactor - 1) / bestFactor, (region.height + bestFactor - 1) / bestFactor));
+        overviewParam.setSourceSubsampling(param.getSourceXSubsampling() / bestFactor,
+                                           param.getSourceYSubsampling() / bestFactor, 0, 0);
+        return readLayer(bestLayer, overviewParam);
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -1183,12 +1302,12 @@ public class TiffImageReader extends SpatialImageReader {
             case Compression: { //-- Compression.
                 assert count == 1 : "with tiff compression tag, count should be equal 1.";
                 compression = (int) (imageStream.readShort() & 0xFFFF);
-                if (compression != 1 && compression != 32773 && compression != 5) { // '1' stands for "uncompressed". // '32 773' stands for packbits compression
+                if (compression != 1 && compression != 32773 && compression != 5 // '1' stands for "uncompressed". // '32 773' stands for packbits compression
+                        && compression != 8 && compression != 32946) {               // '8' and '32 946' stand for Deflate compression
                     final Object nameCompress;
                     switch (compression) {
                         case 6:  nameCompress = "JPEG";      break;
                         case 7:  nameCompress = "JPEG";      break;
-                        case 8:  nameCompress = "Deflate";   break;
                         default: nameCompress = compression; break;
                     }
                     throw new UnsupportedImageFormatException(error(Errors.Keys.ILLEGAL_PARAMETER_VALUE_2,
@@ -1640,6 +1759,31 @@ public class TiffImageReader extends SpatialImageReader {
          * compute region : ajust les 2 rectangles src region et dest region en fonction des coeff subsampling present dans Imagereadparam.
          */
         computeRegions(param, imageWidth, imageHeight, image, srcRegion, dstRegion);// calculer une region de l'image sur le fichier que l'on doit lire
+        /*
+         * Deflate compression is only supported by the block reader, which decodes
+         * each strip or tile independently and optionally in parallel.
+         */
+        final boolean deflate = (compression == 8 || compression == 32946);
+        if (deflate || (parallelDecoding && currentInput instanceof File)) {
+            final TiffBlockReader blockReader = getBlockReader(image.getRaster(), param);
+            if (blockReader != null) {
+                clearAbortRequest();
+                final int sourceXSubsampling = (param != null) ? param.getSourceXSubsampling() : 1;
+                final int sourceYSubsampling = (param != null) ? param.getSourceYSubsampling() : 1;
+                if (parallelDecoding && currentInput instanceof File) {
+                    blockReader.readParallel((File) currentInput, image.getRaster(),
+                            srcRegion, dstRegion, sourceXSubsampling, sourceYSubsampling);
+                } else {
+                    blockReader.read(getImageInputStream(false), image.getRaster(),
+                            srcRegion, dstRegion, sourceXSubsampling, sourceYSubsampling);
+                }
+                return image;
+            }
+            if (deflate) {
+                throw new UnsupportedImageFormatException("Deflate compression is supported only for samples of 8, 16, 32 or 64 bits "
+                        + "with natural fill order, without source or destination bands.");
+            }
+        }
         if (compression == 32773) {
             assert stripOffsets != null : "with compression 32773 (packbits) : image should be writen in strip offset use case.";
             readFromStrip32773(image.getRaster(), param, srcRegion, dstRegion);
@@ -1662,6 +1806,43 @@ public class TiffImageReader extends SpatialImageReader {
         return image;
     }
 
+    /**
+     * Returns a reader decoding each strip or tile of the current layer independently,
+     * or {@code null} if the current layer or the given parameters are not supported.
+     *
+     * @param  raster The raster where to store the pixel values.
+     * @param  param  Parameters used to control the reading process, or {@code null}.
+     * @return The block reader, or {@code null} if not supported.
+     */
+    private TiffBlockReader getBlockReader(final WritableRaster raster, final ImageReadParam param) {
+        if (param != null && (param.getSourceBands() != null || param.getDestinationBands() != null)) {
+            return null;
+        }
+        final Map<String, Object> predictor = headProperties.get(Predictor);
+        final int predic = (predictor != null) ? (int) ((long[]) predictor.get(ATT_VALUE)) [0] : 1;
+        final Map<String, Object> fillOrder = headProperties.get(FillOrder);
+        final int fO = (fillOrder != null) ? (int) ((long[]) fillOrder.get(ATT_VALUE)) [0] : 1;
+        final Map<String, Object> planarConfig = headProperties.get(PlanarConfiguration);
+        final int pC = (planarConfig != null && samplesPerPixel > 1) ? ((short[]) planarConfig.get(ATT_VALUE)) [0] : 1;
+        if (!TiffBlockReader.isSupported(compression, predic, fO, bitsPerSample, samplesPerPixel, raster)) {
+            return null;
+        }
+        final boolean tiled = (tileOffsets != null);
+        final long[] offsets, byteCounts;
+        if (tiled) {
+            final Map<String, Object> tbc = headProperties.get(TileByteCounts);
+            if (tbc == null) return null;
+            offsets    = tileOffsets;
+            byteCounts = (long[]) tbc.get(ATT_VALUE);
+        } else {
+            offsets    = stripOffsets;
+            byteCounts = stripByteCounts;
+        }
+        return new TiffBlockReader(compression, predic, pC, imageWidth, imageHeight, tiled,
+                tiled ? tileWidth : imageWidth, tiled ? tileHeight : rowsPerStrip, offsets, byteCounts,
+                samplesPerPixel, (int) bitsPerSample[0] / Byte.SIZE, imageStream.getByteOrder());
+    }
+
     /**
      * Processes to the image reading, and stores the pixels in the given raster.<br/>
      * Process fill raster from informations stored in stripOffset made.
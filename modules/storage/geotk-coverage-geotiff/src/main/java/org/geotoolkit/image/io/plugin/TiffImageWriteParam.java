@@ -30,6 +30,16 @@ import org.geotoolkit.image.io.SpatialImageWriteParam;
  */
 public class TiffImageWriteParam extends SpatialImageWriteParam {
 
+    /**
+     * {@code true} for writing a Cloud Optimized GeoTIFF.
+     */
+    private boolean cloudOptimized;
+
+    /**
+     * Subsampling factors of the overviews, or {@code null} for automatic factors.
+     */
+    private int[] overviewFactors;
+
     public TiffImageWriteParam(ImageWriter writer) {
         super(writer);
         canOffsetTiles      = false;
@@ -38,4 +48,62 @@ public class TiffImageWriteParam extends SpatialImageWriteParam {
         canWriteTiles       = true;
         compressionTypes    = new String[]{"LZW", "PackBits"};
     }
+
+    /**
+     * Returns {@code true} if the image will be written as a <cite>Cloud Optimized GeoTIFF</cite>.
+     *
+     * @return {@code true} if the cloud optimized mode is enabled.
+     * @see #setCloudOptimized(boolean)
+     */
+    public boolean isCloudOptimized() {
+        return cloudOptimized;
+    }
+
+    /**
+     * Sets whether the image should be written as a <cite>Cloud Optimized GeoTIFF</cite> (COG).
+     * In this mode, the image is always tiled (256&times;256 tiles if no tiling has been specified)
+     * and followed by reduced-resolution images (overviews) at the {@linkplain #getOverviewFactors()
+     * overview factors}. All image file directories are written at the beginning of the file, followed
+     * by the tiles from the smallest overview to the full resolution image, so a client can fetch any
+     * overview tile with a single ranged read.
+     * <p>
+     * An overview at factor <var>f</var> is the image written with a subsampling multiplied by
+     * <var>f</var>. Consequently {@link TiffImageReader} gives the same result when reading an
+     * image with a subsampling multiple of <var>f</var>, except that only the overview is read.
+     * <p>
+     * A cloud optimized image must be the only image written in the output.
+     *
+     * @param cloudOptimized {@code true} for writing a cloud optimized GeoTIFF.
+     */
+    public void setCloudOptimized(final boolean cloudOptimized) {
+        this.cloudOptimized = cloudOptimized;
+    }
+
+    /**
+     * Returns the subsampling factors of the overviews written in cloud optimized mode,
+     * or {@code null} if they will be computed automatically.
+     *
+     * @return The overview factors, or {@code null} for automatic factors.
+     */
+    public int[] getOverviewFactors() {
+        return (overviewFactors != null) ? overviewFactors.clone() : null;
+    }
+
+    /**
+     * Sets the subsampling factors of the overviews written in cloud optimized mode, in increasing order.
+     * If {@code null}, the factors are the powers of 2 until the overview fits in a single tile.
+     *
+     * @param factors The overview factors, or {@code null} for automatic factors.
+     * @throws IllegalArgumentException If a factor is not greater than 1 or not greater than the previous one.
+     */
+    public void setOverviewFactors(final int... factors) {
+        if (factors != null) {
+            for (int i = 0; i < factors.length; i++) {
+                if (factors[i] <= ((i != 0) ? factors[i - 1] : 1)) {
+                    throw new IllegalArgumentException("Overview factors shall be increasing integers greater than 1.");
+                }
+            }
+        }
+        overviewFactors = (factors != null) ? factors.clone() : null;
+    }
 }
@@ -44,6 +44,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -455,6 +456,10 @@ public class TiffImageWriter extends SpatialImageWriter {
     @Override
     public void write(final IIOMetadata streamMetadata, final IIOImage image, final ImageWriteParam param) throws IOException {
         ArgumentChecks.ensureNonNull("IIOImage image", image);
+        if (param instanceof TiffImageWriteParam && ((TiffImageWriteParam) param).isCloudOptimized()) {
+            writeCloudOptimized(streamMetadata, image, (TiffImageWriteParam) param);
+            return;
+        }
 
         if (param != null && param.getSourceBands() != null) {
             LOGGER.log(Level.WARNING, "Tiff Image writer does not manage source band selection. ImageWriteParam.sourceBands parameter will be ignored.");
@@ -504,6 +509,99 @@ public class TiffImageWriter extends SpatialImageWriter {
         }
     }
     
+    /**
+     * Writes the given image as a <cite>Cloud Optimized GeoTIFF</cite>. The image and its overviews
+     * are first written in a temporary file by an other writer, then copied in the output with all
+     * image file directories at the beginning of the file and the tiles of the smallest overview first.
+     * Overviews are written as reduced-resolution images ({@code NewSubfileType} = 1), using the
+     * subsampling of the given parameters multiplied by each overview factor.
+     * 
+     * @param streamMetadata stream metadata, or {@code null}.
+     * @param image image to write, with its metadata. Thumbnails are ignored.
+     * @param param properties to write image.
+     * @throws IOException if problem during writing.
+     * @throws IllegalStateException if an image has already been written in the output.
+     * @see TiffImageWriteParam#setCloudOptimized(boolean)
+     */
+    private void writeCloudOptimized(final IIOMetadata streamMetadata, final IIOImage image,
+                                     final TiffImageWriteParam param) throws IOException {
+        if (channel != null) {
+            throw new IllegalStateException("A cloud optimized image must be the only image written in the output.");
+        }
+        if (output == null) {
+            throw new IllegalStateException(error(Errors.Keys.NO_IMAGE_OUTPUT));
+        }
+        if (!(output instanceof File || output instanceof String || output instanceof FileOutputStream)) {
+            throw new IOException("A cloud optimized image can only be written in a File, a file path or a FileOutputStream, "
+                    + "output is a " + output.getClass().getName() + ".");
+        }
+        final RenderedImage img = image.getRenderedImage();
+        final TiffImageWriteParam levelParam = new TiffImageWriteParam(this);
+        if (param.getCompressionMode() == ImageWriteParam.MODE_EXPLICIT) {
+            levelParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            levelParam.setCompressionType(param.getCompressionType());
+        }
+        levelParam.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        if (param.getTilingMode() == ImageWriteParam.MODE_EXPLICIT) {
+            levelParam.setTiling(param.getTileWidth(), param.getTileHeight(), 0, 0);
+        } else {
+            levelParam.setTiling(256, 256, 0, 0);
+        }
+        final int subsampleX = param.getSourceXSubsampling();
+        final int subsampleY = param.getSourceYSubsampling();
+        final int xOffset    = param.getSubsamplingXOffset();
+        final int yOffset    = param.getSubsamplingYOffset();
+        levelParam.setSourceRegion(param.getSourceRegion());
+        levelParam.setSourceSubsampling(subsampleX, subsampleY, xOffset, yOffset);
+        
+        //-- overview factors : by default powers of 2 until the overview fits in a single tile --//
+        int[] factors = param.getOverviewFactors();
+        if (factors == null) {
+            Rectangle region = new Rectangle(img.getMinX(), img.getMinY(), img.getWidth(), img.getHeight());
+            if (param.getSourceRegion() != null) {
+                region = region.intersection(param.getSourceRegion());
+            }
+            final int width  = (region.width  - xOffset + subsampleX - 1) / subsampleX;
+            final int height = (region.height - yOffset + subsampleY - 1) / subsampleY;
+            factors = new int[0];
+            for (int f = 1; (width + f - 1) / f > levelParam.getTileWidth() || (height + f - 1) / f > levelParam.getTileHeight(); f <<= 1) {
+                factors = Arrays.copyOf(factors, factors.length + 1);
+                factors[factors.length - 1] = f << 1;
+            }
+        }
+        
+        final File temp = File.createTempFile("cog", ".tiff");
+        try {
+            final TiffImageWriter levels = new TiffImageWriter((Spi) originatingProvider);
+            try {
+                levels.setOutput(temp);
+                levels.write(streamMetadata, new IIOImage(img, null, image.getMetadata()), levelParam);
+                for (final int factor : factors) {
+                    levelParam.setSourceSubsampling(subsampleX * factor, subsampleY * factor, xOffset, yOffset);
+                    levels.headProperties = new TreeMap<>();
+                    //-- add reduced resolution tiff tag --//
+                    addProperty(NewSubfileType, TYPE_UINT, 1, new int[]{1}, levels.headProperties);
+                    levels.write(img, levels.headProperties, levelParam, levels.ifdPosition);
+                }
+            } finally {
+                levels.dispose();
+            }
+            try (FileChannel source = FileChannel.open(temp.toPath(), StandardOpenOption.READ)) {
+                if (output instanceof FileOutputStream) {
+                    ((FileOutputStream) output).flush();
+                    CloudOptimizedLayout.copy(source, ((FileOutputStream) output).getChannel());
+                } else {
+                    final File file = (output instanceof File) ? (File) output : new File((String) output);
+                    try (FileOutputStream out = new FileOutputStream(file)) {
+                        CloudOptimizedLayout.copy(source, out.getChannel());
+                    }
+                }
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
     /**
      * {@inheritDoc }.
      * 
@@ -619,6 +717,10 @@ public class TiffImageWriter extends SpatialImageWriter {
      */
     public void write(final RenderedImage image, final ImageWriteParam param) throws IOException {
         ArgumentChecks.ensureNonNull("RenderedImage image", image);
+        if (param instanceof TiffImageWriteParam && ((TiffImageWriteParam) param).isCloudOptimized()) {
+            writeCloudOptimized(null, new IIOImage(image, null, null), (TiffImageWriteParam) param);
+            return;
+        }
         assert headProperties == null;
         //-- a new distinct map for each layer --// 
         headProperties = new TreeMap<>();
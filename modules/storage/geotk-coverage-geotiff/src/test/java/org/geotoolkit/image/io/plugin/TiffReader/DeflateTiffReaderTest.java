@@ -0,0 +1,326 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.plugin.TiffReader;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.zip.Deflater;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+
+import org.geotoolkit.image.io.plugin.TiffImageReader;
+import org.geotoolkit.image.io.plugin.TiffImageWriter;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the reading of Deflate compressed images with horizontal differencing predictor,
+ * sequentially and with parallel decoding of strips and tiles. The images are written by
+ * this test since the {@link TiffImageWriter} does not support Deflate compression.
+ */
+public strictfp class DeflateTiffReaderTest {
+
+    /**
+     * Temporary file written by each test.
+     */
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("deflate", ".tiff");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    /**
+     * Tests a tiled RGB image of 8 bits samples in little endian byte order.
+     *
+     * @throws IOException if an error occurred while writing or reading the image.
+     */
+    @Test
+    public void tiledByteTest() throws IOException {
+        final int[] samples = createSamples(150, 100, 3, 255);
+        writeDeflateTiff(file, 150, 100, 3, 8, ByteOrder.LITTLE_ENDIAN, true, 32, samples);
+        checkAllModes(150, 100, 3, samples);
+    }
+
+    /**
+     * Tests a stripped image of 16 bits samples in big endian byte order,
+     * with a last strip smaller than the other ones.
+     *
+     * @throws IOException if an error occurred while writing or reading the image.
+     */
+    @Test
+    public void stripUShortTest() throws IOException {
+        final int[] samples = createSamples(97, 61, 1, 65535);
+        writeDeflateTiff(file, 97, 61, 1, 16, ByteOrder.BIG_ENDIAN, false, 8, samples);
+        checkAllModes(97, 61, 1, samples);
+    }
+
+    /**
+     * Reads the temporary file sequentially and in parallel, entirely and with a source
+     * region, subsampling and destination offset, and compares with the expected samples.
+     */
+    private void checkAllModes(final int width, final int height, final int numBands, final int[] samples)
+            throws IOException
+    {
+        for (final boolean parallel : new boolean[] {false, true}) {
+            final TiffImageReader reader = new TiffImageReader(null);
+            reader.setParallelDecoding(parallel);
+            try {
+                reader.setInput(file);
+                checkImage(reader.read(0).getRaster(), width, numBands, samples,
+                        new Rectangle(width, height), 1, 1, new Point());
+
+                final ImageReadParam param = reader.getDefaultReadParam();
+                final Rectangle region = new Rectangle(5, 7, width - 9, height - 13);
+                param.setSourceRegion(region);
+                param.setSourceSubsampling(3, 2, 0, 0);
+                param.setDestinationOffset(new Point(2, 1));
+                checkImage(reader.read(0, param).getRaster(), width, numBands, samples,
+                        region, 3, 2, new Point(2, 1));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Verifies that the given raster contains the expected samples of the given source region.
+     */
+    private static void checkImage(final Raster raster, final int width, final int numBands, final int[] samples,
+            final Rectangle region, final int xSubsampling, final int ySubsampling, final Point offset)
+    {
+        assertEquals(offset.x + (region.width  + xSubsampling - 1) / xSubsampling, raster.getWidth());
+        assertEquals(offset.y + (region.height + ySubsampling - 1) / ySubsampling, raster.getHeight());
+        for (int y = offset.y; y < raster.getHeight(); y++) {
+            final int sy = region.y + (y - offset.y) * ySubsampling;
+            for (int x = offset.x; x < raster.getWidth(); x++) {
+                final int sx = region.x + (x - offset.x) * xSubsampling;
+                for (int b = 0; b < numBands; b++) {
+                    assertEquals("(" + sx + ", " + sy + ")", samples[(sy * width + sx) * numBands + b],
+                            raster.getSample(x, y, b));
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates random sample values with some spatial correlation, in pixel interleaved order.
+     */
+    private static int[] createSamples(final int width, final int height, final int numBands, final int max) {
+        final Random random = new Random(837);
+        final int[] samples = new int[width * height * numBands];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (i % (width * numBands) < numBands) ? random.nextInt(max + 1)
+                    : Math.max(0, Math.min(max, samples[i - numBands] + random.nextInt(21) - 10));
+        }
+        return samples;
+    }
+
+    /**
+     * Writes a Deflate compressed TIFF image with horizontal differencing predictor, unsigned samples
+     * and chunky planar configuration.
+     *
+     * @param file          The file to write.
+     * @param width         The image width.
+     * @param height        The image height.
+     * @param numBands      Number of samples per pixel (1 for gray, 3 for RGB).
+     * @param bitsPerSample 8 or 16.
+     * @param order         The byte order of the file.
+     * @param tiled         {@code true} for writing square tiles, or {@code false} for strips.
+     * @param blockSize     The tile size, or the number of rows per strip.
+     * @param samples       The sample values in pixel interleaved order.
+     */
+    static void writeDeflateTiff(final File file, final int width, final int height, final int numBands,
+            final int bitsPerSample, final ByteOrder order, final boolean tiled, final int blockSize,
+            final int[] samples) throws IOException
+    {
+        final int sampleSize   = bitsPerSample / Byte.SIZE;
+        final int blockWidth   = tiled ? blockSize : width;
+        final int blocksAcross = (width  + blockWidth - 1) / blockWidth;
+        final int blocksDown   = (height + blockSize  - 1) / blockSize;
+        final long[] offsets   = new long[blocksAcross * blocksDown];
+        final long[] counts    = new long[offsets.length];
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final int[] row = new int[blockWidth * numBands];
+        for (int ty = 0; ty < blocksDown; ty++) {
+            final int numRows = tiled ? blockSize : Math.min(blockSize, height - ty * blockSize);
+            for (int tx = 0; tx < blocksAcross; tx++) {
+                final ByteBuffer raw = ByteBuffer.allocate(numRows * row.length * sampleSize).order(order);
+                for (int r = 0; r < numRows; r++) {
+                    final int y = ty * blockSize + r;
+                    for (int i = 0; i < row.length; i++) {
+                        final int x = tx * blockWidth + i / numBands;
+                        row[i] = (x < width && y < height) ? samples[(y * width + x) * numBands + i % numBands] : 0;
+                    }
+                    for (int i = row.length; --i >= numBands;) {
+                        row[i] -= row[i - numBands];
+                    }
+                    for (final int value : row) {
+                        if (sampleSize == 1) raw.put((byte) value);
+                        else raw.putShort((short) value);
+                    }
+                }
+                final Deflater deflater = new Deflater();
+                deflater.setInput(raw.array());
+                deflater.finish();
+                final byte[] buffer = new byte[raw.capacity() * 2 + 64];
+                final int length = deflater.deflate(buffer);
+                deflater.end();
+                offsets[ty * blocksAcross + tx] = 8 + data.size();
+                counts [ty * blocksAcross + tx] = length;
+                data.write(buffer, 0, length);
+            }
+        }
+        if ((data.size() & 1) != 0) data.write(0);
+        final long[] bits   = new long[numBands];
+        final long[] format = new long[numBands];
+        for (int b = 0; b < numBands; b++) {
+            bits[b]   = bitsPerSample;
+            format[b] = 1;
+        }
+        final Object[] entries = tiled ? new Object[] {
+            256, 4, new long[] {width},
+            257, 4, new long[] {height},
+            258, 3, bits,
+            259, 3, new long[] {8},
+            262, 3, new long[] {numBands == 3 ? 2 : 1},
+            277, 3, new long[] {numBands},
+            284, 3, new long[] {1},
+            317, 3, new long[] {2},
+            322, 4, new long[] {blockSize},
+            323, 4, new long[] {blockSize},
+            324, 4, offsets,
+            325, 4, counts,
+            339, 3, format
+        } : new Object[] {
+            256, 4, new long[] {width},
+            257, 4, new long[] {height},
+            258, 3, bits,
+            259, 3, new long[] {8},
+            262, 3, new long[] {numBands == 3 ? 2 : 1},
+            273, 4, offsets,
+            277, 3, new long[] {numBands},
+            278, 4, new long[] {blockSize},
+            279, 4, counts,
+            284, 3, new long[] {1},
+            317, 3, new long[] {2},
+            339, 3, format
+        };
+        final int numEntries = entries.length / 3;
+        final int ifdOffset  = 8 + data.size();
+        int extra = ifdOffset + 2 + numEntries * 12 + 4;
+        final ByteBuffer out = ByteBuffer.allocate(extra + 8 * (offsets.length + counts.length + 2 * numBands)).order(order);
+        out.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'));
+        out.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 'I' : 'M'));
+        out.putShort((short) 42).putInt(ifdOffset).put(data.toByteArray());
+        out.putShort((short) numEntries);
+        for (int i = 0; i < entries.length; i += 3) {
+            final int type = (Integer) entries[i + 1];
+            final long[] values = (long[]) entries[i + 2];
+            final int size = (type == 3) ? 2 : 4;
+            out.putShort((short) (int) (Integer) entries[i]).putShort((short) type).putInt(values.length);
+            int position = out.position();
+            if (values.length * size > 4) {
+                out.putInt(extra);
+                position = extra;
+                extra += values.length * size;
+            } else {
+                out.putInt(0);
+            }
+            for (final long value : values) {
+                if (size == 2) out.putShort(position, (short) value);
+                else out.putInt(position, (int) value);
+                position += size;
+            }
+        }
+        out.putInt(0);
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(out.array(), 0, extra);
+        }
+    }
+
+    /**
+     * Compares the time of sequential and parallel reading of large LZW and Deflate images.
+     * Ignored by default since it is a benchmark.
+     *
+     * @throws Exception if an error occurred while writing or reading the images.
+     */
+    @Test
+    @Ignore
+    public void benchmark() throws Exception {
+        final int width = 4096, height = 4096, numBands = 3;
+        final int[] samples = createSamples(width, height, numBands, 255);
+        final File lzw = File.createTempFile("lzw", ".tiff");
+        try {
+            final BufferedImage image = ImageTypeSpecifier.createInterleaved(
+                    ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                    new int[] {0, 1, 2}, DataBuffer.TYPE_BYTE, false, false)
+                    .createBufferedImage(width, height);
+            final WritableRaster raster = image.getRaster();
+            raster.setPixels(0, 0, width, height, samples);
+            final TiffImageWriter writer = new TiffImageWriter(null);
+            final ImageWriteParam writeParam = writer.getDefaultWriteParam();
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionType("LZW");
+            writeParam.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setTiling(256, 256, 0, 0);
+            writer.setOutput(lzw);
+            writer.write(null, new IIOImage(image, null, null), writeParam);
+            writer.dispose();
+            writeDeflateTiff(file, width, height, numBands, 8, ByteOrder.LITTLE_ENDIAN, true, 256, samples);
+
+            for (final File input : new File[] {lzw, file}) {
+                for (int k = 0; k < 5; k++) {
+                    for (final boolean parallel : new boolean[] {false, true}) {
+                        final TiffImageReader reader = new TiffImageReader(null);
+                        reader.setParallelDecoding(parallel);
+                        reader.setInput(input);
+                        final long start = System.nanoTime();
+                        reader.read(0);
+                        final long time = System.nanoTime() - start;
+                        reader.dispose();
+                        System.out.println((input == lzw ? "LZW" : "Deflate") + (parallel ? " parallel : " : " sequential : ")
+                                + time / 1000000 + "ms");
+                    }
+                }
+            }
+        } finally {
+            lzw.delete();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.plugin.TiffReader;
+
+import java.io.IOException;
+
+/**
+ * Effectuate all tests from {@link BandLZWTiledReaderTest} with parallel decoding of strips and tiles,
+ * with LZW compression, banded sample model and tiled writing.
+ */
+public strictfp class ParallelBandLZWTiledReaderTest extends BandLZWTiledReaderTest {
+
+    public ParallelBandLZWTiledReaderTest() throws IOException {
+        super();
+        reader.setParallelDecoding(true);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.plugin.TiffWriter;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageWriteParam;
+
+import org.geotoolkit.image.io.plugin.TiffImageReader;
+import org.geotoolkit.image.io.plugin.TiffImageWriteParam;
+import org.geotoolkit.image.io.plugin.TiffImageWriter;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * Tests the {@linkplain TiffImageWriteParam#setCloudOptimized(boolean) cloud optimized} mode
+ * of {@link TiffImageWriter}, and the selection of overviews by {@link TiffImageReader}.
+ */
+public strictfp class CloudOptimizedWriterTest {
+
+    /**
+     * Size of the test image and of its tiles.
+     */
+    private static final int WIDTH = 600, HEIGHT = 500, TILE_SIZE = 128;
+
+    /**
+     * The image written by each test.
+     */
+    private BufferedImage image;
+
+    /**
+     * The file written by each test.
+     */
+    private File file;
+
+    @Before
+    public void writeImage() throws IOException {
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        final WritableRaster raster = image.getRaster();
+        final Random random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                raster.setSample(x, y, 0, (x + y + random.nextInt(8)) & 0xFF);
+            }
+        }
+        file = File.createTempFile("cog", ".tiff");
+        final TiffImageWriter writer = new TiffImageWriter(null);
+        final TiffImageWriteParam param = (TiffImageWriteParam) writer.getDefaultWriteParam();
+        param.setCloudOptimized(true);
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionType("LZW");
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(TILE_SIZE, TILE_SIZE, 0, 0);
+        writer.setOutput(file);
+        writer.write(image, param);
+        writer.dispose();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    /**
+     * Verifies that overviews are written until they fit in a single tile, that all image file
+     * directories are at the beginning of the file and that the smallest overview tiles come first.
+     *
+     * @throws IOException if an error occurred while reading the file.
+     */
+    @Test
+    public void layoutTest() throws IOException {
+        final TiffImageReader reader = new TiffImageReader(null);
+        reader.setInput(file);
+        assertEquals(3, reader.getNumThumbnails(0));
+        assertEquals(300, reader.getThumbnailWidth(0, 0));
+        assertEquals(150, reader.getThumbnailWidth(0, 1));
+        assertEquals(75,  reader.getThumbnailWidth(0, 2));
+        assertEquals(63,  reader.getThumbnailHeight(0, 2));
+        reader.dispose();
+
+        final List<long[]> offsets = new ArrayList<>();
+        long lastIFD = 0;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            final byte[] content = new byte[(int) in.length()];
+            in.readFully(content);
+            final ByteBuffer buffer = ByteBuffer.wrap(content);
+            buffer.order(buffer.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            assertEquals(42, buffer.getShort(2));
+            assertEquals(8,  buffer.getInt(4));
+            for (int ifd = 8; ifd != 0;) {
+                lastIFD = ifd;
+                final int count = buffer.getShort(ifd) & 0xFFFF;
+                for (int i = 0; i < count; i++) {
+                    final int p = ifd + 2 + i * 12;
+                    if ((buffer.getShort(p) & 0xFFFF) == 0x0144) { // TileOffsets
+                        final int n = buffer.getInt(p + 4);
+                        final int position = (n == 1) ? p + 8 : buffer.getInt(p + 8);
+                        final long[] values = new long[n];
+                        for (int j = 0; j < n; j++) {
+                            values[j] = buffer.getInt(position + j * 4) & 0xFFFFFFFFL;
+                        }
+                        offsets.add(values);
+                    }
+                }
+                ifd = buffer.getInt(ifd + 2 + count * 12);
+            }
+        }
+        assertEquals(4, offsets.size());
+        assertEquals(20, offsets.get(0).length);
+        assertEquals(1,  offsets.get(3).length);
+        long previous = lastIFD;
+        for (int i = offsets.size(); --i >= 0;) {
+            for (final long offset : offsets.get(i)) {
+                assertTrue("Tile data should follow all directories and smaller overviews.", offset > previous);
+                previous = offset;
+            }
+        }
+    }
+
+    /**
+     * Compares a subsampled read, which uses an overview, with the samples of the source image.
+     *
+     * @throws IOException if an error occurred while reading the file.
+     */
+    @Test
+    public void overviewReadTest() throws IOException {
+        final TiffImageReader reader = new TiffImageReader(null);
+        reader.setInput(file);
+        assertImageEquals(reader.read(0).getRaster(), new Rectangle(WIDTH, HEIGHT), 1);
+
+        final ImageReadParam param = reader.getDefaultReadParam();
+        final Rectangle region = new Rectangle(40, 24, 400, 301);
+        param.setSourceRegion(region);
+        for (final int subsampling : new int[] {2, 4, 8, 16}) {
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            assertImageEquals(reader.read(0, param).getRaster(), region, subsampling);
+        }
+        reader.dispose();
+    }
+
+    /**
+     * Compares subsampled reads starting on a pixel which does not exist in the overviews
+     * with the samples of the source image. Those reads shall not use the overviews.
+     *
+     * @throws IOException if an error occurred while reading the file.
+     */
+    @Test
+    public void unalignedOverviewReadTest() throws IOException {
+        final TiffImageReader reader = new TiffImageReader(null);
+        reader.setInput(file);
+        final ImageReadParam param = reader.getDefaultReadParam();
+        final Rectangle region = new Rectangle(41, 27, 400, 301);
+        param.setSourceRegion(region);
+        for (final int subsampling : new int[] {2, 4, 8, 16}) {
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            assertImageEquals(reader.read(0, param).getRaster(), region, subsampling);
+        }
+        /*
+         * Aligned region, but the subsampling offsets move the first pixel.
+         */
+        region.setLocation(40, 24);
+        param.setSourceRegion(region);
+        final Rectangle shifted = new Rectangle(region.x + 1, region.y + 3, region.width - 1, region.height - 3);
+        for (final int subsampling : new int[] {4, 8, 16}) {
+            param.setSourceSubsampling(subsampling, subsampling, 1, 3);
+            assertImageEquals(reader.read(0, param).getRaster(), shifted, subsampling);
+        }
+        reader.dispose();
+    }
+
+    /**
+     * Verifies that the given raster contains the samples of the source image region with the given subsampling.
+     */
+    private void assertImageEquals(final Raster raster, final Rectangle region, final int subsampling) {
+        assertEquals((region.width  + subsampling - 1) / subsampling, raster.getWidth());
+        assertEquals((region.height + subsampling - 1) / subsampling, raster.getHeight());
+        final Raster source = image.getRaster();
+        for (int y = 0; y < raster.getHeight(); y++) {
+            for (int x = 0; x < raster.getWidth(); x++) {
+                assertEquals(source.getSample(region.x + x * subsampling, region.y + y * subsampling, 0),
+                             raster.getSample(x, y, 0));
+            }
+        }
+    }
+}
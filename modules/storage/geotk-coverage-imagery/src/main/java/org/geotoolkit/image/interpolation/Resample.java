@@ -21,10 +21,15 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.DataBuffer;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRenderedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import org.apache.sis.geometry.Envelope2D;
 import org.apache.sis.geometry.GeneralDirectPosition;
 import org.apache.sis.geometry.GeneralEnvelope;
 import org.apache.sis.util.ArgumentChecks;
+import org.apache.sis.util.collection.BackingStoreException;
 import org.geotoolkit.geometry.Envelopes;
 import org.geotoolkit.image.io.large.WritableLargeRenderedImage;
 import org.geotoolkit.image.iterator.PixelIterator;
@@ -39,6 +44,9 @@ import org.opengis.referencing.operation.TransformException;
 /**
  * Fill target image from source image pixels interpolation at coordinate define
  * by transformation of target pixel coordinate by {@code MathTransform}.
+ * <p>
+ * When created from a source image, destination tiles can be filled in parallel,
+ * see {@link #fillImage(boolean) }.
  *
  * @author Rémi Marechal       (Geomatys).
  * @author Martin Desruisseaux (Geomatys).
@@ -49,6 +57,16 @@ public class Resample {
     private static final double[] CLAMP_SHORT  = new double[]{Short.MIN_VALUE,   Short.MAX_VALUE};
     private static final double[] CLAMP_USHORT = new double[]{0,                 0xFFFF};
     private static final double[] CLAMP_INT    = new double[]{Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+    /**
+     * Default maximum error, in destination pixels, of the grid approximating the transform.
+     */
+    public static final double DEFAULT_GRID_TOLERANCE = 0.125;
+
+    /**
+     * Pool used to fill destination tiles in parallel.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
             
     /**
      * Transform multi-dimensional point (in our case pixel coordinate) from target image
@@ -66,6 +84,20 @@ public class Resample {
      */
     private final Interpolation interpol;
 
+    /**
+     * Source image, interpolation case and lanczos window, used to create an interpolation
+     * for each parallel task. Source image is {@code null} if interpolation was given by user.
+     */
+    private final RenderedImage imageSrc;
+    private final InterpolationCase interpolationCase;
+    private final int lanczosWindow;
+
+    /**
+     * Maximum error, in destination pixels, of the grid approximating the transform.
+     * Zero means all pixel coordinates are transformed by the {@code MathTransform}.
+     */
+    private double gridTolerance = DEFAULT_GRID_TOLERANCE;
+
     /**
      * Image number bands.<br/>
      * Note : source and target image have same bands number.
@@ -283,6 +315,9 @@ public class Resample {
         //-- interpolation creation --//
         PixelIterator pix = PixelIteratorFactory.createDefaultIterator(imageSrc);
         interpol          = Interpolation.create(pix, interpolation, lanczosWindow, rbc, fillValue);
+        this.imageSrc          = imageSrc;
+        this.interpolationCase = interpolation;
+        this.lanczosWindow     = lanczosWindow;
         
         this.rbc   = rbc;
         this.clamp = getClamp(imageDest.getSampleModel().getDataType());
@@ -337,12 +372,40 @@ public class Resample {
         this.destIterator              = PixelIteratorFactory.createDefaultWriteableIterator(this.imageDest, this.imageDest, resampleArea);
         this.destToSourceMathTransform = mathTransform;
         this.interpol                  = interpol;
+        this.imageSrc                  = null;
+        this.interpolationCase         = null;
+        this.lanczosWindow             = 0;
         srcCoords  = new double[2];
         destCoords = new double[2];
         this.rbc   = rbc;
         this.clamp = getClamp(imageDest.getSampleModel().getDataType());
     }
     
+    /**
+     * Create a resample filling a part of the parent destination image,
+     * with its own interpolation and iterators.
+     *
+     * @param parent resample created from a source image.
+     * @param area destination image area within pixels are resample.
+     */
+    private Resample(final Resample parent, final Rectangle area) {
+        this.destToSourceMathTransform = parent.destToSourceMathTransform;
+        this.imageDest         = parent.imageDest;
+        this.imageSrc          = parent.imageSrc;
+        this.interpolationCase = parent.interpolationCase;
+        this.lanczosWindow     = parent.lanczosWindow;
+        this.numBands          = parent.numBands;
+        this.fillValue         = parent.fillValue;
+        this.rbc               = parent.rbc;
+        this.clamp             = parent.clamp;
+        this.gridTolerance     = parent.gridTolerance;
+        this.destIterator      = PixelIteratorFactory.createDefaultWriteableIterator(imageDest, imageDest, area);
+        this.interpol          = Interpolation.create(PixelIteratorFactory.createDefaultIterator(imageSrc),
+                interpolationCase, lanczosWindow, rbc, fillValue);
+        srcCoords  = new double[2];
+        destCoords = new double[2];
+    }
+
     private static double[] getClamp(int dataType) {
         switch (dataType) {
             /* Because DataBuffer.TYPE_BYTE is define as UByte. */
@@ -417,7 +480,7 @@ public class Resample {
                 final int interMaxRastX = StrictMath.min(rMaxX, rectBound.x + rectBound.width);
                 
                 //-- define minimum and maximum needed grid index in X direction. 
-                final int gCMinX = (int) (interMinRastX - minGridY / stepX) + minGridXIndex;
+                final int gCMinX = (int) ((interMinRastX - minGridX) / stepX) + minGridXIndex;
                 /*
                  * Max grid index in X direction equal Math.ceil(intersectionX / stepX) + 1.
                  * With + 1 because gridWidth = sub-division on X axis + 1;
@@ -674,24 +737,122 @@ public class Resample {
      * Fill destination image from source image pixel interpolation.
      */
     public void fillImage() throws TransformException {
-        if (destToSourceMathTransform instanceof MathTransform2D) {
-            try {
-                final GridFactory gridFact = new GridFactory(0.125);
-                final Object object = gridFact.create((MathTransform2D) destToSourceMathTransform, destIterator.getBoundary(false));
-                if (object instanceof AffineTransform) {
-                    fillImageByAffineTransform((AffineTransform) object);
-                } else {
-                    theGrid = (ResampleGrid) object;
-                    fillImageByGrid();
+        fillImage(false);
+    }
+
+    /**
+     * Fill destination image from source image pixel interpolation.<br/>
+     * In parallel mode, each destination tile is filled by a task of a fork-join pool,
+     * with its own {@link Interpolation} and {@link PixelIterator}s. The transform approximation
+     * is computed once and shared by all tasks, so the result is the same as sequential mode.<br/>
+     * Parallel mode is only available if this resample has been created from a source image,
+     * otherwise the image is filled in the current thread.
+     *
+     * @param parallel true to fill destination tiles in parallel.
+     * @throws TransformException if a pixel coordinate can not be transformed.
+     */
+    public void fillImage(final boolean parallel) throws TransformException {
+        final Object approximation = approximateTransform();
+        if (parallel && imageSrc != null) {
+            final Rectangle[] areas = getTileAreas();
+            if (areas.length > 1) {
+                if (approximation instanceof ResampleGrid) theGrid = (ResampleGrid) approximation;
+                try {
+                    POOL.invoke(new FillTask(areas, 0, areas.length, approximation));
+                } catch (RuntimeException ex) {
+                    //-- exception may be wrapped again by the pool
+                    for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+                        if (cause instanceof TransformException) throw (TransformException) cause;
+                    }
+                    throw ex;
                 }
                 return;
+            }
+        }
+        fill(approximation);
+    }
+
+    /**
+     * Set maximum error, in destination pixels, of the grid approximating the transform.
+     * A lower tolerance gives more accurate source coordinates but a finer grid.
+     * Zero disables approximation, all pixel coordinates are then transformed by the {@code MathTransform}.
+     *
+     * @param tolerance maximum error, zero or positive.
+     */
+    public void setGridTolerance(final double tolerance) {
+        ArgumentChecks.ensurePositive("tolerance", tolerance);
+        this.gridTolerance = tolerance;
+    }
+
+    /**
+     * Returns maximum error, in destination pixels, of the grid approximating the transform.
+     *
+     * @return maximum error, default is {@link #DEFAULT_GRID_TOLERANCE}.
+     */
+    public double getGridTolerance() {
+        return gridTolerance;
+    }
+
+    /**
+     * Approximate destination to source transform.
+     *
+     * @return {@link AffineTransform}, {@link ResampleGrid} or {@code null} if transform can not be approximated.
+     */
+    private Object approximateTransform() {
+        if (gridTolerance > 0 && destToSourceMathTransform instanceof MathTransform2D) {
+            try {
+                final GridFactory gridFact = new GridFactory(gridTolerance);
+                return gridFact.create((MathTransform2D) destToSourceMathTransform, destIterator.getBoundary(false));
             } catch (TransformException ex) {
                 //-- leave to fall back
             } catch (ArithmeticException e) {
                 //-- leave to fall back
             }
         }
-        fillImageByTransform();
+        return null;
+    }
+
+    /**
+     * Fill area traveled by destination iterator.
+     *
+     * @param approximation transform approximation returned by {@link #approximateTransform() }.
+     */
+    private void fill(final Object approximation) throws TransformException {
+        if (approximation instanceof AffineTransform) {
+            fillImageByAffineTransform((AffineTransform) approximation);
+        } else if (approximation instanceof ResampleGrid) {
+            theGrid = (ResampleGrid) approximation;
+            fillImageByGrid();
+        } else {
+            fillImageByTransform();
+        }
+    }
+
+    /**
+     * Split area traveled by destination iterator on destination tiles.
+     *
+     * @return intersection of each destination tile with the traveled area.
+     */
+    private Rectangle[] getTileAreas() {
+        final Rectangle area  = destIterator.getBoundary(true);
+        final int tileWidth   = imageDest.getTileWidth();
+        final int tileHeight  = imageDest.getTileHeight();
+        final int gridOffsetX = imageDest.getTileGridXOffset();
+        final int gridOffsetY = imageDest.getTileGridYOffset();
+        final int minTileX = (int) Math.floor((area.x - gridOffsetX) / (double) tileWidth);
+        final int minTileY = (int) Math.floor((area.y - gridOffsetY) / (double) tileHeight);
+        final int maxTileX = (int) Math.floor((area.x + area.width  - 1 - gridOffsetX) / (double) tileWidth);
+        final int maxTileY = (int) Math.floor((area.y + area.height - 1 - gridOffsetY) / (double) tileHeight);
+
+        final List<Rectangle> areas = new ArrayList<>();
+        for (int ty = minTileY; ty <= maxTileY; ty++) {
+            for (int tx = minTileX; tx <= maxTileX; tx++) {
+                final Rectangle tile = new Rectangle(gridOffsetX + tx * tileWidth, gridOffsetY + ty * tileHeight, tileWidth, tileHeight);
+                final Rectangle inter = tile.intersection(area);
+                if (!inter.isEmpty()) areas.add(inter);
+            }
+        }
+        return areas.toArray(new Rectangle[areas.size()]);
     }
 
     /**
@@ -748,5 +909,37 @@ public class Resample {
     ResampleGrid getGrid() {
         return theGrid;
     }
+
+    /**
+     * Fill a range of destination tile areas, range is split until a single area remains.
+     */
+    private final class FillTask extends RecursiveAction {
+
+        private final Rectangle[] areas;
+        private final int start;
+        private final int end;
+        private final Object approximation;
+
+        private FillTask(final Rectangle[] areas, final int start, final int end, final Object approximation) {
+            this.areas         = areas;
+            this.start         = start;
+            this.end           = end;
+            this.approximation = approximation;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                try {
+                    new Resample(Resample.this, areas[start]).fill(approximation);
+                } catch (TransformException ex) {
+                    throw new BackingStoreException(ex);
+                }
+            } else {
+                final int mid = (start + end) >>> 1;
+                invokeAll(new FillTask(areas, start, mid, approximation), new FillTask(areas, mid, end, approximation));
+            }
+        }
+    }
 }
  
\ No newline at end of file
@@ -3,16 +3,13 @@ package org.geotoolkit.image.io.large;
 import org.apache.sis.util.ArgumentChecks;
 import org.apache.sis.util.logging.Logging;
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.ImageWriter;
-import javax.media.jai.RasterFactory;
 import java.awt.*;
 import java.awt.image.*;
 import java.io.File;
 import java.io.IOException;
 import java.lang.ref.PhantomReference;
 import java.lang.ref.ReferenceQueue;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -36,9 +33,7 @@ public class LargeMap extends PhantomReference<RenderedImage> {
 
     private static final Logger LOGGER = Logging.getLogger(LargeMap.class);
 
-    private static final String TEMPORARY_PATH = System.getProperty("java.io.tmpdir");
-    private static final String FORMAT = "geotiff";
-    private static final Point WPOINT = new Point(0, 0);
+    private static final File TEMPORARY_PATH = new File(System.getProperty("java.io.tmpdir"));
 
     private long memoryCapacity;
     private long remainingCapacity;
@@ -46,16 +41,12 @@ public class LargeMap extends PhantomReference<RenderedImage> {
     private final int minTileY;
     private final int numTilesX;
     private final int numTilesY;
-    private final QuadTreeDirectory qTD;
-    private final String dirPath;
     private final int riMinX;
     private final int riMinY;
     private final int riTileWidth;
     private final int riTileHeight;
     private final int dataTypeWeight;
 
-//    private final ImageReader imgReader;
-//    private final ImageWriter imgWriter;
     private final boolean isWritableRenderedImage;
 
     private Future<Boolean> flushState = null;
@@ -69,16 +60,24 @@ public class LargeMap extends PhantomReference<RenderedImage> {
      */
     private final LinkedHashMap<Point, LargeRaster> tiles = new LinkedHashMap<>();
 
+    /**
+     * Swap space of tiles evicted from memory, created on first eviction.
+     * Swap, swapped entries and flushing tiles are guarded by swapped map lock.
+     */
+    private TileSwap swap;
+    private final HashMap<Point, TileSwap.Entry> swapped = new HashMap<>();
+    /** Tiles removed from memory and not yet copied in swap. */
+    private final HashMap<Point, LargeRaster> flushing = new HashMap<>();
+
     /**
      * <p>List which contain {@link java.awt.image.Raster} from {@link java.awt.image.RenderedImage} owner.<br/>
      * If some of {@link java.awt.image.Raster} weight within list exceed memory capacity, {@link java.awt.image.Raster} are stored
-     * on hard disk at appropriate quad tree emplacement in temporary system directory.<br/><br/>
+     * in a {@link TileSwap} in temporary system directory.<br/><br/>
      *
-     * Note : {@link java.awt.image.Raster} are stored in tiff format to avoid onerous, compression decompression, cost during disk writing reading.</p>
+     * Note : raw {@link java.awt.image.Raster} data is swapped, no image codec is involved.</p>
      *
      * @param ri {@link java.awt.image.RenderedImage} which contain all raster in list.
      * @param memoryCapacity storage capacity in Byte.
-     * @throws java.io.IOException if impossible to create {@link javax.imageio.ImageReader} or {@link javax.imageio.ImageWriter}.
      */
     LargeMap(RenderedImage ri, ReferenceQueue<RenderedImage> queue, long memoryCapacity) throws IOException {
         super(ri, queue);
@@ -96,14 +95,6 @@ public class LargeMap extends PhantomReference<RenderedImage> {
         this.minTileX      = ri.getMinTileX();
         this.minTileY      = ri.getMinTileY();
 
-        //quad tree directory architecture.
-        this.dirPath = TEMPORARY_PATH + "/img_"+ri.hashCode();
-        this.qTD     = new QuadTreeDirectory(dirPath, numTilesX, numTilesY, FORMAT, true);
-
-        //reader writer
-//        this.imgReader = XImageIO.getReaderByFormatName(FORMAT, null, Boolean.FALSE, Boolean.TRUE);
-//        this.imgWriter = XImageIO.getWriterByFormatName(FORMAT, null, null);
-
         final int datatype = ri.getColorModel().createCompatibleSampleModel(riTileWidth, riTileHeight).getDataType();
         switch (datatype) {
             case DataBuffer.TYPE_BYTE      : dataTypeWeight = 1; break;
@@ -146,6 +137,10 @@ public class LargeMap extends PhantomReference<RenderedImage> {
         } finally {
             tileLock.writeLock().unlock();
         }
+        synchronized (swapped) {
+            //tile replaced while it was flushed, do not swap outdated data
+            flushing.remove(tileCorner);
+        }
         checkMap();
     }
 
@@ -160,15 +155,20 @@ public class LargeMap extends PhantomReference<RenderedImage> {
 
         tileLock.writeLock().lock();
         try {
-            tiles.remove(tileCorner);
+            final LargeRaster lr = tiles.remove(tileCorner);
+            if (lr != null) {
+                remainingCapacity += lr.getWeight();
+            }
         } finally {
             tileLock.writeLock().unlock();
         }
 
-        //quad tree
-        final File removeFile = new File(qTD.getPath(tileCorner.x, tileCorner.y));
-        //delete on hard disk if exist.
-        if (removeFile.exists()) removeFile.delete();
+        //release swap space
+        synchronized (swapped) {
+            flushing.remove(tileCorner);
+            final TileSwap.Entry entry = swapped.remove(tileCorner);
+            if (entry != null) swap.free(entry);
+        }
     }
 
     /**
@@ -192,19 +192,26 @@ public class LargeMap extends PhantomReference<RenderedImage> {
             tileLock.readLock().unlock();
         }
         
-        // If not, we must take it from input quad-tree.
-        final File getFile = new File(qTD.getPath(tileCorner.x, tileCorner.y));
-        if (getFile.exists()) {
-            // TODO : Use a "pool" of readers, instead of creating one each time ?
-            final ImageReader imgReader = getImageReader();
-            imgReader.setInput(getFile);
-            final BufferedImage buff = imgReader.read(0);
-            imgReader.setInput(null);
-            imgReader.dispose();
+        // If not, we must take it from swap.
+        WritableRaster raster = null;
+        synchronized (swapped) {
+            final LargeRaster lRaster = flushing.remove(tileCorner);
+            if (lRaster != null) {
+                //tile is not copied in swap yet, put it back in memory
+                raster = (WritableRaster) lRaster.getRaster();
+            } else {
+                final TileSwap.Entry entry = swapped.get(tileCorner);
+                if (entry != null) {
+                    raster = swap.read(entry, new Point(
+                            riTileWidth  * tileCorner.x + riMinX,
+                            riTileHeight * tileCorner.y + riMinY));
+                }
+            }
+        }
+        if (raster != null) {
             //add in cache list.
-            final WritableRaster checkedRaster = checkRaster(buff.getRaster(), tileCorner);
-            add(tileCorner, checkedRaster);
-            return checkedRaster;
+            add(tileCorner, raster);
+            return raster;
         }
 
         throw new IOException("Tile (" + tileX + ", " + tileY + ") unknown. Cannot get raster.");
@@ -228,7 +235,7 @@ public class LargeMap extends PhantomReference<RenderedImage> {
     }
 
     /**
-     * Remove all file and directory relevant to this cached image.
+     * Remove all tiles and swap files relevant to this cached image.
      */
     void removeTiles() {
         try {
@@ -238,6 +245,14 @@ public class LargeMap extends PhantomReference<RenderedImage> {
         } finally {
             tileLock.writeLock().unlock();
         }
+        synchronized (swapped) {
+            flushing.clear();
+            swapped.clear();
+            if (swap != null) {
+                swap.dispose();
+                swap = null;
+            }
+        }
     }
 
     /**
@@ -273,26 +288,31 @@ public class LargeMap extends PhantomReference<RenderedImage> {
     }
 
     /**
-     * Write {@link java.awt.image.Raster} within {@link org.geotoolkit.image.io.large.LargeRaster} object on hard disk at appropriate quad tree emplacement.
+     * Copy {@link java.awt.image.Raster} within {@link org.geotoolkit.image.io.large.LargeRaster} object in swap.
+     * Tiles of a non writable image already in swap are not copied again.
      *
      * @param lRaster object which contain raster.
      * @throws java.io.IOException if impossible to write raster on disk.
      */
     private void writeRaster(LargeRaster lRaster) throws IOException {
-        final RenderedImage img = get();
-        if (img == null) {
-            throw new IOException("Source data not available anymore !");
-        }
-        final File tileFile = new File(qTD.getPath(lRaster.getGridX(), lRaster.getGridY()));
-        if (!tileFile.exists() || isWritableRenderedImage) {
-            final BufferedImage toWrite = new BufferedImage(
-                    img.getColorModel(), RasterFactory.createWritableRaster(lRaster.getRaster().getSampleModel(), lRaster.getRaster().getDataBuffer(), WPOINT), true, null);
-            // TODO : Optimize using a "writer pool" instead of creating one each time ?
-            final ImageWriter imgWriter = getImageWriter();
-            imgWriter.setOutput(tileFile);
-            imgWriter.write(toWrite);
-            imgWriter.setOutput(null);
-            imgWriter.dispose();
+        final Point tileCorner = new Point(lRaster.getGridX(), lRaster.getGridY());
+        synchronized (swapped) {
+            try {
+                if (flushing.get(tileCorner) != lRaster) {
+                    //tile has been removed or reloaded meanwhile
+                    return;
+                }
+                final TileSwap.Entry previous = swapped.get(tileCorner);
+                if (previous == null || isWritableRenderedImage) {
+                    if (swap == null) {
+                        swap = new TileSwap(TEMPORARY_PATH, TileSwap.DEFAULT_SLAB_SIZE);
+                    }
+                    swapped.remove(tileCorner);
+                    swapped.put(tileCorner, swap.write(previous, lRaster.getRaster()));
+                }
+            } finally {
+                flushing.remove(tileCorner);
+            }
         }
     }
 
@@ -320,40 +340,20 @@ public class LargeMap extends PhantomReference<RenderedImage> {
      */
     private synchronized void checkMap() {
         // We need to write tiles in the quad-tree, and no worker is doing it.
-        if (remainingCapacity < 0 && flushState != null && flushState.isDone()) {
+        if (remainingCapacity < 0 && (flushState == null || flushState.isDone())) {
             final ExecutorService service = Executors.newSingleThreadExecutor();
             flushState = service.submit(new FlushWorker());
             service.shutdown();
         }
     }
 
-    private static ImageReader getImageReader() throws IOException {
-        final Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(FORMAT);
-        if (readers.hasNext()) {
-            return readers.next();
-        } else {
-            throw new IOException("No reader can be found for the following format : "+FORMAT);
-        }
-    }
-
-    private static ImageWriter getImageWriter() throws IOException {
-        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(FORMAT);
-        if (writers.hasNext()) {
-            return writers.next();
-        } else {
-            throw new IOException("No writer can be found for the following format : "+FORMAT);
-        }
-    }
-
-
     /**
-     * A thread which will be in charge of memory cleaning. To do so, it will flush old tiles in a temporary quad-tree on file-system.
+     * A thread which will be in charge of memory cleaning. To do so, it will flush old tiles in the swap.
      */
     private class FlushWorker implements Callable<Boolean> {
 
         @Override
         public Boolean call() {
-            System.out.println("Entered flush");
             final Thread currentThread = Thread.currentThread();
             final LinkedList<LargeRaster> toFlush = new LinkedList<>();
 
@@ -369,6 +369,9 @@ public class LargeMap extends PhantomReference<RenderedImage> {
                         remainingCapacity += largeRaster.getWeight();
                         tileIterator.remove();
                         toFlush.add(largeRaster);
+                        synchronized (swapped) {
+                            flushing.put(tileCorner, largeRaster);
+                        }
                     }
                 }
 
@@ -393,7 +396,6 @@ public class LargeMap extends PhantomReference<RenderedImage> {
                     tileLock.writeLock().unlock();
                 }
                 tileLock.readLock().unlock();
-                System.out.println("Exit flush.");
             }
         }
     }
@@ -0,0 +1,375 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.large;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.sis.util.logging.Logging;
+
+/**
+ * Swap space for {@link Raster} data evicted from a {@link LargeMap}.
+ *
+ * Raw {@link DataBuffer} content is copied in memory mapped slab files, no image codec
+ * is involved. Space is managed with a free list of blocks sorted by address, adjacent
+ * free blocks are merged when a block is released.
+ *
+ * A block address is made of the slab index in the upper 32 bits and the offset in the
+ * slab in the lower 32 bits, a block never spans two slabs.
+ *
+ * This class is not thread safe, callers must synchronize access.
+ *
+ * @module pending
+ */
+final class TileSwap {
+
+    private static final Logger LOGGER = Logging.getLogger(TileSwap.class);
+
+    /** Default slab size : 64Mb. */
+    static final int DEFAULT_SLAB_SIZE = 64 * 1024 * 1024;
+
+    private final File directory;
+    private final int slabSize;
+    private final List<Slab> slabs = new ArrayList<>();
+    /** Free blocks, block address -> block length. */
+    private final TreeMap<Long,Integer> freeBlocks = new TreeMap<>();
+
+    /**
+     * @param directory folder where slab files are created
+     * @param slabSize slab file size in bytes, a bigger slab is created if a tile does not fit
+     */
+    TileSwap(final File directory, final int slabSize) {
+        this.directory = directory;
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * @return number of slab files
+     */
+    int getSlabCount() {
+        return slabs.size();
+    }
+
+    /**
+     * Copy raster data in swap.
+     *
+     * @param previous previous swap entry of this tile, can be null.
+     *        Its block is reused if it has the same size, otherwise it is released.
+     * @param raster raster to store
+     * @return swap entry used to read back raster data
+     * @throws IOException if a slab file can not be created
+     */
+    Entry write(final Entry previous, final Raster raster) throws IOException {
+        final DataBuffer db = raster.getDataBuffer();
+        final int numBanks = db.getNumBanks();
+        final int bankLength = bankLength(db);
+        final int elementSize = DataBuffer.getDataTypeSize(db.getDataType()) / Byte.SIZE;
+        final long length = (long) numBanks * bankLength * elementSize;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Raster too large for swap : " + length + " bytes.");
+        }
+
+        final long address;
+        if (previous != null && previous.length == length) {
+            address = previous.address;
+        } else {
+            if (previous != null) {
+                free(previous);
+            }
+            address = allocate((int) length);
+        }
+
+        final Entry entry = new Entry(address, (int) length, raster.getSampleModel(),
+                db.getDataType(), db.getSize(), bankLength, offsets(db));
+        final ByteBuffer buffer = view(entry);
+        for (int b = 0; b < numBanks; b++) {
+            buffer.position(b * bankLength * elementSize);
+            final ByteBuffer bank = buffer.slice().order(buffer.order());
+            if (db instanceof DataBufferByte) {
+                bank.put(((DataBufferByte) db).getData(b));
+            } else if (db instanceof DataBufferUShort) {
+                bank.asShortBuffer().put(((DataBufferUShort) db).getData(b));
+            } else if (db instanceof DataBufferShort) {
+                bank.asShortBuffer().put(((DataBufferShort) db).getData(b));
+            } else if (db instanceof DataBufferInt) {
+                bank.asIntBuffer().put(((DataBufferInt) db).getData(b));
+            } else if (db instanceof DataBufferFloat) {
+                bank.asFloatBuffer().put(((DataBufferFloat) db).getData(b));
+            } else if (db instanceof DataBufferDouble) {
+                bank.asDoubleBuffer().put(((DataBufferDouble) db).getData(b));
+            } else {
+                //unknown buffer implementation, copy element by element
+                for (int i = 0; i < bankLength; i++) {
+                    switch (db.getDataType()) {
+                        case DataBuffer.TYPE_BYTE   : bank.put((byte) db.getElem(b, i)); break;
+                        case DataBuffer.TYPE_USHORT :
+                        case DataBuffer.TYPE_SHORT  : bank.putShort((short) db.getElem(b, i)); break;
+                        case DataBuffer.TYPE_INT    : bank.putInt(db.getElem(b, i)); break;
+                        case DataBuffer.TYPE_FLOAT  : bank.putFloat(db.getElemFloat(b, i)); break;
+                        case DataBuffer.TYPE_DOUBLE : bank.putDouble(db.getElemDouble(b, i)); break;
+                        default : throw new IOException("Unsupported data type : " + db.getDataType());
+                    }
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Read back raster data.
+     *
+     * @param entry swap entry returned by write
+     * @param location raster upper left corner
+     * @return new raster, with a copy of the swapped data
+     */
+    WritableRaster read(final Entry entry, final Point location) {
+        final int numBanks = entry.offsets.length;
+        final int bankLength = entry.bankLength;
+        final int elementSize = DataBuffer.getDataTypeSize(entry.dataType) / Byte.SIZE;
+        final ByteBuffer buffer = view(entry);
+
+        final DataBuffer db;
+        switch (entry.dataType) {
+            case DataBuffer.TYPE_BYTE : {
+                final byte[][] data = new byte[numBanks][bankLength];
+                for (int b = 0; b < numBanks; b++) {
+                    bank(buffer, b, bankLength * elementSize).get(data[b]);
+                }
+                db = new DataBufferByte(data, entry.size, entry.offsets);
+                break;
+            }
+            case DataBuffer.TYPE_USHORT : {
+                final short[][] data = new short[numBanks][bankLength];
+                for (int b = 0; b < numBanks; b++) {
+                    bank(buffer, b, bankLength * elementSize).asShortBuffer().get(data[b]);
+                }
+                db = new DataBufferUShort(data, entry.size, entry.offsets);
+                break;
+            }
+            case DataBuffer.TYPE_SHORT : {
+                final short[][] data = new short[numBanks][bankLength];
+                for (int b = 0; b < numBanks; b++) {
+                    bank(buffer, b, bankLength * elementSize).asShortBuffer().get(data[b]);
+                }
+                db = new DataBufferShort(data, entry.size, entry.offsets);
+                break;
+            }
+            case DataBuffer.TYPE_INT : {
+                final int[][] data = new int[numBanks][bankLength];
+                for (int b = 0; b < numBanks; b++) {
+                    bank(buffer, b, bankLength * elementSize).asIntBuffer().get(data[b]);
+                }
+                db = new DataBufferInt(data, entry.size, entry.offsets);
+                break;
+            }
+            case DataBuffer.TYPE_FLOAT : {
+                final float[][] data = new float[numBanks][bankLength];
+                for (int b = 0; b < numBanks; b++) {
+                    bank(buffer, b, bankLength * elementSize).asFloatBuffer().get(data[b]);
+                }
+                db = new DataBufferFloat(data, entry.size, entry.offsets);
+                break;
+            }
+            case DataBuffer.TYPE_DOUBLE : {
+                final double[][] data = new double[numBanks][bankLength];
+                for (int b = 0; b < numBanks; b++) {
+                    bank(buffer, b, bankLength * elementSize).asDoubleBuffer().get(data[b]);
+                }
+                db = new DataBufferDouble(data, entry.size, entry.offsets);
+                break;
+            }
+            default : throw new IllegalStateException("Unsupported data type : " + entry.dataType);
+        }
+        return Raster.createWritableRaster(entry.sampleModel, db, location);
+    }
+
+    /**
+     * Release the block of a swap entry.
+     *
+     * @param entry swap entry returned by write
+     */
+    void free(final Entry entry) {
+        long address = entry.address;
+        int length = entry.length;
+        if (length == 0) {
+            return;
+        }
+        final Map.Entry<Long,Integer> before = freeBlocks.lowerEntry(address);
+        if (before != null && before.getKey() + before.getValue() == address) {
+            freeBlocks.remove(before.getKey());
+            address = before.getKey();
+            length += before.getValue();
+        }
+        final Integer after = freeBlocks.remove(entry.address + entry.length);
+        if (after != null) {
+            length += after;
+        }
+        freeBlocks.put(address, length);
+    }
+
+    /**
+     * Release all slab files.
+     */
+    void dispose() {
+        for (Slab slab : slabs) {
+            try {
+                slab.channel.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, ex.getMessage(), ex);
+            }
+            //mapped buffer is released on garbage collection, file may still be locked on some platforms
+            if (!slab.file.delete()) {
+                slab.file.deleteOnExit();
+            }
+        }
+        slabs.clear();
+        freeBlocks.clear();
+    }
+
+    /**
+     * Find a free block, first fit. A new slab is created if no free block is large enough.
+     */
+    private long allocate(final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        final Iterator<Map.Entry<Long,Integer>> ite = freeBlocks.entrySet().iterator();
+        while (ite.hasNext()) {
+            final Map.Entry<Long,Integer> block = ite.next();
+            final int blockLength = block.getValue();
+            if (blockLength >= length) {
+                ite.remove();
+                final long address = block.getKey();
+                if (blockLength > length) {
+                    freeBlocks.put(address + length, blockLength - length);
+                }
+                return address;
+            }
+        }
+
+        final int size = Math.max(slabSize, length);
+        final File file = File.createTempFile("tiles", ".swap", directory);
+        file.deleteOnExit();
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        final MappedByteBuffer buffer;
+        try {
+            raf.setLength(size);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException ex) {
+            raf.close();
+            file.delete();
+            throw ex;
+        }
+        final long address = ((long) slabs.size()) << 32;
+        slabs.add(new Slab(file, raf.getChannel(), buffer));
+        if (size > length) {
+            freeBlocks.put(address + length, size - length);
+        }
+        return address;
+    }
+
+    private ByteBuffer view(final Entry entry) {
+        final ByteBuffer buffer = slabs.get((int) (entry.address >>> 32)).buffer.duplicate();
+        final int offset = (int) entry.address;
+        buffer.limit(offset + entry.length);
+        buffer.position(offset);
+        return buffer.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer bank(final ByteBuffer buffer, final int bank, final int bankSize) {
+        buffer.limit(bank * bankSize + bankSize);
+        buffer.position(bank * bankSize);
+        return buffer.slice().order(buffer.order());
+    }
+
+    private static int bankLength(final DataBuffer db) {
+        if (db instanceof DataBufferByte)   return ((DataBufferByte) db).getData(0).length;
+        if (db instanceof DataBufferUShort) return ((DataBufferUShort) db).getData(0).length;
+        if (db instanceof DataBufferShort)  return ((DataBufferShort) db).getData(0).length;
+        if (db instanceof DataBufferInt)    return ((DataBufferInt) db).getData(0).length;
+        if (db instanceof DataBufferFloat)  return ((DataBufferFloat) db).getData(0).length;
+        if (db instanceof DataBufferDouble) return ((DataBufferDouble) db).getData(0).length;
+        //unknown buffer implementation, elements are copied without offsets
+        return db.getSize();
+    }
+
+    private static int[] offsets(final DataBuffer db) {
+        if (db instanceof DataBufferByte || db instanceof DataBufferUShort || db instanceof DataBufferShort
+         || db instanceof DataBufferInt || db instanceof DataBufferFloat || db instanceof DataBufferDouble) {
+            return db.getOffsets();
+        }
+        return new int[db.getNumBanks()];
+    }
+
+    /**
+     * Location and layout of a swapped raster.
+     */
+    static final class Entry {
+        private final long address;
+        private final int length;
+        private final SampleModel sampleModel;
+        private final int dataType;
+        private final int size;
+        private final int bankLength;
+        private final int[] offsets;
+
+        private Entry(final long address, final int length, final SampleModel sampleModel,
+                final int dataType, final int size, final int bankLength, final int[] offsets) {
+            this.address = address;
+            this.length = length;
+            this.sampleModel = sampleModel;
+            this.dataType = dataType;
+            this.size = size;
+            this.bankLength = bankLength;
+            this.offsets = offsets;
+        }
+    }
+
+    private static final class Slab {
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Slab(final File file, final FileChannel channel, final MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
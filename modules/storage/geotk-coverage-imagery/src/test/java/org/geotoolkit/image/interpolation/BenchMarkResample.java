@@ -18,6 +18,7 @@ package org.geotoolkit.image.interpolation;
 
 import java.awt.image.BufferedImage;
 import java.util.Random;
+import javax.media.jai.TiledImage;
 import org.apache.sis.geometry.Envelope2D;
 import org.apache.sis.internal.referencing.j2d.AffineTransform2D;
 import org.apache.sis.math.Statistics;
@@ -213,4 +214,34 @@ public class BenchMarkResample {
         System.out.println("stats mercator : "+stats);
         
     }
+
+    /**
+     * Compare sequential and parallel resampling for each interpolation, with a tiled target.
+     */
+    @Test
+    @Ignore
+    public void benchParallelTest() throws Exception {
+
+        final TiledImage tiledTarget = new TiledImage(0, 0, SRC_WIDTH, SRC_HEIGHT, 0, 0,
+                target.getSampleModel().createCompatibleSampleModel(256, 256), target.getColorModel());
+
+        for (InterpolationCase interpolation : new InterpolationCase[]{InterpolationCase.NEIGHBOR,
+                InterpolationCase.BILINEAR, InterpolationCase.BICUBIC, InterpolationCase.LANCZOS}) {
+            for (boolean parallel : new boolean[]{false, true}) {
+                final Statistics stats = new Statistics(interpolation + (parallel ? " parallel" : " sequential"));
+                int n = 0;
+                while (n++ < 20) {
+                    final Resample resample = new Resample(lambertTransform, tiledTarget, source,
+                            interpolation, ResampleBorderComportement.EXTRAPOLATION, new double[]{0});
+                    final long t0 = System.currentTimeMillis();
+                    resample.fillImage(parallel);
+                    final long t = System.currentTimeMillis() - t0;
+                    if (n > 5) {
+                        stats.accept(t);
+                    }
+                }
+                System.out.println("stats " + stats);
+            }
+        }
+    }
 }
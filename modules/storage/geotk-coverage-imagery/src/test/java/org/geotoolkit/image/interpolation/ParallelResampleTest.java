@@ -0,0 +1,132 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.interpolation;
+
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import javax.media.jai.TiledImage;
+import org.apache.sis.internal.referencing.j2d.AffineTransform2D;
+import org.apache.sis.referencing.operation.matrix.Matrix2;
+import org.apache.sis.referencing.operation.transform.AbstractMathTransform2D;
+import org.junit.Test;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.Matrix;
+import org.opengis.referencing.operation.TransformException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test parallel fill of {@link Resample} gives the same result as sequential fill.
+ *
+ * @module pending
+ */
+public class ParallelResampleTest {
+
+    private static final InterpolationCase[] CASES = {
+        InterpolationCase.NEIGHBOR, InterpolationCase.BILINEAR, InterpolationCase.BICUBIC, InterpolationCase.LANCZOS
+    };
+
+    private final BufferedImage source;
+
+    public ParallelResampleTest() {
+        final Random random = new Random(42);
+        source = new BufferedImage(64, 64, BufferedImage.TYPE_BYTE_GRAY);
+        final WritableRaster raster = source.getRaster();
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                raster.setSample(x, y, 0, random.nextInt(256));
+            }
+        }
+    }
+
+    private static TiledImage createTarget() {
+        //-- 100 x 100 image with 32 x 32 tiles, last tiles are partially filled
+        return new TiledImage(0, 0, 100, 100, 0, 0, new BandedSampleModel(DataBuffer.TYPE_DOUBLE, 32, 32, 1), null);
+    }
+
+    private void compare(final MathTransform transform, final double tolerance) throws TransformException {
+        for (InterpolationCase interpolation : CASES) {
+            final TiledImage sequential = createTarget();
+            final TiledImage parallel   = createTarget();
+
+            Resample resample = new Resample(transform, sequential, source, interpolation,
+                    ResampleBorderComportement.FILL_VALUE, new double[]{-1});
+            resample.setGridTolerance(tolerance);
+            resample.fillImage();
+
+            resample = new Resample(transform, parallel, source, interpolation,
+                    ResampleBorderComportement.FILL_VALUE, new double[]{-1});
+            resample.setGridTolerance(tolerance);
+            resample.fillImage(true);
+
+            assertImageEquals(interpolation.name(), sequential, parallel);
+        }
+    }
+
+    private static void assertImageEquals(final String message, final RenderedImage expected, final RenderedImage result) {
+        final Raster expectedData = expected.getData();
+        final Raster resultData   = result.getData();
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(message + " (" + x + "," + y + ")",
+                        expectedData.getSampleDouble(x, y, 0), resultData.getSampleDouble(x, y, 0), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void affineTest() throws TransformException {
+        compare(new AffineTransform2D(0.55, 0.1, -0.1, 0.6, 3, 2), Resample.DEFAULT_GRID_TOLERANCE);
+    }
+
+    @Test
+    public void gridTest() throws TransformException {
+        compare(new CurveTransform(), Resample.DEFAULT_GRID_TOLERANCE);
+    }
+
+    @Test
+    public void exactTransformTest() throws TransformException {
+        compare(new CurveTransform(), 0);
+    }
+
+    /**
+     * A non linear transform.
+     */
+    private static final class CurveTransform extends AbstractMathTransform2D {
+
+        @Override
+        public Matrix transform(final double[] srcPts, final int srcOff,
+                final double[] dstPts, final int dstOff, final boolean derivate) {
+            final double x = srcPts[srcOff];
+            final double y = srcPts[srcOff + 1];
+            if (dstPts != null) {
+                dstPts[dstOff]     = 0.5 * x + 0.002 * x * y;
+                dstPts[dstOff + 1] = 0.6 * y + 0.001 * x * x;
+            }
+            if (!derivate) {
+                return null;
+            }
+            return new Matrix2(0.5 + 0.002 * y, 0.002 * x,
+                               0.002 * x,       0.6);
+        }
+    }
+}
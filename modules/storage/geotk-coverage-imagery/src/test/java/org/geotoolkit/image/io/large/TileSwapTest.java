@@ -0,0 +1,123 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.large;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test raw tile swap.
+ *
+ * @module pending
+ */
+public class TileSwapTest {
+
+    private static final File TEMP = new File(System.getProperty("java.io.tmpdir"));
+
+    private static WritableRaster createRaster(final int dataType, final int nbBand, final double seed) {
+        final WritableRaster raster = Raster.createWritableRaster(
+                new BandedSampleModel(dataType, 8, 8, nbBand), new Point(0, 0));
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                for (int b = 0; b < nbBand; b++) {
+                    raster.setSample(x, y, b, seed + x + y * 8 + b * 3);
+                }
+            }
+        }
+        return raster;
+    }
+
+    private static void assertRasterEquals(final Raster expected, final Raster result) {
+        assertEquals(expected.getDataBuffer().getDataType(), result.getDataBuffer().getDataType());
+        assertEquals(expected.getNumBands(), result.getNumBands());
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                for (int b = 0; b < expected.getNumBands(); b++) {
+                    assertEquals(expected.getSampleDouble(x, y, b),
+                            result.getSampleDouble(result.getMinX() + x, result.getMinY() + y, b), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        final TileSwap swap = new TileSwap(TEMP, 4096);
+        try {
+            final int[] types = {DataBuffer.TYPE_BYTE, DataBuffer.TYPE_USHORT, DataBuffer.TYPE_SHORT,
+                                 DataBuffer.TYPE_INT, DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE};
+            final WritableRaster[] rasters = new WritableRaster[types.length];
+            final TileSwap.Entry[] entries = new TileSwap.Entry[types.length];
+            for (int i = 0; i < types.length; i++) {
+                rasters[i] = createRaster(types[i], 3, i);
+                entries[i] = swap.write(null, rasters[i]);
+            }
+            for (int i = 0; i < types.length; i++) {
+                final WritableRaster result = swap.read(entries[i], new Point(256, 512));
+                assertEquals(256, result.getMinX());
+                assertEquals(512, result.getMinY());
+                assertRasterEquals(rasters[i], result);
+            }
+
+            //rewrite in place
+            final WritableRaster update = createRaster(DataBuffer.TYPE_FLOAT, 3, 100);
+            entries[4] = swap.write(entries[4], update);
+            assertRasterEquals(update, swap.read(entries[4], new Point(0, 0)));
+            assertRasterEquals(rasters[5], swap.read(entries[5], new Point(0, 0)));
+        } finally {
+            swap.dispose();
+        }
+    }
+
+    @Test
+    public void testFreeList() throws IOException {
+        //each raster uses 1024 bytes
+        final TileSwap swap = new TileSwap(TEMP, 4096);
+        try {
+            final TileSwap.Entry[] entries = new TileSwap.Entry[4];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = swap.write(null, createRaster(DataBuffer.TYPE_INT, 4, i));
+            }
+            assertEquals(1, swap.getSlabCount());
+
+            //freed blocks are merged, a larger raster fits in the first two blocks
+            swap.free(entries[1]);
+            swap.free(entries[0]);
+            final WritableRaster large = createRaster(DataBuffer.TYPE_INT, 8, 10);
+            final TileSwap.Entry entry = swap.write(null, large);
+            assertEquals(1, swap.getSlabCount());
+            assertRasterEquals(large, swap.read(entry, new Point(0, 0)));
+            assertRasterEquals(createRaster(DataBuffer.TYPE_INT, 4, 3), swap.read(entries[3], new Point(0, 0)));
+
+            //no space left, a new slab is created
+            swap.write(null, createRaster(DataBuffer.TYPE_INT, 4, 20));
+            assertEquals(2, swap.getSlabCount());
+        } finally {
+            swap.dispose();
+        }
+        assertEquals(0, swap.getSlabCount());
+    }
+
+}
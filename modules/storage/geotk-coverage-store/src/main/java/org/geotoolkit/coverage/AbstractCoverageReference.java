@@ -114,12 +114,14 @@ public abstract class AbstractCoverageReference extends DefaultDataNode implemen
     }
 
     protected CoverageStoreManagementEvent fireMosaicUpdated(final String pyramidId, final String mosaicId){
+        GridMosaicRenderedImage.clearTileCache(mosaicId);
         final CoverageStoreManagementEvent event = CoverageStoreManagementEvent.createMosaicUpdateEvent(this, getName(), pyramidId, mosaicId);
         sendStructureEvent(event);
         return event;
     }
 
     protected CoverageStoreManagementEvent fireMosaicDeleted(final String pyramidId, final String mosaicId){
+        GridMosaicRenderedImage.clearTileCache(mosaicId);
         final CoverageStoreManagementEvent event = CoverageStoreManagementEvent.createMosaicDeleteEvent(this, getName(), pyramidId, mosaicId);
         sendStructureEvent(event);
         return event;
@@ -138,12 +140,14 @@ public abstract class AbstractCoverageReference extends DefaultDataNode implemen
     }
 
     protected CoverageStoreContentEvent fireTileUpdated(final String pyramidId, final String mosaicId, final List<Point> tiles){
+        GridMosaicRenderedImage.clearTileCache(mosaicId);
         final CoverageStoreContentEvent event = CoverageStoreContentEvent.createTileUpdateEvent(this, getName(), pyramidId, mosaicId, tiles);
         sendContentEvent(event);
         return event;
     }
 
     protected CoverageStoreContentEvent fireTileDeleted(final String pyramidId, final String mosaicId, final List<Point> tiles){
+        GridMosaicRenderedImage.clearTileCache(mosaicId);
         final CoverageStoreContentEvent event = CoverageStoreContentEvent.createTileDeleteEvent(this, getName(), pyramidId, mosaicId, tiles);
         sendContentEvent(event);
         return event;
@@ -22,7 +22,26 @@ import javax.imageio.ImageReader;
 import java.awt.*;
 import java.awt.image.*;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.sis.storage.DataStoreException;
@@ -35,6 +54,14 @@ import org.geotoolkit.math.XMath;
  * Implementation of RenderedImage using GridMosaic.
  * With this a GridMosaic can be see as a RenderedImage.
  *
+ * Decoded tiles are stored in a cache shared by all images of the same mosaic,
+ * this cache is limited by the tiles size in bytes. Cached tiles are indexed by
+ * mosaic identifier and by a token given to each mosaic instance, mosaics are
+ * not referenced by the cache. When several tiles are
+ * needed (getData methods), they are requested in one call to
+ * {@link GridMosaic#getTiles(java.util.Collection, java.util.Map) } and
+ * decoded concurrently.
+ *
  * @author Thomas Rouby (Geomatys)
  * @author Quentin Boileau (Geomatys)
  * @author Johann Sorel (Geomatys)
@@ -45,9 +72,63 @@ public class GridMosaicRenderedImage implements RenderedImage {
     private static final Logger LOGGER = Logging.getLogger(GridMosaicRenderedImage.class);
 
     /**
-     * A tile cache
+     * Maximum size in bytes of the decoded tiles hold by the cache.
+     * Tiles above this size are kept by soft references.
+     */
+    private static final long TILE_CACHE_SIZE = 64l * 1024l * 1024l;
+
+    /**
+     * A tile cache, shared by all images. Cached rasters are never given to the
+     * callers as writable rasters, {@link #getTile(int, int)} returns read-only children
+     * and {@link #getData(java.awt.Rectangle)} returns copies.
+     */
+    private static final Cache<TileKey,Raster> TILE_CACHE = new Cache<TileKey,Raster>(64, TILE_CACHE_SIZE, true){
+        @Override
+        protected int cost(final Raster value) {
+            final DataBuffer buffer = value.getDataBuffer();
+            final long size = (long)buffer.getSize() * buffer.getNumBanks()
+                    * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+            return (int) Math.min(size, Integer.MAX_VALUE);
+        }
+    };
+
+    /**
+     * Token of each mosaic instance, mosaic identifiers are not unique between stores.
+     * Mosaics are compared by identity and weakly referenced.
+     */
+    private static final Map<GridMosaic,MosaicToken> MOSAIC_TOKENS = new WeakHashMap<>();
+
+    /**
+     * Last mosaic token.
+     */
+    private static final AtomicLong LAST_TOKEN = new AtomicLong();
+
+    /**
+     * Version of each mosaic identifier tiles, incremented when all tiles of mosaics
+     * with this identifier are cleared. Only identifiers which have been cleared
+     * at least once are in this map.
+     */
+    private static final ConcurrentMap<String,AtomicInteger> MOSAIC_VERSIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Executor used to decode tiles concurrently.
+     * The queue is bounded, when it is full the calling thread decode the tile.
      */
-    private final Cache<Point,Raster> tileCache = new Cache<>(10, 12, true);
+    private static final ThreadPoolExecutor TILE_DECODER;
+    static {
+        final int nbThread = Runtime.getRuntime().availableProcessors();
+        TILE_DECODER = new ThreadPoolExecutor(nbThread, nbThread, 1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<Runnable>(nbThread*4), new ThreadFactory() {
+                    private final AtomicInteger inc = new AtomicInteger();
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, "Mosaic tile decoder "+inc.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        TILE_DECODER.allowCoreThreadTimeOut(true);
+    }
 
     /**
      * The original mosaic to read
@@ -300,61 +381,110 @@ public class GridMosaicRenderedImage implements RenderedImage {
      */
     @Override
     public Raster getTile(int tileX, int tileY) {
+        //create a raster from tile image with tile position offset.
+        final int rX = tileX*this.getTileWidth();
+        final int rY = tileY*this.getTileHeight();
         tileX += gridRange.x;
         tileY += gridRange.y;
 
-        Raster raster;
+        LOGGER.log(Level.FINE, "Request tile {0}:{1} ", new Object[]{tileX,tileY});
+        Raster raster = null;
         try {
-            raster = this.tileCache.get(new Point(tileX, tileY));
-        } catch (IllegalArgumentException ex) {
-            raster = null;
+            raster = loadTiles(Collections.singleton(new Point(tileX, tileY))).get(new Point(tileX, tileY));
+        } catch (DataStoreException e) {
+            LOGGER.log(Level.WARNING, e.getMessage(), e);
         }
 
-        if (raster == null) {
-            try {
-                DataBuffer buffer = null;
-
-                if (!mosaic.isMissing(tileX,tileY)) {
-                    final TileReference tile = mosaic.getTile(tileX,tileY, null);
-                    if (tile != null) {
-                        if (tile.getInput() instanceof RenderedImage) {
-                            buffer = ((RenderedImage)tile.getInput()).getData().getDataBuffer();
-                        } else {
-                            final ImageReader reader = tile.getImageReader();
-                            buffer = reader.read(0).getData().getDataBuffer();
-                            reader.dispose();
-                        }
-                    }
-                }
-
-                if(buffer==null){
-                    //create an empty buffer
-                    buffer = getSampleModel().createDataBuffer();
-                }
+        //the cached raster is shared, only a read-only view is returned
+        final SampleModel sm = getSampleModel();
+        if (raster != null && raster.getWidth() == sm.getWidth() && raster.getHeight() == sm.getHeight()
+                && raster.getSampleModel().getDataType() == sm.getDataType()) {
+            return raster.createChild(raster.getMinX(), raster.getMinY(), raster.getWidth(), raster.getHeight(),
+                    rX, rY, null);
+        }
 
-                //create a raster from tile image with tile position offset.
-                LOGGER.log(Level.FINE, "Request tile {0}:{1} ", new Object[]{tileX,tileY});
-                final int rX = tileX*this.getTileWidth();
-                final int rY = tileY*this.getTileHeight();
+        //create an empty buffer, partial tiles are copied
+        final WritableRaster tile = Raster.createWritableRaster(sm, new Point(rX, rY));
+        if (raster != null) {
+            final int width = Math.min(tile.getWidth(), raster.getWidth());
+            final int height = Math.min(tile.getHeight(), raster.getHeight());
+            tile.setDataElements(rX, rY, width, height,
+                    raster.getDataElements(raster.getMinX(), raster.getMinY(), width, height, null));
+        }
+        return tile;
+    }
 
-                raster = Raster.createWritableRaster(getSampleModel(), buffer, new Point(rX, rY));
+    /**
+     * Get decoded tiles from the cache or from the mosaic.
+     * Missing tiles are requested to the mosaic in a single call and decoded concurrently.
+     *
+     * @param positions tile positions in the mosaic grid
+     * @return decoded tiles, missing tiles are not in the map.
+     * @throws DataStoreException
+     */
+    private Map<Point,Raster> loadTiles(final Collection<Point> positions) throws DataStoreException{
+        final Map<Point,Raster> result = new HashMap<>();
+        final List<Point> toLoad = new ArrayList<>();
+        final String mosaicId = mosaic.getId();
+        final MosaicToken token = getToken(mosaic);
+        final int version = getVersion(mosaicId);
+        for (Point p : positions) {
+            final Raster raster = TILE_CACHE.peek(new TileKey(mosaicId, token.id, version, p.x, p.y));
+            if (raster != null) {
+                result.put(p, raster);
+            } else if (!mosaic.isMissing(p.x, p.y)) {
+                toLoad.add(p);
+            }
+        }
 
-                this.tileCache.put(new Point(tileX, tileY), raster);
+        if (toLoad.isEmpty()) {
+            return result;
+        }
 
-            } catch ( DataStoreException | IOException e) {
-                LOGGER.log(Level.WARNING, e.getMessage(), e);
+        if (toLoad.size() == 1) {
+            //no need to use the executor for a single tile
+            final Point p = toLoad.get(0);
+            final TileReference tile = mosaic.getTile(p.x, p.y, null);
+            if (tile != null) {
+                result.put(p, new TileDecoder(mosaicId, token, version, tile).call());
             }
+            return result;
         }
 
-        return raster;
-    }
-
-    private boolean isTileMissing(int x, int y) throws DataStoreException{
-        return mosaic.isMissing(x+gridRange.x, y+gridRange.y);
-    }
-    
-    private TileReference getTileReference(int x, int y) throws DataStoreException{
-        return mosaic.getTile(x+gridRange.x,y+gridRange.y,null);
+        final BlockingQueue<Object> queue = mosaic.getTiles(toLoad, null);
+        final List<Future<Raster>> futures = new ArrayList<>();
+        final List<Point> futurePositions = new ArrayList<>();
+        try {
+            while (true) {
+                final Object obj = queue.take();
+                if (obj == GridMosaic.END_OF_QUEUE) {
+                    break;
+                }
+                if (obj instanceof TileReference) {
+                    final TileReference tile = (TileReference) obj;
+                    futurePositions.add(tile.getPosition());
+                    futures.add(TILE_DECODER.submit(new TileDecoder(mosaicId, token, version, tile)));
+                }
+            }
+            for (int i=0,n=futures.size(); i<n; i++) {
+                final Raster raster = futures.get(i).get();
+                if (raster != null) {
+                    result.put(futurePositions.get(i), raster);
+                }
+            }
+        } catch (InterruptedException ex) {
+            for (Future f : futures) {
+                f.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new DataStoreException("Interrupted while loading tiles.", ex);
+        } catch (ExecutionException ex) {
+            for (Future f : futures) {
+                f.cancel(true);
+            }
+            throw new DataStoreException(ex.getCause().getMessage(), ex.getCause());
+        }
+        return result;
     }
 
     /**
@@ -362,47 +492,7 @@ public class GridMosaicRenderedImage implements RenderedImage {
      */
     @Override
     public Raster getData() {
-        final RenderedImage firstTile = getFirstTile();
-        Raster rasterOut = null;
-        if (firstTile != null) {
-            rasterOut = firstTile.getTile(0, 0).createCompatibleWritableRaster(getWidth(), getHeight());
-
-            // Clear dataBuffer to 0 value for all bank
-            for (int s = 0; s < rasterOut.getDataBuffer().getSize(); s++) {
-                for (int b = 0; b < rasterOut.getDataBuffer().getNumBanks(); b++) {
-                    rasterOut.getDataBuffer().setElem(b, s, 0);
-                }
-            }
-
-            try {
-
-                for (int y = 0; y < this.getNumYTiles(); y++) {
-                    for (int x = 0; x < this.getNumYTiles(); x++) {
-                        if (!isTileMissing(x, y)) {
-                            final TileReference tile = getTileReference(x, y);
-                            final RenderedImage sourceImg;
-
-                            if (tile.getInput() instanceof RenderedImage) {
-                                sourceImg = (RenderedImage) tile.getInput();
-                            } else {
-                                sourceImg = tile.getImageReader().read(tile.getImageIndex());
-                            }
-
-                            final Raster rasterIn = sourceImg.getData();
-
-                            rasterOut.getSampleModel().setDataElements(x * this.getTileWidth(), y * this.getTileHeight(), this.getTileWidth(), this.getTileHeight(),
-                                    rasterIn.getSampleModel().getDataElements(0, 0, this.getTileWidth(), this.getTileHeight(), null, rasterIn.getDataBuffer()),
-                                    rasterOut.getDataBuffer());
-
-                        }
-                    }
-                }
-
-            } catch (Exception ex) {
-                LOGGER.log(Level.WARNING, "", ex);
-            }
-        }
-        return rasterOut;
+        return getData(new Rectangle(0, 0, getWidth(), getHeight()));
     }
 
     /**
@@ -411,56 +501,53 @@ public class GridMosaicRenderedImage implements RenderedImage {
     @Override
     public Raster getData(Rectangle rect) {
         final RenderedImage firstTile = getFirstTile();
-        Raster rasterOut = null;
+        WritableRaster rasterOut = null;
         if (firstTile != null) {
+            //new raster buffer is already filled with 0 values
             rasterOut = firstTile.getTile(0, 0).createCompatibleWritableRaster(rect.width, rect.height);
 
-            // Clear dataBuffer to 0 value for all bank
-            for (int s = 0; s < rasterOut.getDataBuffer().getSize(); s++) {
-                for (int b = 0; b < rasterOut.getDataBuffer().getNumBanks(); b++) {
-                    rasterOut.getDataBuffer().setElem(b, s, 0);
-                }
-            }
-
             try {
                 final Point upperLeftPosition = this.getPositionOf(rect.x, rect.y);
                 final Point lowerRightPosition = this.getPositionOf(rect.x + rect.width - 1, rect.y + rect.height - 1);
+                final int minTileX = Math.max(upperLeftPosition.x, 0);
+                final int maxTileX = Math.min(lowerRightPosition.x + 1, this.getNumXTiles());
+                final int minTileY = Math.max(upperLeftPosition.y, 0);
+                final int maxTileY = Math.min(lowerRightPosition.y + 1, this.getNumYTiles());
+
+                final List<Point> positions = new ArrayList<>();
+                for (int y = minTileY; y < maxTileY; y++) {
+                    for (int x = minTileX; x < maxTileX; x++) {
+                        positions.add(new Point(x + gridRange.x, y + gridRange.y));
+                    }
+                }
+                final Map<Point,Raster> tiles = loadTiles(positions);
 
-                for (int y = Math.max(upperLeftPosition.y, 0); y < Math.min(lowerRightPosition.y + 1, this.getNumYTiles()); y++) {
-                    for (int x = Math.max(upperLeftPosition.x, 0); x < Math.min(lowerRightPosition.x + 1, this.getNumXTiles()); x++) {
-                        if (!isTileMissing(x, y)) {
-                            final TileReference tile = getTileReference(x, y);
-                            final Rectangle tileRect = new Rectangle(x * this.getTileWidth(), y * this.getTileHeight(), this.getTileWidth(), this.getTileHeight());
-
-                            final int minX, maxX, minY, maxY;
-                            minX = XMath.clamp(rect.x, tileRect.x, tileRect.x + tileRect.width);
-                            maxX = XMath.clamp(rect.x + rect.width, tileRect.x, tileRect.x + tileRect.width);
-                            minY = XMath.clamp(rect.y, tileRect.y, tileRect.y + tileRect.height);
-                            maxY = XMath.clamp(rect.y + rect.height, tileRect.y, tileRect.y + tileRect.height);
-
-                            final Rectangle rectIn = new Rectangle(minX, minY, maxX - minX, maxY - minY);
-                            rectIn.translate(-tileRect.x, -tileRect.y);
-                            final Rectangle rectOut = new Rectangle(minX, minY, maxX - minX, maxY - minY);
-                            rectOut.translate(-rect.x, -rect.y);
-
-                            if (rectIn.width <= 0 || rectIn.height <= 0 || rectOut.width <= 0 || rectOut.height <= 0) {
-                                continue;
-                            }
-
-                            final RenderedImage sourceImg;
-                            if (tile.getInput() instanceof RenderedImage) {
-                                sourceImg = (RenderedImage) tile.getInput();
-                            } else {
-                                sourceImg = tile.getImageReader().read(tile.getImageIndex());
-                            }
+                for (int y = minTileY; y < maxTileY; y++) {
+                    for (int x = minTileX; x < maxTileX; x++) {
+                        final Raster rasterIn = tiles.get(new Point(x + gridRange.x, y + gridRange.y));
+                        if (rasterIn == null) {
+                            continue;
+                        }
+                        final Rectangle tileRect = new Rectangle(x * this.getTileWidth(), y * this.getTileHeight(), this.getTileWidth(), this.getTileHeight());
 
-                            final Raster rasterIn = sourceImg.getData();
+                        final int minX, maxX, minY, maxY;
+                        minX = XMath.clamp(rect.x, tileRect.x, tileRect.x + tileRect.width);
+                        maxX = XMath.clamp(rect.x + rect.width, tileRect.x, tileRect.x + tileRect.width);
+                        minY = XMath.clamp(rect.y, tileRect.y, tileRect.y + tileRect.height);
+                        maxY = XMath.clamp(rect.y + rect.height, tileRect.y, tileRect.y + tileRect.height);
 
-                            rasterOut.getSampleModel().setDataElements(rectOut.x, rectOut.y, rectOut.width, rectOut.height,
-                                    rasterIn.getSampleModel().getDataElements(rectIn.x, rectIn.y, rectIn.width, rectIn.height, null, rasterIn.getDataBuffer()),
-                                    rasterOut.getDataBuffer());
+                        final Rectangle rectIn = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+                        rectIn.translate(-tileRect.x, -tileRect.y);
+                        final Rectangle rectOut = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+                        rectOut.translate(-rect.x, -rect.y);
 
+                        if (rectIn.width <= 0 || rectIn.height <= 0 || rectOut.width <= 0 || rectOut.height <= 0) {
+                            continue;
                         }
+
+                        rasterOut.getSampleModel().setDataElements(rectOut.x, rectOut.y, rectOut.width, rectOut.height,
+                                rasterIn.getSampleModel().getDataElements(rectIn.x, rectIn.y, rectIn.width, rectIn.height, null, rasterIn.getDataBuffer()),
+                                rasterOut.getDataBuffer());
                     }
                 }
 
@@ -493,4 +580,164 @@ public class GridMosaicRenderedImage implements RenderedImage {
     public WritableRaster copyData(WritableRaster raster) {
         return null;
     }
+
+    /**
+     * Get the token of a mosaic instance, created on first call.
+     */
+    private static MosaicToken getToken(final GridMosaic mosaic) {
+        synchronized (MOSAIC_TOKENS) {
+            MosaicToken token = MOSAIC_TOKENS.get(mosaic);
+            if (token == null) {
+                token = new MosaicToken(LAST_TOKEN.incrementAndGet());
+                MOSAIC_TOKENS.put(mosaic, token);
+            }
+            return token;
+        }
+    }
+
+    /**
+     * Get the current tiles version of a mosaic identifier.
+     */
+    private static int getVersion(final String mosaicId) {
+        final AtomicInteger version = MOSAIC_VERSIONS.get(mosaicId);
+        return (version != null) ? version.get() : 0;
+    }
+
+    /**
+     * Remove all cached tiles of the mosaics with the given identifier.
+     * This method should be called when tiles of a mosaic are modified.
+     * Cached tiles are not searched, the mosaic version is changed and
+     * tiles of the previous version, including the ones being decoded,
+     * are left to the cache eviction.
+     *
+     * @param mosaicId mosaic identifier
+     */
+    public static void clearTileCache(final String mosaicId) {
+        ArgumentChecks.ensureNonNull("mosaicId", mosaicId);
+        AtomicInteger version = MOSAIC_VERSIONS.get(mosaicId);
+        if (version == null) {
+            version = new AtomicInteger();
+            final AtomicInteger previous = MOSAIC_VERSIONS.putIfAbsent(mosaicId, version);
+            if (previous != null) {
+                version = previous;
+            }
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Remove a cached tile of the given mosaic.
+     * This method should be called once the tile has been written.
+     *
+     * @param mosaic modified mosaic
+     * @param col tile column in the mosaic grid
+     * @param row tile row in the mosaic grid
+     */
+    public static void clearTileCache(final GridMosaic mosaic, final int col, final int row) {
+        ArgumentChecks.ensureNonNull("mosaic", mosaic);
+        final MosaicToken token = getToken(mosaic);
+        token.invalidations.incrementAndGet();
+        final String mosaicId = mosaic.getId();
+        TILE_CACHE.remove(new TileKey(mosaicId, token.id, getVersion(mosaicId), col, row));
+    }
+
+    /**
+     * Token of a mosaic instance.
+     */
+    private static final class MosaicToken {
+
+        private final long id;
+
+        /**
+         * Incremented on each tile invalidation of the mosaic, used by decoders
+         * to detect a tile modified while it was decoded.
+         */
+        private final AtomicLong invalidations = new AtomicLong();
+
+        private MosaicToken(final long id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Cache key, tiles are identified by mosaic identifier, token and version.
+     */
+    private static final class TileKey {
+
+        private final String mosaicId;
+        private final long token;
+        private final int version;
+        private final int col;
+        private final int row;
+
+        private TileKey(final String mosaicId, final long token, final int version, final int col, final int row) {
+            this.mosaicId = mosaicId;
+            this.token = token;
+            this.version = version;
+            this.col = col;
+            this.row = row;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (token ^ (token >>> 32)) + 31 * (version + 31 * (col + 31 * row));
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            final TileKey other = (TileKey) obj;
+            return token == other.token && version == other.version && col == other.col && row == other.row
+                && mosaicId.equals(other.mosaicId);
+        }
+    }
+
+    /**
+     * Decode a tile and store it in the cache.
+     */
+    private static final class TileDecoder implements Callable<Raster> {
+
+        private final String mosaicId;
+        private final MosaicToken token;
+        private final int version;
+        private final TileReference tile;
+
+        private TileDecoder(final String mosaicId, final MosaicToken token, final int version, final TileReference tile) {
+            this.mosaicId = mosaicId;
+            this.token = token;
+            this.version = version;
+            this.tile = tile;
+        }
+
+        @Override
+        public Raster call() throws DataStoreException {
+            final long invalidations = token.invalidations.get();
+            final Raster raster;
+            try {
+                if (tile.getInput() instanceof RenderedImage) {
+                    raster = ((RenderedImage)tile.getInput()).getData();
+                } else {
+                    final ImageReader reader = tile.getImageReader();
+                    try {
+                        raster = reader.read(tile.getImageIndex()).getData();
+                    } finally {
+                        reader.dispose();
+                    }
+                }
+            } catch (IOException ex) {
+                throw new DataStoreException(ex.getMessage(), ex);
+            }
+            final Point position = tile.getPosition();
+            final TileKey key = new TileKey(mosaicId, token.id, version, position.x, position.y);
+            TILE_CACHE.put(key, raster);
+            if (token.invalidations.get() != invalidations) {
+                //a tile may have been modified while decoding, do not keep a stale raster
+                TILE_CACHE.remove(key);
+            }
+            return raster;
+        }
+    }
+
 }
@@ -0,0 +1,158 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import org.apache.sis.geometry.GeneralDirectPosition;
+import org.apache.sis.referencing.CommonCRS;
+import org.geotoolkit.coverage.memory.MPCoverageStore;
+import org.geotoolkit.feature.type.DefaultName;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the shared tile cache of {@link GridMosaicRenderedImage}.
+ */
+public class GridMosaicRenderedImageTest {
+
+    private static final int TILE_SIZE = 16;
+
+    private PyramidalCoverageReference ref;
+    private Pyramid pyramid;
+    private GridMosaic mosaic;
+    private BufferedImage[] tiles;
+
+    @Before
+    public void createMosaic() throws Exception {
+        final CoordinateReferenceSystem crs = CommonCRS.WGS84.normalizedGeographic();
+        final GeneralDirectPosition upperLeft = new GeneralDirectPosition(crs);
+        upperLeft.setCoordinate(-180, 90);
+
+        final MPCoverageStore store = new MPCoverageStore();
+        ref = (PyramidalCoverageReference) store.create(new DefaultName("cache"));
+        pyramid = ref.createPyramid(crs);
+        mosaic = ref.createMosaic(pyramid.getId(), new Dimension(2, 1), new Dimension(TILE_SIZE, TILE_SIZE), upperLeft, 1);
+        tiles = new BufferedImage[]{createTile(10), createTile(20)};
+        ref.writeTile(pyramid.getId(), mosaic.getId(), 0, 0, tiles[0]);
+        ref.writeTile(pyramid.getId(), mosaic.getId(), 1, 0, tiles[1]);
+    }
+
+    private static BufferedImage createTile(final int value) {
+        final BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        fill(image, value);
+        return image;
+    }
+
+    private static void fill(final BufferedImage image, final int value) {
+        final WritableRaster raster = image.getRaster();
+        for (int y = 0; y < TILE_SIZE; y++) {
+            for (int x = 0; x < TILE_SIZE; x++) {
+                raster.setSample(x, y, 0, value);
+            }
+        }
+    }
+
+    /**
+     * Tiles returned by the image are read-only views of the cached rasters,
+     * data is copied.
+     */
+    @Test
+    public void tileIsReadOnlyTest() {
+        final GridMosaicRenderedImage image = new GridMosaicRenderedImage(mosaic);
+        final Raster tile = image.getTile(1, 0);
+        assertFalse(tile instanceof WritableRaster);
+        assertEquals(TILE_SIZE, tile.getMinX());
+        assertEquals(0, tile.getMinY());
+        assertEquals(TILE_SIZE, tile.getWidth());
+        assertEquals(TILE_SIZE, tile.getHeight());
+        assertEquals(20, tile.getSample(TILE_SIZE + 3, 5, 0));
+
+        final WritableRaster data = (WritableRaster) image.getData(new Rectangle(TILE_SIZE, 0, 4, 4));
+        assertEquals(20, data.getSample(3, 0, 0));
+        data.setSample(3, 0, 0, 99);
+        assertEquals(20, image.getTile(1, 0).getSample(TILE_SIZE + 3, 0, 0));
+        assertEquals(20, new GridMosaicRenderedImage(mosaic).getTile(1, 0).getSample(TILE_SIZE + 3, 0, 0));
+    }
+
+    /**
+     * Tiles are decoded once and kept in the cache until they are cleared,
+     * for the whole mosaic or for a single tile.
+     */
+    @Test
+    public void clearTileCacheTest() {
+        GridMosaicRenderedImage image = new GridMosaicRenderedImage(mosaic);
+        assertEquals(10, image.getTile(0, 0).getSample(0, 0, 0));
+        assertEquals(20, image.getTile(1, 0).getSample(TILE_SIZE, 0, 0));
+
+        //modify the source images, cached tiles are still used
+        fill(tiles[0], 11);
+        fill(tiles[1], 21);
+        image = new GridMosaicRenderedImage(mosaic);
+        assertEquals(10, image.getTile(0, 0).getSample(0, 0, 0));
+        assertEquals(20, image.getTile(1, 0).getSample(TILE_SIZE, 0, 0));
+
+        GridMosaicRenderedImage.clearTileCache(mosaic, 1, 0);
+        assertEquals(10, image.getTile(0, 0).getSample(0, 0, 0));
+        assertEquals(21, image.getTile(1, 0).getSample(TILE_SIZE, 0, 0));
+
+        GridMosaicRenderedImage.clearTileCache(mosaic.getId());
+        assertEquals(11, image.getTile(0, 0).getSample(0, 0, 0));
+        assertEquals(21, image.getTile(1, 0).getSample(TILE_SIZE, 0, 0));
+    }
+
+    /**
+     * Writing a tile in the coverage reference must replace the cached tile.
+     */
+    @Test
+    public void writeTileTest() throws Exception {
+        final GridMosaicRenderedImage image = new GridMosaicRenderedImage(mosaic);
+        assertEquals(10, image.getTile(0, 0).getSample(0, 0, 0));
+
+        ref.writeTile(pyramid.getId(), mosaic.getId(), 0, 0, createTile(30));
+        assertEquals(30, image.getTile(0, 0).getSample(0, 0, 0));
+        assertEquals(30, image.getData().getSample(0, 0, 0));
+        assertEquals(20, image.getData().getSample(TILE_SIZE, 0, 0));
+
+        ref.deleteTile(pyramid.getId(), mosaic.getId(), 0, 0);
+        assertEquals(0, image.getTile(0, 0).getSample(0, 0, 0));
+    }
+
+    /**
+     * Mosaics of different references may have the same identifier,
+     * their tiles must not be mixed.
+     */
+    @Test
+    public void sameIdentifierTest() throws Exception {
+        final PyramidalCoverageReference other = (PyramidalCoverageReference) new MPCoverageStore().create(new DefaultName("cache"));
+        final Pyramid otherPyramid = other.createPyramid(pyramid.getCoordinateReferenceSystem());
+        final GridMosaic otherMosaic = other.createMosaic(otherPyramid.getId(), new Dimension(2, 1),
+                new Dimension(TILE_SIZE, TILE_SIZE), mosaic.getUpperLeftCorner(), 1);
+        assertEquals(mosaic.getId(), otherMosaic.getId());
+        other.writeTile(otherPyramid.getId(), otherMosaic.getId(), 0, 0, createTile(40));
+
+        assertEquals(10, new GridMosaicRenderedImage(mosaic).getTile(0, 0).getSample(0, 0, 0));
+        assertEquals(40, new GridMosaicRenderedImage(otherMosaic).getTile(0, 0).getSample(0, 0, 0));
+    }
+
+}
@@ -279,6 +279,22 @@ public class XMLCoverageReference extends AbstractPyramidalCoverageReference {
         return pyramid;
     }
 
+    /**
+     * Create a pyramid choosing how its tiles are stored.
+     *
+     * @param crs pyramid CRS
+     * @param tileContainer true to pack tiles in tile container files,
+     *        false to store each tile in its own file
+     * @return created pyramid
+     * @throws DataStoreException if pyramid creation failed
+     */
+    public Pyramid createPyramid(CoordinateReferenceSystem crs, boolean tileContainer) throws DataStoreException {
+        final XMLPyramidSet set = getPyramidSet();
+        final Pyramid pyramid = set.createPyramid(getName().getLocalPart(),crs,tileContainer);
+        save();
+        return pyramid;
+    }
+
     @Override
     public void deletePyramid(String pyramidId) throws DataStoreException {
         throw new DataStoreException("Not supported yet.");
@@ -315,8 +331,8 @@ public class XMLCoverageReference extends AbstractPyramidalCoverageReference {
         final XMLPyramid pyramid = (XMLPyramid) set.getPyramid(pyramidId);
         final XMLMosaic mosaic = pyramid.getMosaic(mosaicId);
         mosaic.createTile(col,row,image);
-        if (!mosaic.cacheTileState && mosaic.tileExist != null) {
-            save();
+        if (!isWriteBehind()) {
+            flushTileState(mosaic);
         }
     }
 
@@ -330,8 +346,61 @@ public class XMLCoverageReference extends AbstractPyramidalCoverageReference {
         final XMLPyramid pyramid = (XMLPyramid) set.getPyramid(pyramidId);
         final XMLMosaic mosaic = pyramid.getMosaic(mosaicId);
         mosaic.writeTiles(image, area, onlyMissing, monitor);
+        if (!isWriteBehind()) {
+            flushTileState(mosaic);
+        }
+    }
+
+    /**
+     * @return true if tile states are only saved when the store is flushed
+     */
+    private boolean isWriteBehind() {
+        final Object store = getStore();
+        return store instanceof XMLCoverageStore && ((XMLCoverageStore) store).writeBehind;
+    }
+
+    /**
+     * Save tile states of given mosaic, in the descriptor file or in the tile state index.
+     */
+    private void flushTileState(final XMLMosaic mosaic) throws DataStoreException {
         if (!mosaic.cacheTileState && mosaic.tileExist != null) {
             save();
+        } else {
+            mosaic.saveStateIndex();
+        }
+    }
+
+    /**
+     * Save tile states of all mosaics.
+     * Must be called once pending tiles have been written.
+     *
+     * @throws DataStoreException if saving tile states failed
+     */
+    void flush() throws DataStoreException {
+        boolean saveDescriptor = false;
+        for (XMLPyramid pyramid : getPyramidSet().pyramids()) {
+            for (XMLMosaic mosaic : pyramid.mosaics()) {
+                mosaic.flushContainers();
+                if (!mosaic.cacheTileState && mosaic.tileExist != null) {
+                    saveDescriptor = true;
+                } else {
+                    mosaic.saveStateIndex();
+                }
+            }
+        }
+        if (saveDescriptor) {
+            save();
+        }
+    }
+
+    /**
+     * Close tile container files opened by the mosaics.
+     */
+    void closeContainers() {
+        for (XMLPyramid pyramid : getPyramidSet().pyramids()) {
+            for (XMLMosaic mosaic : pyramid.mosaics()) {
+                mosaic.closeContainers();
+            }
         }
     }
 
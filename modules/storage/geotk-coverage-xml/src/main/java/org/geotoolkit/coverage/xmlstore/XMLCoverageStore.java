@@ -18,10 +18,12 @@ package org.geotoolkit.coverage.xmlstore;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import javax.xml.bind.JAXBException;
 
@@ -50,6 +52,10 @@ public class XMLCoverageStore extends AbstractCoverageStore {
     private final DataNode rootNode = new DefaultDataNode();
 
     final boolean cacheTileState;
+    final boolean writeBehind;
+    final boolean tileContainer;
+    /** Tiles queued by this store and not yet written */
+    final XMLTileWriteQueue.Tracker writeTracker = new XMLTileWriteQueue.Tracker();
 
     public XMLCoverageStore(File root) throws URISyntaxException, MalformedURLException {
         this(toParameters(root));
@@ -65,6 +71,10 @@ public class XMLCoverageStore extends AbstractCoverageStore {
         root = new File(rootPath.toURI());
         Boolean tmpCacheState = Parameters.value(XMLCoverageStoreFactory.CACHE_TILE_STATE, params);
         cacheTileState = (tmpCacheState == null)? false : tmpCacheState;
+        Boolean tmpWriteBehind = Parameters.value(XMLCoverageStoreFactory.WRITE_BEHIND, params);
+        writeBehind = (tmpWriteBehind == null)? false : tmpWriteBehind;
+        Boolean tmpTileContainer = Parameters.value(XMLCoverageStoreFactory.TILE_CONTAINER, params);
+        tileContainer = (tmpTileContainer == null)? false : tmpTileContainer;
         explore();
     }
 
@@ -132,8 +142,51 @@ public class XMLCoverageStore extends AbstractCoverageStore {
         }
     }
 
+    /**
+     * Wait until all queued tiles are written, then save tile states.
+     * In write-behind mode, tiles written with {@link XMLCoverageReference#writeTiles}
+     * are only visible after this call.
+     *
+     * @throws DataStoreException if a tile or a tile state could not be written
+     */
+    public void flush() throws DataStoreException {
+        try {
+            writeTracker.awaitAndCheck();
+        } catch (IOException ex) {
+            throw new DataStoreException(ex.getMessage(), ex);
+        }
+        for (Object node : rootNode.getChildren()) {
+            if (node instanceof XMLCoverageReference) {
+                ((XMLCoverageReference) node).flush();
+            }
+        }
+    }
+
+    /**
+     * Wait until all queued tiles are written.
+     * Tile states are not saved, use {@link #flush() } for this.
+     *
+     * @param timeout maximum time to wait
+     * @param unit timeout unit
+     * @return true if all tiles have been written, false if timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean await(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return writeTracker.await(Math.max(1, unit.toMillis(timeout)));
+    }
+
     @Override
     public void close() {
+        try {
+            flush();
+        } catch (DataStoreException ex) {
+            getLogger().log(Level.WARNING, "Pending tiles could not be written.", ex);
+        }
+        for (Object node : rootNode.getChildren()) {
+            if (node instanceof XMLCoverageReference) {
+                ((XMLCoverageReference) node).closeContainers();
+            }
+        }
     }
 
     @Override
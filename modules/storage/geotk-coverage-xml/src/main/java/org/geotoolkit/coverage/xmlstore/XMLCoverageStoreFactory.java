@@ -66,6 +66,16 @@ public class XMLCoverageStoreFactory extends AbstractCoverageStoreFactory {
      * A parameter to specify if tile states will be checked using descriptor file (default) or not.
      */
     public static final ParameterDescriptor<Boolean> CACHE_TILE_STATE;
+    /**
+     * A parameter to specify if tile writing methods return before tiles are written.
+     * Pending tiles are written by {@link XMLCoverageStore#flush()}.
+     */
+    public static final ParameterDescriptor<Boolean> WRITE_BEHIND;
+    /**
+     * A parameter to specify if tiles of new pyramids are packed in tile container files
+     * instead of one file per tile.
+     */
+    public static final ParameterDescriptor<Boolean> TILE_CONTAINER;
 
     public static final ParameterDescriptorGroup PARAMETERS_DESCRIPTOR;
     static {
@@ -76,7 +86,13 @@ public class XMLCoverageStoreFactory extends AbstractCoverageStoreFactory {
         CACHE_TILE_STATE = builder.addName("cacheTileState")
                 .setRemarks(new ResourceInternationalString("org/geotoolkit/coverage/xmlstore/bundle", "coverageXMLTileStateRemarks"))
                 .setRequired(false).create(Boolean.class, false);
-        PARAMETERS_DESCRIPTOR = builder.addName("XMLCoverageStoreParameters").createGroup(IDENTIFIER, PATH, NAMESPACE, CACHE_TILE_STATE);
+        WRITE_BEHIND = builder.addName("writeBehind")
+                .setRemarks(new ResourceInternationalString("org/geotoolkit/coverage/xmlstore/bundle", "coverageXMLWriteBehindRemarks"))
+                .setRequired(false).create(Boolean.class, false);
+        TILE_CONTAINER = builder.addName("tileContainer")
+                .setRemarks(new ResourceInternationalString("org/geotoolkit/coverage/xmlstore/bundle", "coverageXMLTileContainerRemarks"))
+                .setRequired(false).create(Boolean.class, false);
+        PARAMETERS_DESCRIPTOR = builder.addName("XMLCoverageStoreParameters").createGroup(IDENTIFIER, PATH, NAMESPACE, CACHE_TILE_STATE, WRITE_BEHIND, TILE_CONTAINER);
     }
 
     @Override
@@ -50,7 +50,6 @@ import org.apache.sis.storage.DataStoreException;
 import org.apache.sis.util.ArgumentChecks;
 import org.apache.sis.util.ArraysExt;
 import org.apache.sis.util.Classes;
-import org.apache.sis.util.collection.Cache;
 import org.apache.sis.util.logging.Logging;
 import org.geotoolkit.coverage.*;
 import org.geotoolkit.image.io.XImageIO;
@@ -70,18 +69,18 @@ public class XMLMosaic implements GridMosaic {
 
     private static final Logger LOGGER = Logging.getLogger(XMLMosaic.class);
 
-    /** Executor used to write images */
-    private static final RejectedExecutionHandler LOCAL_REJECT_EXECUTION_HANDLER = new ThreadPoolExecutor.CallerRunsPolicy();
-
-    private static final BlockingQueue IMAGEQUEUE = new ArrayBlockingQueue(Runtime.getRuntime().availableProcessors()*2);
-
-    private static final ThreadPoolExecutor TILEWRITEREXECUTOR = new ThreadPoolExecutor(
-            0, Runtime.getRuntime().availableProcessors(), 1, TimeUnit.MINUTES, IMAGEQUEUE, LOCAL_REJECT_EXECUTION_HANDLER);
-
     /*
      * Used only if we use the tile state cache mechanism, which means we don't use XML document to read / write tile states.
+     * Created when first needed.
+     */
+    private XMLTileStateIndex stateIndex;
+
+    /** Size in tiles of the blocks stored in one tile container */
+    static final int BLOCK_SIZE = 128;
+    /*
+     * Opened tile containers by block index, used only if the pyramid stores tiles in containers.
      */
-    private final Cache<Point, Boolean> isMissingCache = new Cache<>(1000, 1000, false);
+    private final Map<Integer,XMLTileContainer> containers = new HashMap<>();
 
     //empty tile information
     private byte[] emptyTileEncoded = null;
@@ -306,13 +305,19 @@ public class XMLMosaic implements GridMosaic {
         try {
             if (tileExist == null || tileExist.isEmpty()) {
                 try {
-                    final Point key = new Point(col, row);
-                    return isMissingCache.getOrCreate(key, new Callable<Boolean>() {
-                        @Override
-                        public Boolean call() throws Exception {
-                            return !getTileFile(key.x, key.y).isFile();
-                        }
-                    });
+                    checkPosition(col, row);
+                    if (isTileContainer()) {
+                        final XMLTileContainer container = getContainer(col, row, false);
+                        return container == null || !container.exists(getBlockTileIndex(col, row));
+                    }
+                    final XMLTileStateIndex index = getStateIndex();
+                    final int tileIndex = getTileIndex(col, row);
+                    Boolean exist = index.get(tileIndex);
+                    if (exist == null) {
+                        exist = getTileFile(col, row).isFile();
+                        index.set(tileIndex, exist);
+                    }
+                    return !exist;
                 } catch (PointOutsideCoverageException e) {
                     throw e;
                 } catch (Exception e) {
@@ -354,6 +359,19 @@ public class XMLMosaic implements GridMosaic {
             } catch (IOException ex) {
                 throw new DataStoreException(ex);
             }
+        } else if (isTileContainer()) {
+            checkPosition(col, row);
+            try {
+                final XMLTileContainer container = getContainer(col, row, false);
+                final byte[] data = (container != null) ? container.read(getBlockTileIndex(col, row)) : null;
+                if (data == null) {
+                    throw new DataStoreException("No tile at position : " + col + " " + row);
+                }
+                tile = new DefaultTileReference(getPyramid().getPyramidSet().getReaderSpi(),
+                        ImageIO.createImageInputStream(new ByteArrayInputStream(data)), 0, new Point(col, row));
+            } catch (IOException ex) {
+                throw new DataStoreException(ex.getMessage(), ex);
+            }
         } else {
             tile = new DefaultTileReference(getPyramid().getPyramidSet().getReaderSpi(),
                     getTileFile(col, row), 0, new Point(col, row));
@@ -367,6 +385,9 @@ public class XMLMosaic implements GridMosaic {
      */
     @Override
     public Rectangle getDataArea() {
+        if (isTileContainer()) {
+            return getContainerDataArea();
+        }
         final File folder = getFolder();
         final String[] tileFiles = folder.list();
         if (tileFiles != null && tileFiles.length > 0) {
@@ -376,6 +397,10 @@ public class XMLMosaic implements GridMosaic {
             Point currPos;
             for (int i = 0; i < tileFiles.length; i++) {
                 currPos = parsePosition(tileFiles[i]);
+                if (currPos == null) {
+                    //not a tile, may be a tile container
+                    continue;
+                }
                 start.x = Math.min(start.x, currPos.x);
                 start.y = Math.min(start.y, currPos.y);
                 end.x = Math.max(end.x, currPos.x);
@@ -390,11 +415,62 @@ public class XMLMosaic implements GridMosaic {
         return null;
     }
 
-    private Point parsePosition(String tileFile) {
-        int start = tileFile.lastIndexOf('/') + 1;
-        String posStr = tileFile.substring(start, tileFile.lastIndexOf('.'));
-        String[] split = posStr.split("_");
-        return new Point(Integer.valueOf(split[1]), Integer.valueOf(split[0]));
+    private Rectangle getContainerDataArea() {
+        int minX = gridWidth;
+        int minY = gridHeight;
+        int maxX = -1;
+        int maxY = -1;
+        for (int by = 0; by < gridHeight; by += BLOCK_SIZE) {
+            for (int bx = 0; bx < gridWidth; bx += BLOCK_SIZE) {
+                final XMLTileContainer container;
+                try {
+                    container = getContainer(bx, by, false);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, ex.getMessage(), ex);
+                    continue;
+                }
+                if (container == null) {
+                    continue;
+                }
+                final int endX = Math.min(BLOCK_SIZE, gridWidth - bx);
+                final int endY = Math.min(BLOCK_SIZE, gridHeight - by);
+                for (int y = 0; y < endY; y++) {
+                    for (int x = 0; x < endX; x++) {
+                        if (container.exists(y * BLOCK_SIZE + x)) {
+                            minX = Math.min(minX, bx + x);
+                            minY = Math.min(minY, by + y);
+                            maxX = Math.max(maxX, bx + x);
+                            maxY = Math.max(maxY, by + y);
+                        }
+                    }
+                }
+            }
+        }
+        if (maxX < 0) {
+            return null;
+        }
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * @param tileFile tile file name
+     * @return tile position or null if file name is not a tile name
+     */
+    static Point parsePosition(String tileFile) {
+        final int start = tileFile.lastIndexOf('/') + 1;
+        final int end = tileFile.lastIndexOf('.');
+        if (end <= start) {
+            return null;
+        }
+        final String[] split = tileFile.substring(start, end).split("_");
+        if (split.length != 2) {
+            return null;
+        }
+        try {
+            return new Point(Integer.valueOf(split[1]), Integer.valueOf(split[0]));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
     }
 
     @Override
@@ -412,6 +488,155 @@ public class XMLMosaic implements GridMosaic {
         return new File(getFolder(),row+"_"+col+"."+postfix);
     }
 
+    /**
+     * Tile existence index, stored next to the mosaic folder and not inside
+     * because all files in the mosaic folder are expected to be tiles.
+     *
+     * @return tile state index, never null
+     */
+    synchronized XMLTileStateIndex getStateIndex() {
+        if (stateIndex == null) {
+            final File folder = getFolder();
+            stateIndex = XMLTileStateIndex.open(
+                    new File(folder.getParentFile(), folder.getName()+".tiles"), gridWidth, gridHeight);
+        }
+        return stateIndex;
+    }
+
+    /**
+     * Save the tile existence index if it has been used.
+     *
+     * @throws DataStoreException if index writing failed
+     */
+    void saveStateIndex() throws DataStoreException {
+        final XMLTileStateIndex index;
+        synchronized (this) {
+            index = stateIndex;
+        }
+        if (index != null) {
+            try {
+                index.save();
+            } catch (IOException ex) {
+                throw new DataStoreException(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * @return true if tiles are stored in tile containers rather than one file per tile
+     */
+    boolean isTileContainer() {
+        return pyramid != null && pyramid.isTileContainer();
+    }
+
+    /**
+     * @return index of the tile in its container
+     */
+    static int getBlockTileIndex(final int col, final int row) {
+        return (row % BLOCK_SIZE) * BLOCK_SIZE + (col % BLOCK_SIZE);
+    }
+
+    /**
+     * @return file of the container storing the given tile
+     */
+    File getContainerFile(final int col, final int row) {
+        return new File(getFolder(), "block_"+(row / BLOCK_SIZE)+"_"+(col / BLOCK_SIZE)+XMLTileContainer.SUFFIX);
+    }
+
+    /**
+     * Get the container storing the given tile.
+     *
+     * @param create true to create the container if it does not exist
+     * @return container or null if it does not exist and create is false
+     * @throws IOException if container can not be opened
+     */
+    XMLTileContainer getContainer(final int col, final int row, final boolean create) throws IOException {
+        final int nbBlockX = (gridWidth + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final Integer key = (row / BLOCK_SIZE) * nbBlockX + (col / BLOCK_SIZE);
+        synchronized (containers) {
+            XMLTileContainer container = containers.get(key);
+            if (container == null) {
+                final File file = getContainerFile(col, row);
+                if (create) {
+                    file.getParentFile().mkdirs();
+                }
+                container = XMLTileContainer.open(file, BLOCK_SIZE, BLOCK_SIZE, create);
+                if (container != null) {
+                    if (container.getBlockWidth() != BLOCK_SIZE || container.getBlockHeight() != BLOCK_SIZE) {
+                        container.close();
+                        throw new IOException("Unexpected tile container block size : " + file);
+                    }
+                    containers.put(key, container);
+                }
+            }
+            return container;
+        }
+    }
+
+    /**
+     * Force opened tile containers content to the storage device.
+     *
+     * @throws DataStoreException if writing failed
+     */
+    void flushContainers() throws DataStoreException {
+        synchronized (containers) {
+            for (XMLTileContainer container : containers.values()) {
+                try {
+                    container.force();
+                } catch (IOException ex) {
+                    throw new DataStoreException(ex.getMessage(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Close opened tile containers, they will be opened again if needed.
+     */
+    void closeContainers() {
+        synchronized (containers) {
+            for (XMLTileContainer container : containers.values()) {
+                try {
+                    container.close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, ex.getMessage(), ex);
+                }
+            }
+            containers.clear();
+        }
+    }
+
+    /**
+     * Mark a tile as written in the tile state bitsets or index,
+     * and remove the previous tile from the shared decoded tile cache.
+     */
+    private void tileWritten(final int col, final int row) {
+        final int tileIndex = getTileIndex(col, row);
+        if (tileExist != null) {
+            bitsetLock.writeLock().lock();
+            try {
+                tileExist.set(tileIndex, true);
+                tileEmpty.set(tileIndex, false);
+            } finally {
+                bitsetLock.writeLock().unlock();
+            }
+        } else if (!isTileContainer()) {
+            getStateIndex().set(tileIndex, true);
+        }
+        GridMosaicRenderedImage.clearTileCache(this, col, row);
+    }
+
+    /**
+     * @return store owning this mosaic, may be null
+     */
+    private XMLCoverageStore getStore() {
+        if (pyramid == null) {
+            return null;
+        }
+        final Object store = pyramid.getPyramidSet().getRef().getStore();
+        return (store instanceof XMLCoverageStore) ? (XMLCoverageStore) store : null;
+    }
+
     ImageWriter acquireImageWriter() throws IOException {
         return XImageIO.getWriterByFormatName(getPyramid().getPyramidSet().getFormatName(), null, null);
     }
@@ -440,52 +665,65 @@ public class XMLMosaic implements GridMosaic {
             } finally {
                 bitsetLock.writeLock().unlock();
             }
+            GridMosaicRenderedImage.clearTileCache(this, col, row);
             return;
         }
 
         checkPosition(col, row);
-        final File f = getTileFile(col, row);
-        f.getParentFile().mkdirs();
-
-        ImageOutputStream out = null;
         try {
-            final Class[] outTypes = writer.getOriginatingProvider().getOutputTypes();
-            if(ArraysExt.contains(outTypes, File.class)){
-                //writer support files directly, let him handle it
-                writer.setOutput(f);
-            }else{
-                out = ImageIO.createImageOutputStream(f);
-                writer.setOutput(out);
-            }
-            writer.write(image);
-            if (tileExist != null) {
-                final int ti = getTileIndex(col, row);
-                bitsetLock.writeLock().lock();
-                try {
-                    tileExist.set(ti, true);
-                    tileEmpty.set(ti, false);
-                } finally {
-                    bitsetLock.writeLock().unlock();
-                }
-            } else {
-                isMissingCache.put(new Point(col, row), false);
-            }
+            writeTileData(col, row, new IIOImage(image, null, null), writer);
         } catch (IOException ex) {
             throw new DataStoreException(ex.getMessage(), ex);
-        } finally {
-            if (writer != null) {
+        }
+    }
+
+    /**
+     * Encode and store a tile, in its own file or in a tile container.
+     * The writer output is reset after writing.
+     */
+    private void writeTileData(final int col, final int row, final IIOImage image, final ImageWriter writer)
+            throws IOException, DataStoreException {
+        if (isTileContainer()) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ImageOutputStream out = ImageIO.createImageOutputStream(bytes);
+            try {
+                writer.setOutput(out);
+                writer.write(image);
+            } finally {
                 writer.setOutput(null);
+                out.close();
             }
-            if(out!=null){
-                try {
+            getContainer(col, row, true).write(getBlockTileIndex(col, row), bytes.toByteArray());
+        } else {
+            final File f = getTileFile(col, row);
+            f.getParentFile().mkdirs();
+            ImageOutputStream out = null;
+            try {
+                final Class[] outTypes = writer.getOriginatingProvider().getOutputTypes();
+                if (ArraysExt.contains(outTypes, File.class)) {
+                    //writer support files directly, let him handle it
+                    writer.setOutput(f);
+                } else {
+                    out = ImageIO.createImageOutputStream(f);
+                    writer.setOutput(out);
+                }
+                writer.write(image);
+            } finally {
+                writer.setOutput(null);
+                if (out != null) {
                     out.close();
-                } catch (IOException ex) {
-                    throw new DataStoreException(ex);
                 }
             }
         }
+        tileWritten(col, row);
     }
 
+    /**
+     * Write the tiles of given image area.
+     * Tiles are added in the shared tile write queue, this method blocks while the queue is full.
+     * If the store is in write-behind mode this method returns once all tiles are queued,
+     * otherwise it waits until they are written.
+     */
     void writeTiles(final RenderedImage image, final Rectangle area, final boolean onlyMissing, final ProgressMonitor monitor) throws DataStoreException{
 
         final int startX = (int)area.getMinX();
@@ -498,37 +736,45 @@ public class XMLMosaic implements GridMosaic {
         assert endX > startX && endX <= image.getNumXTiles();
         assert endY > startY && endY <= image.getNumYTiles();
 
-        final List<Future> futurs = new ArrayList<>();
-        for(int y=startY; y < endY; y++){
-            for(int x=startX; x < endX; x++){
-                if (monitor != null && monitor.isCanceled()) {
-                    // Stops submitting new thread
-                    return;
-                }
+        final XMLCoverageStore store = getStore();
+        final XMLTileWriteQueue.Tracker tracker = new XMLTileWriteQueue.Tracker();
+        final XMLTileWriteQueue.Tracker[] trackers = (store != null) ?
+                new XMLTileWriteQueue.Tracker[]{tracker, store.writeTracker} :
+                new XMLTileWriteQueue.Tracker[]{tracker};
+        final String formatName = getPyramid().getPyramidSet().getFormatName();
 
-                if(onlyMissing && !isMissing(x, y)){
-                    continue;
-                }
+        try {
+            for(int y=startY; y < endY; y++){
+                for(int x=startX; x < endX; x++){
+                    if (monitor != null && monitor.isCanceled()) {
+                        // Stops submitting new tiles
+                        break;
+                    }
+
+                    if(onlyMissing && !isMissing(x, y)){
+                        continue;
+                    }
 
-                final int tileIndex = getTileIndex(x, y);
-                checkPosition(x, y);
+                    final int tileIndex = getTileIndex(x, y);
+                    checkPosition(x, y);
 
-                final File f = getTileFile(x, y);
-                f.getParentFile().mkdirs();
-                Future fut = TILEWRITEREXECUTOR.submit(new TileWriter(f, image, x, y, tileIndex, image.getColorModel(), getPyramid().getPyramidSet().getFormatName(), monitor));
-                futurs.add(fut);
+                    XMLTileWriteQueue.INSTANCE.put(new TileWriter(image, x, y, tileIndex,
+                            image.getColorModel(), formatName, monitor, trackers));
+                }
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataStoreException("Interrupted while queuing tiles.", ex);
         }
 
-        //wait for all writing tobe done
-        for (Future f : futurs) {
+        if (store == null || !store.writeBehind) {
+            //wait for all writing to be done
             try {
-                f.get();
-            } catch (InterruptedException | ExecutionException ex) {
-                LOGGER.log(Level.WARNING, ex.getMessage(), ex);
+                tracker.awaitAndCheck();
+            } catch (IOException ex) {
+                throw new DataStoreException(ex.getMessage(), ex);
             }
         }
-
     }
 
     private void checkPosition(int col, int row) throws PointOutsideCoverageException {
@@ -617,109 +863,59 @@ public class XMLMosaic implements GridMosaic {
         return AbstractGridMosaic.getTiles(this, positions, hints);
     }
 
-    private class TileWriter implements Runnable{
+    private class TileWriter extends XMLTileWriteQueue.Job {
 
-        private final File f;
         private final RenderedImage image;
         private final int idx;
         private final int idy;
         private final int tileIndex;
         private final ColorModel cm;
-        private final String formatName;
         private final ProgressMonitor monitor;
 
-        public TileWriter(File f, RenderedImage image, int idx, int idy, int tileIndex, ColorModel cm, String formatName, ProgressMonitor monitor) {
-            ArgumentChecks.ensureNonNull("file", f);
+        public TileWriter(RenderedImage image, int idx, int idy, int tileIndex, ColorModel cm, String formatName,
+                ProgressMonitor monitor, XMLTileWriteQueue.Tracker ... trackers) {
+            super(formatName, trackers);
             ArgumentChecks.ensureNonNull("image", image);
-            this.f = f;
             this.image = image;
             this.idx = idx;
             this.idy = idy;
             this.tileIndex = tileIndex;
             this.cm = cm;
-            this.formatName = formatName;
             this.monitor = monitor;
-
         }
 
         @Override
-        public void run() {
+        void write(final ImageWriter writer) throws IOException, DataStoreException {
             // Stops writing tile if process cancelled
             if (monitor != null && monitor.isCanceled()) {
                 return;
             }
 
-            ImageWriter writer = null;
-            ImageOutputStream out = null;
-            try {
-                final int offsetX = image.getMinTileX();
-                final int offsetY = image.getMinTileY();
-                Raster raster = image.getTile(offsetX+idx, offsetY+idy);
-
-                //check if image is empty
-                if (tileEmpty != null && (raster == null || isEmpty(raster))) {
-
-                    bitsetLock.writeLock().lock();
-                    try {
-                        tileExist.set(tileIndex, true);
-                        tileEmpty.set(tileIndex, true);
-                    } finally {
-                        bitsetLock.writeLock().unlock();
-                    }
-                    return;
-                }
-
-                writer = ImageIO.getImageWritersByFormatName(formatName).next();
+            final int offsetX = image.getMinTileX();
+            final int offsetY = image.getMinTileY();
+            final Raster raster = image.getTile(offsetX+idx, offsetY+idy);
 
-                final Class[] outTypes = writer.getOriginatingProvider().getOutputTypes();
-                if (ArraysExt.contains(outTypes, File.class)) {
-                    //writer support files directly, let him handle it
-                    writer.setOutput(f);
-                } else {
-                    out = ImageIO.createImageOutputStream(f);
-                    writer.setOutput(out);
-                }
-
-                final boolean canWriteRaster = writer.canWriteRasters();
-                //write tile
-                if (canWriteRaster) {
-                    final IIOImage buffer = new IIOImage(raster, null, null);
-                    writer.write(buffer);
-                } else {
-                    //encapsulate image in a buffered image with parent color model
-                    final BufferedImage buffer = new BufferedImage(
-                            cm, (WritableRaster) raster, true, null);
-                    writer.write(buffer);
-                }
-
-                if (tileExist != null) {
-                    bitsetLock.writeLock().lock();
-                    try {
-                        tileExist.set(tileIndex, true);
-                        tileEmpty.set(tileIndex, false);
-                    } finally {
-                        bitsetLock.writeLock().unlock();
-                    }
-                } else {
-                    isMissingCache.put(new Point(idx, idy), false);
-                }
-
-            } catch (Exception ex) {
-                LOGGER.log(Level.WARNING, ex.getMessage(), ex);
-                throw new RuntimeException(ex.getMessage(), ex);
-            } finally {
-                if (writer != null) {
-                    writer.dispose();
-                    if (out != null) {
-                        try {
-                            out.close();
-                        } catch (IOException ex) {
-                            Logger.getLogger(XMLMosaic.class.getName()).log(Level.SEVERE, null, ex);
-                        }
-                    }
+            //check if image is empty
+            if (tileEmpty != null && (raster == null || isEmpty(raster))) {
+                bitsetLock.writeLock().lock();
+                try {
+                    tileExist.set(tileIndex, true);
+                    tileEmpty.set(tileIndex, true);
+                } finally {
+                    bitsetLock.writeLock().unlock();
                 }
+                GridMosaicRenderedImage.clearTileCache(XMLMosaic.this, idx, idy);
+                return;
             }
 
+            final IIOImage buffer;
+            if (writer.canWriteRasters()) {
+                buffer = new IIOImage(raster, null, null);
+            } else {
+                //encapsulate image in a buffered image with parent color model
+                buffer = new IIOImage(new BufferedImage(cm, (WritableRaster) raster, true, null), null, null);
+            }
+            writeTileData(idx, idy, buffer, writer);
         }
 
     }
@@ -59,6 +59,9 @@ public class XMLPyramid implements Pyramid {
     String serializedCrs;
     @XmlElement(name="Mosaic")
     List<XMLMosaic> mosaics = new CopyOnWriteArrayList<>();
+    /** Null or false for pyramids storing each tile in its own file */
+    @XmlElement(name="tileContainer")
+    Boolean tileContainer;
 
     @XmlTransient
     private XMLPyramidSet set;
@@ -105,6 +108,14 @@ public class XMLPyramid implements Pyramid {
         return id;
     }
 
+    /**
+     * @return true if mosaic tiles are packed in tile container files,
+     *         false if each tile is stored in its own file.
+     */
+    public boolean isTileContainer() {
+        return Boolean.TRUE.equals(tileContainer);
+    }
+
     public File getFolder(){
         return new File(getPyramidSet().getRef().getFolder(),getId());
     }
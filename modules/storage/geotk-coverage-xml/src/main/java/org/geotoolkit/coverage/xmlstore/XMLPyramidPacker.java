@@ -0,0 +1,173 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.xmlstore;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.bind.JAXBException;
+import org.apache.sis.storage.DataStoreException;
+import org.apache.sis.util.logging.Logging;
+
+/**
+ * Convert pyramids storing each tile in its own file to pyramids packing
+ * tiles in tile container files.
+ *
+ * Tiles are copied without being decoded. The pyramid descriptor is updated
+ * only once all tiles are copied, an interrupted migration leaves the pyramid
+ * in its original layout.
+ *
+ * Usage : XMLPyramidPacker [-keep] descriptor.xml [pyramidId ...]
+ *
+ * @module pending
+ */
+public final class XMLPyramidPacker {
+
+    private static final Logger LOGGER = Logging.getLogger(XMLPyramidPacker.class);
+
+    private XMLPyramidPacker() {
+    }
+
+    /**
+     * Pack tiles of all pyramids of the given reference.
+     *
+     * @param ref pyramid reference
+     * @param deleteTiles true to delete tile files once the pyramid descriptor is updated
+     * @return number of copied tiles
+     * @throws DataStoreException if migration failed
+     */
+    public static long pack(final XMLCoverageReference ref, final boolean deleteTiles) throws DataStoreException {
+        long nb = 0;
+        for (XMLPyramid pyramid : new ArrayList<>(ref.getPyramidSet().pyramids())) {
+            nb += pack(ref, pyramid.getId(), deleteTiles);
+        }
+        return nb;
+    }
+
+    /**
+     * Pack tiles of a pyramid.
+     *
+     * @param ref pyramid reference
+     * @param pyramidId identifier of the pyramid to convert
+     * @param deleteTiles true to delete tile files once the pyramid descriptor is updated
+     * @return number of copied tiles
+     * @throws DataStoreException if migration failed
+     */
+    public static long pack(final XMLCoverageReference ref, final String pyramidId, final boolean deleteTiles)
+            throws DataStoreException {
+        final XMLPyramid pyramid = (XMLPyramid) ref.getPyramidSet().getPyramid(pyramidId);
+        if (pyramid == null) {
+            throw new DataStoreException("No pyramid for ID : " + pyramidId);
+        }
+        if (pyramid.isTileContainer()) {
+            //already converted
+            return 0;
+        }
+
+        long nb = 0;
+        final List<File> tileFiles = new ArrayList<>();
+        for (XMLMosaic mosaic : pyramid.mosaics()) {
+            final File[] files = mosaic.getFolder().listFiles();
+            if (files == null) {
+                continue;
+            }
+            try {
+                for (File file : files) {
+                    final Point position = XMLMosaic.parsePosition(file.getName());
+                    if (position == null || !file.isFile()
+                            || position.x >= mosaic.gridWidth || position.y >= mosaic.gridHeight) {
+                        continue;
+                    }
+                    final XMLTileContainer container = mosaic.getContainer(position.x, position.y, true);
+                    container.write(XMLMosaic.getBlockTileIndex(position.x, position.y),
+                            Files.readAllBytes(file.toPath()));
+                    tileFiles.add(file);
+                    nb++;
+                }
+                mosaic.flushContainers();
+            } catch (IOException ex) {
+                throw new DataStoreException(ex.getMessage(), ex);
+            } finally {
+                mosaic.closeContainers();
+            }
+        }
+
+        pyramid.tileContainer = Boolean.TRUE;
+        ref.save();
+
+        if (deleteTiles) {
+            for (File file : tileFiles) {
+                if (!file.delete()) {
+                    LOGGER.log(Level.WARNING, "Tile file could not be deleted : {0}", file);
+                }
+            }
+        }
+        return nb;
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args [-keep] descriptor.xml [pyramidId ...]
+     * @throws Exception if migration failed
+     */
+    public static void main(final String[] args) throws Exception {
+        boolean deleteTiles = true;
+        int i = 0;
+        if (i < args.length && "-keep".equals(args[i])) {
+            deleteTiles = false;
+            i++;
+        }
+        if (i >= args.length) {
+            usage();
+            return;
+        }
+
+        final XMLCoverageReference ref;
+        try {
+            ref = XMLCoverageReference.read(new File(args[i++]));
+        } catch (JAXBException ex) {
+            System.out.println("File is not a pyramid descriptor : " + args[i-1]);
+            return;
+        }
+
+        final long start = System.currentTimeMillis();
+        long nb = 0;
+        if (i == args.length) {
+            nb = pack(ref, deleteTiles);
+        } else {
+            for (; i < args.length; i++) {
+                nb += pack(ref, args[i], deleteTiles);
+            }
+        }
+        System.out.println(nb + " tiles packed in " + (System.currentTimeMillis() - start) + "ms.");
+    }
+
+    private static void usage() {
+        System.out.println("Usage: XMLPyramidPacker [-keep] descriptor.xml [pyramidId ...]");
+        System.out.println();
+        System.out.println("Pack pyramid tiles in tile container files.");
+        System.out.println("All pyramids of the descriptor are converted if no pyramid identifier is given.");
+        System.out.println("  -keep : do not delete tile files after conversion");
+    }
+
+}
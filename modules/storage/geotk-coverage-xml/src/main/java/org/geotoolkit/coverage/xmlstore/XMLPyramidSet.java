@@ -128,7 +128,22 @@ public class XMLPyramidSet extends AbstractPyramidSet{
      * @throws org.apache.sis.storage.DataStoreException If the given CRS is null or invalid.
      */
     Pyramid createPyramid(final String layerName, final CoordinateReferenceSystem crs) throws DataStoreException {
+        final Object store = ref.getStore();
+        return createPyramid(layerName, crs, store instanceof XMLCoverageStore && ((XMLCoverageStore) store).tileContainer);
+    }
+
+    /**
+     * Create and register a new pyramid in the set.
+     *
+     * @param crs The {@link org.opengis.referencing.crs.CoordinateReferenceSystem} for the image data of the pyramid.
+     * @param tileContainer true to pack tiles in tile container files, false to store each tile in its own file.
+     * @return The newly created pyramid.
+     * @throws org.apache.sis.storage.DataStoreException If the given CRS is null or invalid.
+     */
+    Pyramid createPyramid(final String layerName, final CoordinateReferenceSystem crs, final boolean tileContainer)
+            throws DataStoreException {
         final XMLPyramid pyramid = new XMLPyramid(crs);
+        pyramid.tileContainer = tileContainer ? Boolean.TRUE : null;
         try {
             pyramid.id = URLEncoder.encode(layerName+"_"+IdentifiedObjects.getIdentifierOrName(crs),"UTF-8");
         } catch (UnsupportedEncodingException ex) {
@@ -0,0 +1,231 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.xmlstore;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Container file storing a block of tiles of a mosaic.
+ *
+ * File structure :
+ * <ul>
+ *   <li>int : magic number 'GTPK'</li>
+ *   <li>int : format version</li>
+ *   <li>int : block width in tiles</li>
+ *   <li>int : block height in tiles</li>
+ *   <li>offset table : for each tile, in row order, a long offset and an int length.
+ *       A zero length means the tile does not exist.</li>
+ *   <li>tile data</li>
+ * </ul>
+ *
+ * The offset table is memory mapped, tiles are read and written with positional
+ * operations on the file channel. Tiles are always appended at the end of the file,
+ * the table entry is updated after the tile data is written so an interrupted
+ * write never exposes a partial tile. Space of replaced tiles is not reclaimed.
+ *
+ * @module pending
+ */
+final class XMLTileContainer implements Closeable {
+
+    /** File signature : 'GTPK' */
+    private static final int MAGIC = 0x4754504B;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 12;
+
+    /** Container file suffix */
+    static final String SUFFIX = ".pack";
+
+    private final File file;
+    private final int blockWidth;
+    private final int blockHeight;
+    private final FileChannel channel;
+    private final MappedByteBuffer table;
+    private final boolean writable;
+    private long end;
+
+    private XMLTileContainer(final File file, final FileChannel channel, final boolean writable,
+            final int blockWidth, final int blockHeight) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.writable = writable;
+        this.blockWidth = blockWidth;
+        this.blockHeight = blockHeight;
+        this.table = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                HEADER_SIZE, (long) blockWidth * blockHeight * ENTRY_SIZE);
+        this.end = Math.max(channel.size(), tableEnd());
+    }
+
+    /**
+     * Open a container file, the file is created if it does not exist and create is true.
+     *
+     * @param file container file
+     * @param blockWidth block width in tiles, used only if the file is created
+     * @param blockHeight block height in tiles, used only if the file is created
+     * @param create true to create the file if it does not exist
+     * @return container or null if file does not exist and create is false
+     * @throws IOException if file can not be opened or is not a container
+     */
+    static XMLTileContainer open(final File file, final int blockWidth, final int blockHeight,
+            final boolean create) throws IOException {
+        final boolean exist = file.isFile();
+        if (!exist && !create) {
+            return null;
+        }
+        final boolean writable = !exist || file.canWrite();
+        final FileChannel channel = writable ?
+                FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE) :
+                FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.size() == 0) {
+                if (!writable) {
+                    throw new IOException("Empty tile container : " + file);
+                }
+                header.putInt(MAGIC).putInt(VERSION).putInt(blockWidth).putInt(blockHeight).flip();
+                writeFully(channel, header, 0);
+                return new XMLTileContainer(file, channel, writable, blockWidth, blockHeight);
+            }
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a tile container : " + file);
+            }
+            return new XMLTileContainer(file, channel, writable, header.getInt(), header.getInt());
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getBlockWidth() {
+        return blockWidth;
+    }
+
+    int getBlockHeight() {
+        return blockHeight;
+    }
+
+    private long tableEnd() {
+        return HEADER_SIZE + (long) blockWidth * blockHeight * ENTRY_SIZE;
+    }
+
+    /**
+     * @param index tile index in the block
+     * @return true if the tile exist
+     */
+    synchronized boolean exists(final int index) {
+        return table.getInt(index * ENTRY_SIZE + 8) > 0;
+    }
+
+    /**
+     * Read a tile.
+     *
+     * @param index tile index in the block
+     * @return encoded tile or null if tile does not exist
+     * @throws IOException if reading failed
+     */
+    byte[] read(final int index) throws IOException {
+        final long offset;
+        final int length;
+        synchronized (this) {
+            offset = table.getLong(index * ENTRY_SIZE);
+            length = table.getInt(index * ENTRY_SIZE + 8);
+        }
+        if (length <= 0) {
+            return null;
+        }
+        final byte[] data = new byte[length];
+        readFully(channel, ByteBuffer.wrap(data), offset);
+        return data;
+    }
+
+    /**
+     * Write or replace a tile.
+     *
+     * @param index tile index in the block
+     * @param data encoded tile
+     * @throws IOException if writing failed
+     */
+    void write(final int index, final byte[] data) throws IOException {
+        if (!writable) {
+            throw new IOException("Tile container is read only : " + file);
+        }
+        if (data.length == 0) {
+            throw new IOException("Tile has no data.");
+        }
+        final long offset;
+        synchronized (this) {
+            offset = end;
+            end += data.length;
+        }
+        writeFully(channel, ByteBuffer.wrap(data), offset);
+        synchronized (this) {
+            table.putLong(index * ENTRY_SIZE, offset);
+            table.putInt(index * ENTRY_SIZE + 8, data.length);
+        }
+    }
+
+    /**
+     * Force container content to the storage device.
+     *
+     * @throws IOException if writing failed
+     */
+    synchronized void force() throws IOException {
+        if (writable) {
+            channel.force(false);
+            table.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int nb = channel.read(buffer, position);
+            if (nb < 0) {
+                throw new EOFException("Unexpected end of tile container.");
+            }
+            position += nb;
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.xmlstore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.sis.util.logging.Logging;
+
+/**
+ * Tile existence index of a mosaic, used when tile states are not stored
+ * in the pyramid descriptor. The index is stored in a file next to the
+ * mosaic folder so tile files do not need to be probed again at next opening.
+ *
+ * Only existing tiles are saved, missing tiles are probed once per session.
+ * Tiles are never removed from a mosaic so an index which has not been saved
+ * after the last writes only cause a few extra probes.
+ *
+ * @module pending
+ */
+final class XMLTileStateIndex {
+
+    private static final Logger LOGGER = Logging.getLogger(XMLTileStateIndex.class);
+
+    /** File signature : 'GTSI' */
+    private static final int MAGIC = 0x47545349;
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final int gridWidth;
+    private final int gridHeight;
+    /** Tiles which state is known */
+    private final BitSet known;
+    /** Tiles which exist */
+    private final BitSet exist;
+    private boolean modified = false;
+
+    private XMLTileStateIndex(final File file, final int gridWidth, final int gridHeight, final BitSet exist) {
+        this.file = file;
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        this.exist = exist;
+        this.known = (BitSet) exist.clone();
+    }
+
+    /**
+     * Open the index stored in given file, an empty index is returned if the
+     * file does not exist or does not match the grid size.
+     *
+     * @param file index file
+     * @param gridWidth mosaic grid width
+     * @param gridHeight mosaic grid height
+     * @return XMLTileStateIndex, never null
+     */
+    static XMLTileStateIndex open(final File file, final int gridWidth, final int gridHeight) {
+        BitSet exist = null;
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a tile state index file.");
+                }
+                if (in.readInt() == gridWidth && in.readInt() == gridHeight) {
+                    final byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    exist = BitSet.valueOf(bytes);
+                } else {
+                    LOGGER.log(Level.INFO, "Tile state index {0} does not match the mosaic grid, ignored.", file);
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Tile state index "+file+" can not be read, ignored.", ex);
+            }
+        }
+        if (exist == null) {
+            exist = new BitSet(gridWidth * gridHeight);
+        }
+        return new XMLTileStateIndex(file, gridWidth, gridHeight, exist);
+    }
+
+    /**
+     * @param index tile index
+     * @return true if tile exist, false if it is missing or null if tile state is unknown.
+     */
+    synchronized Boolean get(final int index) {
+        if (!known.get(index)) {
+            return null;
+        }
+        return exist.get(index);
+    }
+
+    /**
+     * Set tile state.
+     *
+     * @param index tile index
+     * @param exists true if tile exist
+     */
+    synchronized void set(final int index, final boolean exists) {
+        known.set(index);
+        if (exist.get(index) != exists) {
+            exist.set(index, exists);
+            modified = true;
+        }
+    }
+
+    /**
+     * Save the index if it has been modified since last save.
+     * The file is replaced atomically when possible.
+     *
+     * @throws IOException if writing index failed
+     */
+    synchronized void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        final File parent = file.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        final File tmp = new File(parent, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            final byte[] bytes = exist.toByteArray();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(gridWidth);
+            out.writeInt(gridHeight);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            //atomic move may not be supported
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        modified = false;
+    }
+
+}
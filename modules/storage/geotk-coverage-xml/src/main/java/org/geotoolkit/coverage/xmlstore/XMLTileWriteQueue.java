@@ -0,0 +1,283 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.xmlstore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageWriter;
+import org.apache.sis.util.logging.Logging;
+import org.geotoolkit.image.io.XImageIO;
+
+/**
+ * Bounded queue of tiles to write, shared by all xml coverage stores.
+ *
+ * Producers are blocked when the queue is full, this keeps the memory used by
+ * pending tiles under control when tiles are produced faster than they are encoded.
+ * Tiles are taken by batches by the writer threads, each thread keeps one
+ * image writer per format for the whole batch.
+ *
+ * @module pending
+ */
+final class XMLTileWriteQueue {
+
+    private static final Logger LOGGER = Logging.getLogger(XMLTileWriteQueue.class);
+
+    /** Maximum number of tiles taken at once by a writer thread. */
+    private static final int BATCH_SIZE = 16;
+
+    static final XMLTileWriteQueue INSTANCE = new XMLTileWriteQueue(Runtime.getRuntime().availableProcessors());
+
+    private final int nbThread;
+    private final BlockingQueue<Job> queue;
+    private final AtomicInteger activeWriters = new AtomicInteger();
+    private final ThreadPoolExecutor executor;
+
+    private XMLTileWriteQueue(final int nbThread) {
+        this.nbThread = nbThread;
+        this.queue = new ArrayBlockingQueue<>(nbThread * BATCH_SIZE * 2);
+        this.executor = new ThreadPoolExecutor(nbThread, nbThread, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger inc = new AtomicInteger();
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread t = new Thread(r, "XML mosaic tile writer "+inc.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Add a tile to write, this method blocks until there is room in the queue.
+     *
+     * @param job tile to write
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void put(final Job job) throws InterruptedException {
+        for (Tracker tracker : job.trackers) {
+            tracker.increment();
+        }
+        try {
+            queue.put(job);
+        } catch (InterruptedException ex) {
+            for (Tracker tracker : job.trackers) {
+                tracker.done(null);
+            }
+            throw ex;
+        }
+        startWriter();
+    }
+
+    private void startWriter() {
+        for (;;) {
+            final int nb = activeWriters.get();
+            if (nb >= nbThread) {
+                return;
+            }
+            if (activeWriters.compareAndSet(nb, nb+1)) {
+                executor.execute(new Writer());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writer thread loop, takes tiles by batches until the queue is empty.
+     */
+    private final class Writer implements Runnable {
+
+        private final Map<String,ImageWriter> writers = new HashMap<>();
+        private final List<Job> batch = new ArrayList<>(BATCH_SIZE);
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    queue.drainTo(batch, BATCH_SIZE);
+                    if (batch.isEmpty()) {
+                        activeWriters.decrementAndGet();
+                        //a tile may have been added after the drain
+                        if (queue.isEmpty() || !reactivate()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    for (Job job : batch) {
+                        write(job);
+                    }
+                    batch.clear();
+                }
+            } finally {
+                for (ImageWriter writer : writers.values()) {
+                    writer.dispose();
+                }
+            }
+        }
+
+        private boolean reactivate() {
+            for (;;) {
+                final int nb = activeWriters.get();
+                if (nb >= nbThread) {
+                    return false;
+                }
+                if (activeWriters.compareAndSet(nb, nb+1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void write(final Job job) {
+            Exception error = null;
+            try {
+                ImageWriter writer = writers.get(job.formatName);
+                if (writer == null) {
+                    writer = XImageIO.getWriterByFormatName(job.formatName, null, null);
+                    writers.put(job.formatName, writer);
+                }
+                job.write(writer);
+            } catch (Exception ex) {
+                LOGGER.log(Level.WARNING, ex.getMessage(), ex);
+                error = ex;
+                //writer state is unknown after a failure
+                final ImageWriter writer = writers.remove(job.formatName);
+                if (writer != null) {
+                    writer.dispose();
+                }
+            } finally {
+                for (Tracker tracker : job.trackers) {
+                    tracker.done(error);
+                }
+            }
+        }
+    }
+
+    /**
+     * A tile to write.
+     */
+    abstract static class Job {
+
+        private final String formatName;
+        private final Tracker[] trackers;
+
+        /**
+         * @param formatName image format of the tile
+         * @param trackers trackers notified when the tile has been written
+         */
+        Job(final String formatName, final Tracker ... trackers) {
+            this.formatName = formatName;
+            this.trackers = trackers;
+        }
+
+        /**
+         * Write the tile.
+         *
+         * @param writer image writer for the tile format, the writer output
+         *        must be reset after writing
+         * @throws Exception if writing failed
+         */
+        abstract void write(ImageWriter writer) throws Exception;
+    }
+
+    /**
+     * Count the tiles waiting to be written and keep the first error which occurred.
+     */
+    static final class Tracker {
+
+        private int pending = 0;
+        private Exception error = null;
+
+        synchronized void increment() {
+            pending++;
+        }
+
+        synchronized void done(final Exception ex) {
+            if (ex != null && error == null) {
+                error = ex;
+            }
+            pending--;
+            if (pending == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Wait until all tiles are written.
+         *
+         * @param timeout maximum time to wait in milliseconds, 0 to wait forever
+         * @return true if all tiles have been written, false if timeout elapsed
+         * @throws InterruptedException if interrupted while waiting
+         */
+        synchronized boolean await(final long timeout) throws InterruptedException {
+            if (timeout <= 0) {
+                while (pending > 0) {
+                    wait();
+                }
+                return true;
+            }
+            final long end = System.currentTimeMillis() + timeout;
+            while (pending > 0) {
+                final long remaining = end - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+
+        /**
+         * @return first error since last call, or null
+         */
+        synchronized Exception pollError() {
+            final Exception ex = error;
+            error = null;
+            return ex;
+        }
+
+        /**
+         * Wait until all tiles are written and rethrow the first error.
+         *
+         * @throws IOException if a tile writing failed or if interrupted
+         */
+        void awaitAndCheck() throws IOException {
+            try {
+                await(0);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for tile writing.", ex);
+            }
+            final Exception ex = pollError();
+            if (ex != null) {
+                throw (ex instanceof IOException) ? (IOException) ex : new IOException(ex.getMessage(), ex);
+            }
+        }
+    }
+
+}
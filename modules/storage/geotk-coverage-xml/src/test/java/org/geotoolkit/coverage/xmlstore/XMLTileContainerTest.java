@@ -0,0 +1,69 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.xmlstore;
+
+import java.io.File;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test tile container files.
+ *
+ * @module pending
+ */
+public class XMLTileContainerTest {
+
+    @Test
+    public void testReadWrite() throws Exception {
+        final File file = File.createTempFile("block", XMLTileContainer.SUFFIX);
+        file.delete();
+        file.deleteOnExit();
+
+        assertNull(XMLTileContainer.open(file, 4, 4, false));
+
+        XMLTileContainer container = XMLTileContainer.open(file, 4, 4, true);
+        try {
+            assertFalse(container.exists(5));
+            assertNull(container.read(5));
+            container.write(5, new byte[]{1,2,3});
+            container.write(15, new byte[]{4,5});
+            //replace a tile
+            container.write(5, new byte[]{6,7,8,9});
+            assertTrue(container.exists(5));
+            assertArrayEquals(new byte[]{6,7,8,9}, container.read(5));
+        } finally {
+            container.close();
+        }
+
+        //reopen, block size is read from the file
+        container = XMLTileContainer.open(file, 8, 8, false);
+        try {
+            assertEquals(4, container.getBlockWidth());
+            assertEquals(4, container.getBlockHeight());
+            assertFalse(container.exists(0));
+            assertArrayEquals(new byte[]{6,7,8,9}, container.read(5));
+            assertArrayEquals(new byte[]{4,5}, container.read(15));
+            container.write(0, new byte[]{10});
+            assertArrayEquals(new byte[]{10}, container.read(0));
+            assertArrayEquals(new byte[]{4,5}, container.read(15));
+        } finally {
+            container.close();
+        }
+    }
+
+}
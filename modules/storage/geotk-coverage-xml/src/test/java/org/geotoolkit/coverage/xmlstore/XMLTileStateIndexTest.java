@@ -0,0 +1,82 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.xmlstore;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageWriter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test tile state index and tile write queue.
+ *
+ * @module pending
+ */
+public class XMLTileStateIndexTest {
+
+    @Test
+    public void testSaveAndOpen() throws Exception {
+        final File file = File.createTempFile("mosaic", ".tiles");
+        file.delete();
+        file.deleteOnExit();
+
+        XMLTileStateIndex index = XMLTileStateIndex.open(file, 10, 5);
+        assertNull(index.get(12));
+        index.set(12, true);
+        index.set(13, false);
+        assertEquals(Boolean.TRUE, index.get(12));
+        assertEquals(Boolean.FALSE, index.get(13));
+        index.save();
+        assertTrue(file.isFile());
+
+        //only existing tiles are saved
+        index = XMLTileStateIndex.open(file, 10, 5);
+        assertEquals(Boolean.TRUE, index.get(12));
+        assertNull(index.get(13));
+
+        //grid size changed, index is ignored
+        index = XMLTileStateIndex.open(file, 11, 5);
+        assertNull(index.get(12));
+    }
+
+    @Test
+    public void testQueue() throws Exception {
+        final XMLTileWriteQueue.Tracker tracker = new XMLTileWriteQueue.Tracker();
+        final AtomicInteger count = new AtomicInteger();
+        final int nb = 500;
+        for (int i = 0; i < nb; i++) {
+            final boolean fail = (i == 100);
+            XMLTileWriteQueue.INSTANCE.put(new XMLTileWriteQueue.Job("png", tracker) {
+                @Override
+                void write(ImageWriter writer) throws Exception {
+                    assertNotNull(writer);
+                    if (fail) {
+                        throw new Exception("Failed tile");
+                    }
+                    count.incrementAndGet();
+                }
+            });
+        }
+        assertTrue(tracker.await(0));
+        assertEquals(nb-1, count.get());
+        assertEquals("Failed tile", tracker.pollError().getMessage());
+        assertNull(tracker.pollError());
+    }
+
+}
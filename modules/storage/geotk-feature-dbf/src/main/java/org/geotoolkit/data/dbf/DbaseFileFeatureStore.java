@@ -51,7 +51,11 @@ import org.geotoolkit.feature.simple.SimpleFeatureType;
 import org.geotoolkit.feature.type.FeatureType;
 import org.geotoolkit.feature.type.Name;
 import org.geotoolkit.feature.type.PropertyDescriptor;
+import org.geotoolkit.filter.visitor.ListingPropertyVisitor;
 import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.identity.Identifier;
+import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.identity.FeatureId;
 import org.opengis.parameter.ParameterValueGroup;
 
@@ -184,10 +188,83 @@ public class DbaseFileFeatureStore extends AbstractFeatureStore implements DataF
         final Hints hints = query.getHints();
         final Boolean detached = (hints == null) ? null : (Boolean) hints.get(HintsPending.FEATURE_DETACHED);
 
-        final FeatureReader fr = new DBFFeatureReader(detached != null && !detached);
+        final FeatureReader fr = new DBFFeatureReader(detached != null && !detached,
+                toColumns(query), toRecordRange(query.getFilter()));
         return handleRemaining(fr, query);
     }
 
+    /**
+     * Columns needed to answer the query, the filter and sort properties are included
+     * since they are evaluated after reading.
+     *
+     * @return column indexes or null if all columns are needed
+     */
+    private int[] toColumns(final Query query) {
+        final Name[] properties = query.getPropertyNames();
+        if (properties == null) {
+            return null;
+        }
+        final Set<String> names = new HashSet<>();
+        for (Name property : properties) {
+            names.add(property.getLocalPart());
+        }
+        query.getFilter().accept(ListingPropertyVisitor.VISITOR, names);
+        final SortBy[] sortBy = query.getSortBy();
+        if (sortBy != null) {
+            for (SortBy sort : sortBy) {
+                if (sort.getPropertyName() != null) {
+                    names.add(sort.getPropertyName().getPropertyName());
+                }
+            }
+        }
+
+        final int[] columns = new int[names.size()];
+        int i = 0;
+        for (String name : names) {
+            columns[i] = featureType.indexOf(name);
+            if (columns[i] < 0) {
+                //property path we can not resolve, read everything
+                return null;
+            }
+            i++;
+        }
+        return columns;
+    }
+
+    /**
+     * Range of records containing all features of an identifier filter.
+     * Feature identifiers are the record indexes in the file, starting at 0,
+     * deleted records are counted so identifiers match the record numbers.
+     *
+     * @return first and last record numbers or null if filter is not an identifier filter
+     */
+    private static int[] toRecordRange(final Filter filter) {
+        if (!(filter instanceof Id)) {
+            return null;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = -1;
+        for (Identifier identifier : ((Id) filter).getIdentifiers()) {
+            final int index;
+            try {
+                index = Integer.parseInt(String.valueOf(identifier.getID()));
+            } catch (NumberFormatException ex) {
+                //not an identifier of this store, let the filter handle it
+                continue;
+            }
+            if (index < 0) {
+                continue;
+            }
+            min = Math.min(min, index);
+            max = Math.max(max, index);
+        }
+        if (max < 0) {
+            //no feature can match
+            return new int[]{1, 0};
+        }
+        return new int[]{min + 1, max + 1};
+    }
+
 
     ////////////////////////////////////////////////////////////////////////////
     // FALLTHROUGHT OR NOT IMPLEMENTED /////////////////////////////////////////
@@ -271,9 +348,8 @@ public class DbaseFileFeatureStore extends AbstractFeatureStore implements DataF
         protected final SimpleFeatureBuilder sfb;
         protected final DefaultSimpleFeature reuse;
         protected SimpleFeature current = null;
-        protected int inc = 0;
 
-        private DBFFeatureReader(final boolean reuseFeature) throws DataStoreException{
+        private DBFFeatureReader(final boolean reuseFeature, final int[] columns, final int[] range) throws DataStoreException{
             RWLock.readLock().lock();
             sfb = new SimpleFeatureBuilder(featureType);
             if(reuseFeature){
@@ -285,7 +361,12 @@ public class DbaseFileFeatureStore extends AbstractFeatureStore implements DataF
             try {
                 raf = new RandomAccessFile(file, "r");
                 reader = new DbaseFileReader(raf.getChannel(), true, null);
+                reader.setProjection(columns);
+                if (range != null) {
+                    reader.setRange(range[0], range[1]);
+                }
             } catch (IOException ex) {
+                RWLock.readLock().unlock();
                 throw new DataStoreException(ex);
             }
         }
@@ -314,18 +395,19 @@ public class DbaseFileFeatureStore extends AbstractFeatureStore implements DataF
 
         private void read() throws FeatureStoreRuntimeException{
             if(current != null) return;
-            if(!reader.hasNext()) return;
 
             try{
+                if(!reader.hasNext()) return;
                 final Row row = reader.next();
+                final String id = Integer.toString(reader.getRecordNumber() - 1);
                 if(reuse != null){
                     reuse.setAttributes(row.readAll(null));
-                    reuse.setId(String.valueOf(inc++));
+                    reuse.setId(id);
                     current = reuse;
                 }else{
                     sfb.reset();
                     sfb.addAll(row.readAll(null));
-                    current = sfb.buildFeature(Integer.toString(inc++));
+                    current = sfb.buildFeature(id);
                 }
             }catch(IOException ex){
                 throw new FeatureStoreRuntimeException(ex);
@@ -30,6 +30,7 @@ import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,7 +53,10 @@ import org.apache.sis.util.logging.Logging;
  * 
  * </PRE></CODE> 
  * For consumers who wish to be a bit more selective with their reading
- * of rows, the read(column) method has been added. 
+ * of rows, the read(column) method has been added. A column projection can also
+ * be set with setProjection, readAll will then only decode the projected columns.
+ * When the source supports random access, records can be read by record number
+ * with get(recno) and iteration can be restricted to a record range with setRange.
  * Remember that the Row object is always the same.
  * The values are parsed as they are read, so it pays to copy them out (as each
  * call to Row.read() will result in an expensive String parse).
@@ -72,12 +76,39 @@ public final class DbaseFileReader implements Closeable{
     public final class Row {
         
         public Object read(final int column) throws IOException {
-            final int offset = header.getFieldOffset(column);
             final DbaseField field = fieldReaders[column];
-            prepareFieldRead(field, offset);
+            prepareFieldRead(field, fieldOffsets[column]);
             return field.read(charBuffer);
         }
-        
+
+        /**
+         * Read the given columns.
+         *
+         * @param columns column indexes
+         * @param entry array to fill, value i is the value of column columns[i], can be null
+         * @return entry
+         * @throws IOException
+         */
+        public Object[] read(final int[] columns, Object[] entry) throws IOException {
+            if(entry == null){
+                entry = new Object[columns.length];
+            }else if (entry.length < columns.length) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            for (int i = 0; i < columns.length; i++) {
+                entry[i] = read(columns[i]);
+            }
+            return entry;
+        }
+
+        /**
+         * Read all columns, or only the projected columns if a projection is set.
+         * Columns not in the projection are set to null.
+         *
+         * @param entry array to fill, can be null
+         * @return entry
+         * @throws IOException
+         */
         public Object[] readAll(Object[] entry) throws IOException {
             if(entry == null){
                 entry = new Object[fieldReaders.length];
@@ -85,12 +116,18 @@ public final class DbaseFileReader implements Closeable{
                 throw new ArrayIndexOutOfBoundsException();
             }
 
-            int fieldOffset = 1; //1 to skip the delete flag
+            if (projection != null) {
+                Arrays.fill(entry, 0, fieldReaders.length, null);
+                for (int column : projection) {
+                    entry[column] = read(column);
+                }
+                return entry;
+            }
+
             for (int x = 0; x < fieldReaders.length; x++) {
                 final DbaseField field = fieldReaders[x];
-                prepareFieldRead(field, fieldOffset);
+                prepareFieldRead(field, fieldOffsets[x]);
                 entry[x] = field.read(charBuffer);
-                fieldOffset += field.fieldLength;
             }
 
             return entry;
@@ -101,9 +138,21 @@ public final class DbaseFileReader implements Closeable{
     protected final DbaseFileHeader header;
     protected final ByteBuffer buffer;
     protected final ReadableByteChannel channel;
+    private final Closeable resource;
     protected final CharBuffer charBuffer; //char buffer cache
     private final CharsetDecoder decoder;
     private final DbaseField[] fieldReaders;
+    /** field offsets in a record, including the delete flag */
+    private final int[] fieldOffsets;
+    /** decoded columns in readAll, null for all columns */
+    private int[] projection = null;
+    /** file offset of the first byte in buffer */
+    private long bufferOffset;
+    /** number of valid bytes in buffer, used only if buffer is not memory mapped */
+    private int bufferValid;
+    /** number of the last record returned by iteration, starting at 1 */
+    private int lastRecord;
+    /** number of the current record in the file, starting at 1, deleted records are counted */
     private int cnt = 0;
     private final Row row = new Row();
     private Row next = null;
@@ -126,6 +175,7 @@ public final class DbaseFileReader implements Closeable{
         if(charset == null) charset = DEFAULT_STRING_CHARSET;
 
         this.channel = dbfChannel;
+        this.resource = null;
         this.useMemoryMappedBuffer = useMemoryMappedBuffer;
         this.randomAccessEnabled = (channel instanceof FileChannel);
         this.header = new DbaseFileHeader();
@@ -137,6 +187,7 @@ public final class DbaseFileReader implements Closeable{
             final FileChannel fc = (FileChannel) channel;
             this.buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
             this.buffer.position((int) fc.position());
+            this.bufferOffset = 0;
         } else {
             // Force useMemoryMappedBuffer to false
             this.useMemoryMappedBuffer = false;
@@ -147,8 +198,9 @@ public final class DbaseFileReader implements Closeable{
             size = header.getRecordLength() > size ? header.getRecordLength() : size;
             buffer = ByteBuffer.allocateDirect(size);
             // fill it and reset
-            fill(buffer, channel);
+            bufferValid = fill(buffer, channel);
             buffer.flip();
+            bufferOffset = header.getHeaderLength();
         }
         
         // The entire file is in little endian
@@ -156,25 +208,77 @@ public final class DbaseFileReader implements Closeable{
         
         // Set up some buffers and lookups for efficiency
         fieldReaders = new DbaseField[header.getNumFields()];
-        for (int i = 0, ii = header.getNumFields(); i < ii; i++) {
-            fieldReaders[i] = header.getField(i);
-        }
+        fieldOffsets = new int[header.getNumFields()];
+        initFields();
+        lastRecord = header.getNumRecords();
         
         charBuffer = CharBuffer.allocate(header.getRecordLength() - 1);
         decoder = charset.newDecoder();
     }
 
-    protected void fill(final ByteBuffer buffer, final ReadableByteChannel channel)
+    /**
+     * Creates a new instance of DBaseFileReader reading from a memory mapped buffer,
+     * usually shared with other readers.
+     *
+     * @param dbfBuffer buffer containing the whole file, starting at position 0.
+     * @param resource resource to close with this reader.
+     * @param charset
+     * @throws IOException If an error occurs while initializing.
+     */
+    public DbaseFileReader(final ByteBuffer dbfBuffer, final Closeable resource,
+            Charset charset) throws IOException {
+
+        if(charset == null) charset = DEFAULT_STRING_CHARSET;
+
+        this.channel = null;
+        this.resource = resource;
+        this.useMemoryMappedBuffer = true;
+        this.randomAccessEnabled = true;
+        this.header = new DbaseFileHeader();
+        this.header.readHeader(new BufferChannel(dbfBuffer.duplicate()));
+
+        this.buffer = dbfBuffer;
+        this.buffer.position(header.getHeaderLength());
+
+        // The entire file is in little endian
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        // Set up some buffers and lookups for efficiency
+        fieldReaders = new DbaseField[header.getNumFields()];
+        fieldOffsets = new int[header.getNumFields()];
+        initFields();
+        lastRecord = header.getNumRecords();
+
+        charBuffer = CharBuffer.allocate(header.getRecordLength() - 1);
+        decoder = charset.newDecoder();
+    }
+
+    private void initFields() {
+        int offset = 1; //1 to skip the delete flag
+        for (int i = 0; i < fieldReaders.length; i++) {
+            fieldReaders[i] = header.getField(i);
+            fieldOffsets[i] = offset;
+            offset += fieldReaders[i].fieldLength;
+        }
+    }
+
+    /**
+     * @return number of bytes read
+     */
+    protected int fill(final ByteBuffer buffer, final ReadableByteChannel channel)
             throws IOException {
+        final int start = buffer.position();
         int r = buffer.remaining();
         // channel reads return -1 when EOF or other error
         // because they a non-blocking reads, 0 is a valid return value!!
         while (buffer.remaining() > 0 && r != -1) {
             r = channel.read(buffer);
         }
+        final int nb = buffer.position() - start;
         if (r == -1) {
             buffer.limit(buffer.position());
         }
+        return nb;
     }
 
     /**
@@ -184,9 +288,12 @@ public final class DbaseFileReader implements Closeable{
     private void bufferCheck() throws IOException {
         buffer.limit(buffer.capacity());
         if (!buffer.isReadOnly() && buffer.remaining() < header.getRecordLength()) {
+            final int position = buffer.position();
             buffer.compact();
-            fill(buffer, channel);
+            final int nb = fill(buffer, channel);
             buffer.position(0);
+            bufferOffset += position;
+            bufferValid = Math.max(0, bufferValid - position) + nb;
         }
     }
 
@@ -202,11 +309,24 @@ public final class DbaseFileReader implements Closeable{
 
     /**
      * Query the reader as to whether there is another record.
+     * Deleted records are skipped, the following record is prepared if needed.
      * 
      * @return True if more records exist, false otherwise.
+     * @throws IOException
      */
-    public boolean hasNext() {
-        return cnt < header.getNumRecords();
+    public boolean hasNext() throws IOException {
+        checkNext();
+        return next != null;
+    }
+
+    /**
+     * Number of the record returned by the last call to next.
+     * Deleted records are counted, this is the position of the record in the file.
+     *
+     * @return record number, starting at 1
+     */
+    public int getRecordNumber() {
+        return cnt;
     }
 
     /**
@@ -221,7 +341,7 @@ public final class DbaseFileReader implements Closeable{
     }
 
     private void checkNext() throws IOException{
-        if(next!=null)return;
+        if(next!=null || cnt>=lastRecord)return;
         
         if(cnt != 0){
             //move cursor to next record if it's not the first
@@ -231,28 +351,26 @@ public final class DbaseFileReader implements Closeable{
     }
         
     /**
-     * fill buffer with current record, skip it if it's deleted
+     * fill buffer with current record, skip it if it's deleted.
+     * next stays null if all remaining records are deleted.
      * @throws IOException
      */
     private void prepareNext() throws IOException {
                 
-        boolean foundRecord = false;
-        while (!foundRecord) {
+        while (cnt < lastRecord) {
             bufferCheck();
+            cnt++;
 
             // read the deleted flag
-            char deleted = (char) buffer.get();
+            char deleted = (char) buffer.get(buffer.position());
             if (deleted == '*') {
-                //record was deleted, move to next one, -1 for the delete flag we just read
-                buffer.position(buffer.position()+header.getRecordLength()-1);
+                //record was deleted, move to next one
+                buffer.position(buffer.position()+header.getRecordLength());
                 continue;
             }
-            buffer.position(buffer.position()-1);
-            foundRecord = true;
             next = row;
+            return;
         }
-        
-        cnt++;
     }
     
     private void prepareFieldRead(final DbaseField field, final int fieldOffset) throws CharacterCodingException{
@@ -297,8 +415,11 @@ public final class DbaseFileReader implements Closeable{
 
     /**
      * Navigate to the given record index.
+     * The record is returned by the following call to next, if the record is deleted
+     * the following record is returned. Any range set by setRange is removed.
+     * If the record is already in the read buffer, no read is made on the file.
      * 
-     * @param recno
+     * @param recno record number, starting at 1
      * @throws IOException
      * @throws UnsupportedOperationException 
      */
@@ -310,20 +431,121 @@ public final class DbaseFileReader implements Closeable{
 
             if (useMemoryMappedBuffer) {
                 buffer.position((int)newPosition);
+            } else if (newPosition >= bufferOffset
+                    && newPosition + header.getRecordLength() <= bufferOffset + bufferValid) {
+                //record is already in the buffer
+                buffer.limit(buffer.capacity());
+                buffer.position((int) (newPosition - bufferOffset));
             } else {
                 final FileChannel fc = (FileChannel) channel;
                 fc.position(newPosition);
                 buffer.limit(buffer.capacity());
                 buffer.position(0);
-                fill(buffer, channel);
+                bufferValid = fill(buffer, channel);
                 buffer.position(0);
+                bufferOffset = newPosition;
             }
+            next = null;
+            cnt = recno - 1;
+            lastRecord = header.getNumRecords();
             prepareNext();
         } else {
             throw new UnsupportedOperationException("Random access not enabled!");
         }
 
     }
+
+    /**
+     * Read the record with the given number.
+     *
+     * @param recno record number, starting at 1
+     * @return Row, always same instance
+     * @throws IOException
+     * @throws UnsupportedOperationException if random access is not supported
+     */
+    public Row get(final int recno) throws IOException, UnsupportedOperationException {
+        goTo(recno);
+        return next();
+    }
+
+    /**
+     * Restrict iteration to a range of records.
+     * Following calls to next return records from first to last.
+     * If random access is not supported, records before first are skipped,
+     * in this case first must be after the current record.
+     *
+     * @param first first record number, starting at 1
+     * @param last last record number, inclusive
+     * @throws IOException
+     */
+    public void setRange(final int first, final int last) throws IOException {
+        if (first < 1) {
+            throw new IllegalArgumentException("First record number must be greater than zero : " + first);
+        }
+        final int lastInRange = Math.min(last, header.getNumRecords());
+        if (first > lastInRange) {
+            //empty range
+            next = null;
+            cnt = lastRecord = lastInRange;
+            return;
+        }
+        if (randomAccessEnabled) {
+            goTo(first);
+            lastRecord = lastInRange;
+            if (cnt > lastRecord) {
+                //all records of the range are deleted
+                next = null;
+            }
+        } else {
+            lastRecord = lastInRange;
+            if (next != null) {
+                if (cnt >= first) {
+                    //first record of the range is already prepared, previous ones are deleted
+                    if (cnt > lastRecord) {
+                        next = null;
+                    }
+                    return;
+                }
+                next = null;
+            }
+            if (cnt >= first) {
+                throw new UnsupportedOperationException("Random access not enabled!");
+            }
+            while (cnt < first - 1) {
+                checkNext();
+                if (cnt >= first) {
+                    //records before first are deleted, keep the prepared record
+                    return;
+                }
+                next = null;
+            }
+        }
+    }
+
+    /**
+     * Set the columns decoded by Row.readAll.
+     *
+     * @param columns column indexes, null for all columns
+     */
+    public void setProjection(final int ... columns) {
+        if (columns != null) {
+            for (int column : columns) {
+                if (column < 0 || column >= fieldReaders.length) {
+                    throw new IllegalArgumentException("Invalid column index : " + column);
+                }
+            }
+            projection = columns.clone();
+        } else {
+            projection = null;
+        }
+    }
+
+    /**
+     * @return projected columns, null for all columns
+     */
+    public int[] getProjection() {
+        return (projection != null) ? projection.clone() : null;
+    }
     
     /**
      * If this method return true, then the index navigation (goto method) can be used.
@@ -340,14 +562,54 @@ public final class DbaseFileReader implements Closeable{
      */
     @Override
     public void close() throws IOException {
-        if (channel.isOpen()) {
+        if (channel != null && channel.isOpen()) {
             channel.close();
         }
+        if (resource != null) {
+            resource.close();
+        }
     }
 
     @Override
     public boolean isClosed() {
-        return !channel.isOpen();
+        if (channel != null) {
+            return !channel.isOpen();
+        }
+        return resource == null || resource.isClosed();
+    }
+
+    /**
+     * Channel reading from a buffer, used to parse the header of mapped files.
+     */
+    private static final class BufferChannel implements ReadableByteChannel {
+
+        private final ByteBuffer source;
+
+        private BufferChannel(final ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            final int nb = Math.min(dst.remaining(), source.remaining());
+            final ByteBuffer chunk = source.duplicate();
+            chunk.limit(chunk.position() + nb);
+            dst.put(chunk);
+            source.position(source.position() + nb);
+            return nb;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
     }
     
 }
@@ -0,0 +1,208 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.dbf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.sis.storage.DataStoreException;
+import org.geotoolkit.data.FeatureReader;
+import org.geotoolkit.data.query.QueryBuilder;
+import org.geotoolkit.factory.FactoryFinder;
+import org.geotoolkit.feature.Feature;
+import org.geotoolkit.feature.type.Name;
+import org.junit.Test;
+import org.opengis.filter.FilterFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test column projection and record access of the dbf reader.
+ *
+ * @module pending
+ */
+public class DbaseFileReaderTest {
+
+    private static final File FILE = new File("src/test/resources/org/geotoolkit/data/dbf/sample.dbf");
+    private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
+
+    private static List<Object[]> readAll() throws IOException {
+        return readAll(FILE);
+    }
+
+    private static List<Object[]> readAll(final File file) throws IOException {
+        final List<Object[]> records = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final DbaseFileReader reader = new DbaseFileReader(raf.getChannel(), true, null);
+            while (reader.hasNext()) {
+                records.add(reader.next().readAll(null));
+            }
+            reader.close();
+        }
+        return records;
+    }
+
+    @Test
+    public void testRecordAccess() throws IOException {
+        final List<Object[]> records = readAll();
+        assertEquals(3, records.size());
+
+        try (RandomAccessFile raf = new RandomAccessFile(FILE, "r")) {
+            final DbaseFileReader reader = new DbaseFileReader(raf.getChannel(), true, null);
+            //random order
+            for (int recno : new int[]{3, 1, 2, 2}) {
+                assertArrayEquals(records.get(recno-1), reader.get(recno).readAll(null));
+            }
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        final List<Object[]> records = readAll();
+
+        try (RandomAccessFile raf = new RandomAccessFile(FILE, "r")) {
+            final DbaseFileReader reader = new DbaseFileReader(raf.getChannel(), true, null);
+            reader.setRange(2, 3);
+            assertTrue(reader.hasNext());
+            assertArrayEquals(records.get(1), reader.next().readAll(null));
+            assertArrayEquals(records.get(2), reader.next().readAll(null));
+            assertFalse(reader.hasNext());
+
+            reader.setRange(1, 1);
+            assertArrayEquals(records.get(0), reader.next().readAll(null));
+            assertFalse(reader.hasNext());
+
+            //empty range
+            reader.setRange(2, 1);
+            assertFalse(reader.hasNext());
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testProjection() throws IOException {
+        final List<Object[]> records = readAll();
+
+        try (RandomAccessFile raf = new RandomAccessFile(FILE, "r")) {
+            final DbaseFileReader reader = new DbaseFileReader(raf.getChannel(), true, null);
+            reader.setProjection(2, 0);
+            int i = 0;
+            while (reader.hasNext()) {
+                final Object[] expected = records.get(i++);
+                final Object[] values = reader.next().readAll(null);
+                assertEquals(expected[0], values[0]);
+                assertNull(values[1]);
+                assertEquals(expected[2], values[2]);
+            }
+            assertEquals(3, i);
+
+            try {
+                reader.setProjection(3);
+                fail("Column index is out of range");
+            } catch (IllegalArgumentException ex) {
+                //ok
+            }
+            reader.setProjection(null);
+            assertNull(reader.getProjection());
+            reader.close();
+        }
+    }
+
+    /**
+     * Copy of the sample file with the second record flagged as deleted.
+     */
+    private static File createDeletedRecordFile() throws IOException {
+        final File file = File.createTempFile("deleted", ".dbf");
+        file.deleteOnExit();
+        Files.copy(FILE.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            final DbaseFileReader reader = new DbaseFileReader(raf.getChannel(), false, null);
+            final DbaseFileHeader header = reader.getHeader();
+            raf.seek(header.getHeaderLength() + header.getRecordLength());
+            raf.write('*');
+        }
+        return file;
+    }
+
+    @Test
+    public void testDeletedRecord() throws IOException {
+        final List<Object[]> records = readAll();
+        final File file = createDeletedRecordFile();
+        assertEquals(2, readAll(file).size());
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final DbaseFileReader reader = new DbaseFileReader(raf.getChannel(), true, null);
+            assertTrue(reader.hasNext());
+            assertArrayEquals(records.get(0), reader.next().readAll(null));
+            assertEquals(1, reader.getRecordNumber());
+            assertTrue(reader.hasNext());
+            assertArrayEquals(records.get(2), reader.next().readAll(null));
+            assertEquals(3, reader.getRecordNumber());
+            assertFalse(reader.hasNext());
+
+            //range containing only the deleted record
+            reader.setRange(2, 2);
+            assertFalse(reader.hasNext());
+
+            reader.setRange(2, 3);
+            assertArrayEquals(records.get(2), reader.next().readAll(null));
+            assertEquals(3, reader.getRecordNumber());
+            assertFalse(reader.hasNext());
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testDeletedRecordIdentifiers() throws IOException, DataStoreException {
+        final List<Object[]> records = readAll();
+        final File file = createDeletedRecordFile();
+        final DbaseFileFeatureStore store = new DbaseFileFeatureStore(file, "http://test.com");
+        final Name name = store.getNames().iterator().next();
+
+        //identifiers are the record numbers in the file
+        final List<String> ids = new ArrayList<>();
+        try (FeatureReader reader = store.getFeatureReader(QueryBuilder.all(name))) {
+            while (reader.hasNext()) {
+                ids.add(reader.next().getIdentifier().getID());
+            }
+        }
+        assertEquals(2, ids.size());
+        assertEquals("0", ids.get(0));
+        assertEquals("2", ids.get(1));
+
+        //identifier filters read the same features as a full scan
+        try (FeatureReader reader = store.getFeatureReader(QueryBuilder.filtered(name,
+                FF.id(Collections.singleton(FF.featureId("2")))))) {
+            assertTrue(reader.hasNext());
+            final Feature feature = reader.next();
+            assertEquals("2", feature.getIdentifier().getID());
+            assertEquals(records.get(2)[2], feature.getProperty("N3").getValue());
+            assertFalse(reader.hasNext());
+        }
+        try (FeatureReader reader = store.getFeatureReader(QueryBuilder.filtered(name,
+                FF.id(Collections.singleton(FF.featureId("1")))))) {
+            assertFalse(reader.hasNext());
+        }
+    }
+
+}
@@ -18,11 +18,13 @@
 package org.geotoolkit.data.geojson;
 
 import com.vividsolutions.jts.geom.*;
+import org.apache.sis.geometry.GeneralEnvelope;
 import org.apache.sis.storage.DataStoreException;
 import org.apache.sis.util.logging.Logging;
 import org.geotoolkit.data.*;
 import org.geotoolkit.data.geojson.binding.*;
 import org.geotoolkit.data.geojson.utils.FeatureTypeUtils;
+import org.geotoolkit.data.geojson.utils.GeoJSONFeatureIndex;
 import org.geotoolkit.data.geojson.utils.GeoJSONParser;
 import org.geotoolkit.data.geojson.utils.GeoJSONUtils;
 import org.geotoolkit.data.query.*;
@@ -30,11 +32,14 @@ import org.geotoolkit.factory.Hints;
 import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.AttributeDescriptorBuilder;
 import org.geotoolkit.feature.FeatureTypeBuilder;
+import org.geotoolkit.filter.visitor.ExtractBoundsFilterVisitor;
+import org.geotoolkit.geometry.jts.JTSEnvelope2D;
 import org.geotoolkit.parameter.Parameters;
 import org.geotoolkit.feature.Feature;
 import org.geotoolkit.feature.type.*;
 import org.opengis.filter.Filter;
 import org.opengis.filter.identity.FeatureId;
+import org.opengis.filter.spatial.BBOX;
 import org.opengis.geometry.Envelope;
 import org.opengis.parameter.ParameterValueGroup;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -60,6 +65,7 @@ public class GeoJSONFeatureStore extends AbstractFeatureStore {
 
     private static final Logger LOGGER = Logging.getLogger(GeoJSONFeatureStore.class);
     private static final String DESC_FILE_SUFFIX = "_Type.json";
+    private static final String INDEX_FILE_SUFFIX = "_Index.gjx";
 
     private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
     private final ReadWriteLock tmpLock = new ReentrantReadWriteLock();
@@ -69,8 +75,11 @@ public class GeoJSONFeatureStore extends AbstractFeatureStore {
     private FeatureType featureType;
     private File descFile;
     private File jsonFile;
+    private File indexFile;
     private Integer coordAccuracy;
     private boolean isLocal = true;
+    private boolean useIndex = false;
+    private GeoJSONFeatureIndex index;
 
     public GeoJSONFeatureStore(final URL url, final String namespace, Integer coordAccuracy)
             throws DataStoreException {
@@ -100,6 +109,9 @@ public class GeoJSONFeatureStore extends AbstractFeatureStore {
             String typeName = GeoJSONUtils.getNameWithoutExt(jsonFile);
             this.descFile = new File(jsonFile.getParent(), typeName + DESC_FILE_SUFFIX);
         }
+
+        this.useIndex = isLocal && Boolean.TRUE.equals(params.parameter(SPATIAL_INDEX.getName().toString()).getValue());
+        this.indexFile = new File(jsonFile.getParent(), GeoJSONUtils.getNameWithoutExt(jsonFile) + INDEX_FILE_SUFFIX);
     }
 
     private static ParameterValueGroup toParameter(final URL url, final String namespace, Integer coordAccuracy){
@@ -302,13 +314,92 @@ public class GeoJSONFeatureStore extends AbstractFeatureStore {
         return capabilities;
     }
 
+    /**
+     * Get the feature index, it is read from the sidecar file or built if the
+     * sidecar file is missing or outdated.
+     * Caller must hold the read lock.
+     *
+     * @return index or null if index is disabled or the file is not a FeatureCollection
+     * @throws DataStoreException
+     */
+    private synchronized GeoJSONFeatureIndex getIndex() throws DataStoreException {
+        if (!useIndex || !jsonFile.exists()) {
+            return null;
+        }
+        if (index != null && index.isValid(jsonFile)) {
+            return index;
+        }
+
+        try {
+            index = GeoJSONFeatureIndex.read(indexFile, jsonFile);
+            if (index == null) {
+                final CoordinateReferenceSystem crs = featureType.getGeometryDescriptor().getCoordinateReferenceSystem();
+                index = GeoJSONFeatureIndex.build(jsonFile, crs);
+                if (index != null) {
+                    try {
+                        index.write(indexFile);
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Unable to write GeoJSON index file "+indexFile, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new DataStoreException(e.getMessage(), e);
+        }
+        return index;
+    }
+
+    /**
+     * Drop the feature index, it will be rebuilt on next use.
+     */
+    private synchronized void clearIndex() {
+        index = null;
+        if (indexFile.exists()) {
+            indexFile.delete();
+        }
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public long getCount(final Query query) throws DataStoreException {
+        typeCheck(query.getTypeName());
+
+        if(QueryUtilities.queryAll(query)){
+            rwLock.readLock().lock();
+            try {
+                final GeoJSONFeatureIndex idx = getIndex();
+                if (idx != null) {
+                    return idx.getCount();
+                }
+            } finally {
+                rwLock.readLock().unlock();
+            }
+        }
+        //fallback
+        return super.getCount(query);
+    }
+
     @Override
     public Envelope getEnvelope(final Query query) throws DataStoreException, FeatureStoreRuntimeException {
         typeCheck(query.getTypeName());
 
         if(QueryUtilities.queryAll(query)){
+            rwLock.readLock().lock();
             try {
-                rwLock.readLock().lock();
+                final GeoJSONFeatureIndex idx = getIndex();
+                if (idx != null) {
+                    final double[] bounds = idx.getBounds();
+                    if (bounds == null) {
+                        return null;
+                    }
+                    final GeneralEnvelope env = new GeneralEnvelope(featureType.getCoordinateReferenceSystem());
+                    env.setRange(0, bounds[0], bounds[2]);
+                    env.setRange(1, bounds[1], bounds[3]);
+                    return env;
+                }
+
                 final GeoJSONParser parser = new GeoJSONParser(true);
                 final GeoJSONObject obj = parser.parse(jsonFile);
 
@@ -317,10 +408,10 @@ public class GeoJSONFeatureStore extends AbstractFeatureStore {
                 if (envelope != null) {
                     return envelope;
                 }
-
-                rwLock.readLock().unlock();
             } catch (IOException e) {
                 throw new DataStoreException(e.getMessage(), e);
+            } finally {
+                rwLock.readLock().unlock();
             }
         }
         //fallback
@@ -334,6 +425,29 @@ public class GeoJSONFeatureStore extends AbstractFeatureStore {
     public FeatureReader getFeatureReader(final Query query) throws DataStoreException {
         typeCheck(query.getTypeName());
 
+        final Filter filter = query.getFilter();
+        if (filter instanceof BBOX) {
+            //in case we have a BBOX filter, read only the features which bbox intersects it.
+            //the filter is still evaluated on the features.
+            FeatureReader fr = null;
+            rwLock.readLock().lock();
+            try {
+                final GeoJSONFeatureIndex idx = getIndex();
+                final JTSEnvelope2D bbox = (JTSEnvelope2D) filter.accept(
+                        ExtractBoundsFilterVisitor.BOUNDS_VISITOR, new JTSEnvelope2D());
+                if (idx != null && bbox != null && !bbox.isNull()) {
+                    final int[] features = idx.search(bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY());
+                    //the reader keeps the read lock, the file can not change before the features are read
+                    fr = new GeoJSONIndexReader(jsonFile, featureType, rwLock, idx, features);
+                }
+            } finally {
+                rwLock.readLock().unlock();
+            }
+            if (fr != null) {
+                return handleRemaining(fr, query);
+            }
+        }
+
         final FeatureReader fr = new GeoJSONReader(jsonFile, featureType, rwLock);
         return handleRemaining(fr, query);
     }
@@ -344,6 +458,7 @@ public class GeoJSONFeatureStore extends AbstractFeatureStore {
     @Override
     public FeatureWriter getFeatureWriter(final Name typeName, final Filter filter, final Hints hints) throws DataStoreException {
         typeCheck(typeName);
+        clearIndex();
 
         final FeatureWriter fw = new GeoJSONFileWriter(jsonFile, featureType, rwLock, tmpLock,
                 GeoJSONFeatureStoreFactory.ENCODING, coordAccuracy);
@@ -428,6 +543,7 @@ public class GeoJSONFeatureStore extends AbstractFeatureStore {
 
         try{
             rwLock.writeLock().lock();
+            clearIndex();
             descFile.delete();
             jsonFile.createNewFile();
         } catch (IOException e) {
@@ -470,5 +586,8 @@ public class GeoJSONFeatureStore extends AbstractFeatureStore {
     public void refreshMetaModel() {
         name = null;
         featureType = null;
+        synchronized (this) {
+            index = null;
+        }
     }
 }
@@ -63,10 +63,17 @@ public class GeoJSONFeatureStoreFactory extends AbstractFileFeatureStoreFactory
     public static final ParameterDescriptor<Integer> COORDINATE_ACCURACY =
             new DefaultParameterDescriptor("coordinate_accuracy","Number of decimal (default 7).",Integer.class,7,false);
 
+    /**
+     * Optional, use a spatial index of the features saved in a sidecar file.
+     * The index is built on first use and rebuilt when the GeoJSON file is modified.
+     */
+    public static final ParameterDescriptor<Boolean> SPATIAL_INDEX =
+            new DefaultParameterDescriptor("spatial_index","Enable/disable the feature index sidecar file (default false).",Boolean.class,Boolean.FALSE,false);
+
 
     public static final ParameterDescriptorGroup PARAMETERS_DESCRIPTOR =
             new DefaultParameterDescriptorGroup("GeoJSONParameters",
-                IDENTIFIER, URLP, NAMESPACE, COORDINATE_ACCURACY);
+                IDENTIFIER, URLP, NAMESPACE, COORDINATE_ACCURACY, SPATIAL_INDEX);
 
     @Override
     public Identification getIdentification() {
@@ -0,0 +1,122 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.geojson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import org.geotoolkit.data.FeatureStoreRuntimeException;
+import org.geotoolkit.data.geojson.binding.GeoJSONFeature;
+import org.geotoolkit.data.geojson.binding.GeoJSONObject;
+import org.geotoolkit.data.geojson.utils.GeoJSONFeatureIndex;
+import org.geotoolkit.data.geojson.utils.GeoJSONParser;
+import org.geotoolkit.feature.Feature;
+import org.geotoolkit.feature.type.FeatureType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Reader of a subset of the features of a GeoJSON FeatureCollection.
+ * Features are read directly at their offset in the file using a {@link GeoJSONFeatureIndex},
+ * the other features are not parsed.
+ */
+class GeoJSONIndexReader extends GeoJSONReader {
+
+    private final GeoJSONParser parser = new GeoJSONParser();
+    private final GeoJSONFeatureIndex index;
+    private final int[] features;
+    private int featureIdx = 0;
+    private RandomAccessFile input;
+    private byte[] buffer = new byte[0];
+
+    /**
+     * @param features feature numbers to read, in ascending order
+     */
+    public GeoJSONIndexReader(File jsonFile, FeatureType featureType, ReadWriteLock rwLock,
+                              GeoJSONFeatureIndex index, int[] features) {
+        super(jsonFile, featureType, rwLock);
+        this.index = index;
+        this.features = features;
+    }
+
+    @Override
+    public boolean hasNext() throws FeatureStoreRuntimeException {
+        read();
+        return current != null;
+    }
+
+    @Override
+    public Feature next() throws FeatureStoreRuntimeException {
+        read();
+        final Feature ob = current;
+        current = null;
+        if(ob == null){
+            throw new FeatureStoreRuntimeException("No more records.");
+        }
+        return ob;
+    }
+
+    private void read() throws FeatureStoreRuntimeException {
+        if (current != null || featureIdx >= features.length) return;
+
+        currentFeatureIdx = features[featureIdx++];
+        final int length = index.getLength(currentFeatureIdx);
+        try {
+            if (input == null) {
+                input = new RandomAccessFile(jsonFile, "r");
+            }
+            if (buffer.length < length) {
+                buffer = new byte[length];
+            }
+            input.seek(index.getOffset(currentFeatureIdx));
+            input.readFully(buffer, 0, length);
+
+            final GeoJSONObject obj;
+            try (JsonParser p = GeoJSONParser.FACTORY.createParser(buffer, 0, length)) {
+                p.nextToken();
+                obj = parser.parseGeoJSONObject(p);
+            }
+            if (!(obj instanceof GeoJSONFeature)) {
+                throw new FeatureStoreRuntimeException("Feature "+currentFeatureIdx+" is not a GeoJSON Feature, index may be outdated.");
+            }
+
+            final GeoJSONFeature feature = (GeoJSONFeature) obj;
+            String id = "id-"+currentFeatureIdx;
+            if (feature.getId() != null) {
+                id = feature.getId();
+            }
+            current = toFeature(feature, id);
+        } catch (IOException e) {
+            throw new FeatureStoreRuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (input != null) {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new FeatureStoreRuntimeException(e);
+        } finally {
+            super.close();
+        }
+    }
+
+}
@@ -0,0 +1,466 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.geojson.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import org.geotoolkit.data.geojson.binding.GeoJSONFeature;
+import org.geotoolkit.data.geojson.binding.GeoJSONObject;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.geotoolkit.data.geojson.utils.GeoJSONMembres.FEATURES;
+
+/**
+ * Index of the features of a GeoJSON FeatureCollection file.
+ * For each feature the index stores the byte offset and length of the feature
+ * object in the file and its bounding box. Bounding boxes are searched with a
+ * packed R-tree, features are sorted on the Hilbert curve and grouped by nodes
+ * of {@value #NODE_SIZE} entries.
+ *
+ * The index is built in one pass over the file and can be saved in a sidecar file,
+ * it is valid as long as the GeoJSON file length and modification date are unchanged.
+ */
+public final class GeoJSONFeatureIndex {
+
+    private static final int MAGIC = 0x474A5831; // "GJX1"
+    private static final int NODE_SIZE = 16;
+    private static final int HILBERT_MAX = (1 << 16) - 1;
+
+    private final long jsonLength;
+    private final long jsonLastModified;
+    private final int count;
+    private final long[] offsets;
+    private final int[] lengths;
+    /** minx,miny,maxx,maxy for each feature, NaN if the feature has no geometry */
+    private final float[] bboxes;
+    /** minx,miny,maxx,maxy of all features, null if no feature has a geometry */
+    private final double[] bounds;
+
+    //packed R-tree, leaves first, then each upper level, root is the last node
+    private int nbLeaves;
+    private int[] levelBounds;
+    private float[] nodeBoxes;
+    /** leaves : feature number, upper nodes : position of the first child */
+    private int[] nodeIndices;
+
+    private GeoJSONFeatureIndex(long jsonLength, long jsonLastModified, int count,
+            long[] offsets, int[] lengths, float[] bboxes, double[] bounds) {
+        this.jsonLength = jsonLength;
+        this.jsonLastModified = jsonLastModified;
+        this.count = count;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.bboxes = bboxes;
+        this.bounds = bounds;
+        buildTree();
+    }
+
+    /**
+     * Parse the given GeoJSON file and index its features.
+     *
+     * @param jsonFile GeoJSON file
+     * @param crs features coordinate reference system
+     * @return index or null if file root object is not a FeatureCollection
+     * @throws IOException
+     */
+    public static GeoJSONFeatureIndex build(File jsonFile, CoordinateReferenceSystem crs) throws IOException {
+        final long jsonLength = jsonFile.length();
+        final long jsonLastModified = jsonFile.lastModified();
+
+        int count = 0;
+        long[] offsets = new long[1024];
+        int[] lengths = new int[1024];
+        float[] bboxes = new float[4096];
+        double[] bounds = null;
+        boolean isCollection = false;
+
+        final GeoJSONParser parser = new GeoJSONParser();
+        try (JsonParser p = GeoJSONParser.FACTORY.createParser(jsonFile)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldname = p.getCurrentName();
+                final JsonToken token = p.nextToken();
+                if (!FEATURES.equals(fieldname) || token != JsonToken.START_ARRAY) {
+                    p.skipChildren();
+                    continue;
+                }
+
+                isCollection = true;
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    final long start = p.getTokenLocation().getByteOffset();
+                    final GeoJSONObject obj = parser.parseGeoJSONObject(p);
+                    final long end = p.getCurrentLocation().getByteOffset();
+
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                        lengths = Arrays.copyOf(lengths, count * 2);
+                        bboxes = Arrays.copyOf(bboxes, count * 8);
+                    }
+                    offsets[count] = start;
+                    lengths[count] = (int) (end - start);
+
+                    Geometry geom = null;
+                    if (obj instanceof GeoJSONFeature) {
+                        geom = GeometryUtils.toJTS(((GeoJSONFeature) obj).getGeometry(), crs);
+                    }
+                    if (geom == null || geom.isEmpty()) {
+                        Arrays.fill(bboxes, count*4, count*4+4, Float.NaN);
+                    } else {
+                        final Envelope env = geom.getEnvelopeInternal();
+                        bboxes[count*4  ] = floorFloat(env.getMinX());
+                        bboxes[count*4+1] = floorFloat(env.getMinY());
+                        bboxes[count*4+2] = ceilFloat(env.getMaxX());
+                        bboxes[count*4+3] = ceilFloat(env.getMaxY());
+                        if (bounds == null) {
+                            bounds = new double[]{env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY()};
+                        } else {
+                            bounds[0] = Math.min(bounds[0], env.getMinX());
+                            bounds[1] = Math.min(bounds[1], env.getMinY());
+                            bounds[2] = Math.max(bounds[2], env.getMaxX());
+                            bounds[3] = Math.max(bounds[3], env.getMaxY());
+                        }
+                    }
+                    count++;
+                }
+            }
+        }
+
+        if (!isCollection) {
+            return null;
+        }
+        return new GeoJSONFeatureIndex(jsonLength, jsonLastModified, count,
+                Arrays.copyOf(offsets, count), Arrays.copyOf(lengths, count),
+                Arrays.copyOf(bboxes, count*4), bounds);
+    }
+
+    /**
+     * Read an index sidecar file.
+     *
+     * @param indexFile index file to read
+     * @param jsonFile indexed GeoJSON file
+     * @return index or null if index file do not exist or is outdated
+     * @throws IOException
+     */
+    public static GeoJSONFeatureIndex read(File indexFile, File jsonFile) throws IOException {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            final long jsonLength = in.readLong();
+            final long jsonLastModified = in.readLong();
+            if (jsonLength != jsonFile.length() || jsonLastModified != jsonFile.lastModified()) {
+                return null;
+            }
+
+            final int count = in.readInt();
+            double[] bounds = null;
+            if (in.readBoolean()) {
+                bounds = new double[]{in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble()};
+            }
+            final long[] offsets = new long[count];
+            final int[] lengths = new int[count];
+            final float[] bboxes = new float[count*4];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+                for (int k = i*4, n = k+4; k < n; k++) {
+                    bboxes[k] = in.readFloat();
+                }
+            }
+            return new GeoJSONFeatureIndex(jsonLength, jsonLastModified, count, offsets, lengths, bboxes, bounds);
+        }
+    }
+
+    /**
+     * Save the index in a sidecar file.
+     *
+     * @param indexFile file to write, replaced if it exist
+     * @throws IOException
+     */
+    public void write(File indexFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(jsonLength);
+            out.writeLong(jsonLastModified);
+            out.writeInt(count);
+            out.writeBoolean(bounds != null);
+            if (bounds != null) {
+                for (double d : bounds) {
+                    out.writeDouble(d);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+                for (int k = i*4, n = k+4; k < n; k++) {
+                    out.writeFloat(bboxes[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param jsonFile indexed GeoJSON file
+     * @return true if the file has not changed since the index was built
+     */
+    public boolean isValid(File jsonFile) {
+        return jsonLength == jsonFile.length() && jsonLastModified == jsonFile.lastModified();
+    }
+
+    /**
+     * @return number of features
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return minx,miny,maxx,maxy of all feature geometries or null if there are none
+     */
+    public double[] getBounds() {
+        return bounds == null ? null : bounds.clone();
+    }
+
+    /**
+     * @param feature feature number in the file
+     * @return offset in bytes of the feature object in the file
+     */
+    public long getOffset(int feature) {
+        return offsets[feature];
+    }
+
+    /**
+     * @param feature feature number in the file
+     * @return length in bytes of the feature object in the file
+     */
+    public int getLength(int feature) {
+        return lengths[feature];
+    }
+
+    /**
+     * Search the features which bounding box intersects the given area.
+     * The result may contain features which geometry do not intersect the area.
+     *
+     * @return feature numbers in ascending order, which is the file order
+     */
+    public int[] search(double minx, double miny, double maxx, double maxy) {
+        if (nbLeaves == 0) {
+            return new int[0];
+        }
+
+        int[] result = new int[16];
+        int nb = 0;
+        int[] stack = new int[16];
+        int stackSize = 0;
+
+        int node = nodeIndices.length - 1;
+        while (true) {
+            final int end = Math.min(node + NODE_SIZE, upperBound(node));
+            for (int pos = node; pos < end; pos++) {
+                if (nodeBoxes[pos*4  ] > maxx || nodeBoxes[pos*4+1] > maxy
+                 || nodeBoxes[pos*4+2] < minx || nodeBoxes[pos*4+3] < miny) {
+                    continue;
+                }
+                if (node < nbLeaves) {
+                    if (nb == result.length) result = Arrays.copyOf(result, nb * 2);
+                    result[nb++] = nodeIndices[pos];
+                } else {
+                    if (stackSize == stack.length) stack = Arrays.copyOf(stack, stackSize * 2);
+                    stack[stackSize++] = nodeIndices[pos];
+                }
+            }
+            if (stackSize == 0) break;
+            node = stack[--stackSize];
+        }
+
+        result = Arrays.copyOf(result, nb);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @return end position of the tree level containing the given node
+     */
+    private int upperBound(int node) {
+        int i = 0;
+        while (levelBounds[i] <= node) i++;
+        return levelBounds[i];
+    }
+
+    /**
+     * Build the packed R-tree of the features with a geometry.
+     */
+    private void buildTree() {
+        nbLeaves = 0;
+        for (int i = 0; i < count; i++) {
+            if (!Float.isNaN(bboxes[i*4])) nbLeaves++;
+        }
+        if (nbLeaves == 0) {
+            return;
+        }
+
+        //sort features on the Hilbert curve of their bbox center
+        final double width  = (bounds[2] - bounds[0]);
+        final double height = (bounds[3] - bounds[1]);
+        final long[] keys = new long[nbLeaves];
+        for (int i = 0, k = 0; i < count; i++) {
+            if (Float.isNaN(bboxes[i*4])) continue;
+            final double cx = (bboxes[i*4  ] + bboxes[i*4+2]) / 2.0;
+            final double cy = (bboxes[i*4+1] + bboxes[i*4+3]) / 2.0;
+            final int hx = width  > 0 ? (int) Math.max(0, Math.min(HILBERT_MAX, HILBERT_MAX * (cx - bounds[0]) / width))  : 0;
+            final int hy = height > 0 ? (int) Math.max(0, Math.min(HILBERT_MAX, HILBERT_MAX * (cy - bounds[1]) / height)) : 0;
+            //flip the sign bit to sort hilbert values as unsigned integers
+            keys[k++] = ((long) (hilbert(hx, hy) ^ Integer.MIN_VALUE) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        //count nodes of each level
+        int levelSize = nbLeaves;
+        int nbNodes = nbLeaves;
+        int[] levels = new int[]{nbNodes};
+        do {
+            levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+            nbNodes += levelSize;
+            levels = Arrays.copyOf(levels, levels.length + 1);
+            levels[levels.length - 1] = nbNodes;
+        } while (levelSize != 1);
+        levelBounds = levels;
+        nodeBoxes = new float[nbNodes*4];
+        nodeIndices = new int[nbNodes];
+
+        for (int k = 0; k < nbLeaves; k++) {
+            final int feature = (int) keys[k];
+            nodeIndices[k] = feature;
+            System.arraycopy(bboxes, feature*4, nodeBoxes, k*4, 4);
+        }
+
+        //group each level nodes in parent nodes
+        int pos = 0;
+        int parent = nbLeaves;
+        for (int l = 0; l < levelBounds.length - 1; l++) {
+            final int end = levelBounds[l];
+            while (pos < end) {
+                float minx = Float.POSITIVE_INFINITY;
+                float miny = Float.POSITIVE_INFINITY;
+                float maxx = Float.NEGATIVE_INFINITY;
+                float maxy = Float.NEGATIVE_INFINITY;
+                nodeIndices[parent] = pos;
+                for (int j = 0; j < NODE_SIZE && pos < end; j++, pos++) {
+                    minx = Math.min(minx, nodeBoxes[pos*4  ]);
+                    miny = Math.min(miny, nodeBoxes[pos*4+1]);
+                    maxx = Math.max(maxx, nodeBoxes[pos*4+2]);
+                    maxy = Math.max(maxy, nodeBoxes[pos*4+3]);
+                }
+                nodeBoxes[parent*4  ] = minx;
+                nodeBoxes[parent*4+1] = miny;
+                nodeBoxes[parent*4+2] = maxx;
+                nodeBoxes[parent*4+3] = maxy;
+                parent++;
+            }
+        }
+    }
+
+    /**
+     * @return largest float lower or equal to the value
+     */
+    private static float floorFloat(double value) {
+        final float f = (float) value;
+        return (f > value) ? Math.nextAfter(f, Double.NEGATIVE_INFINITY) : f;
+    }
+
+    /**
+     * @return smallest float greater or equal to the value
+     */
+    private static float ceilFloat(double value) {
+        final float f = (float) value;
+        return (f < value) ? Math.nextAfter(f, Double.POSITIVE_INFINITY) : f;
+    }
+
+    /**
+     * Position of a point on the Hilbert curve of order 16.
+     * From "Fast Hilbert curve generation, sorting, and range queries" by rawrunprotected.
+     *
+     * @param x in range [0..65535]
+     * @param y in range [0..65535]
+     * @return position on the curve, as an unsigned integer
+     */
+    private static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int A = a | (b >>> 1);
+        int B = (a >>> 1) ^ a;
+        int C = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+        int D = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+        a = A; b = B; c = C; d = D;
+        A = ((a & (a >>> 2)) ^ (b & (b >>> 2)));
+        B = ((a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2)));
+        C ^= ((a & (c >>> 2)) ^ (b & (d >>> 2)));
+        D ^= ((b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2)));
+
+        a = A; b = B; c = C; d = D;
+        A = ((a & (a >>> 4)) ^ (b & (b >>> 4)));
+        B = ((a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4)));
+        C ^= ((a & (c >>> 4)) ^ (b & (d >>> 4)));
+        D ^= ((b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4)));
+
+        a = A; b = B; c = C; d = D;
+        C ^= ((a & (c >>> 8)) ^ (b & (d >>> 8)));
+        D ^= ((b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8)));
+
+        a = C ^ (C >>> 1);
+        b = D ^ (D >>> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+
+}
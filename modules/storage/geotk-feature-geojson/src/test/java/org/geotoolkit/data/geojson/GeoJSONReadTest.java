@@ -5,18 +5,27 @@ import org.apache.sis.storage.DataStoreException;
 import org.geotoolkit.data.*;
 import org.geotoolkit.data.query.QueryBuilder;
 import org.geotoolkit.data.session.Session;
+import org.geotoolkit.factory.FactoryFinder;
 import org.geotoolkit.feature.Feature;
 import org.geotoolkit.feature.type.*;
 import org.geotoolkit.feature.FeatureTypeBuilder;
 import org.apache.sis.referencing.CommonCRS;
 import org.junit.Test;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.geometry.Envelope;
 import org.opengis.parameter.ParameterValueGroup;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.geotoolkit.data.geojson.GeoJSONFeatureStoreFactory.*;
 
 /**
@@ -214,6 +223,51 @@ public class GeoJSONReadTest {
         assertEquals(7, fcoll.size());
     }
 
+    /**
+     * Test reading of a FeatureCollection using the feature index sidecar file.
+     */
+    @Test
+    public void readFeatureCollectionIndexTest() throws DataStoreException, IOException {
+        final File dir = Files.createTempDirectory("geojson").toFile();
+        final File jsonFile = new File(dir, "featurecollection.json");
+        try (InputStream in = GeoJSONReadTest.class.getResourceAsStream("/org/geotoolkit/geojson/featurecollection.json")) {
+            Files.copy(in, jsonFile.toPath());
+        }
+        jsonFile.deleteOnExit();
+        dir.deleteOnExit();
+
+        ParameterValueGroup param = PARAMETERS_DESCRIPTOR.createValue();
+        param.parameter(URLP.getName().getCode()).setValue(jsonFile.toURI().toURL());
+        param.parameter(SPATIAL_INDEX.getName().getCode()).setValue(Boolean.TRUE);
+        FeatureStore store = FeatureStoreFinder.open(param);
+        assertNotNull(store);
+        Name name = store.getNames().iterator().next();
+
+        assertEquals(7, store.getCount(QueryBuilder.all(name)));
+        final File indexFile = new File(dir, "featurecollection_Index.gjx");
+        assertTrue(indexFile.exists());
+        indexFile.deleteOnExit();
+
+        final FilterFactory2 ff = (FilterFactory2) FactoryFinder.getFilterFactory(null);
+        final Filter filter = ff.bbox(ff.property(BasicFeatureTypes.GEOMETRY_ATTRIBUTE_NAME), -80.85, 35.24, -80.83, 35.26, null);
+
+        //same result with and without index
+        URL noIndexFile = GeoJSONReadTest.class.getResource("/org/geotoolkit/geojson/featurecollection.json");
+        ParameterValueGroup noIndexParam = PARAMETERS_DESCRIPTOR.createValue();
+        noIndexParam.parameter(URLP.getName().getCode()).setValue(noIndexFile);
+        FeatureStore noIndexStore = FeatureStoreFinder.open(noIndexParam);
+
+        final long expected = noIndexStore.getCount(QueryBuilder.filtered(name, filter));
+        assertTrue(expected > 0 && expected < 7);
+        assertEquals(expected, store.getCount(QueryBuilder.filtered(name, filter)));
+        final Envelope expectedEnv = noIndexStore.getEnvelope(QueryBuilder.all(name));
+        final Envelope env = store.getEnvelope(QueryBuilder.all(name));
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expectedEnv.getMinimum(i), env.getMinimum(i), 0.0);
+            assertEquals(expectedEnv.getMaximum(i), env.getMaximum(i), 0.0);
+        }
+    }
+
     /**
      * Test reading of Features with array as properties value
      * @throws DataStoreException
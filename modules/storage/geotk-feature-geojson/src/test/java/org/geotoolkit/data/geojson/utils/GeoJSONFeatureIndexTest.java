@@ -0,0 +1,178 @@
+package org.geotoolkit.data.geojson.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import org.apache.sis.referencing.CommonCRS;
+import org.geotoolkit.data.geojson.binding.GeoJSONFeature;
+import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link GeoJSONFeatureIndex}.
+ */
+public class GeoJSONFeatureIndexTest {
+
+    private static final CoordinateReferenceSystem CRS = CommonCRS.WGS84.normalizedGeographic();
+    private static final int NB_FEATURES = 1000;
+    private static final double EPS = 1e-4;
+
+    /**
+     * Write a FeatureCollection of points and lines, with non ASCII properties
+     * to check byte offsets.
+     *
+     * @return bbox of each feature : minx,miny,maxx,maxy
+     */
+    private static double[][] writeCollection(File file) throws IOException {
+        final Random random = new Random(42);
+        final double[][] bboxes = new double[NB_FEATURES][];
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"))) {
+            writer.write("{\"type\": \"FeatureCollection\",\n \"features\": [\n");
+            for (int i = 0; i < NB_FEATURES; i++) {
+                if (i > 0) writer.write(",\n");
+                final double x = random.nextDouble() * 360 - 180;
+                final double y = random.nextDouble() * 180 - 90;
+                writer.write("{\"type\": \"Feature\", \"geometry\": ");
+                if (i % 3 == 0) {
+                    final double x2 = x + random.nextDouble() * 10;
+                    final double y2 = y - random.nextDouble() * 10;
+                    writer.write("{\"type\": \"LineString\", \"coordinates\": [["+x+", "+y+"], ["+x2+", "+y2+"]]}");
+                    bboxes[i] = new double[]{x, y2, x2, y};
+                } else {
+                    writer.write("{\"type\": \"Point\", \"coordinates\": ["+x+", "+y+"]}");
+                    bboxes[i] = new double[]{x, y, x, y};
+                }
+                writer.write(", \"properties\": {\"num\": "+i+", \"name\": \"élément à "+i+"\"}}");
+            }
+            writer.write("\n]}");
+        }
+        return bboxes;
+    }
+
+    @Test
+    public void buildTest() throws IOException {
+        final File file = File.createTempFile("collection", ".json");
+        file.deleteOnExit();
+        final double[][] bboxes = writeCollection(file);
+
+        final GeoJSONFeatureIndex index = GeoJSONFeatureIndex.build(file, CRS);
+        assertNotNull(index);
+        assertEquals(NB_FEATURES, index.getCount());
+        assertTrue(index.isValid(file));
+
+        final double[] expected = bboxes[0].clone();
+        for (double[] bbox : bboxes) {
+            expected[0] = Math.min(expected[0], bbox[0]);
+            expected[1] = Math.min(expected[1], bbox[1]);
+            expected[2] = Math.max(expected[2], bbox[2]);
+            expected[3] = Math.max(expected[3], bbox[3]);
+        }
+        assertArrayEquals(expected, index.getBounds(), 0.0);
+
+        //each feature must be readable alone at its offset
+        final GeoJSONParser parser = new GeoJSONParser();
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            for (int i = 0; i < NB_FEATURES; i++) {
+                final byte[] buffer = new byte[index.getLength(i)];
+                input.seek(index.getOffset(i));
+                input.readFully(buffer);
+                try (JsonParser p = GeoJSONParser.FACTORY.createParser(buffer)) {
+                    p.nextToken();
+                    final GeoJSONFeature feature = (GeoJSONFeature) parser.parseGeoJSONObject(p);
+                    assertEquals(i, feature.getProperties().get("num"));
+                    assertEquals("élément à "+i, feature.getProperties().get("name"));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void searchTest() throws IOException {
+        final File file = File.createTempFile("collection", ".json");
+        file.deleteOnExit();
+        final double[][] bboxes = writeCollection(file);
+        final GeoJSONFeatureIndex index = GeoJSONFeatureIndex.build(file, CRS);
+
+        final Random random = new Random(7);
+        for (int k = 0; k < 100; k++) {
+            final double minx = random.nextDouble() * 360 - 180;
+            final double miny = random.nextDouble() * 180 - 90;
+            final double maxx = minx + random.nextDouble() * 60;
+            final double maxy = miny + random.nextDouble() * 30;
+
+            final List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < NB_FEATURES; i++) {
+                final double[] bbox = bboxes[i];
+                if (bbox[0] <= maxx && bbox[1] <= maxy && bbox[2] >= minx && bbox[3] >= miny) {
+                    expected.add(i);
+                }
+            }
+
+            final int[] result = index.search(minx, miny, maxx, maxy);
+            final List<Integer> found = new ArrayList<>();
+            for (int i = 0; i < result.length; i++) {
+                if (i > 0) assertTrue(result[i-1] < result[i]);
+                found.add(result[i]);
+                //the index may return a few more features because of float rounding
+                final double[] bbox = bboxes[result[i]];
+                assertTrue(bbox[0] <= maxx+EPS && bbox[1] <= maxy+EPS && bbox[2] >= minx-EPS && bbox[3] >= miny-EPS);
+            }
+            assertTrue(found.containsAll(expected));
+        }
+
+        assertEquals(NB_FEATURES, index.search(-180, -90, 180, 90).length);
+        assertEquals(0, index.search(200, 100, 300, 200).length);
+    }
+
+    @Test
+    public void sidecarTest() throws IOException {
+        final File file = File.createTempFile("collection", ".json");
+        final File indexFile = File.createTempFile("collection", ".gjx");
+        file.deleteOnExit();
+        indexFile.deleteOnExit();
+        writeCollection(file);
+
+        final GeoJSONFeatureIndex index = GeoJSONFeatureIndex.build(file, CRS);
+        index.write(indexFile);
+
+        final GeoJSONFeatureIndex read = GeoJSONFeatureIndex.read(indexFile, file);
+        assertNotNull(read);
+        assertEquals(index.getCount(), read.getCount());
+        assertArrayEquals(index.getBounds(), read.getBounds(), 0.0);
+        for (int i = 0; i < NB_FEATURES; i++) {
+            assertEquals(index.getOffset(i), read.getOffset(i));
+            assertEquals(index.getLength(i), read.getLength(i));
+        }
+        assertTrue(Arrays.equals(index.search(-10, -10, 10, 10), read.search(-10, -10, 10, 10)));
+
+        //modified json file, the index is outdated
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), Charset.forName("UTF-8"))) {
+            writer.write("\n");
+        }
+        assertFalse(index.isValid(file));
+        assertNull(GeoJSONFeatureIndex.read(indexFile, file));
+    }
+
+    @Test
+    public void notCollectionTest() throws IOException {
+        final File file = File.createTempFile("point", ".json");
+        file.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"))) {
+            writer.write("{\"type\": \"Point\", \"coordinates\": [1.0, 2.0]}");
+        }
+        assertNull(GeoJSONFeatureIndex.build(file, CRS));
+    }
+
+}
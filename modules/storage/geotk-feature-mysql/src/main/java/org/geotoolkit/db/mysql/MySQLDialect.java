@@ -33,6 +33,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -490,6 +491,16 @@ public class MySQLDialect extends AbstractSQLDialect {
     public void encodeGeometryValue(StringBuilder sql, Geometry value, int srid) throws DataStoreException {
         throw new UnsupportedOperationException("Geometry types not supported in MySQL.");
     }
+
+    @Override
+    public void encodeGeometryParameter(StringBuilder sql) {
+        throw new UnsupportedOperationException("Geometry types not supported in MySQL.");
+    }
+
+    @Override
+    public int setGeometryParameter(PreparedStatement ps, int index, Geometry value, int srid) throws SQLException, DataStoreException {
+        throw new UnsupportedOperationException("Geometry types not supported in MySQL.");
+    }
     
     @Override
     public Geometry decodeGeometryValue(GeometryDescriptor descriptor, ResultSet rs, String column) throws IOException, SQLException {
@@ -0,0 +1,219 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.db.postgres;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import static org.postgis.Geometry.*;
+
+/**
+ * PostGIS binary EWKB Geometry reader.
+ * http://postgis.net/docs/using_postgis_dbmanagement.html#EWKB_EWKT
+ *
+ * This format is returned by the ST_AsEWKB function as a bytea. The bytes are decoded
+ * directly in packed coordinate sequences, without the hexadecimal decoding pass of
+ * {@link PostgisHexEWKB}. Instances are not thread safe but can be reused.
+ */
+final class PostgisEWKB {
+
+    private static final int MASK_Z         = 0x80000000;
+    private static final int MASK_M         = 0x40000000;
+    private static final int MASK_SRID      = 0x20000000;
+    private static final int MASK_GEOMTYPE  = 0x1FFFFFFF;
+
+    private final GeometryFactory gf;
+    private final PostgresDialect dialect;
+
+    //current geometry bytes
+    private byte[] data;
+    private int position;
+    private boolean littleEndian;
+
+    /**
+     * @param gf factory for the decoded geometries
+     * @param dialect used to decode the CRS of the geometries, may be null
+     */
+    PostgisEWKB(final GeometryFactory gf, final PostgresDialect dialect) {
+        this.gf = gf;
+        this.dialect = dialect;
+    }
+
+    public Geometry read(final byte[] value) {
+        if(value == null) return null;
+
+        data = value;
+        position = 0;
+        final Geometry geom;
+        try {
+            geom = readGeometry(0);
+        } finally {
+            data = null;
+        }
+
+        final int srid = geom.getSRID();
+        if(srid > 0 && dialect != null){
+            //set the real crs, decoded crs are cached by the dialect
+            try {
+                geom.setUserData(dialect.decodeCRS(srid, null));
+            } catch (SQLException ex) {
+                dialect.getFeaturestore().getLogger().log(Level.WARNING, ex.getLocalizedMessage(),ex);
+            }
+        }
+        return geom;
+    }
+
+    private Geometry readGeometry(int srid) {
+        littleEndian = (data[position++] == 1);
+
+        //parse flags
+        final int     flags     = readInt();
+        final boolean flagZ     = (flags & MASK_Z)    != 0;
+        final boolean flagM     = (flags & MASK_M)    != 0;
+        final boolean flagSRID  = (flags & MASK_SRID) != 0;
+        final int     geomType  = (flags & MASK_GEOMTYPE);
+        final int     nbDim     = 2 + ((flagZ)?1:0) + ((flagM)?1:0);
+
+        if(flagSRID){
+            srid = readInt();
+        }
+
+        final Geometry geom;
+        switch (geomType) {
+            case POINT:             geom = readPoint(nbDim);                    break;
+            case LINESTRING:        geom = gf.createLineString(readCS(nbDim));  break;
+            case POLYGON:           geom = readPolygon(nbDim, srid);            break;
+            case MULTIPOINT:        geom = readMultiPoint(srid);                break;
+            case MULTILINESTRING:   geom = readMultiLineString(srid);           break;
+            case MULTIPOLYGON:      geom = readMultiPolygon(srid);              break;
+            case GEOMETRYCOLLECTION:geom = readCollection(srid);                break;
+            default: throw new IllegalArgumentException("Unknown geometry type : "+geomType);
+        }
+
+        geom.setSRID(srid);
+        return geom;
+    }
+
+    private int readInt() {
+        final int b0 = data[position  ] & 0xFF;
+        final int b1 = data[position+1] & 0xFF;
+        final int b2 = data[position+2] & 0xFF;
+        final int b3 = data[position+3] & 0xFF;
+        position += 4;
+        if(littleEndian){
+            return (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
+        }else{
+            return (b0 << 24) | (b1 << 16) | (b2 << 8) | b3;
+        }
+    }
+
+    private double readDouble() {
+        long bits = 0;
+        if(littleEndian){
+            for(int i=7; i>=0; i--){
+                bits = (bits << 8) | (data[position+i] & 0xFF);
+            }
+        }else{
+            for(int i=0; i<8; i++){
+                bits = (bits << 8) | (data[position+i] & 0xFF);
+            }
+        }
+        position += 8;
+        return Double.longBitsToDouble(bits);
+    }
+
+    private double[] readOrdinates(final int nb, final int nbDim) {
+        final double[] ordinates = new double[nb*nbDim];
+        for(int i=0; i<ordinates.length; i++){
+            ordinates[i] = readDouble();
+        }
+        return ordinates;
+    }
+
+    private Point readPoint(final int nbDim) {
+        final double[] ordinates = readOrdinates(1, nbDim);
+        if(Double.isNaN(ordinates[0]) && Double.isNaN(ordinates[1])){
+            //postgis encodes empty points with NaN ordinates
+            return gf.createPoint((CoordinateSequence)null);
+        }
+        return gf.createPoint(new PackedCoordinateSequence.Double(ordinates, nbDim));
+    }
+
+    private CoordinateSequence readCS(final int nbDim) {
+        final int nb = readInt();
+        return new PackedCoordinateSequence.Double(readOrdinates(nb, nbDim), nbDim);
+    }
+
+    private Polygon readPolygon(final int nbDim, final int srid) {
+        final int nbRings = readInt();
+        if(nbRings == 0){
+            return gf.createPolygon(null, null);
+        }
+        final LinearRing outter = gf.createLinearRing(readCS(nbDim));
+        outter.setSRID(srid);
+        final LinearRing[] inners = new LinearRing[nbRings-1];
+        for(int i=0; i<inners.length; i++){
+            inners[i] = gf.createLinearRing(readCS(nbDim));
+            inners[i].setSRID(srid);
+        }
+        return gf.createPolygon(outter, inners);
+    }
+
+    private MultiPoint readMultiPoint(final int srid) {
+        final Point[] geoms = new Point[readInt()];
+        for(int i=0; i<geoms.length; i++){
+            geoms[i] = (Point)readGeometry(srid);
+        }
+        return gf.createMultiPoint(geoms);
+    }
+
+    private MultiLineString readMultiLineString(final int srid) {
+        final LineString[] geoms = new LineString[readInt()];
+        for(int i=0; i<geoms.length; i++){
+            geoms[i] = (LineString)readGeometry(srid);
+        }
+        return gf.createMultiLineString(geoms);
+    }
+
+    private MultiPolygon readMultiPolygon(final int srid) {
+        final Polygon[] geoms = new Polygon[readInt()];
+        for(int i=0; i<geoms.length; i++){
+            geoms[i] = (Polygon)readGeometry(srid);
+        }
+        return gf.createMultiPolygon(geoms);
+    }
+
+    private GeometryCollection readCollection(final int srid) {
+        final Geometry[] geoms = new Geometry[readInt()];
+        for(int i=0; i<geoms.length; i++){
+            geoms[i] = readGeometry(srid);
+        }
+        return gf.createGeometryCollection(geoms);
+    }
+
+}
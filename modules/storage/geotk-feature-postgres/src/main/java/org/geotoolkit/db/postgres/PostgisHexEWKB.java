@@ -107,7 +107,7 @@ final class PostgisHexEWKB {
         }
         
         geom.setSRID(srid);
-        if(srid >= 0){
+        if(srid > 0){
             try {
                 //set the real crs
                 geom.setUserData(dialect.decodeCRS(srid, null));
@@ -193,7 +193,7 @@ final class PostgisHexEWKB {
     private GeometryCollection readCollection(final ValueGetter data, final int srid) {
         final Geometry[] geoms = new Geometry[data.getInt()];
         for(int i=0; i<geoms.length; i++){
-            geoms[i]=(Point)readGeometry(data, srid);
+            geoms[i]=readGeometry(data, srid);
         }
         return gf.createGeometryCollection(geoms);
     }
@@ -0,0 +1,149 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.db.postgres;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.sis.util.ObjectConverters;
+
+/**
+ * Writer of rows in the binary format of the PostgreSQL COPY command.
+ * http://www.postgresql.org/docs/current/static/sql-copy.html
+ *
+ * Each value is written in the binary format of its column type, geometries are
+ * written as EWKB which is the binary format of the PostGIS geometry type.
+ * Only the column types for which {@link #isSupported(String)} returns true can be written.
+ */
+final class PostgresBinaryCopy {
+
+    private static final byte[] SIGNATURE = {'P','G','C','O','P','Y','\n',(byte)0xFF,'\r','\n',0};
+
+    private final DataOutputStream out;
+    private final String[] typeNames;
+
+    /**
+     * Writes the header of the copy data.
+     *
+     * @param out stream of the copy data
+     * @param typeNames database type names of the columns
+     */
+    PostgresBinaryCopy(final OutputStream out, final String[] typeNames) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.typeNames = typeNames;
+        this.out.write(SIGNATURE);
+        //flags field
+        this.out.writeInt(0);
+        //header extension length
+        this.out.writeInt(0);
+    }
+
+    /**
+     * @param typeName database type name of a column
+     * @return true if values of the given type can be written
+     */
+    static boolean isSupported(final String typeName) {
+        switch (typeName) {
+            case "bool":
+            case "int2":
+            case "int4":
+            case "int8":
+            case "float4":
+            case "float8":
+            case "text":
+            case "varchar":
+            case "bpchar":
+            case "bytea":
+            case "geometry": return true;
+            default: return false;
+        }
+    }
+
+    /**
+     * Writes a row. Geometries must be given encoded in EWKB.
+     *
+     * @param values one value for each column, may contain nulls
+     */
+    void writeRow(final Object[] values) throws IOException {
+        out.writeShort(values.length);
+        for (int i=0; i<values.length; i++) {
+            writeValue(values[i], typeNames[i]);
+        }
+    }
+
+    /**
+     * Writes the end of the copy data.
+     */
+    void finish() throws IOException {
+        out.writeShort(-1);
+        out.flush();
+    }
+
+    private void writeValue(final Object value, final String typeName) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        switch (typeName) {
+            case "bool":
+                out.writeInt(1);
+                out.writeBoolean(ObjectConverters.convert(value, Boolean.class));
+                break;
+            case "int2":
+                out.writeInt(2);
+                out.writeShort(toNumber(value, Short.class).shortValue());
+                break;
+            case "int4":
+                out.writeInt(4);
+                out.writeInt(toNumber(value, Integer.class).intValue());
+                break;
+            case "int8":
+                out.writeInt(8);
+                out.writeLong(toNumber(value, Long.class).longValue());
+                break;
+            case "float4":
+                out.writeInt(4);
+                out.writeFloat(toNumber(value, Float.class).floatValue());
+                break;
+            case "float8":
+                out.writeInt(8);
+                out.writeDouble(toNumber(value, Double.class).doubleValue());
+                break;
+            case "bytea":
+            case "geometry":
+                final byte[] bytes = (byte[]) value;
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                break;
+            default:
+                //text types, in the UTF-8 client encoding of the JDBC driver
+                final byte[] text = value.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(text.length);
+                out.write(text);
+                break;
+        }
+    }
+
+    private static Number toNumber(final Object value, final Class<? extends Number> type) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        return ObjectConverters.convert(value, type);
+    }
+
+}
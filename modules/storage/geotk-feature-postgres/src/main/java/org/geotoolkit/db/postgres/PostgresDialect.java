@@ -25,13 +25,16 @@ import com.vividsolutions.jts.geom.MultiPoint;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.ByteOrderValues;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -59,6 +62,7 @@ import org.geotoolkit.db.reverse.ColumnMetaModel;
 import org.geotoolkit.db.reverse.MetaDataConstants;
 import org.geotoolkit.db.reverse.PrimaryKey;
 import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.AttributeTypeBuilder;
 import org.geotoolkit.filter.capability.DefaultArithmeticOperators;
 import org.geotoolkit.filter.capability.DefaultComparisonOperators;
@@ -72,6 +76,7 @@ import org.geotoolkit.filter.capability.DefaultSpatialOperator;
 import org.geotoolkit.filter.capability.DefaultSpatialOperators;
 import org.geotoolkit.filter.capability.DefaultTemporalCapabilities;
 import org.geotoolkit.filter.capability.DefaultTemporalOperators;
+import org.geotoolkit.parameter.Parameters;
 import org.geotoolkit.referencing.CRS;
 import org.geotoolkit.referencing.IdentifiedObjects;
 import org.apache.sis.util.ObjectConverters;
@@ -118,6 +123,9 @@ import org.opengis.filter.spatial.Intersects;
 import org.opengis.filter.spatial.Overlaps;
 import org.opengis.filter.spatial.Touches;
 import org.opengis.filter.spatial.Within;
+import org.opengis.geometry.Envelope;
+import org.opengis.parameter.ParameterNotFoundException;
+import org.opengis.parameter.ParameterValueGroup;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.util.FactoryException;
 import org.postgresql.jdbc4.Jdbc4ResultSetMetaData;
@@ -132,6 +140,7 @@ final class PostgresDialect extends AbstractSQLDialect{
     private static final String GEOM_ENCODING = "Encoding";
     private static enum GeometryEncoding{
         HEXEWKB,
+        EWKB,
         WKB,
         WKT,
         UNKNOWNED
@@ -144,6 +153,10 @@ final class PostgresDialect extends AbstractSQLDialect{
     private static final Map<Class,String> CLASS_TO_TYPENAME = new HashMap<Class,String>();
     private static final Map<String, String> TYPE_TO_ST_TYPE_MAP = new HashMap<String, String>();
     private static final Set<String> IGNORE_TABLES = new HashSet<String>();
+
+    //first versions supporting ST_ClipByBox2D
+    private static final Version POSTGIS_2_2 = new Version("2.2");
+    private static final Version GEOS_3_5 = new Version("3.5");
         
     private static final FilterCapabilities FILTER_CAPABILITIES;
     
@@ -380,14 +393,30 @@ final class PostgresDialect extends AbstractSQLDialect{
     
     //readers
     private final ThreadLocal<WKBReader> wkbReader = new ThreadLocal<WKBReader>();
+    private final ThreadLocal<PostgisEWKB> binaryReader = new ThreadLocal<PostgisEWKB>();
     private final PostgisHexEWKB ewkbReader;
     
+    //transfer table geometries as binary EWKB
+    private final boolean binaryGeometry;
+    
     //cache
     private Version version = null;
+    private Boolean clipSupported = null;
 
     PostgresDialect(DefaultJDBCFeatureStore datastore) {
         this.featurestore = datastore;
         ewkbReader = new PostgisHexEWKB(featurestore.getGeometryFactory(),this);
+        
+        Boolean binary = Boolean.TRUE;
+        final ParameterValueGroup params = featurestore.getConfiguration();
+        if(params != null){
+            try{
+                binary = (Boolean)Parameters.getOrCreate(PostgresFeatureStoreFactory.BINARY_GEOMETRY, params).getValue();
+            }catch(ParameterNotFoundException ex){
+                //parameter might not exist if the store was created with other parameters
+            }
+        }
+        binaryGeometry = !Boolean.FALSE.equals(binary);
     }
 
     DefaultJDBCFeatureStore getFeaturestore() {
@@ -587,47 +616,127 @@ final class PostgresDialect extends AbstractSQLDialect{
             sql.append("),'base64')");
             return;
         }
+        
+        if(GeometryEncoding.EWKB.equals(gatt.getType().getUserData().get(GEOM_ENCODING))){
+            //binary transfer, no text encoding
+            sql.append("ST_AsEWKB(");
+            encodeGeneralizedColumn(sql, gatt, res, hints);
+            sql.append(")");
+            return;
+        }
                 
         
         final CoordinateReferenceSystem crs = gatt.getCoordinateReferenceSystem();
         final int dimensions = (crs == null) ? 2 : crs.getCoordinateSystem().getDimension();
         sql.append("encode(");
+        if (dimensions > 2) {
+            sql.append("ST_AsEWKB(");
+        } else {
+            sql.append("ST_AsBinary(");
+        }
+        encodeGeneralizedColumn(sql, gatt, res, hints);
+        sql.append(") ");
+        sql.append(",'base64')");
+    }
 
+    /**
+     * Encode the geometry column with the level of detail reductions requested in the hints :
+     * clipping to the {@link HintsPending#KEY_CLIP_ENVELOPE}, simplification at the resolution
+     * and snapping on the resolution grid if {@link HintsPending#KEY_SNAP_TO_RESOLUTION} is set.
+     * Reductions are applied in this order, clipping first reduces the work of the other functions.
+     *
+     * @param res simplification resolution, 0 if none
+     */
+    private void encodeGeneralizedColumn(StringBuilder sql, GeometryDescriptor gatt, double res, Hints hints) {
+        Envelope clip = null;
+        boolean snap = false;
+        if(hints != null){
+            clip = (Envelope) hints.get(HintsPending.KEY_CLIP_ENVELOPE);
+            snap = res > 0 && Boolean.TRUE.equals(hints.get(HintsPending.KEY_SNAP_TO_RESOLUTION));
+        }
+        if(clip != null && !isClippable(clip, gatt)){
+            clip = null;
+        }
+        final boolean postgis2 = ((Comparable)getVersion(null).getMajor()).compareTo((Comparable)Integer.valueOf(2)) >= 0;
+        //duplicated points of multipoints are not removed by the grid snapping
+        final boolean removeRepeated = snap && getVersion(null).compareTo(POSTGIS_2_2) >= 0;
+
+        if(removeRepeated) sql.append("ST_RemoveRepeatedPoints(");
+        if(snap) sql.append("ST_SnapToGrid(");
         if(res > 0){
-            if (dimensions > 2) {
-                if (((Comparable)getVersion(null).getMajor()).compareTo((Comparable)Integer.valueOf(2)) >= 0) {
-                    sql.append("ST_AsEWKB(st_simplifyPreserveTopology(");
-                    encodeColumnName(sql, gatt.getLocalName());
-                    sql.append(",").append(res).append(")");
-                } else {
-                    sql.append("ST_AsEWKB(st_simplify(");
-                    encodeColumnName(sql, gatt.getLocalName());
-                    sql.append(",").append(res).append(")");
-                }
+            if (postgis2) {
+                sql.append("st_simplifyPreserveTopology(");
             } else {
-                if (((Comparable)getVersion(null).getMajor()).compareTo((Comparable)Integer.valueOf(2)) >= 0) {
-                    sql.append("ST_AsBinary(st_simplifyPreserveTopology(");
-                    encodeColumnName(sql, gatt.getLocalName());
-                    sql.append(",").append(res).append(")");
-                } else {
-                    sql.append("ST_AsBinary(st_simplify(");
-                    encodeColumnName(sql, gatt.getLocalName());
-                    sql.append(",").append(res).append(")"); 
-                }
+                sql.append("st_simplify(");
             }
-            sql.append(") ");
-        }else{
-            if (dimensions > 2) {
-                sql.append("ST_AsEWKB(");
-                encodeColumnName(sql, gatt.getLocalName());
-            } else {
-                sql.append("ST_AsBinary(");
-                encodeColumnName(sql, gatt.getLocalName());
+        }
+        if(clip != null) sql.append("ST_ClipByBox2D(");
+
+        encodeColumnName(sql, gatt.getLocalName());
+
+        if(clip != null){
+            sql.append(",ST_MakeEnvelope(");
+            sql.append(clip.getMinimum(0)).append(',');
+            sql.append(clip.getMinimum(1)).append(',');
+            sql.append(clip.getMaximum(0)).append(',');
+            sql.append(clip.getMaximum(1)).append(")::box2d)");
+        }
+        if(res > 0) sql.append(",").append(res).append(")");
+        if(snap) sql.append(",").append(res).append(")");
+        if(removeRepeated) sql.append(")");
+    }
+
+    /**
+     * ST_ClipByBox2D requieres PostGIS 2.2 compiled with GEOS 3.5.
+     * Geometries are clipped only if the envelope is finite and in the geometry crs.
+     */
+    private boolean isClippable(final Envelope clip, final GeometryDescriptor gatt){
+        if(clip.getDimension() != 2){
+            return false;
+        }
+        for(int i=0; i<2; i++){
+            if(Double.isInfinite(clip.getMinimum(i)) || Double.isInfinite(clip.getMaximum(i))
+                    || Double.isNaN(clip.getMinimum(i)) || Double.isNaN(clip.getMaximum(i))){
+                return false;
             }
-            sql.append(") ");
         }
+        final CoordinateReferenceSystem clipCrs = clip.getCoordinateReferenceSystem();
+        final CoordinateReferenceSystem geomCrs = gatt.getCoordinateReferenceSystem();
+        if(clipCrs != null && geomCrs != null && !CRS.equalsIgnoreMetadata(clipCrs, geomCrs)){
+            return false;
+        }
+        return isClipSupported();
+    }
 
-        sql.append(",'base64')");
+    private synchronized boolean isClipSupported(){
+        if(clipSupported != null){
+            return clipSupported;
+        }
+        clipSupported = Boolean.FALSE;
+        if(getVersion(null).compareTo(POSTGIS_2_2) < 0){
+            return clipSupported;
+        }
+
+        Connection cx = null;
+        Statement statement = null;
+        ResultSet result = null;
+        try {
+            cx = featurestore.getDataSource().getConnection();
+            statement = cx.createStatement();
+            result = statement.executeQuery("SELECT postgis_geos_version();");
+            if (result.next() && result.getString(1) != null) {
+                //version is formatted like : 3.5.0-CAPI-1.9.0 r4084
+                String geos = result.getString(1);
+                final int split = geos.indexOf('-');
+                if(split > 0) geos = geos.substring(0, split);
+                clipSupported = new Version(geos).compareTo(GEOS_3_5) >= 0;
+            }
+        } catch(SQLException ex){
+            featurestore.getLogger().log(Level.WARNING, ex.getMessage(),ex);
+        } finally {
+            JDBCFeatureStoreUtilities.closeSafe(featurestore.getLogger(),cx,statement,result);
+        }
+        return clipSupported;
     }
 
     @Override
@@ -667,6 +776,62 @@ final class PostgresDialect extends AbstractSQLDialect{
         }
     }
 
+    @Override
+    public void encodeGeometryParameter(StringBuilder sql) {
+        sql.append("ST_GeomFromEWKB(?)");
+    }
+
+    @Override
+    public void setValueParameter(PreparedStatement ps, int index, Object value, Class type) throws SQLException {
+        if (value instanceof String) {
+            //let the database convert the text to the column type, as with literals
+            ps.setObject(index, value, Types.OTHER);
+        } else if (value instanceof Object[] && CLASS_TO_TYPENAME.get(value.getClass().getComponentType()) != null) {
+            final String typeName = CLASS_TO_TYPENAME.get(value.getClass().getComponentType());
+            ps.setArray(index, ps.getConnection().createArrayOf(typeName, (Object[]) value));
+        } else {
+            super.setValueParameter(ps, index, value, type);
+        }
+    }
+
+    @Override
+    public int setGeometryParameter(PreparedStatement ps, int index, Geometry value, int srid)
+            throws SQLException, DataStoreException {
+        final byte[] ewkb = encodeEWKB(value, srid);
+        if (ewkb == null) {
+            ps.setNull(index, Types.BINARY);
+        } else {
+            ps.setBytes(index, ewkb);
+        }
+        return index+1;
+    }
+
+    /**
+     * Encode the geometry in PostGIS extended WKB, with the given SRID.
+     *
+     * @return EWKB bytes or null if the geometry must be stored as NULL
+     */
+    byte[] encodeEWKB(Geometry value, final int srid) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof LinearRing) {
+            //postgis does not handle linear rings, convert to just a line string
+            value = value.getFactory().createLineString(((LinearRing) value).getCoordinateSequence());
+        }
+        if (value.isEmpty() && ((Comparable)getVersion(null).getMajor()).compareTo((Comparable)Integer.valueOf(2)) < 0) {
+            //empty geometries are interpreted as Geometrycollection in postgis < 2
+            //this breaks the column geometry type constraint so we replace those by null
+            return null;
+        }
+        if (srid > 0 && value.getSRID() != srid) {
+            value = (Geometry) value.clone();
+            value.setSRID(srid);
+        }
+        final int dimension = (!value.isEmpty() && !Double.isNaN(value.getCoordinate().z)) ? 3 : 2;
+        return new WKBWriter(dimension, ByteOrderValues.BIG_ENDIAN, srid > 0).write(value);
+    }
+
     @Override
     public void encodeCoverageValue(StringBuilder sql, Coverage value) throws DataStoreException {
         try{
@@ -896,7 +1061,8 @@ final class PostgresDialect extends AbstractSQLDialect{
 
         }else{
             //this column informations comes from a real table
-            atb.addUserData(GEOM_ENCODING, PostgresDialect.GeometryEncoding.WKB);
+            atb.addUserData(GEOM_ENCODING, (binaryGeometry) ?
+                    PostgresDialect.GeometryEncoding.EWKB : PostgresDialect.GeometryEncoding.WKB);
 
             //first attempt, try with the geometry metadata
             Statement statement = null;
@@ -1153,6 +1319,8 @@ final class PostgresDialect extends AbstractSQLDialect{
         switch((GeometryEncoding)descriptor.getType().getUserData().get(GEOM_ENCODING)){
             case HEXEWKB:
                 return ewkbReader.read(rs.getString(column));
+            case EWKB:
+                return getBinaryReader().read(rs.getBytes(column));
             case WKB:
                 WKBReader reader = wkbReader.get();
                 if (reader == null) {
@@ -1191,6 +1359,8 @@ final class PostgresDialect extends AbstractSQLDialect{
         switch(ge){
             case HEXEWKB:
                 return ewkbReader.read(rs.getString(column));
+            case EWKB:
+                return getBinaryReader().read(rs.getBytes(column));
             case WKB:
                 WKBReader reader = wkbReader.get();
                 if (reader == null) {
@@ -1237,6 +1407,18 @@ final class PostgresDialect extends AbstractSQLDialect{
         }
     }
     
+    /**
+     * Returns the binary EWKB reader of the current thread.
+     */
+    private PostgisEWKB getBinaryReader() {
+        PostgisEWKB reader = binaryReader.get();
+        if (reader == null) {
+            reader = new PostgisEWKB(featurestore.getGeometryFactory(), this);
+            binaryReader.set(reader);
+        }
+        return reader;
+    }
+    
     public CoordinateReferenceSystem decodeCRS(final int srid, final Connection cx) throws SQLException{
         CoordinateReferenceSystem crs = CRS_CACHE.get(srid);
         if (crs == null) {
@@ -16,12 +16,17 @@
  */
 package org.geotoolkit.db.postgres;
 
+import com.vividsolutions.jts.geom.Geometry;
 import java.io.IOException;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
 import org.geotoolkit.data.query.DefaultQueryCapabilities;
 import org.geotoolkit.data.query.Query;
 import org.geotoolkit.data.query.QueryCapabilities;
@@ -36,9 +41,14 @@ import org.geotoolkit.parameter.Parameters;
 import org.geotoolkit.parameter.ParametersExt;
 import org.geotoolkit.version.VersionControl;
 import org.geotoolkit.version.VersioningException;
+import org.geotoolkit.feature.ComplexAttribute;
+import org.geotoolkit.feature.type.ComplexType;
 import org.geotoolkit.feature.type.FeatureType;
 import org.geotoolkit.feature.type.Name;
+import org.geotoolkit.feature.type.PropertyDescriptor;
 import org.opengis.parameter.ParameterValueGroup;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 
 /**
  * Extends default jdbc feature store with versioning and subsampling capabilities.
@@ -47,6 +57,11 @@ import org.opengis.parameter.ParameterValueGroup;
  */
 public class PostgresFeatureStore extends DefaultJDBCFeatureStore{
     
+    /**
+     * Size of the buffer used to send the COPY data.
+     */
+    private static final int COPY_BUFFER_SIZE = 65536;
+
     private static final QueryCapabilities PG_CAPA = new DefaultQueryCapabilities(false, true, new String[]{Query.GEOTK_QOM, CUSTOM_SQL});
     
     //historisation informations
@@ -86,7 +101,96 @@ public class PostgresFeatureStore extends DefaultJDBCFeatureStore{
         }
         return querybuilder;
     }
-    
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Bulk insertion //////////////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Insert the features with a binary COPY when the binary format of all columns
+     * is supported, otherwise fallback on a prepared statement batch.
+     */
+    @Override
+    protected void insertBatch(final Collection<? extends ComplexAttribute> features,
+            final ComplexType featureType, final Connection cx) throws SQLException, DataStoreException {
+        final PostgresQueryBuilder builder = (PostgresQueryBuilder) getQueryBuilder();
+        final List<PropertyDescriptor> descs = builder.getInsertDescriptors(featureType);
+        final String[] typeNames = getCopyTypeNames(featureType, descs, cx);
+        if (typeNames == null) {
+            super.insertBatch(features, featureType, cx);
+            return;
+        }
+
+        final PostgresDialect dialect = (PostgresDialect) getDialect();
+        final String sql = builder.copySQL(featureType);
+        getLogger().log(Level.FINE, "Copying {0} features: {1}", new Object[]{features.size(), sql});
+
+        final PGCopyOutputStream stream = new PGCopyOutputStream(cx.unwrap(PGConnection.class), sql, COPY_BUFFER_SIZE);
+        try {
+            final PostgresBinaryCopy copy = new PostgresBinaryCopy(stream, typeNames);
+            final Object[] row = new Object[descs.size()];
+            for (ComplexAttribute feature : features) {
+                for (int i=0; i<row.length; i++) {
+                    final PropertyDescriptor desc = descs.get(i);
+                    final Object value = feature.getProperty(desc.getName().getLocalPart()).getValue();
+                    if (value instanceof Geometry) {
+                        final Geometry geom = (Geometry) value;
+                        row[i] = dialect.encodeEWKB(geom, SQLQueryBuilder.getGeometrySRID(geom, desc));
+                    } else {
+                        row[i] = value;
+                    }
+                }
+                copy.writeRow(row);
+            }
+            copy.finish();
+            stream.close();
+        } catch (IOException | RuntimeException ex) {
+            if (stream.isActive()) {
+                stream.cancelCopy();
+            }
+            throw new DataStoreException("Failed to copy features : " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Returns the database type names of the inserted columns, or null if the connection
+     * does not support COPY or if a column type has no supported binary format.
+     */
+    private String[] getCopyTypeNames(final ComplexType featureType, final List<PropertyDescriptor> descs,
+            final Connection cx) throws SQLException {
+        if (descs.isEmpty() || !cx.isWrapperFor(PGConnection.class)) {
+            return null;
+        }
+        final SQLDialect dialect = getDialect();
+        final StringBuilder sql = new StringBuilder("SELECT ");
+        for (PropertyDescriptor desc : descs) {
+            dialect.encodeColumnName(sql, desc.getName().getLocalPart());
+            sql.append(',');
+        }
+        sql.setLength(sql.length() - 1);
+        sql.append(" FROM ");
+        dialect.encodeSchemaAndTableName(sql, getDatabaseSchema(), featureType.getName().getLocalPart());
+        sql.append(" LIMIT 0");
+
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = cx.createStatement();
+            rs = stmt.executeQuery(sql.toString());
+            final ResultSetMetaData metadata = rs.getMetaData();
+            final String[] typeNames = new String[descs.size()];
+            for (int i=0; i<typeNames.length; i++) {
+                typeNames[i] = metadata.getColumnTypeName(i+1);
+                if (!PostgresBinaryCopy.isSupported(typeNames[i])) {
+                    return null;
+                }
+            }
+            return typeNames;
+        } finally {
+            JDBCFeatureStoreUtilities.closeSafe(getLogger(), null, stmt, rs);
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Versioning control //////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////
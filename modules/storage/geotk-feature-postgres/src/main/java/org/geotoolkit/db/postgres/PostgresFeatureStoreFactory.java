@@ -63,6 +63,12 @@ public class PostgresFeatureStoreFactory extends AbstractJDBCFeatureStoreFactory
     public static final ParameterDescriptor<Boolean> LOOSEBBOX =
              new DefaultParameterDescriptor<Boolean>("Loose bbox","Perform only primary filter on bbox",Boolean.class,true,false);
 
+    /**
+     * Parameter for the transfer of geometries as binary EWKB instead of base64 text.
+     */
+    public static final ParameterDescriptor<Boolean> BINARY_GEOMETRY =
+             new DefaultParameterDescriptor<Boolean>("binary geometry","Transfer geometries in binary EWKB",Boolean.class,true,false);
+
     /**
      * Parameter for database port.
      */
@@ -73,7 +79,7 @@ public class PostgresFeatureStoreFactory extends AbstractJDBCFeatureStoreFactory
     public static final ParameterDescriptorGroup PARAMETERS_DESCRIPTOR =
             new DefaultParameterDescriptorGroup("PostgresParameters",
                 IDENTIFIER,HOST,PORT,DATABASE,SCHEMA,TABLE,USER,PASSWORD,NAMESPACE,
-                DATASOURCE,MAXCONN,MINCONN,VALIDATECONN,FETCHSIZE,MAXWAIT,LOOSEBBOX,SIMPLETYPE);
+                DATASOURCE,MAXCONN,MINCONN,VALIDATECONN,FETCHSIZE,MAXWAIT,LOOSEBBOX,SIMPLETYPE,BINARY_GEOMETRY);
     
     
     @Override
@@ -25,7 +25,9 @@ import org.geotoolkit.db.reverse.PrimaryKey;
 import org.geotoolkit.filter.visitor.SimplifyingFilterVisitor;
 import org.apache.sis.storage.DataStoreException;
 import org.geotoolkit.version.VersioningException;
+import org.geotoolkit.feature.type.ComplexType;
 import org.geotoolkit.feature.type.FeatureType;
+import org.geotoolkit.feature.type.PropertyDescriptor;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
 
@@ -99,5 +101,22 @@ public class PostgresQueryBuilder extends SQLQueryBuilder{
 
         return sql.toString();
     }
-    
+
+    /**
+     * Generates a 'COPY ... FROM STDIN' statement in binary format, for the
+     * properties returned by {@link #getInsertDescriptors(ComplexType)}.
+     */
+    public String copySQL(final ComplexType featureType) {
+        final StringBuilder sql = new StringBuilder("COPY ");
+        dialect.encodeSchemaAndTableName(sql, databaseSchema, featureType.getName().getLocalPart());
+        sql.append(" (");
+        for (PropertyDescriptor desc : getInsertDescriptors(featureType)) {
+            dialect.encodeColumnName(sql, desc.getName().getLocalPart());
+            sql.append(',');
+        }
+        sql.setLength(sql.length() - 1);
+        sql.append(") FROM STDIN (FORMAT binary)");
+        return sql.toString();
+    }
+
 }
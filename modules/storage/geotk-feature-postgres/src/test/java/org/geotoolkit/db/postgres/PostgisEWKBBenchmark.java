@@ -0,0 +1,102 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.db.postgres;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.ByteOrderValues;
+import com.vividsolutions.jts.io.WKBWriter;
+import java.util.Random;
+
+/**
+ * Compares the decoding time of polygons from binary EWKB, as returned by ST_AsEWKB,
+ * with the decoding time from the hexadecimal EWKB text of PostGIS geometry columns.
+ * The database transfer is not included.
+ *
+ * Use example : java PostgisEWKBBenchmark 1000000 20
+ * decodes 1 million polygons of 20 points with each reader.
+ */
+public class PostgisEWKBBenchmark {
+
+    /**
+     * Number of distinct polygons, reused in loop to reach the number of reads.
+     */
+    private static final int NB_DISTINCT = 1000;
+
+    private final byte[][] binary = new byte[NB_DISTINCT][];
+    private final String[] hex = new String[NB_DISTINCT];
+    private final GeometryFactory gf = new GeometryFactory();
+
+    public PostgisEWKBBenchmark(final int nbPoints) {
+        final Random random = new Random(42);
+        final WKBWriter writer = new WKBWriter(2, ByteOrderValues.LITTLE_ENDIAN, false);
+        for (int i=0; i<NB_DISTINCT; i++) {
+            final Coordinate[] coords = new Coordinate[nbPoints+1];
+            final double cx = random.nextDouble() * 360 - 180;
+            final double cy = random.nextDouble() * 180 - 90;
+            for (int k=0; k<nbPoints; k++) {
+                final double angle = 2 * Math.PI * k / nbPoints;
+                final double radius = 0.5 + random.nextDouble();
+                coords[k] = new Coordinate(cx + radius*Math.cos(angle), cy + radius*Math.sin(angle));
+            }
+            coords[nbPoints] = coords[0];
+            final Polygon polygon = gf.createPolygon(gf.createLinearRing(coords), null);
+            binary[i] = writer.write(polygon);
+            hex[i] = WKBWriter.toHex(binary[i]);
+        }
+    }
+
+    /**
+     * @return time in milliseconds to decode the given number of polygons from binary EWKB
+     */
+    public long benchmarkBinary(final int nbReads) {
+        final PostgisEWKB reader = new PostgisEWKB(gf, null);
+        final long start = System.nanoTime();
+        for (int i=0; i<nbReads; i++) {
+            reader.read(binary[i % NB_DISTINCT]);
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * @return time in milliseconds to decode the given number of polygons from hexadecimal EWKB
+     */
+    public long benchmarkHex(final int nbReads) {
+        final PostgisHexEWKB reader = new PostgisHexEWKB(gf, null);
+        final long start = System.nanoTime();
+        for (int i=0; i<nbReads; i++) {
+            reader.read(hex[i % NB_DISTINCT]);
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    public static void main(String[] args) {
+        final int nbReads  = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        final int nbPoints = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        final PostgisEWKBBenchmark benchmark = new PostgisEWKBBenchmark(nbPoints);
+
+        //warm up
+        benchmark.benchmarkHex(nbReads / 10);
+        benchmark.benchmarkBinary(nbReads / 10);
+
+        System.out.println("Polygons of " + nbPoints + " points, " + nbReads + " reads");
+        System.out.println("Hexadecimal EWKB : " + benchmark.benchmarkHex(nbReads) + " ms");
+        System.out.println("Binary EWKB      : " + benchmark.benchmarkBinary(nbReads) + " ms");
+    }
+
+}
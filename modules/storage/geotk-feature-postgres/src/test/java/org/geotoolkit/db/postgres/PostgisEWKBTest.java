@@ -0,0 +1,92 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.db.postgres;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ByteOrderValues;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBWriter;
+import com.vividsolutions.jts.io.WKTReader;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Binary EWKB decoding tests.
+ *
+ * @module pending
+ */
+public class PostgisEWKBTest {
+
+    private static final GeometryFactory GF = new GeometryFactory();
+
+    private static final String[] WKTS = {
+        "POINT (1 2)",
+        "LINESTRING (1 2, 3 4, 5 -6)",
+        "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 4 2, 4 4, 2 2))",
+        "MULTIPOINT ((1 2), (3 4))",
+        "MULTILINESTRING ((1 2, 3 4), (5 6, 7 8, 9 10))",
+        "MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))",
+        "GEOMETRYCOLLECTION (POINT (1 2), LINESTRING (1 2, 3 4))"
+    };
+
+    @Test
+    public void testDecode() throws ParseException {
+        final WKTReader wktReader = new WKTReader(GF);
+        final PostgisEWKB reader = new PostgisEWKB(GF, null);
+
+        for (int byteOrder : new int[]{ByteOrderValues.BIG_ENDIAN, ByteOrderValues.LITTLE_ENDIAN}) {
+            for (String wkt : WKTS) {
+                final Geometry expected = wktReader.read(wkt);
+                expected.setSRID(4326);
+                final byte[] ewkb = new WKBWriter(2, byteOrder, true).write(expected);
+                final Geometry geom = reader.read(ewkb);
+                assertTrue(wkt, expected.equalsExact(geom));
+                assertEquals(4326, geom.getSRID());
+            }
+        }
+        assertNull(reader.read(null));
+    }
+
+    @Test
+    public void testDecode3D() throws ParseException {
+        final Geometry expected = new WKTReader(GF).read("LINESTRING (1 2 3, 4 5 6)");
+        final byte[] ewkb = new WKBWriter(3, ByteOrderValues.LITTLE_ENDIAN, false).write(expected);
+        final Geometry geom = new PostgisEWKB(GF, null).read(ewkb);
+        assertTrue(expected.equalsExact(geom));
+        assertEquals(3.0, geom.getCoordinates()[0].z, 0.0);
+        assertEquals(6.0, geom.getCoordinates()[1].z, 0.0);
+        assertEquals(0, geom.getSRID());
+    }
+
+    /**
+     * The binary and hexadecimal readers must produce the same geometries.
+     */
+    @Test
+    public void testHexConsistency() throws ParseException {
+        final WKTReader wktReader = new WKTReader(GF);
+        final PostgisEWKB reader = new PostgisEWKB(GF, null);
+        final PostgisHexEWKB hexReader = new PostgisHexEWKB(GF, null);
+        final WKBWriter writer = new WKBWriter(2, ByteOrderValues.LITTLE_ENDIAN, false);
+
+        for (String wkt : WKTS) {
+            final byte[] ewkb = writer.write(wktReader.read(wkt));
+            assertTrue(wkt, hexReader.read(WKBWriter.toHex(ewkb)).equalsExact(reader.read(ewkb)));
+        }
+    }
+
+}
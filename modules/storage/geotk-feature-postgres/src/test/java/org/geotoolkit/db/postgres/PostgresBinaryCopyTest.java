@@ -0,0 +1,86 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.db.postgres;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Binary COPY encoding tests.
+ *
+ * @module pending
+ */
+public class PostgresBinaryCopyTest {
+
+    @Test
+    public void testSupportedTypes() {
+        assertTrue(PostgresBinaryCopy.isSupported("int4"));
+        assertTrue(PostgresBinaryCopy.isSupported("varchar"));
+        assertTrue(PostgresBinaryCopy.isSupported("geometry"));
+        assertFalse(PostgresBinaryCopy.isSupported("numeric"));
+        assertFalse(PostgresBinaryCopy.isSupported("timestamp"));
+        assertFalse(PostgresBinaryCopy.isSupported("_int4"));
+    }
+
+    @Test
+    public void testEncoding() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PostgresBinaryCopy copy = new PostgresBinaryCopy(out,
+                new String[]{"int4","float8","bool","varchar","geometry"});
+        copy.writeRow(new Object[]{12, 3.5, true, "été", new byte[]{1,2,3}});
+        copy.writeRow(new Object[]{"13", null, null, null, null});
+        copy.finish();
+
+        final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        final byte[] signature = new byte[11];
+        buffer.get(signature);
+        assertArrayEquals(new byte[]{'P','G','C','O','P','Y','\n',(byte)0xFF,'\r','\n',0}, signature);
+        assertEquals(0, buffer.getInt()); //flags
+        assertEquals(0, buffer.getInt()); //header extension
+
+        //first row
+        assertEquals(5, buffer.getShort());
+        assertEquals(4, buffer.getInt());
+        assertEquals(12, buffer.getInt());
+        assertEquals(8, buffer.getInt());
+        assertEquals(3.5, buffer.getDouble(), 0.0);
+        assertEquals(1, buffer.getInt());
+        assertEquals(1, buffer.get());
+        assertEquals(5, buffer.getInt()); //UTF-8 length
+        buffer.position(buffer.position()+5);
+        assertEquals(3, buffer.getInt());
+        assertEquals(1, buffer.get());
+        assertEquals(2, buffer.get());
+        assertEquals(3, buffer.get());
+
+        //second row, text converted to the column type
+        assertEquals(5, buffer.getShort());
+        assertEquals(4, buffer.getInt());
+        assertEquals(13, buffer.getInt());
+        for (int i=0; i<4; i++) {
+            assertEquals(-1, buffer.getInt());
+        }
+
+        //trailer
+        assertEquals(-1, buffer.getShort());
+        assertFalse(buffer.hasRemaining());
+    }
+
+}
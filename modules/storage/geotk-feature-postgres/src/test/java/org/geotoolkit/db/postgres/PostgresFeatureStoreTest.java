@@ -47,10 +47,15 @@ import org.geotoolkit.data.FeatureCollection;
 import org.geotoolkit.data.FeatureIterator;
 import org.geotoolkit.data.FeatureReader;
 import org.geotoolkit.data.FeatureStoreFinder;
+import org.geotoolkit.data.FeatureStoreRuntimeException;
 import org.geotoolkit.data.query.Query;
 import org.geotoolkit.data.query.QueryBuilder;
 import org.geotoolkit.data.session.Session;
 import org.geotoolkit.db.JDBCFeatureStore;
+import org.geotoolkit.db.JDBCPartitionedFeatureReader;
+import org.geotoolkit.factory.FactoryFinder;
+import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.FeatureTypeBuilder;
 import org.geotoolkit.feature.FeatureUtilities;
 import org.geotoolkit.referencing.CRS;
@@ -87,7 +92,10 @@ import static org.geotoolkit.db.postgres.PostgresFeatureStoreFactory.*;
 import org.geotoolkit.filter.identity.DefaultFeatureId;
 import static org.junit.Assert.*;
 import org.geotoolkit.feature.type.AssociationType;
+import org.opengis.filter.FilterFactory;
 import org.opengis.filter.identity.FeatureId;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 
 /**
  *
@@ -96,6 +104,7 @@ import org.opengis.filter.identity.FeatureId;
 public class PostgresFeatureStoreTest {
     
     private static final double DELTA = 0.00000001;    
+    private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
     /** basic field types */
     private static final FeatureType FTYPE_SIMPLE;
     /** 1 dimension arrays */
@@ -680,6 +689,91 @@ public class PostgresFeatureStoreTest {
         
     }
         
+    /**
+     * Insert without updating the identifiers, simple types are copied in binary,
+     * timestamps fallback on the prepared statement batch.
+     */
+    @Test
+    public void testBatchInsert() throws DataStoreException, VersioningException{
+        reload(true);
+        final Hints hints = new Hints(
+                HintsPending.UPDATE_ID_ON_INSERT, Boolean.FALSE,
+                HintsPending.INSERT_BATCH_SIZE, 100);
+        
+        // COPY --------------------------------------------------------------
+        store.createFeatureType(FTYPE_SIMPLE.getName(), FTYPE_SIMPLE);
+        FeatureType resType = store.getFeatureType(FTYPE_SIMPLE.getName().getLocalPart());
+        
+        List<Feature> features = new ArrayList<>();
+        for(int i=0; i<250; i++){
+            final Feature feature = FeatureUtilities.defaultFeature(resType, "0");
+            feature.getProperty("boolean").setValue(i%2 == 0);
+            feature.getProperty("byte").setValue(i%100);
+            feature.getProperty("short").setValue(i);
+            feature.getProperty("integer").setValue(i);
+            feature.getProperty("long").setValue((long)i);
+            feature.getProperty("float").setValue(i+0.5f);
+            feature.getProperty("double").setValue(i+0.25);
+            feature.getProperty("string").setValue((i == 0) ? null : "string "+i);
+            features.add(feature);
+        }
+        store.addFeatures(resType.getName(), features, hints);
+        
+        boolean[] found = new boolean[250];
+        FeatureReader ite = store.getFeatureReader(QueryBuilder.all(resType.getName()));
+        try{
+            while(ite.hasNext()){
+                final Feature resFeature = ite.next();
+                final int i = (Integer)resFeature.getProperty("integer").getValue();
+                assertFalse(found[i]);
+                found[i] = true;
+                assertEquals(i%2 == 0, resFeature.getProperty("boolean").getValue());
+                assertEquals(i%100, resFeature.getProperty("byte").getValue());
+                assertEquals(i, resFeature.getProperty("short").getValue());
+                assertEquals((long)i, resFeature.getProperty("long").getValue());
+                assertEquals(i+0.5f, resFeature.getProperty("float").getValue());
+                assertEquals(i+0.25, resFeature.getProperty("double").getValue());
+                assertEquals((i == 0) ? null : "string "+i, resFeature.getProperty("string").getValue());
+            }
+        }finally{
+            ite.close();
+        }
+        for(boolean b : found) assertTrue(b);
+        
+        // PREPARED STATEMENT BATCH ------------------------------------------
+        final FeatureTypeBuilder ftb = new FeatureTypeBuilder();
+        ftb.setName("batchTable");
+        ftb.add("integer", Integer.class);
+        ftb.add("time", Date.class);
+        final FeatureType batchType = ftb.buildFeatureType();
+        store.createFeatureType(batchType.getName(), batchType);
+        resType = store.getFeatureType("batchTable");
+        
+        features = new ArrayList<>();
+        for(int i=0; i<250; i++){
+            final Feature feature = FeatureUtilities.defaultFeature(resType, "0");
+            feature.getProperty("integer").setValue(i);
+            feature.getProperty("time").setValue(new Date(1000000L*i));
+            features.add(feature);
+        }
+        store.addFeatures(resType.getName(), features, hints);
+        
+        found = new boolean[250];
+        ite = store.getFeatureReader(QueryBuilder.all(resType.getName()));
+        try{
+            while(ite.hasNext()){
+                final Feature resFeature = ite.next();
+                final int i = (Integer)resFeature.getProperty("integer").getValue();
+                assertFalse(found[i]);
+                found[i] = true;
+                assertEquals(1000000L*i, ((Date)resFeature.getProperty("time").getValue()).getTime());
+            }
+        }finally{
+            ite.close();
+        }
+        for(boolean b : found) assertTrue(b);
+    }
+        
     @Test
     public void testArrayInsert() throws DataStoreException, VersioningException{
         reload(true);
@@ -1205,5 +1299,157 @@ public class PostgresFeatureStoreTest {
         
     }
     
+    @Test
+    public void testPartitionedRead() throws DataStoreException, VersioningException{
+        reload(true);
+        store.createFeatureType(FTYPE_SIMPLE.getName(), FTYPE_SIMPLE);
+        final FeatureType resType = store.getFeatureType(store.getNames().iterator().next());
+        insertSimpleFeatures(resType, 100);
+        
+        final Hints partitions = new Hints(JDBCFeatureStore.PARTITIONS, 4);
+        
+        //unordered, same features in any order
+        QueryBuilder qb = new QueryBuilder(resType.getName());
+        final List<String> expected = read(store.getFeatureReader(qb.buildQuery()), "integer");
+        assertEquals(100, expected.size());
+        
+        qb.setHints(partitions);
+        FeatureReader reader = store.getFeatureReader(qb.buildQuery());
+        assertTrue(reader instanceof JDBCPartitionedFeatureReader);
+        final List<String> unordered = read(reader, "integer");
+        Collections.sort(expected);
+        Collections.sort(unordered);
+        assertEquals(expected, unordered);
+        
+        //ordered on the primary key, same features in the same order
+        qb = new QueryBuilder(resType.getName());
+        qb.setSortBy(new SortBy[]{FF.sort("fid", SortOrder.ASCENDING)});
+        final List<String> expectedOrdered = read(store.getFeatureReader(qb.buildQuery()), "integer");
+        assertEquals(100, expectedOrdered.size());
+        
+        qb.setHints(partitions);
+        reader = store.getFeatureReader(qb.buildQuery());
+        assertTrue(reader instanceof JDBCPartitionedFeatureReader);
+        assertEquals(expectedOrdered, read(reader, "integer"));
+    }
+    
+    @Test
+    public void testPartitionedReadFallback() throws DataStoreException, VersioningException, SQLException{
+        reload(true);
+        store.createFeatureType(FTYPE_SIMPLE.getName(), FTYPE_SIMPLE);
+        final FeatureType resType = store.getFeatureType(store.getNames().iterator().next());
+        insertSimpleFeatures(resType, 100);
+        
+        final Hints partitions = new Hints(JDBCFeatureStore.PARTITIONS, 4);
+        
+        //sorted on another property
+        QueryBuilder qb = new QueryBuilder(resType.getName());
+        qb.setSortBy(new SortBy[]{FF.sort("integer", SortOrder.DESCENDING)});
+        List<String> expected = read(store.getFeatureReader(qb.buildQuery()), "integer");
+        qb.setHints(partitions);
+        FeatureReader reader = store.getFeatureReader(qb.buildQuery());
+        assertFalse(reader instanceof JDBCPartitionedFeatureReader);
+        assertEquals(expected, read(reader, "integer"));
+        
+        //natural order
+        qb = new QueryBuilder(resType.getName());
+        qb.setSortBy(new SortBy[]{SortBy.NATURAL_ORDER});
+        qb.setHints(partitions);
+        reader = store.getFeatureReader(qb.buildQuery());
+        assertFalse(reader instanceof JDBCPartitionedFeatureReader);
+        assertEquals(100, read(reader, "integer").size());
+        
+        //limited number of features
+        qb = new QueryBuilder(resType.getName());
+        qb.setMaxFeatures(10);
+        qb.setHints(partitions);
+        reader = store.getFeatureReader(qb.buildQuery());
+        assertFalse(reader instanceof JDBCPartitionedFeatureReader);
+        assertEquals(10, read(reader, "integer").size());
+        
+        //composite and non integer primary keys
+        final Connection cnx = store.getDataSource().getConnection();
+        try{
+            cnx.createStatement().executeUpdate("CREATE TABLE \"compositeTable\" (a integer, b integer, val integer, PRIMARY KEY (a,b));");
+            cnx.createStatement().executeUpdate("CREATE TABLE \"textTable\" (code varchar PRIMARY KEY, val integer);");
+            for(int i=0; i<20; i++){
+                cnx.createStatement().executeUpdate("INSERT INTO \"compositeTable\" VALUES ("+(i%2)+","+i+","+i+");");
+                cnx.createStatement().executeUpdate("INSERT INTO \"textTable\" VALUES ('code"+i+"',"+i+");");
+            }
+        }finally{
+            cnx.close();
+        }
+        store.refreshMetaModel();
+        
+        for(String table : new String[]{"compositeTable","textTable"}){
+            qb = new QueryBuilder(store.getFeatureType(table).getName());
+            expected = read(store.getFeatureReader(qb.buildQuery()), "val");
+            assertEquals(20, expected.size());
+            qb.setHints(partitions);
+            reader = store.getFeatureReader(qb.buildQuery());
+            assertFalse(reader instanceof JDBCPartitionedFeatureReader);
+            final List<String> result = read(reader, "val");
+            Collections.sort(expected);
+            Collections.sort(result);
+            assertEquals(expected, result);
+        }
+    }
+    
+    @Test
+    public void testPartitionedReadFailure() throws DataStoreException, VersioningException{
+        reload(true);
+        store.createFeatureType(FTYPE_SIMPLE.getName(), FTYPE_SIMPLE);
+        final FeatureType resType = store.getFeatureType(store.getNames().iterator().next());
+        
+        final String[] sqls = new String[]{
+            "SELECT 1 WHERE 1=0",
+            "SELECT * FROM \"missingTable\""};
+        
+        for(boolean ordered : new boolean[]{false,true}){
+            final FeatureReader reader = new JDBCPartitionedFeatureReader(store, sqls, resType, ordered, 2);
+            try{
+                reader.hasNext();
+                fail("Failing partition should have raised an exception");
+            }catch(FeatureStoreRuntimeException ex){
+                //ok
+            }finally{
+                reader.close();
+            }
+        }
+    }
+    
+    private void insertSimpleFeatures(final FeatureType type, final int nb) throws DataStoreException{
+        final List<Feature> features = new ArrayList<>();
+        for(int i=0; i<nb; i++){
+            final Feature feature = FeatureUtilities.defaultFeature(type, "0");
+            feature.getProperty("boolean").setValue(i%2 == 0);
+            feature.getProperty("byte").setValue(i%100);
+            feature.getProperty("short").setValue(i);
+            feature.getProperty("integer").setValue(i);
+            feature.getProperty("long").setValue((long)i);
+            feature.getProperty("float").setValue((float)i);
+            feature.getProperty("double").setValue((double)i);
+            feature.getProperty("string").setValue("string "+i);
+            features.add(feature);
+        }
+        assertEquals(nb, store.addFeatures(type.getName(), features).size());
+    }
+    
+    /**
+     * Read all features, returns their identifiers and property values in reading order.
+     */
+    private static List<String> read(final FeatureReader reader, final String property){
+        final List<String> values = new ArrayList<>();
+        try{
+            while(reader.hasNext()){
+                final Feature feature = reader.next();
+                values.add(feature.getIdentifier().getID()+"="+feature.getProperty(property).getValue());
+            }
+        }finally{
+            reader.close();
+        }
+        return values;
+    }
+    
     
 }
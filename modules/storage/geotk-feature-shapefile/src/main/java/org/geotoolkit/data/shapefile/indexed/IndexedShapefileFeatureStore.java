@@ -692,17 +692,42 @@ public class IndexedShapefileFeatureStore extends ShapefileFeatureStore {
             indexer.setIdxType(IndexType.QIX);
             indexer.setShapeFileName(shpFiles);
             indexer.setMax(maxDepth);
+            buildIndex(indexer);
+        }
+    }
 
-            try {
-                indexer.index(false, new NullProgressListener());
-            } catch (MalformedURLException e) {
+    /**
+     * Builds the spatial index as a packed Hilbert R-tree. The tree is bulk
+     * loaded in a single scan of the shp file and stored in the qix file,
+     * it is used exactly like the QuadTree index.
+     *
+     * @param nodeCapacity number of entries per node.
+     * @throws TreeException
+     */
+    public void buildPackedTree(final int nodeCapacity) throws TreeException {
+        if (shpFiles.isLocal()) {
+            shpFiles.unloadIndexes();
+            getLogger().fine("Creating packed spatial index for " + shpFiles.get(SHP));
+
+            final ShapeFileIndexer indexer = new ShapeFileIndexer();
+            indexer.setIdxType(IndexType.QIX);
+            indexer.setShapeFileName(shpFiles);
+            indexer.setPacked(true);
+            indexer.setNodeCapacity(nodeCapacity);
+            buildIndex(indexer);
+        }
+    }
+
+    private static void buildIndex(final ShapeFileIndexer indexer) throws TreeException {
+        try {
+            indexer.index(false, new NullProgressListener());
+        } catch (MalformedURLException e) {
+            throw new TreeException(e);
+        } catch (Exception e) {
+            if (e instanceof TreeException) {
+                throw (TreeException) e;
+            } else {
                 throw new TreeException(e);
-            } catch (Exception e) {
-                if (e instanceof TreeException) {
-                    throw (TreeException) e;
-                } else {
-                    throw new TreeException(e);
-                }
             }
         }
     }
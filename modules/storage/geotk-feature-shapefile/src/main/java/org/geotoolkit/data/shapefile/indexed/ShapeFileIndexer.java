@@ -34,6 +34,7 @@ import org.geotoolkit.index.quadtree.QuadTree;
 import org.geotoolkit.index.quadtree.StoreException;
 import org.geotoolkit.index.quadtree.fs.FileSystemIndexStore;
 import org.geotoolkit.index.quadtree.fs.IndexHeader;
+import org.geotoolkit.index.quadtree.fs.PackedTreeBuilder;
 import org.geotoolkit.util.NullProgressListener;
 import org.geotoolkit.process.ProgressController;
 
@@ -51,6 +52,8 @@ public class ShapeFileIndexer {
     private int min = 25;
     private String byteOrder;
     private ShpFiles shpFiles;
+    private boolean packed = false;
+    private int nodeCapacity = PackedTreeBuilder.DEFAULT_NODE_CAPACITY;
 
 
     /**
@@ -94,7 +97,11 @@ public class ShapeFileIndexer {
 
             switch (idxType) {
             case QIX:
-                cnt = this.buildQuadTree(locker,reader, treeFile, verbose);
+                if (packed) {
+                    cnt = this.buildPackedTree(reader, treeFile, verbose);
+                } else {
+                    cnt = this.buildQuadTree(locker,reader, treeFile, verbose);
+                }
                 break;
             default:
                 throw new IllegalArgumentException("NONE is not a legal index choice");
@@ -113,20 +120,56 @@ public class ShapeFileIndexer {
         return cnt;
     }
 
-    private int buildQuadTree(final AccessManager locker, final ShapefileReader reader, 
-            final File file, final boolean verbose)
-            throws IOException, StoreException {
-        byte order = 0;
-
+    private byte getByteOrder() throws StoreException {
         if ((this.byteOrder == null) || this.byteOrder.equalsIgnoreCase("NM")) {
-            order = IndexHeader.NEW_MSB_ORDER;
+            return IndexHeader.NEW_MSB_ORDER;
         } else if (this.byteOrder.equalsIgnoreCase("NL")) {
-            order = IndexHeader.NEW_LSB_ORDER;
+            return IndexHeader.NEW_LSB_ORDER;
         } else {
             throw new StoreException("Asked byte order '" + this.byteOrder
                     + "' must be 'NL' or 'NM'!");
         }
-        
+    }
+
+    /**
+     * Bulk load a packed Hilbert R-tree in a single sequential scan of the shp file.
+     * The tree is written in the qix format and can be searched as a quad tree.
+     */
+    private int buildPackedTree(final ShapefileReader reader, final File file,
+            final boolean verbose) throws IOException, StoreException {
+        final byte order = getByteOrder();
+        final ShapefileHeader header = reader.getHeader();
+        final Envelope bounds = new Envelope(header.minX(), header.maxX(),
+                header.minY(), header.maxY());
+
+        final PackedTreeBuilder builder = new PackedTreeBuilder(file, order, bounds, nodeCapacity);
+        int cnt = 0;
+        try {
+            while (reader.hasNext()) {
+                final Record rec = reader.nextRecord();
+                builder.add(cnt++, rec.minX, rec.maxX, rec.minY, rec.maxY);
+
+                if (verbose && ((cnt % 1000) == 0)) {
+                    System.out.print('.');
+                }
+                if (verbose && (cnt % 100000 == 0))
+                    System.out.print('\n');
+            }
+        } catch (IOException ex) {
+            builder.dispose();
+            throw ex;
+        }
+        builder.build();
+        if (verbose)
+            System.out.println("done");
+        return cnt;
+    }
+
+    private int buildQuadTree(final AccessManager locker, final ShapefileReader reader, 
+            final File file, final boolean verbose)
+            throws IOException, StoreException {
+        final byte order = getByteOrder();
+
         final ShxReader shpIndex = locker.getSHXReader(false);
         QuadTree tree = null;
         int cnt = 0;
@@ -180,6 +223,26 @@ public class ShapeFileIndexer {
         min = i;
     }
 
+    /**
+     * Use the bulk loading mode : records are sorted on their Hilbert value
+     * and written as a packed, balanced R-tree in the qix file format.
+     * Faster to build than the quad tree and queried the same way.
+     *
+     * @param packed true to bulk load a packed tree
+     */
+    public void setPacked(final boolean packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * Number of entries or sub nodes per node in the packed tree.
+     *
+     * @param capacity between 2 and {@link PackedTreeBuilder#MAX_NODE_CAPACITY}
+     */
+    public void setNodeCapacity(final int capacity) {
+        this.nodeCapacity = capacity;
+    }
+
     /**
      * DOCUMENT ME!
      * 
@@ -227,6 +290,9 @@ public class ShapeFileIndexer {
                 idx.setMin(Integer.parseInt(args[++i]));
             } else if (args[i].equals("-b")) {
                 idx.setByteOrder(args[++i]);
+            } else if (args[i].equals("-p")) {
+                idx.setPacked(true);
+                idx.setNodeCapacity(Integer.parseInt(args[++i]));
             } else {
                 if (!args[i].toLowerCase().endsWith(".shp")) {
                     System.out.println("File extension must be '.shp'");
@@ -257,7 +323,8 @@ public class ShapeFileIndexer {
         System.out.println("Usage: ShapeFileIndexer " + "-t <QIX | GRX> "
                 + "[-M <max entries per node>] "
                 + "[-m <min entries per node>] " + "[-s <split algorithm>] "
-                + "[-b <byte order NL | NM>] " + "<shape file>");
+                + "[-b <byte order NL | NM>] " + "[-p <node capacity>] "
+                + "<shape file>");
 
         System.out.println();
 
@@ -272,6 +339,8 @@ public class ShapeFileIndexer {
         System.out.println("Following options apllies only to QUADTREE:");
         System.out.println("\t-b byte order to use: NL = LSB; "
                 + "NM = MSB (default)");
+        System.out.println("\t-p bulk load a packed Hilbert R-tree with the given "
+                + "number of entries per node instead of a quad tree");
 
         System.exit(1);
     }
@@ -30,6 +30,7 @@ import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.sis.io.TableAppender;
@@ -119,6 +120,21 @@ public final class AccessManager {
             return null;
         }
 
+        if (memoryMapped) {
+            final MappedView view = getMappedView(ShpFileType.DBF);
+            if (view != null) {
+                final DbaseFileReader reader;
+                try {
+                    reader = new DbaseFileReader(view.buffer, view, set);
+                } catch (IOException ex) {
+                    view.close();
+                    throw ex;
+                }
+                readEntries.add(new AccessEntry(ShpFileType.DBF, url, reader));
+                return reader;
+            }
+        }
+
         final ReadableByteChannel rbc = toClosingChannel(files.getReadChannel(url),false);
         final DbaseFileReader reader = new DbaseFileReader(rbc, memoryMapped, set);
         readEntries.add(new AccessEntry(ShpFileType.DBF, url, reader));
@@ -129,6 +145,33 @@ public final class AccessManager {
             final boolean read3D, final double[] resample) throws IOException, DataStoreException{
 
         final URL shpUrl = files.getURL(ShpFileType.SHP);
+
+        if (memoryMapped) {
+            final MappedView shpView = getMappedView(ShpFileType.SHP);
+            if (shpView != null) {
+                final URL shxUrl = files.getURL(ShpFileType.SHX);
+                ShxReader shxReader = null;
+                boolean success = false;
+                try {
+                    if (shxUrl != null && files.exists(shxUrl)) {
+                        shxReader = getSHXReader(true, false);
+                    }
+                    final ShapefileReader shpReader = new ShapefileReader(
+                            shpView.buffer,shxReader,shpView,strict,read3D,resample);
+                    readEntries.add(new AccessEntry(ShpFileType.SHP, shpUrl, shpReader));
+                    success = true;
+                    return shpReader;
+                } finally {
+                    if (!success) {
+                        shpView.close();
+                        if (shxReader != null) {
+                            shxReader.close();
+                        }
+                    }
+                }
+            }
+        }
+
         final ReadableByteChannel shpChannel = toClosingChannel(files.getReadChannel(shpUrl),false);
         final URL shxUrl = files.getURL(ShpFileType.SHX);
         final ReadableByteChannel shxChannel;
@@ -147,6 +190,10 @@ public final class AccessManager {
     }
 
     public ShxReader getSHXReader(final boolean memoryMapped) throws IOException {
+        return getSHXReader(memoryMapped, true);
+    }
+
+    private ShxReader getSHXReader(final boolean memoryMapped, final boolean register) throws IOException {
         final URL shxUrl = files.getURL(ShpFileType.SHX);
         if (shxUrl == null) {
             return null;
@@ -156,9 +203,25 @@ public final class AccessManager {
             return null;
         }
 
-        final ReadableByteChannel shxChannel = toClosingChannel(files.getReadChannel(shxUrl),false);
-        final ShxReader reader = new ShxReader(shxChannel, memoryMapped);
-        readEntries.add(new AccessEntry(ShpFileType.SHX, shxUrl, reader));
+        ShxReader reader = null;
+        if (memoryMapped) {
+            final MappedView view = getMappedView(ShpFileType.SHX);
+            if (view != null) {
+                try {
+                    reader = new ShxReader(view.buffer, view);
+                } catch (IOException ex) {
+                    view.close();
+                    throw ex;
+                }
+            }
+        }
+        if (reader == null) {
+            final ReadableByteChannel shxChannel = toClosingChannel(files.getReadChannel(shxUrl),false);
+            reader = new ShxReader(shxChannel, memoryMapped);
+        }
+        if (register) {
+            readEntries.add(new AccessEntry(ShpFileType.SHX, shxUrl, reader));
+        }
         return reader;
     }
 
@@ -250,6 +313,8 @@ public final class AccessManager {
 
         getWriteLock();
         try{
+            //drop the shared mappings before the original files are replaced
+            files.unloadMappedSegments();
             final StorageFile[] files = tempFiles.toArray(new StorageFile[tempFiles.size()]);
             StorageFile.replaceOriginals(files);
         }finally{
@@ -345,6 +410,41 @@ public final class AccessManager {
 
     }
 
+    /**
+     * Acquire a view on the shared memory mapped file of given type.
+     *
+     * @param type file type
+     * @return view or null if the file can not be mapped
+     * @throws IOException if mapping failed
+     */
+    private MappedView getMappedView(final ShpFileType type) throws IOException{
+        if (!files.isLocal()) {
+            return null;
+        }
+
+        //lock before acquiring the segment, files can not be replaced while we hold it
+        getReadLock();
+        MappedView view = null;
+        try {
+            for (;;) {
+                final MappedSegment segment = files.getMappedSegment(type);
+                if (segment == null) {
+                    return null;
+                }
+                final ByteBuffer buffer = segment.acquire();
+                if (buffer != null) {
+                    view = new MappedView(segment, buffer);
+                    return view;
+                }
+                //segment has been released concurrently, try again
+            }
+        } finally {
+            if (view == null) {
+                releaseReadLock();
+            }
+        }
+    }
+
     private ReadableByteChannel toClosingChannel(final ReadableByteChannel channel, final boolean writing){
         if(channel instanceof ClosingFileChannel || channel instanceof ClosingReadableByteChannel){
             throw new RuntimeException("Wrapping an already auto closing channel.");
@@ -357,6 +457,43 @@ public final class AccessManager {
         }
     }
 
+    /**
+     * View on a shared mapped segment, holds the read lock until closed.
+     */
+    private final class MappedView implements Closeable{
+
+        private final MappedSegment segment;
+        private final ByteBuffer buffer;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        /**
+         * Read lock must have been acquired by the caller.
+         */
+        private MappedView(final MappedSegment segment, final ByteBuffer buffer) {
+            this.segment = segment;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                segment.release();
+                releaseReadLock();
+            }
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed.get();
+        }
+
+        @Override
+        public String toString() {
+            return "MappedView[" + segment + "]";
+        }
+
+    }
+
     private final class ClosingReadableByteChannel implements ReadableByteChannel{
 
         private final ReadableByteChannel wrapped;
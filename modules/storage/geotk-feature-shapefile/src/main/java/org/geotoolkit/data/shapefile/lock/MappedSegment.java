@@ -0,0 +1,121 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile.lock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A read only memory mapped view of a whole file, shared by all readers
+ * of a shapefile. Each reader obtains its own {@link ByteBuffer#duplicate() duplicate}
+ * so positions and limits are independent while the mapped memory is not copied.
+ *
+ * The segment is reference counted, the {@link ShpFiles} owning the segment holds
+ * one reference and each open view holds another. Once the owner has released
+ * the segment and the last view is closed the mapped buffer is dropped and will
+ * be unmapped by the garbage collector.
+ *
+ * @module pending
+ */
+final class MappedSegment {
+
+    private final File file;
+    private final long lastModified;
+    private final long length;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile ByteBuffer buffer;
+
+    private MappedSegment(final File file, final long lastModified, final long length,
+            final ByteBuffer buffer) {
+        this.file = file;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Map the given file.
+     *
+     * @param file file to map
+     * @return mapped segment or null if file does not exist or is too large
+     *         to be mapped in a single buffer.
+     * @throws IOException if mapping failed
+     */
+    static MappedSegment map(final File file) throws IOException {
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        if (!file.isFile() || length > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel fc = raf.getChannel();
+            final ByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            //the mapping remains valid after the channel is closed
+            return new MappedSegment(file, lastModified, length, buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Acquire a new reference on this segment.
+     *
+     * @return a new view on the mapped file, positioned at 0,
+     *         or null if the segment has already been released.
+     */
+    ByteBuffer acquire() {
+        for (;;) {
+            final int count = references.get();
+            if (count <= 0) {
+                return null;
+            }
+            if (references.compareAndSet(count, count+1)) {
+                return buffer.duplicate();
+            }
+        }
+    }
+
+    /**
+     * Release one reference on this segment.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            buffer = null;
+        }
+    }
+
+    /**
+     * @return true if the file has not been modified since it was mapped.
+     */
+    boolean isUpToDate() {
+        return references.get() > 0
+            && file.lastModified() == lastModified
+            && file.length() == length;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedSegment[" + file + ", references=" + references.get() + "]";
+    }
+
+}
@@ -27,6 +27,8 @@ import java.util.Collection;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import org.geotoolkit.data.shapefile.ShapefileFeatureStoreFactory;
@@ -283,6 +285,7 @@ public final class ShpFiles {
 
         boolean retVal = true;
         try{
+            unloadMappedSegments();
             if (isLocal()) {
                 final Collection<URL> values = urls.values();
                 for (URL url : values) {
@@ -597,6 +600,63 @@ public final class ShpFiles {
         }
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    // Mapped files : store only one mapping of each for all readers ///////////
+    ////////////////////////////////////////////////////////////////////////////
+
+    private final ConcurrentMap<ShpFileType,MappedSegment> segments =
+            new ConcurrentHashMap<ShpFileType, MappedSegment>();
+
+    /**
+     * Get the shared memory mapped segment of given file type.
+     * The file is mapped once and reused by all readers until it is modified.
+     * Callers must {@link MappedSegment#acquire() acquire} the segment before
+     * using it, acquisition may fail if the segment is released concurrently.
+     *
+     * @param type file type
+     * @return mapped segment, or null if the file can not be mapped
+     * @throws IOException if mapping failed
+     */
+    MappedSegment getMappedSegment(final ShpFileType type) throws IOException{
+        if(!isLocal()) return null;
+
+        //the file state is checked only once for each reader opening
+        final MappedSegment segment = segments.get(type);
+        if(segment != null && segment.isUpToDate()){
+            return segment;
+        }
+
+        synchronized(segments){
+            final MappedSegment previous = segments.get(type);
+            if(previous != null && previous != segment){
+                //already remapped by another reader
+                return previous;
+            }
+            if(previous != null){
+                segments.remove(type);
+                previous.release();
+            }
+            final MappedSegment candidate = MappedSegment.map(getFile(type));
+            if(candidate != null){
+                segments.put(type, candidate);
+            }
+            return candidate;
+        }
+    }
+
+    /**
+     * Release all shared mapped segments. Readers still using a segment keep
+     * it alive until they are closed, new readers will map the files again.
+     */
+    public void unloadMappedSegments(){
+        synchronized(segments){
+            for(final MappedSegment segment : segments.values()){
+                segment.release();
+            }
+            segments.clear();
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Indexes files : store only one of each for all readers //////////////////
     ////////////////////////////////////////////////////////////////////////////
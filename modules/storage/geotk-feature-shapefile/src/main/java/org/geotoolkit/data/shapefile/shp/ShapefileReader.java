@@ -123,6 +123,7 @@ public final class ShapefileReader implements Closeable{
     private int currentShape = 0;    
     private ShxReader shxReader;
     private ReadableByteChannel channel;
+    private Closeable resource;
     ByteBuffer buffer;
 
     /**
@@ -184,6 +185,60 @@ public final class ShapefileReader implements Closeable{
         record.end = this.toFileOffset(buffer.position());
     }
 
+    /**
+     * Creates a new instance of ShapeFile reading from a memory mapped buffer,
+     * usually shared with other readers.
+     *
+     * @param shpBuffer
+     *                Buffer containing the whole shp file, starting at position 0.
+     * @param shxReader
+     *                The shx reader, can be null. It will be closed with this reader.
+     * @param resource
+     *                Resource to close with this reader.
+     * @param strict
+     *                True to make the header parsing throw Exceptions if the
+     *                version or magic number are incorrect.
+     * @throws IOException
+     *                 If problems arise.
+     * @throws DataStoreException
+     *                 If for some reason the file contains invalid records.
+     */
+    public ShapefileReader(final ByteBuffer shpBuffer, final ShxReader shxReader,
+            final Closeable resource, final boolean strict, final boolean read3D,
+            final double[] resample) throws IOException, DataStoreException {
+        this.channel = null;
+        this.resource = resource;
+        this.randomAccessEnabled = true;
+        this.useMemoryMappedBuffer = true;
+
+        final ByteBuffer headerBuffer = shpBuffer.duplicate();
+        headerBuffer.position(0);
+        headerBuffer.limit(100);
+        header = ShapefileHeader.read(headerBuffer, strict);
+
+        this.shxReader = shxReader;
+        if(shxReader == null){
+            currentShape = UNKNOWN;
+        }
+
+        fileShapeType = header.getShapeType();
+        handler = fileShapeType.getShapeHandler(read3D,resample);
+
+        if (handler == null) {
+            throw new IOException("Unsuported shape type:" + fileShapeType);
+        }
+
+        buffer = shpBuffer;
+        buffer.position(100);
+        this.currentOffset = 0;
+
+        headerTransfer = ByteBuffer.allocate(8);
+        headerTransfer.order(ByteOrder.BIG_ENDIAN);
+
+        // make sure the record end is set now...
+        record.end = this.toFileOffset(buffer.position());
+    }
+
     /**
      * Disables .shx file usage. By doing so you drop support for sparse shapefiles, the 
      * .shp will have to be without holes, all the valid shapefile records will have to
@@ -289,15 +344,22 @@ public final class ShapefileReader implements Closeable{
         if(shxReader != null){
             shxReader.close();
         }
+        if(resource != null){
+            resource.close();
+        }
         shxReader = null;
         channel = null;
+        resource = null;
     }
     
     @Override
     public boolean isClosed() {
         if(channel != null){
             return !channel.isOpen();
-        }        
+        }
+        if(resource != null){
+            return resource.isClosed();
+        }
         return true;
     }
     
@@ -658,7 +720,7 @@ public final class ShapefileReader implements Closeable{
      */
     public int getCount() throws DataStoreException {
 
-        if (channel == null) return -1;
+        if (channel == null && resource == null) return -1;
 
         int count = 0;
         final long offset = currentOffset;
@@ -54,12 +54,14 @@ public final class ShxReader implements Closeable{
     private final ByteBuffer buffer;
     private final boolean useMemoryMappedBuffer;
     private final ShapefileHeader header;
+    private final Closeable resource;
 
     private int channelOffset;
     private int lastIndex = -1;
     private int recOffset;
     private int recLen;
     private int[] content;
+    private IntBuffer records;
 
     private volatile boolean closed = false;
 
@@ -76,6 +78,7 @@ public final class ShxReader implements Closeable{
         assert (creationStack = new IllegalStateException().fillInStackTrace()) != null;
         
         this.useMemoryMappedBuffer = useMemoryMappedBuffer;
+        this.resource = null;
         final ReadableByteChannel byteChannel = shxChannel;
 
         try {
@@ -113,6 +116,32 @@ public final class ShxReader implements Closeable{
         }
     }
 
+    /**
+     * Load the index file from a memory mapped buffer, usually shared with other readers.
+     * Records are read directly from the buffer, nothing is copied.
+     *
+     * @param shxBuffer buffer containing the whole file, starting at position 0.
+     * @param resource resource to close with this reader, can be null.
+     * @throws IOException If an error occurs.
+     */
+    public ShxReader(final ByteBuffer shxBuffer, final Closeable resource) throws IOException {
+
+        // init the tracer if we need to debug a connection leak
+        assert (creationStack = new IllegalStateException().fillInStackTrace()) != null;
+
+        this.useMemoryMappedBuffer = true;
+        this.resource = resource;
+        this.channel = null;
+        this.buffer = null;
+
+        final ByteBuffer view = shxBuffer.duplicate();
+        view.position(0);
+        header = ShapefileHeader.read(view, true);
+        view.limit(Math.min(view.capacity(), header.getFileLength() * 2));
+        view.position(100);
+        records = view.slice().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+    }
+
     /**
      * Get the header of this index file.
      * 
@@ -182,6 +211,10 @@ public final class ShxReader implements Closeable{
             channel.close();
         }        
         this.content = null;
+        this.records = null;
+        if (resource != null) {
+            resource.close();
+        }
     }
 
     @Override
@@ -230,6 +263,8 @@ public final class ShxReader implements Closeable{
                 this.readRecord(index);
             }
             return this.recOffset;
+        } else if (records != null) {
+            return records.get(2 * index);
         } else {
             return content[2 * index];
         }
@@ -260,6 +295,8 @@ public final class ShxReader implements Closeable{
                 this.readRecord(index);
             }
             return this.recLen;
+        } else if (records != null) {
+            return records.get(2 * index + 1);
         } else {
             return content[2 * index + 1];
         }
@@ -141,6 +141,40 @@ public class ShapefileTest extends AbstractTestCaseSupport {
         }
     }
 
+    @Test
+    public void testSharedMemoryMappedReaders() throws Exception {
+        copyShapefiles(STATEPOP);
+        copyShapefiles(STATEPOP_IDX);
+        final URL url = TestData.url(AbstractTestCaseSupport.class, STATEPOP); // Backed by File
+        final ShpFiles shpFiles = new ShpFiles(url);
+        final ShapefileReader reference = shpFiles.createLocker().getSHPReader(false, false, true, null);
+        final ShapefileReader reader1 = shpFiles.createLocker().getSHPReader(false, true, true, null);
+        final ShapefileReader reader2 = shpFiles.createLocker().getSHPReader(false, true, true, null);
+        final ShxReader index = shpFiles.createLocker().getSHXReader(true);
+        try {
+            assertEquals(reference.getCount(), reader1.getCount());
+            for (int i = 0; i < index.getRecordCount(); i++) {
+                assertTrue(reference.hasNext());
+                assertTrue(reader1.hasNext());
+                final Geometry g0 = (Geometry) reference.nextRecord().shape();
+                final Geometry g1 = (Geometry) reader1.nextRecord().shape();
+                //second reader moves independently on the same mapped file
+                final Geometry g2 = (Geometry) reader2.shapeAt(2 * index.getOffset(i));
+                assertTrue(g0.equalsExact(g1));
+                assertTrue(g0.equalsExact(g2));
+            }
+            assertFalse(reader1.hasNext());
+        } finally {
+            index.close();
+            reader2.close();
+            reader1.close();
+            reference.close();
+        }
+        assertTrue(reader1.isClosed());
+        assertTrue(reader2.isClosed());
+        assertTrue(index.isClosed());
+    }
+
     @Test
     public void testHolyPolygons() throws Exception {
         SimpleFeatureType type = FeatureTypeUtilities.createType("junk",
@@ -19,6 +19,7 @@ package org.geotoolkit.db;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -78,9 +79,13 @@ import org.geotoolkit.feature.type.FeatureType;
 import org.geotoolkit.feature.type.Name;
 import org.geotoolkit.feature.type.PropertyDescriptor;
 import org.geotoolkit.feature.type.PropertyType;
+import org.opengis.coverage.Coverage;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
+import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.identity.FeatureId;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 import org.opengis.geometry.Envelope;
 import org.opengis.parameter.ParameterNotFoundException;
 import org.opengis.parameter.ParameterValueGroup;
@@ -113,6 +118,8 @@ public class DefaultJDBCFeatureStore extends JDBCFeatureStore{
     
     //number of records to retrieve with each db call.
     private final int fetchSize;
+    //size of the connection pool, zero or negative for no limit.
+    private final int maxConnections;
     private SQLQueryBuilder queryBuilder;
         
     
@@ -121,6 +128,8 @@ public class DefaultJDBCFeatureStore extends JDBCFeatureStore{
         this.factoryId = factoryId;
         
         fetchSize = (Integer)Parameters.getOrCreate(AbstractJDBCFeatureStoreFactory.FETCHSIZE, params).getValue();
+        final Integer maxConn = (Integer)Parameters.getOrCreate(AbstractJDBCFeatureStoreFactory.MAXCONN, params).getValue();
+        maxConnections = (maxConn == null) ? 0 : maxConn;
         final boolean simpleTypes = (Boolean)Parameters.getOrCreate(AbstractJDBCFeatureStoreFactory.SIMPLETYPE, params).getValue();        
         dbmodel = new DataBaseModel(this, simpleTypes); 
         
@@ -389,26 +398,30 @@ public class DefaultJDBCFeatureStore extends JDBCFeatureStore{
         }
         
         
-        final String sql;
-        
-        //we gave him the connection, he must not release it 
-        final boolean release = (cnx == null);
-        if(cnx==null){
+        //if we do not have a connection given, the query can be split on several of them
+        FeatureReader reader = (cnx == null) ? getPartitionedReader(queryFeatureType, preQuery, pkey) : null;
+
+        if(reader == null){
+            final String sql;
+
+            //we gave him the connection, he must not release it 
+            final boolean release = (cnx == null);
+            if(cnx==null){
+                try {
+                    cnx = getDataSource().getConnection();
+                } catch (SQLException ex) {
+                    throw new DataStoreException(ex.getMessage(), ex);
+                }
+            }
+
             try {
-                cnx = getDataSource().getConnection();
+                sql = getQueryBuilder().selectSQL(queryFeatureType, preQuery);
+                reader = new JDBCFeatureReader(this, sql, queryFeatureType, cnx, release, null);
             } catch (SQLException ex) {
                 throw new DataStoreException(ex.getMessage(), ex);
             }
         }
         
-        FeatureReader reader;
-        try {
-            sql = getQueryBuilder().selectSQL(queryFeatureType, preQuery);
-            reader = new JDBCFeatureReader(this, sql, queryFeatureType, cnx, release, null);
-        } catch (SQLException ex) {
-            throw new DataStoreException(ex.getMessage(), ex);
-        }
-        
         
         // if post filter, wrap it
         if (postFilter != null && postFilter != Filter.INCLUDE) {
@@ -435,6 +448,110 @@ public class DefaultJDBCFeatureStore extends JDBCFeatureStore{
         return reader;
     }
     
+    /**
+     * Split the query in primary key ranges read concurrently, if requested with
+     * the {@link #PARTITIONS} hint. The primary key must be a single integer column,
+     * the query must have no start index, no maximum features and be sorted on nothing
+     * or on the primary key. Ranges have the same key extent, they are balanced only
+     * if the keys are evenly distributed.
+     * The number of partitions is kept below the connection pool size, so other readers
+     * can still obtain a connection. When features are ordered, partitions are read in
+     * a window of at most one partition per processor.
+     *
+     * @return partitioned reader, null if the query can not be split
+     */
+    private FeatureReader getPartitionedReader(final FeatureType featureType, final Query query,
+            final PrimaryKey pkey) throws DataStoreException {
+        final Object value = (query.getHints() == null) ? null : query.getHints().get(PARTITIONS);
+        if(!(value instanceof Number) || ((Number)value).intValue() < 2
+                || query.getMaxFeatures() != null || query.getStartIndex() > 0
+                || query.getVersionDate() != null || query.getVersionLabel() != null
+                || pkey.getColumns().size() != 1){
+            return null;
+        }
+
+        final ColumnMetaModel column = pkey.getColumns().get(0);
+        final Class binding = column.getJavaType();
+        if(!(Long.class.equals(binding) || Integer.class.equals(binding) || Short.class.equals(binding))){
+            return null;
+        }
+        final String keyName = column.getName();
+
+        //partitions are returned in key order, features are ordered only if sorted on the key
+        final SortBy[] sort = query.getSortBy();
+        final boolean ordered;
+        if(sort == null || sort.length == 0){
+            ordered = false;
+        }else if(sort.length == 1 && sort[0].getSortOrder() == SortOrder.ASCENDING
+                && sort[0].getPropertyName() != null
+                && keyName.equals(sort[0].getPropertyName().getPropertyName())){
+            ordered = true;
+        }else{
+            return null;
+        }
+
+        final Filter filter = query.getFilter();
+        final long min;
+        final long max;
+        Connection cx = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            cx = getDataSource().getConnection();
+            stmt = cx.createStatement();
+            rs = stmt.executeQuery(getQueryBuilder().keyRangeSQL(featureType, filter, keyName));
+            rs.next();
+            min = rs.getLong(1);
+            if(rs.wasNull()){
+                //no records
+                return null;
+            }
+            max = rs.getLong(2);
+        } catch (SQLException ex) {
+            throw new DataStoreException(ex.getMessage(), ex);
+        } finally {
+            JDBCFeatureStoreUtilities.closeSafe(getLogger(), cx, stmt, rs);
+        }
+
+        final double extent = (double)max - (double)min + 1;
+        int nbPartitions = (int) Math.min(((Number)value).intValue(), extent);
+        if(maxConnections > 0){
+            //leave a connection free for other readers
+            nbPartitions = Math.min(nbPartitions, maxConnections - 1);
+        }
+        if(nbPartitions < 2){
+            return null;
+        }
+
+        final String[] sqls = new String[nbPartitions];
+        final QueryBuilder qb = new QueryBuilder(query);
+        final PropertyName property = filterFactory.property(keyName);
+        try {
+            for(int i=0; i<nbPartitions; i++){
+                //first and last ranges are open, to include records added since the range query
+                final List<Filter> filters = new ArrayList<Filter>();
+                if(!Filter.INCLUDE.equals(filter)){
+                    filters.add(filter);
+                }
+                if(i > 0){
+                    final long start = min + (long) (extent * i / nbPartitions);
+                    filters.add(filterFactory.greaterOrEqual(property, filterFactory.literal(start)));
+                }
+                if(i < nbPartitions-1){
+                    final long end = min + (long) (extent * (i+1) / nbPartitions);
+                    filters.add(filterFactory.less(property, filterFactory.literal(end)));
+                }
+                qb.setFilter((filters.size() == 1) ? filters.get(0) : filterFactory.and(filters));
+                sqls[i] = getQueryBuilder().selectSQL(featureType, qb.buildQuery());
+            }
+        } catch (SQLException ex) {
+            throw new DataStoreException(ex.getMessage(), ex);
+        }
+
+        return new JDBCPartitionedFeatureReader(this, sqls, featureType, ordered,
+                Runtime.getRuntime().availableProcessors());
+    }
+
     /**
      * Get reader with SQL query.
      * @param query
@@ -927,29 +1044,98 @@ public class DefaultJDBCFeatureStore extends JDBCFeatureStore{
         handleRemoveWithFeatureWriter(groupName, filter, cnx);
     }
 
+    /**
+     * Insert the given features with a prepared statement batch. The identifiers generated
+     * by the database are not reported in the features.
+     * No store lock is held, unless some primary key values must be computed from the table
+     * content, in which case the features are inserted one by one.
+     */
     protected void insert(final Collection<? extends ComplexAttribute> features, final ComplexType featureType,
             final Connection cx) throws DataStoreException {
+        if (features.isEmpty()) {
+            return;
+        }
         final PrimaryKey key = dbmodel.getPrimaryKey(featureType.getName());
 
-        // we do this in a synchronized block because we need to do two queries,
-        // first to figure out what the id will be, then the insert statement
-        synchronized (this) {
-            Statement st = null;
-            try {
-                st = cx.createStatement();
-                final Object[] nextKeyValues = key.nextPrimaryKeyValues(this, cx);
-                final String sql = getQueryBuilder().insertSQL(featureType, features, nextKeyValues, cx);
-                st.executeUpdate(sql);
+        if (!isBatchInsertable(key, featureType, features)) {
+            for (ComplexAttribute feature : features) {
+                insert(feature, featureType, cx);
+            }
+            return;
+        }
 
-                if (cx.getAutoCommit()) {
-                    fireFeaturesAdded(featureType.getName(), null);
+        try {
+            //sequence values are unique, no need for a lock
+            for (ColumnMetaModel col : key.getColumns()) {
+                if (col.getType() != ColumnMetaModel.Type.SEQUENCED) continue;
+                for (ComplexAttribute feature : features) {
+                    final Property prop = feature.getProperty(col.getName());
+                    if (prop != null && prop.getValue() == null) {
+                        prop.setValue(col.nextColumnValue(this, cx));
+                    }
+                }
+            }
+
+            insertBatch(features, featureType, cx);
+
+            if (cx.getAutoCommit()) {
+                fireFeaturesAdded(featureType.getName(), null);
+            }
+        } catch (SQLException e) {
+            throw new DataStoreException("Error inserting features : "+e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Insert the given flat features in a single batch. Primary key values which are not
+     * generated by the database are set in the features.
+     * Subclasses may override this method to use a database specific bulk loading method.
+     */
+    protected void insertBatch(final Collection<? extends ComplexAttribute> features, final ComplexType featureType,
+            final Connection cx) throws SQLException, DataStoreException {
+        final SQLQueryBuilder builder = getQueryBuilder();
+        final List<PropertyDescriptor> descs = builder.getInsertDescriptors(featureType);
+        final String sql = builder.insertPreparedSQL(featureType);
+        getLogger().log(Level.FINE, "Inserting {0} features: {1}", new Object[]{features.size(), sql});
+
+        PreparedStatement stmt = null;
+        try {
+            stmt = cx.prepareStatement(sql);
+            for (ComplexAttribute feature : features) {
+                builder.setInsertParameters(stmt, descs, feature);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } finally {
+            JDBCFeatureStoreUtilities.closeSafe(getLogger(),stmt);
+        }
+    }
+
+    /**
+     * Batches are possible for flat features without coverages, when no primary key value
+     * has to be computed from the table content : such values would not take in account
+     * the rows of the batch.
+     */
+    private static boolean isBatchInsertable(final PrimaryKey key, final ComplexType featureType,
+            final Collection<? extends ComplexAttribute> features) {
+        if (!(featureType instanceof SimpleFeatureType)) {
+            return false;
+        }
+        for (PropertyDescriptor desc : featureType.getDescriptors()) {
+            if (Coverage.class.isAssignableFrom(desc.getType().getBinding())) {
+                return false;
+            }
+        }
+        for (ColumnMetaModel col : key.getColumns()) {
+            if (col.getType() != ColumnMetaModel.Type.NON_INCREMENTING) continue;
+            for (ComplexAttribute feature : features) {
+                final Property prop = feature.getProperty(col.getName());
+                if (prop == null || prop.getValue() == null) {
+                    return false;
                 }
-            } catch (SQLException e) {
-                throw new DataStoreException("Error inserting features",e);
-            } finally {
-                JDBCFeatureStoreUtilities.closeSafe(getLogger(),st);
             }
         }
+        return true;
     }
 
     protected void insert(final ComplexAttribute feature, final ComplexType featureType,
@@ -1025,7 +1211,6 @@ public class DefaultJDBCFeatureStore extends JDBCFeatureStore{
                 if (cx.getAutoCommit()) {
                     fireFeaturesAdded(featureType.getName(), null);
                 }
-            //st.executeBatch();
             } catch (SQLException ex) {
                 throw new DataStoreException("Failed to intert features : "+ex.getMessage()+"\nSQL Query :"+sql, ex);
             } finally {
@@ -32,6 +32,16 @@ import org.opengis.parameter.ParameterValueGroup;
 public abstract class JDBCFeatureStore extends AbstractFeatureStore{
     
     public static final RenderingHints.Key RESAMPLING = new org.geotoolkit.factory.Hints.Key(Object.class);
+
+    /**
+     * Query hint, number of partitions the query is split into. Partitions are
+     * primary key ranges read concurrently, each one on its own connection.
+     * Queries are split only if the primary key is a single integer column and the
+     * query has no start index, no maximum features and is sorted on nothing or on
+     * the primary key. The number of partitions is kept below the size of the
+     * connection pool. Value is an Integer.
+     */
+    public static final RenderingHints.Key PARTITIONS = new org.geotoolkit.factory.Hints.Key(Integer.class);
     
     /**
      * Query language supported : SQL.
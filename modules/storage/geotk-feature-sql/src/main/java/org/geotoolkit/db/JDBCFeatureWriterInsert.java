@@ -40,7 +40,13 @@ import org.geotoolkit.feature.type.FeatureType;
  */
 public class JDBCFeatureWriterInsert extends JDBCFeatureReader implements FeatureWriter<FeatureType, Feature> {
 
+    /**
+     * Default number of features inserted in a single batch.
+     */
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
     private boolean batchInsert;
+    private int batchSize = DEFAULT_BATCH_SIZE;
     private Collection<Feature> toAdd;
     
     //private String id;
@@ -68,6 +74,10 @@ public class JDBCFeatureWriterInsert extends JDBCFeatureReader implements Featur
 //        };
         if(hints != null){
             batchInsert = Boolean.FALSE.equals(hints.get(HintsPending.UPDATE_ID_ON_INSERT));
+            final Object size = hints.get(HintsPending.INSERT_BATCH_SIZE);
+            if(size instanceof Integer && (Integer)size > 0){
+                batchSize = (Integer)size;
+            }
         }else{
             batchInsert = Boolean.FALSE;
         }
@@ -96,7 +106,7 @@ public class JDBCFeatureWriterInsert extends JDBCFeatureReader implements Featur
         if(batchInsert){
             toAdd.add(last);
             last = (AbstractFeature)FeatureUtilities.defaultFeature(type, "-1");
-            if(toAdd.size() > 1000){
+            if(toAdd.size() >= batchSize){
                 try {
                     store.insert(toAdd, type, cx);
                 } catch (DataStoreException e) {
@@ -0,0 +1,261 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.sis.storage.DataStoreException;
+import org.geotoolkit.data.FeatureReader;
+import org.geotoolkit.data.FeatureStoreRuntimeException;
+import static org.geotoolkit.db.JDBCFeatureStoreUtilities.*;
+import org.geotoolkit.feature.Feature;
+import org.geotoolkit.feature.type.FeatureType;
+
+/**
+ * JDBC Feature reader running several queries concurrently, each one on its own
+ * connection of the datasource. The queries are usually primary key ranges of the
+ * same query. Rows are converted to features on the partition threads.
+ *
+ * If ordered, all features of the first query are returned, then those of the second
+ * query and so on. Otherwise features are returned in the order they are read.
+ * In ordered mode, only a window of queries is running at the same time : the next
+ * query starts when all features of the first running query have been returned.
+ * The caller must ensure the datasource can provide one connection per query,
+ * or per query of the window in ordered mode.
+ *
+ * @module pending
+ */
+public class JDBCPartitionedFeatureReader implements FeatureReader<FeatureType, Feature> {
+
+    private static final Object END = new Object();
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger inc = new AtomicInteger();
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread t = new Thread(r, "JDBC partition reader "+inc.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final DefaultJDBCFeatureStore store;
+    private final String[] sqls;
+    private final FeatureType type;
+    private final boolean ordered;
+    private final int nbPartitions;
+    private final List<BlockingQueue<Object>> queues;
+    /** number of partition readers started */
+    private int started = 0;
+
+    private volatile boolean closed = false;
+    /** ordered : index of the partition being read, unordered : number of ended partitions */
+    private int current = 0;
+    /** the next feature */
+    private Feature feature = null;
+
+    /**
+     * Starts reading all queries.
+     *
+     * @param store feature store
+     * @param sqls queries to run, each one must return features of the given type
+     * @param type returned feature type
+     * @param ordered true to return features in queries order
+     * @param window ordered mode : maximum number of queries running at the same time
+     */
+    public JDBCPartitionedFeatureReader(final DefaultJDBCFeatureStore store, final String[] sqls,
+            final FeatureType type, final boolean ordered, final int window) {
+        this.store = store;
+        this.sqls = sqls;
+        this.type = type;
+        this.ordered = ordered;
+        this.nbPartitions = sqls.length;
+
+        //each partition can read ahead one fetch of rows
+        final int capacity = Math.max(store.getFetchSize(), 100);
+        queues = new ArrayList<>(nbPartitions);
+        if(ordered){
+            for(int i=0; i<nbPartitions; i++){
+                queues.add(new ArrayBlockingQueue<>(capacity));
+            }
+        }else{
+            queues.add(new ArrayBlockingQueue<>(capacity * nbPartitions));
+        }
+
+        final int nb = ordered ? Math.max(1, Math.min(window, nbPartitions)) : nbPartitions;
+        for(int i=0; i<nb; i++){
+            startNext();
+        }
+    }
+
+    /**
+     * Starts reading the next partition, if any.
+     */
+    private void startNext(){
+        if(started < nbPartitions && !closed){
+            EXECUTOR.execute(new PartitionReader(sqls[started], queues.get(ordered ? started : 0)));
+            started++;
+        }
+    }
+
+    @Override
+    public FeatureType getFeatureType() {
+        return type;
+    }
+
+    @Override
+    public Feature next() throws FeatureStoreRuntimeException {
+        findNext();
+        final Feature f = feature;
+        feature = null;
+        return f;
+    }
+
+    @Override
+    public boolean hasNext() throws FeatureStoreRuntimeException {
+        findNext();
+        return feature != null;
+    }
+
+    private void findNext(){
+        if(feature != null || closed) return;
+
+        while(current < nbPartitions){
+            final Object candidate;
+            try {
+                candidate = queues.get(ordered ? current : 0).take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new FeatureStoreRuntimeException(ex);
+            }
+
+            if(candidate == END){
+                current++;
+                if(ordered){
+                    //slide the window of running partitions
+                    startNext();
+                }
+            }else if(candidate instanceof Failure){
+                close();
+                throw new FeatureStoreRuntimeException(((Failure)candidate).cause);
+            }else{
+                feature = (Feature) candidate;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the partition readers, their connections are released
+     * by the partition threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for(BlockingQueue<Object> queue : queues){
+            queue.clear();
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Exception raised by a partition reader.
+     */
+    private static final class Failure {
+        private final Throwable cause;
+
+        private Failure(final Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * Reads the features of a query and push them in the queue.
+     */
+    private final class PartitionReader implements Runnable {
+
+        private final String sql;
+        private final BlockingQueue<Object> queue;
+
+        private PartitionReader(final String sql, final BlockingQueue<Object> queue) {
+            this.sql = sql;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            Object last = END;
+            JDBCFeatureReader reader = null;
+            try {
+                final Connection cx = store.getDataSource().getConnection();
+                try {
+                    reader = new JDBCFeatureReader(store, sql, type, cx, true, null);
+                } catch (SQLException | DataStoreException ex) {
+                    closeSafe(store.getLogger(), cx);
+                    throw ex;
+                }
+                while(!closed && reader.hasNext()){
+                    if(!put(reader.next())) break;
+                }
+            } catch (SQLException | DataStoreException | RuntimeException ex) {
+                last = new Failure(ex);
+            } catch (Error ex) {
+                //the consumer must not see a truncated partition as a complete one
+                last = new Failure(ex);
+                throw ex;
+            } finally {
+                if(reader != null){
+                    reader.close();
+                }
+                put(last);
+            }
+        }
+
+        /**
+         * Waits for space in the queue until the reader is closed.
+         *
+         * @return false if the reader has been closed
+         */
+        private boolean put(final Object candidate) {
+            try {
+                while(!closed){
+                    if(queue.offer(candidate, 100, TimeUnit.MILLISECONDS)){
+                        return true;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+}
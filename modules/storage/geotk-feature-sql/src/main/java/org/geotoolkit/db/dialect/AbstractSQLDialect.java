@@ -16,8 +16,13 @@
  */
 package org.geotoolkit.db.dialect;
 
+import com.vividsolutions.jts.geom.Geometry;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import org.apache.sis.storage.DataStoreException;
 import org.geotoolkit.feature.AttributeTypeBuilder;
 import org.geotoolkit.filter.capability.DefaultFilterCapabilities;
 import org.geotoolkit.filter.visitor.CapabilitiesFilterSplitter;
@@ -92,6 +97,39 @@ public abstract class AbstractSQLDialect implements SQLDialect {
     public void encodePostCreateTable(StringBuilder sql, String tableName) {
     }
     
+    /**
+     * Default implementation uses the SQL/MM ST_GeomFromText function,
+     * with two parameters : the WKT and the SRID.
+     */
+    @Override
+    public void encodeGeometryParameter(StringBuilder sql) {
+        sql.append("ST_GeomFromText(?,?)");
+    }
+
+    @Override
+    public void setValueParameter(PreparedStatement ps, int index, Object value, Class type) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.NULL);
+        } else if (value.getClass() == java.util.Date.class) {
+            //not a JDBC type
+            ps.setTimestamp(index, new Timestamp(((java.util.Date) value).getTime()));
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    @Override
+    public int setGeometryParameter(PreparedStatement ps, int index, Geometry value, int srid)
+            throws SQLException, DataStoreException {
+        if (value == null) {
+            ps.setNull(index, Types.VARCHAR);
+        } else {
+            ps.setString(index, value.toText());
+        }
+        ps.setInt(index+1, srid);
+        return index+2;
+    }
+
     @Override
     public void decodeColumnType(final AttributeTypeBuilder atb, final Connection cx,
             final String typeName, final int datatype, final String schemaName,
@@ -19,6 +19,7 @@ package org.geotoolkit.db.dialect;
 import com.vividsolutions.jts.geom.Geometry;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
@@ -116,6 +117,25 @@ public interface SQLDialect {
     void encodeGeometryValue(StringBuilder sql, Geometry value, int srid) throws DataStoreException;
     
     void encodeCoverageValue(StringBuilder sql, Coverage value) throws DataStoreException;
+
+    /**
+     * Encode the parameter placeholder of a geometry in a prepared statement.
+     * The parameters are set with {@link #setGeometryParameter(PreparedStatement, int, Geometry, int)}.
+     */
+    void encodeGeometryParameter(StringBuilder sql);
+
+    /**
+     * Set the value of a prepared statement parameter.
+     */
+    void setValueParameter(PreparedStatement ps, int index, Object value, Class type) throws SQLException;
+
+    /**
+     * Set the parameters of a geometry placeholder created by {@link #encodeGeometryParameter(StringBuilder)}.
+     *
+     * @return index of the next parameter in the prepared statement
+     */
+    int setGeometryParameter(PreparedStatement ps, int index, Geometry value, int srid)
+            throws SQLException, DataStoreException;
     
     void encodePrimaryKey(StringBuilder sql, Class binding, String sqlType);
 
@@ -19,6 +19,7 @@ package org.geotoolkit.db.dialect;
 import com.vividsolutions.jts.geom.Geometry;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -112,6 +113,30 @@ public class SQLQueryBuilder {
         return sql.toString();
     }
 
+    /**
+     * Generates a 'SELECT MIN(key), MAX(key) FROM ... WHERE ...' statement,
+     * used to split a query in key ranges.
+     *
+     * @param featureType queried feature type
+     * @param filter query filter
+     * @param keyColumn name of the key column
+     * @return String
+     */
+    public String keyRangeSQL(final FeatureType featureType, final Filter filter, final String keyColumn) {
+        final StringBuilder sql = new StringBuilder("SELECT MIN(");
+        dialect.encodeColumnName(sql, keyColumn);
+        sql.append("), MAX(");
+        dialect.encodeColumnName(sql, keyColumn);
+        sql.append(") FROM ");
+        dialect.encodeSchemaAndTableName(sql, databaseSchema, featureType.getName().getLocalPart());
+
+        if (!Filter.INCLUDE.equals(filter)) {
+            sql.append(" WHERE ");
+            sql.append(dialect.encodeFilter(filter,featureType));
+        }
+        return sql.toString();
+    }
+
     protected void encodeSelectColumnNames(StringBuilder sql, FeatureType featureType, Hints hints){
         for (PropertyDescriptor att : featureType.getDescriptors()) {
             final RelationMetaModel relation = (RelationMetaModel)att.getUserData().get(JDBCFeatureStore.JDBC_PROPERTY_RELATION);
@@ -319,6 +344,81 @@ public class SQLQueryBuilder {
         return sqlType.toString() + sqlValues.toString();
     }
 
+    /**
+     * Returns the properties written by the insert statements : all properties except
+     * the primary key columns generated by the database.
+     */
+    public List<PropertyDescriptor> getInsertDescriptors(final ComplexType featureType) {
+        final PrimaryKey key = store.getDatabaseModel().getPrimaryKey(featureType.getName());
+        final List<ColumnMetaModel> keyColumns = key.getColumns();
+        final List<PropertyDescriptor> descs = new ArrayList<>();
+
+        fields :
+        for(PropertyDescriptor desc : featureType.getDescriptors()){
+            final String attName = desc.getName().getLocalPart();
+            for (ColumnMetaModel col : keyColumns) {
+                if(col.getName().equals(attName) && col.getType() == ColumnMetaModel.Type.AUTO){
+                    continue fields;
+                }
+            }
+            descs.add(desc);
+        }
+        return descs;
+    }
+
+    /**
+     * Generates a parameterized 'INSERT INTO' sql statement, for use in a batch.
+     * Parameters are the properties returned by {@link #getInsertDescriptors(ComplexType)},
+     * they are set with {@link #setInsertParameters(PreparedStatement, List, ComplexAttribute)}.
+     */
+    public String insertPreparedSQL(final ComplexType featureType) {
+        final StringBuilder sqlType = new StringBuilder();
+        sqlType.append("INSERT INTO ");
+        dialect.encodeSchemaAndTableName(sqlType, databaseSchema, featureType.getName().getLocalPart());
+        sqlType.append(" ( ");
+
+        final StringBuilder sqlValues = new StringBuilder();
+        sqlValues.append(" ) VALUES ( ");
+
+        for(PropertyDescriptor desc : getInsertDescriptors(featureType)){
+            dialect.encodeColumnName(sqlType, desc.getName().getLocalPart());
+            if (Geometry.class.isAssignableFrom(desc.getType().getBinding())) {
+                dialect.encodeGeometryParameter(sqlValues);
+            } else {
+                sqlValues.append('?');
+            }
+            sqlType.append(',');
+            sqlValues.append(',');
+        }
+
+        sqlType.setLength(sqlType.length() - 1);
+        sqlValues.setLength(sqlValues.length() - 1);
+        sqlValues.append(")");
+
+        return sqlType.toString() + sqlValues.toString();
+    }
+
+    /**
+     * Set the parameters of a statement created by {@link #insertPreparedSQL(ComplexType)}
+     * with the values of the given feature. Primary key values must be set in the feature.
+     *
+     * @param descs properties returned by {@link #getInsertDescriptors(ComplexType)}
+     */
+    public void setInsertParameters(final PreparedStatement ps, final List<PropertyDescriptor> descs,
+            final ComplexAttribute feature) throws SQLException, DataStoreException {
+        int index = 1;
+        for(PropertyDescriptor desc : descs){
+            final Class binding = desc.getType().getBinding();
+            final Object value = feature.getProperty(desc.getName().getLocalPart()).getValue();
+            if (Geometry.class.isAssignableFrom(binding)) {
+                final Geometry g = (Geometry) value;
+                index = dialect.setGeometryParameter(ps, index, g, getGeometrySRID(g, desc));
+            } else {
+                dialect.setValueParameter(ps, index++, value, binding);
+            }
+        }
+    }
+
 
     /**
      * Generates an 'UPDATE' sql statement.
@@ -474,9 +474,9 @@ public abstract class AbstractFeatureStore extends FeatureStore {
      * parameters but keep in mind that this is done in a generic way, which might
      * not be the most effective way.
      *
-     * Becareful if you give a sortBy parameter in the query, this can cause
-     * OutOfMemory errors since the generic implementation must iterate over all
-     * feature and holds them in memory before ordering them.
+     * Becareful if you give a sortBy parameter in the query, the generic implementation
+     * must iterate over all features before ordering them, large iterators are
+     * sorted using temporary files.
      * It may be a better solution to say in the query capabilities that sortBy
      * are not handle by this FeatureStore implementation.
      *
@@ -506,9 +506,15 @@ public abstract class AbstractFeatureStore extends FeatureStore {
 
         //wrap sort by ---------------------------------------------------------
         //This can be really expensive, and force the us to read the full iterator.
-        //that may cause out of memory errors.
+        //Large iterators are sorted on disk, if there is no filter after the sort
+        //we only need to keep the first start+max features.
         if(sorts != null && sorts.length != 0){
-            reader = GenericSortByFeatureIterator.wrap(reader, sorts);
+            int limit = -1;
+            if(max != null && (filter == null || filter == Filter.INCLUDE)){
+                final long top = (long)max + ((start != null && start > 0) ? start : 0);
+                if(top < Integer.MAX_VALUE) limit = (int) top;
+            }
+            reader = GenericSortByFeatureIterator.wrap(reader, sorts, limit, hints);
         }
 
         //wrap filter ----------------------------------------------------------
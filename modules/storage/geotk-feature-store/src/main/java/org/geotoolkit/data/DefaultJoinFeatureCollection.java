@@ -17,8 +17,16 @@
 
 package org.geotoolkit.data;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import org.apache.sis.storage.DataStoreException;
 import org.geotoolkit.data.query.Join;
@@ -28,11 +36,13 @@ import org.geotoolkit.data.query.QueryBuilder;
 import org.geotoolkit.data.query.QueryUtilities;
 import org.geotoolkit.data.query.Selector;
 import org.geotoolkit.data.query.Source;
+import org.geotoolkit.data.session.Session;
 import org.geotoolkit.factory.FactoryFinder;
 import org.geotoolkit.factory.Hints;
 import org.geotoolkit.feature.AttributeDescriptorBuilder;
 import org.geotoolkit.feature.type.DefaultName;
 import org.geotoolkit.feature.FeatureTypeBuilder;
+import org.geotoolkit.feature.FeatureUtilities;
 import org.geotoolkit.feature.Feature;
 import org.geotoolkit.feature.FeatureFactory;
 import org.geotoolkit.feature.Property;
@@ -47,6 +57,13 @@ import org.opengis.filter.expression.PropertyName;
 /**
  * FeatureCollection that takes it'es source from a join query.
  *
+ * The join is made by loading the secondary collection in a hash table indexed
+ * on the join property, the primary collection is then streamed and each feature
+ * is matched against the table. If the secondary collection join property values
+ * can not be hashed consistently with the filter equality, the join fallback
+ * on a nested loop which makes one query on the secondary collection for each
+ * primary feature.
+ *
  * @author Johann Sorel (Geomatys)
  * @module pending
  */
@@ -154,14 +171,27 @@ public class DefaultJoinFeatureCollection extends AbstractFeatureCollection<Feat
         final JoinType jt = getSource().getJoinType();
 
         try{
+            //hash join, the table is built on the secondary collection
+            final JoinHashTable table;
+            if(jt == JoinType.INNER || jt == JoinType.LEFT_OUTER){
+                table = JoinHashTable.create(rightCollection, getSource().getJoinCondition(), false);
+            }else if(jt == JoinType.RIGHT_OUTER){
+                table = JoinHashTable.create(leftCollection, getSource().getJoinCondition(), true);
+            }else{
+                throw new IllegalArgumentException("Unknowned Join type : " + jt);
+            }
+
+            if(table != null){
+                return new JoinHashRowIterator(table, jt);
+            }
+
+            //nested loop fallback
             if(jt == JoinType.INNER){
                 return new JoinInnerRowIterator(null);
             }else if(jt == JoinType.LEFT_OUTER){
                 return new JoinOuterRowIterator(true,null);
-            }else if(jt == JoinType.RIGHT_OUTER){
-                return new JoinOuterRowIterator(false,null);
             }else{
-                throw new IllegalArgumentException("Unknowned Join type : " + jt);
+                return new JoinOuterRowIterator(false,null);
             }
         }catch(DataStoreException ex){
             throw new FeatureStoreRuntimeException(ex);
@@ -434,4 +464,302 @@ public class DefaultJoinFeatureCollection extends AbstractFeatureCollection<Feat
 
     }
 
+    /**
+     * Secondary features indexed by join property value.
+     * Values are normalized so that hash equality matches the filter equality :
+     * numbers are compared by value and strings ignore case if the join condition
+     * is not case sensitive.
+     * The secondary features are copied in memory, if there are more than
+     * {@link #MAX_SIZE} of them the nested loop is used instead.
+     */
+    private static final class JoinHashTable {
+
+        /**
+         * Maximum number of secondary features loaded in the table.
+         */
+        private static final int MAX_SIZE = 100000;
+
+        private static final int CATEGORY_STRING = 1;
+        private static final int CATEGORY_NUMBER = 2;
+        private static final int CATEGORY_BOOLEAN = 3;
+        private static final int CATEGORY_DATE = 4;
+
+        private final Map<Object,List<Feature>> table = new HashMap<Object, List<Feature>>();
+        private final PropertyIsEqualTo condition;
+        private final PropertyName primeProperty;
+        private final boolean matchCase;
+        private int category = 0;
+
+        private JoinHashTable(final PropertyIsEqualTo condition, final boolean buildOnLeft) {
+            this.condition = condition;
+            this.primeProperty = (PropertyName) (buildOnLeft ? condition.getExpression2() : condition.getExpression1());
+            this.matchCase = condition.isMatchingCase();
+        }
+
+        /**
+         * Load the secondary collection in a hash table.
+         *
+         * @param collection secondary collection
+         * @param condition join condition
+         * @param buildOnLeft true if the collection is the left side of the join
+         * @return JoinHashTable or null if values can not be hashed or if the collection
+         *         is too large, nested loop must be used in this case
+         */
+        static JoinHashTable create(final FeatureCollection collection,
+                final PropertyIsEqualTo condition, final boolean buildOnLeft) throws DataStoreException{
+            if(!(condition.getExpression1() instanceof PropertyName)
+             ||!(condition.getExpression2() instanceof PropertyName)){
+                return null;
+            }
+            if(canCount(collection) && collection.size() > MAX_SIZE){
+                return null;
+            }
+
+            final JoinHashTable table = new JoinHashTable(condition, buildOnLeft);
+            final PropertyName buildProperty = (PropertyName) (buildOnLeft ? condition.getExpression1() : condition.getExpression2());
+
+            final FeatureIterator<Feature> ite = collection.iterator();
+            try{
+                int size = 0;
+                while(ite.hasNext()){
+                    if(++size > MAX_SIZE){
+                        return null;
+                    }
+                    final Feature feature = ite.next();
+                    final Object value = buildProperty.evaluate(feature);
+                    if(value == null){
+                        //null never match in an equal filter
+                        continue;
+                    }
+                    final int cat = category(value);
+                    if(cat == 0 || (table.category != 0 && table.category != cat)){
+                        //mixed or unsupported types, we can not ensure hash
+                        //equality will match the filter equality
+                        return null;
+                    }
+                    table.category = cat;
+
+                    final Object key = table.normalize(value);
+                    List<Feature> matches = table.table.get(key);
+                    if(matches == null){
+                        matches = new ArrayList<Feature>(1);
+                        table.table.put(key, matches);
+                    }
+                    matches.add(FeatureUtilities.copy(feature));
+                }
+            }finally{
+                ite.close();
+            }
+
+            return table;
+        }
+
+        /**
+         * Check if the collection size is obtained from the feature store without
+         * iterating over the features, stores which can not count more efficiently
+         * rely on the default {@link AbstractFeatureStore#getCount(Query)}.
+         *
+         * @param collection secondary collection
+         * @return true if calling size() is cheaper than loading the collection
+         */
+        private static boolean canCount(final FeatureCollection collection){
+            final Session session = collection.getSession();
+            if(!(collection instanceof DefaultSelectorFeatureCollection)
+                    || session == null || session.hasPendingChanges()){
+                return false;
+            }
+            try {
+                final Class<?> declaring = session.getFeatureStore().getClass()
+                        .getMethod("getCount", Query.class).getDeclaringClass();
+                return !AbstractFeatureStore.class.equals(declaring);
+            } catch (NoSuchMethodException ex) {
+                return false;
+            }
+        }
+
+        /**
+         * @param primeFeature feature of the streamed collection
+         * @return matching secondary features or null if the value type is not the one
+         *         used in the table, the caller must then search using a query.
+         */
+        List<Feature> get(final Feature primeFeature){
+            final Object value = primeProperty.evaluate(primeFeature);
+            if(value == null){
+                return Collections.emptyList();
+            }
+            if(table.isEmpty()){
+                return Collections.emptyList();
+            }
+            if(category(value) != category){
+                return null;
+            }
+            final List<Feature> matches = table.get(normalize(value));
+            return (matches != null) ? matches : Collections.<Feature>emptyList();
+        }
+
+        private static int category(final Object value){
+            if(value instanceof CharSequence){
+                return CATEGORY_STRING;
+            }else if(value instanceof Number){
+                return CATEGORY_NUMBER;
+            }else if(value instanceof Boolean){
+                return CATEGORY_BOOLEAN;
+            }else if(value instanceof Date){
+                return CATEGORY_DATE;
+            }
+            return 0;
+        }
+
+        private Object normalize(final Object value){
+            if(value instanceof CharSequence){
+                final String str = value.toString();
+                return matchCase ? str : str.toLowerCase(Locale.ENGLISH);
+            }else if(value instanceof Date){
+                return ((Date)value).getTime();
+            }else if(value instanceof Number){
+                final Number n = (Number) value;
+                if(n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte){
+                    return n.longValue();
+                }else if(n instanceof BigInteger && ((BigInteger)n).bitLength() < 64){
+                    return n.longValue();
+                }else if(n instanceof BigDecimal){
+                    final BigDecimal bd = ((BigDecimal)n).stripTrailingZeros();
+                    if(bd.scale() <= 0 && bd.precision() - bd.scale() < 19){
+                        return bd.longValue();
+                    }
+                }
+                final double d = n.doubleValue();
+                final long l = (long) d;
+                return (l == d) ? (Object) l : (Object) d;
+            }
+            return value;
+        }
+
+    }
+
+    /**
+     * Iterate on the primary collection and match features using the hash table.
+     */
+    private class JoinHashRowIterator implements FeatureIterator<Feature>{
+
+        private final JoinHashTable table;
+        private final boolean outer;
+        private final boolean leftPrime;
+        private final FeatureIterator<Feature> primeIterator;
+        private Feature primeFeature;
+        private Iterator<Feature> matches;
+        private FeatureIterator<Feature> secondIterator;
+        private Feature nextFeature;
+
+        JoinHashRowIterator(final JoinHashTable table, final JoinType jt) throws DataStoreException{
+            this.table = table;
+            this.outer = (jt != JoinType.INNER);
+            this.leftPrime = (jt != JoinType.RIGHT_OUTER);
+            primeIterator = leftPrime ? leftCollection.iterator() : rightCollection.iterator();
+        }
+
+        @Override
+        public Feature next() {
+            try {
+                searchNext();
+            } catch (DataStoreException ex) {
+                throw new FeatureStoreRuntimeException(ex);
+            }
+            Feature f = nextFeature;
+            nextFeature = null;
+            return f;
+        }
+
+        @Override
+        public void close() {
+            primeIterator.close();
+            if(secondIterator != null){
+                secondIterator.close();
+                secondIterator = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                searchNext();
+            } catch (DataStoreException ex) {
+                throw new FeatureStoreRuntimeException(ex);
+            }
+            return nextFeature != null;
+        }
+
+        private void searchNext() throws DataStoreException{
+            if(nextFeature != null) return;
+
+            //we might have several secondary features for one primary
+            nextFeature = nextMatch();
+
+            while(nextFeature==null && primeIterator.hasNext()){
+                primeFeature = primeIterator.next();
+
+                final List<Feature> candidates = table.get(primeFeature);
+                if(candidates != null){
+                    matches = candidates.iterator();
+                }else{
+                    //value type not in the table, search with a query
+                    final PropertyName secondProperty = (PropertyName) (leftPrime ?
+                            table.condition.getExpression2() : table.condition.getExpression1());
+                    final Object primeValue = table.primeProperty.evaluate(primeFeature);
+                    final QueryBuilder qb = new QueryBuilder();
+                    qb.setSource(leftPrime ? getSource().getRight() : getSource().getLeft());
+                    qb.setFilter(FF.equals(secondProperty, FF.literal(primeValue)));
+                    final FeatureCollection secondCollection = leftPrime ? rightCollection : leftCollection;
+                    secondIterator = secondCollection.subCollection(qb.buildQuery()).iterator();
+                }
+
+                nextFeature = nextMatch();
+
+                if(nextFeature == null && outer){
+                    //outer join effect, no match but still we must return the primary side
+                    nextFeature = leftPrime ? toFeature(primeFeature,null) : toFeature(null,primeFeature);
+                }
+            }
+        }
+
+        private Feature nextMatch() throws DataStoreException{
+            Feature candidate = null;
+            if(matches != null){
+                while(candidate == null && matches.hasNext()){
+                    candidate = checkValid(matches.next());
+                }
+                if(candidate == null){
+                    matches = null;
+                }
+            }else if(secondIterator != null){
+                while(candidate == null && secondIterator.hasNext()){
+                    candidate = checkValid(secondIterator.next());
+                }
+                if(candidate == null){
+                    secondIterator.close();
+                    secondIterator = null;
+                }
+            }
+            return candidate;
+        }
+
+        private Feature checkValid(final Feature second) throws DataStoreException{
+            final Feature candidate = leftPrime ? toFeature(primeFeature,second) : toFeature(second,primeFeature);
+
+            if(query.getFilter().evaluate(candidate)){
+                //combine both rows
+                return candidate;
+            }else{
+                //not a valid combinaison
+                return null;
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported yet on join queries.");
+        }
+
+    }
+
 }
@@ -17,30 +17,52 @@
 
 package org.geotoolkit.data.memory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
 import org.geotoolkit.data.FeatureCollection;
 import org.geotoolkit.data.FeatureIterator;
 import org.geotoolkit.data.FeatureReader;
 import org.geotoolkit.data.FeatureStoreRuntimeException;
 import org.geotoolkit.data.query.SortByComparator;
 import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.FeatureUtilities;
 import org.apache.sis.util.Classes;
+import org.apache.sis.util.logging.Logging;
 import org.geotoolkit.feature.Feature;
+import org.geotoolkit.feature.simple.SimpleFeature;
 import org.geotoolkit.feature.type.FeatureType;
 import org.opengis.filter.sort.SortBy;
 
 /**
  * Basic support for a  FeatureIterator that will sort features using the given sort by
- * orders. This may be very consuming in memory since this implementation must iterate
- * over all features and store them in memory in the right order.
+ * orders.
  *
- * Don't use this class in you now that your iterator holds a great amount of features,
- * otherwise it may cause an Out Of Memory Exception.
+ * Features are first accumulated in memory. If the number of features exceed
+ * the memory limit (see {@link HintsPending#SORT_MEMORY_FEATURE_LIMIT}) or if
+ * the heap usage goes above the heap ratio (see {@link HintsPending#SORT_MEMORY_HEAP_RATIO}),
+ * features are sorted by blocks and written in temporary files. Those sorted
+ * runs are then merged back while iterating. This external sort is only possible
+ * for simple features of a single type, once another feature is found the
+ * remaining features are sorted in memory and merged with the runs.
+ *
+ * When the number of wanted features is known (a max features on the query),
+ * only the smallest features are kept in a bounded heap and the iterator
+ * never hold more then this number of features.
  *
  * @author Johann Sorel (Geomatys)
  * @module pending
@@ -48,32 +70,228 @@ import org.opengis.filter.sort.SortBy;
 public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIterator<F>>
         implements FeatureIterator<F> {
 
+    /**
+     * Default number of features hold in memory before spilling sorted runs on disk.
+     */
+    public static final int DEFAULT_MEMORY_FEATURE_LIMIT = 100000;
+
+    /**
+     * Default fraction of the maximum heap size which can be used before
+     * spilling sorted runs on disk.
+     */
+    public static final double DEFAULT_MEMORY_HEAP_RATIO = 0.5;
+
+    /**
+     * Heap usage is tested every N features.
+     */
+    private static final int HEAP_CHECK_INTERVAL = 1024;
+
+    /**
+     * Minimum size of a run spilled because of heap usage. The heap may stay
+     * above the limit because of other objects, without a minimum size each
+     * check would spill a small run.
+     */
+    private static final int MIN_HEAP_RUN_SIZE = 16384;
+
+    /**
+     * Maximum number of runs merged at once, above this number intermediate
+     * runs are created to limit the number of opened files.
+     */
+    private static final int MAX_MERGE_RUNS = 64;
+
     protected final R iterator;
     private final Comparator<Feature> comparator;
-    protected List<F> ordered = null;
-    protected int index = 0;
+    private final int limit;
+    private final int memoryLimit;
+    private final double heapRatio;
+
+    private Iterator<F> sorted = null;
+    private SimpleFeatureCodec codec = null;
+    private final List<SortRun> runs = new ArrayList<SortRun>();
+    private MergeIterator merge = null;
 
     /**
      * Creates a new instance of GenericSortByFeatureIterator
      *
      * @param iterator FeatureReader to sort
      * @param orders sorting orders
+     * @param limit maximum number of features which will be read, -1 for all
+     * @param hints sort configuration hints, can be null
      */
-    private GenericSortByFeatureIterator(final R iterator, final SortBy[] orders) {
+    private GenericSortByFeatureIterator(final R iterator, final SortBy[] orders,
+            final int limit, final Hints hints) {
         this.iterator = iterator;
         this.comparator = new SortByComparator(orders);
+        this.limit = limit;
+
+        Integer memLimit = null;
+        Double ratio = null;
+        if(hints != null){
+            memLimit = (Integer) hints.get(HintsPending.SORT_MEMORY_FEATURE_LIMIT);
+            ratio = (Double) hints.get(HintsPending.SORT_MEMORY_HEAP_RATIO);
+        }
+        this.memoryLimit = (memLimit != null && memLimit > 0) ? memLimit : DEFAULT_MEMORY_FEATURE_LIMIT;
+        this.heapRatio = (ratio != null) ? ratio : DEFAULT_MEMORY_HEAP_RATIO;
     }
 
     private synchronized void sort() throws FeatureStoreRuntimeException{
-        if(ordered != null) return;
+        if(sorted != null) return;
+
+        if(limit >= 0 && limit <= memoryLimit){
+            sorted = sortTop();
+        }else{
+            try {
+                sorted = sortAll();
+            } catch (IOException ex) {
+                deleteRuns();
+                throw new FeatureStoreRuntimeException(ex);
+            }
+        }
+    }
+
+    /**
+     * Keep only the first features in a bounded heap.
+     * The heap head is the greatest feature, it is replaced each time a smaller
+     * feature is found.
+     */
+    private Iterator<F> sortTop(){
+        final List<F> result = new ArrayList<F>(limit);
+        if(limit == 0){
+            return result.iterator();
+        }
+
+        final Comparator<Entry<F>> order = new EntryComparator<F>(comparator);
+        final PriorityQueue<Entry<F>> heap = new PriorityQueue<Entry<F>>(limit+1, Collections.reverseOrder(order));
+        long sequence = 0;
+        while(iterator.hasNext()){
+            final F candidate = iterator.next();
+            if(heap.size() < limit){
+                heap.add(new Entry<F>((F) FeatureUtilities.copy(candidate), sequence));
+            }else if(comparator.compare(candidate, heap.peek().feature) < 0){
+                heap.poll();
+                heap.add(new Entry<F>((F) FeatureUtilities.copy(candidate), sequence));
+            }
+            sequence++;
+        }
+
+        final List<Entry<F>> entries = new ArrayList<Entry<F>>(heap);
+        Collections.sort(entries, order);
+        for(Entry<F> entry : entries){
+            result.add(entry.feature);
+        }
+        return result.iterator();
+    }
 
-        ordered = new ArrayList<F>();
+    /**
+     * Sort all features, in memory if possible, otherwise by merging sorted runs.
+     */
+    private Iterator<F> sortAll() throws IOException{
+        final Runtime runtime = Runtime.getRuntime();
+        final long heapLimit = (long) (runtime.maxMemory() * heapRatio);
 
+        List<F> buffer = new ArrayList<F>();
+        //runs can only contain simple features of the first feature type
+        FeatureType spillType = null;
+        boolean spillable = true;
         while(iterator.hasNext()){
-            ordered.add((F) FeatureUtilities.copy( iterator.next()));
+            final F feature = (F) FeatureUtilities.copy(iterator.next());
+            buffer.add(feature);
+            if(spillable){
+                if(!(feature instanceof SimpleFeature)){
+                    spillable = false;
+                }else if(spillType == null){
+                    spillType = feature.getType();
+                }else if(spillType != feature.getType()){
+                    spillable = spillType.equals(feature.getType());
+                }
+            }
+
+            final int size = buffer.size();
+            if(spillable && (size >= memoryLimit || (size >= MIN_HEAP_RUN_SIZE && size % HEAP_CHECK_INTERVAL == 0
+                    && (runtime.totalMemory() - runtime.freeMemory()) > heapLimit))){
+                spill(buffer);
+                buffer = new ArrayList<F>();
+            }
+        }
+
+        if(runs.isEmpty()){
+            Collections.sort(buffer,comparator);
+            return buffer.iterator();
+        }
+
+        //features which can not be written in runs are sorted in memory
+        //and merged with the runs
+        List<F> remaining = null;
+        if(!buffer.isEmpty()){
+            if(spillable){
+                spill(buffer);
+            }else{
+                Collections.sort(buffer,comparator);
+                remaining = buffer;
+            }
+        }
+
+        //reduce the number of runs to avoid too many opened files
+        //consecutive runs are merged together to preserve the sort stability
+        while(runs.size() > MAX_MERGE_RUNS){
+            final List<SortRun> merged = new ArrayList<SortRun>();
+            for(int i=0,n=runs.size(); i<n; i+=MAX_MERGE_RUNS){
+                final List<SortRun> group = runs.subList(i, Math.min(n, i+MAX_MERGE_RUNS));
+                if(group.size() == 1){
+                    merged.add(group.get(0));
+                    continue;
+                }
+                final SortRun run = new SortRun(codec);
+                merged.add(run);
+                final MergeIterator ite = new MergeIterator(group, null);
+                try{
+                    while(ite.hasNext()){
+                        run.write((SimpleFeature)ite.next());
+                    }
+                }finally{
+                    run.finish();
+                    ite.close();
+                }
+                for(SortRun r : group){
+                    r.delete();
+                }
+            }
+            runs.clear();
+            runs.addAll(merged);
+        }
+
+        merge = new MergeIterator(runs, remaining);
+        return merge;
+    }
+
+    /**
+     * Sort the given features and write them in a new run file.
+     */
+    private void spill(final List<F> buffer) throws IOException{
+        Collections.sort(buffer,comparator);
+        if(codec == null){
+            codec = new SimpleFeatureCodec(((SimpleFeature)buffer.get(0)).getFeatureType());
         }
+        final SortRun run = new SortRun(codec);
+        runs.add(run);
+        try{
+            for(F f : buffer){
+                run.write((SimpleFeature)f);
+            }
+        }finally{
+            run.finish();
+        }
+    }
 
-        Collections.sort(ordered,comparator);
+    private void deleteRuns(){
+        if(merge != null){
+            merge.close();
+            merge = null;
+        }
+        for(SortRun run : runs){
+            run.delete();
+        }
+        runs.clear();
     }
 
     /**
@@ -82,13 +300,10 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
     @Override
     public F next() throws FeatureStoreRuntimeException {
         sort();
-        try{
-            F c = ordered.get(index);
-            index++;
-            return c;
-        }catch(IndexOutOfBoundsException ex){
+        if(!sorted.hasNext()){
             throw new NoSuchElementException("No more elements.");
         }
+        return sorted.next();
     }
 
     /**
@@ -97,6 +312,9 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
     @Override
     public void close() throws FeatureStoreRuntimeException {
         iterator.close();
+        synchronized(this){
+            deleteRuns();
+        }
     }
 
     /**
@@ -105,7 +323,7 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
     @Override
     public boolean hasNext() throws FeatureStoreRuntimeException {
         sort();
-        return index < ordered.size();
+        return sorted.hasNext();
     }
 
     /**
@@ -126,6 +344,217 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
         return sb.toString();
     }
 
+    /**
+     * Sorted features with their position in the original iterator, used to
+     * preserve the original order of equal features.
+     */
+    private static final class Entry<F extends Feature> {
+
+        private final F feature;
+        private final long sequence;
+
+        private Entry(final F feature, final long sequence) {
+            this.feature = feature;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class EntryComparator<F extends Feature> implements Comparator<Entry<F>> {
+
+        private final Comparator<Feature> comparator;
+
+        private EntryComparator(final Comparator<Feature> comparator) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int compare(final Entry<F> e1, final Entry<F> e2) {
+            final int result = comparator.compare(e1.feature, e2.feature);
+            if(result != 0) return result;
+            return (e1.sequence < e2.sequence) ? -1 : ((e1.sequence == e2.sequence) ? 0 : 1);
+        }
+    }
+
+    /**
+     * A sorted block of features stored in a temporary file.
+     */
+    private static final class SortRun {
+
+        private final SimpleFeatureCodec codec;
+        private final File file;
+        private DataOutputStream out;
+        private int size = 0;
+
+        private SortRun(final SimpleFeatureCodec codec) throws IOException {
+            this.codec = codec;
+            this.file = File.createTempFile("geotk-sort", ".run");
+            this.file.deleteOnExit();
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+
+        private void write(final SimpleFeature feature) throws IOException {
+            codec.write(out, feature);
+            size++;
+        }
+
+        private void finish() throws IOException {
+            if(out != null){
+                out.close();
+                out = null;
+            }
+        }
+
+        private void delete() {
+            try {
+                finish();
+            } catch (IOException ex) {
+                Logging.getLogger(GenericSortByFeatureIterator.class).log(Level.WARNING, ex.getMessage(), ex);
+            }
+            if(file.exists() && !file.delete()){
+                Logging.getLogger(GenericSortByFeatureIterator.class).log(
+                        Level.WARNING, "Failed to delete sort temporary file {0}", file);
+            }
+        }
+    }
+
+    /**
+     * Sequential reader over a sort run or over features sorted in memory,
+     * keeps the current feature.
+     */
+    private static final class RunReader {
+
+        private final SortRun run;
+        private final Iterator<? extends Feature> features;
+        private final int index;
+        private final DataInputStream in;
+        private int remaining;
+        private Feature current;
+
+        private RunReader(final SortRun run, final int index) throws IOException {
+            this.run = run;
+            this.features = null;
+            this.index = index;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file)));
+            this.remaining = run.size;
+        }
+
+        private RunReader(final List<? extends Feature> features, final int index) {
+            this.run = null;
+            this.features = features.iterator();
+            this.index = index;
+            this.in = null;
+        }
+
+        /**
+         * @return false if the run has no more features
+         */
+        private boolean advance() throws IOException {
+            if(features != null){
+                current = features.hasNext() ? features.next() : null;
+                return current != null;
+            }
+            if(remaining == 0){
+                current = null;
+                return false;
+            }
+            current = run.codec.read(in);
+            remaining--;
+            return true;
+        }
+
+        private void close() {
+            if(in == null){
+                return;
+            }
+            try {
+                in.close();
+            } catch (IOException ex) {
+                Logging.getLogger(GenericSortByFeatureIterator.class).log(Level.WARNING, ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * K-way merge of sorted runs.
+     * Equal features are returned in run order, runs being created in the
+     * iteration order this preserve the sort stability.
+     */
+    private final class MergeIterator implements Iterator<F> {
+
+        private final PriorityQueue<RunReader> queue;
+
+        /**
+         * @param runs sorted runs
+         * @param remaining features read after the last run, sorted in memory, can be null
+         */
+        private MergeIterator(final List<SortRun> runs, final List<F> remaining) throws IOException {
+            queue = new PriorityQueue<RunReader>(Math.max(1, runs.size()), new Comparator<RunReader>() {
+                @Override
+                public int compare(final RunReader r1, final RunReader r2) {
+                    final int result = comparator.compare(r1.current, r2.current);
+                    if(result != 0) return result;
+                    return r1.index - r2.index;
+                }
+            });
+            try{
+                for(int i=0,n=runs.size();i<n;i++){
+                    final RunReader reader = new RunReader(runs.get(i), i);
+                    if(reader.advance()){
+                        queue.add(reader);
+                    }else{
+                        reader.close();
+                    }
+                }
+                if(remaining != null){
+                    final RunReader reader = new RunReader(remaining, runs.size());
+                    if(reader.advance()){
+                        queue.add(reader);
+                    }
+                }
+            }catch(IOException ex){
+                close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public F next() {
+            final RunReader reader = queue.poll();
+            if(reader == null){
+                throw new NoSuchElementException("No more elements.");
+            }
+            final F feature = (F) reader.current;
+            try {
+                if(reader.advance()){
+                    queue.add(reader);
+                }else{
+                    reader.close();
+                }
+            } catch (IOException ex) {
+                reader.close();
+                throw new FeatureStoreRuntimeException(ex);
+            }
+            return feature;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported.");
+        }
+
+        private void close(){
+            for(RunReader reader : queue){
+                reader.close();
+            }
+            queue.clear();
+        }
+    }
+
     /**
      * Wrap a FeatureReader that will sort features using the given sort by.
      *
@@ -136,8 +565,8 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
     private static final class GenericSortByFeatureReader<T extends FeatureType, F extends Feature, R extends FeatureReader<T,F>>
             extends GenericSortByFeatureIterator<F,R> implements FeatureReader<T,F>{
 
-        private GenericSortByFeatureReader(final R reader,final SortBy[] orders){
-            super(reader,orders);
+        private GenericSortByFeatureReader(final R reader,final SortBy[] orders, final int limit, final Hints hints){
+            super(reader,orders,limit,hints);
         }
 
         @Override
@@ -158,7 +587,7 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
 
         @Override
         public FeatureIterator iterator(final Hints hints) throws FeatureStoreRuntimeException {
-            return wrap(getOriginalFeatureCollection().iterator(hints), order);
+            return wrap(getOriginalFeatureCollection().iterator(hints), order, -1, hints);
         }
 
         @Override
@@ -172,17 +601,46 @@ public class GenericSortByFeatureIterator<F extends Feature, R extends FeatureIt
      * Wrap a FeatureReader will a sort by order.
      */
     public static <T extends FeatureType, F extends Feature> FeatureReader<T,F> wrap(final FeatureReader<T,F> reader, final SortBy[] orders){
-        return new GenericSortByFeatureReader(reader, orders);
+        return wrap(reader, orders, -1, null);
+    }
+
+    /**
+     * Wrap a FeatureReader will a sort by order.
+     *
+     * @param reader FeatureReader to sort
+     * @param orders sorting orders
+     * @param limit only the first features will be read, use -1 for no limit.
+     *        This can be used when the query has a max feature parameter and
+     *        no filter is applied after the sort.
+     * @param hints sort configuration hints, see {@link HintsPending#SORT_MEMORY_FEATURE_LIMIT}
+     *        and {@link HintsPending#SORT_MEMORY_HEAP_RATIO}, can be null
+     */
+    public static <T extends FeatureType, F extends Feature> FeatureReader<T,F> wrap(
+            final FeatureReader<T,F> reader, final SortBy[] orders, final int limit, final Hints hints){
+        return new GenericSortByFeatureReader(reader, orders, limit, hints);
     }
 
     /**
      * Wrap a FeatureIterator will a sort by order.
      */
     public static <F extends Feature> FeatureIterator<F> wrap(final FeatureIterator<F> reader, final SortBy[] orders){
+        return wrap(reader, orders, -1, null);
+    }
+
+    /**
+     * Wrap a FeatureIterator will a sort by order.
+     *
+     * @param reader FeatureIterator to sort
+     * @param orders sorting orders
+     * @param limit only the first features will be read, use -1 for no limit.
+     * @param hints sort configuration hints, can be null
+     */
+    public static <F extends Feature> FeatureIterator<F> wrap(final FeatureIterator<F> reader,
+            final SortBy[] orders, final int limit, final Hints hints){
         if(reader instanceof FeatureReader){
-            return wrap((FeatureReader)reader,orders);
+            return wrap((FeatureReader)reader,orders,limit,hints);
         }else{
-            return new GenericSortByFeatureIterator(reader, orders);
+            return new GenericSortByFeatureIterator(reader, orders, limit, hints);
         }
     }
 
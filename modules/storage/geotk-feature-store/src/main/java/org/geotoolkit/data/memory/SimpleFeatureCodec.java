@@ -0,0 +1,306 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2014, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+
+package org.geotoolkit.data.memory;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.geotoolkit.feature.simple.SimpleFeature;
+import org.geotoolkit.feature.simple.SimpleFeatureBuilder;
+import org.geotoolkit.feature.simple.SimpleFeatureType;
+
+/**
+ * Compact binary encoding of simple features, used to spill features in
+ * temporary files. Each feature is written as its identifier followed by
+ * one tagged value per attribute and the feature user datas. Geometries are
+ * written in WKB. Attribute user datas are not stored.
+ *
+ * Geometry and feature user datas (usually the CRS or hint keys) can not be
+ * written in WKB, the first {@link #MAX_SHARED_OBJECTS} distinct instances are
+ * kept in a table in memory and only their index is written. Above this number
+ * they are serialized with each feature, a {@link NotSerializableException} is
+ * raised if they are not serializable. This table is only valid for the codec
+ * instance, files written by one codec can only be read back by the same codec.
+ *
+ * @module pending
+ */
+final class SimpleFeatureCodec {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte TYPE_NULL         = 0;
+    private static final byte TYPE_STRING       = 1;
+    private static final byte TYPE_INTEGER      = 2;
+    private static final byte TYPE_LONG         = 3;
+    private static final byte TYPE_DOUBLE       = 4;
+    private static final byte TYPE_FLOAT        = 5;
+    private static final byte TYPE_SHORT        = 6;
+    private static final byte TYPE_BYTE         = 7;
+    private static final byte TYPE_BOOLEAN      = 8;
+    private static final byte TYPE_DATE         = 9;
+    private static final byte TYPE_GEOMETRY     = 10;
+    private static final byte TYPE_SERIALIZABLE = 11;
+
+    /** Maximum number of user data instances kept in the shared table. */
+    static final int MAX_SHARED_OBJECTS = 1024;
+    private static final int NULL_OBJECT = -1;
+    private static final int INLINE_OBJECT = -2;
+
+    private final SimpleFeatureType type;
+    private final SimpleFeatureBuilder builder;
+    private final WKBWriter wkbWriter2D = new WKBWriter(2, true);
+    private final WKBWriter wkbWriter3D = new WKBWriter(3, true);
+    private final WKBReader wkbReader;
+
+    private final Map<Object,Integer> sharedIndex = new IdentityHashMap<Object, Integer>();
+    private final List<Object> shared = new ArrayList<Object>();
+
+    SimpleFeatureCodec(final SimpleFeatureType type){
+        this(type, new GeometryFactory());
+    }
+
+    SimpleFeatureCodec(final SimpleFeatureType type, final GeometryFactory gf){
+        this.type = type;
+        this.builder = new SimpleFeatureBuilder(type);
+        this.wkbReader = new WKBReader(gf);
+    }
+
+    SimpleFeatureType getFeatureType(){
+        return type;
+    }
+
+    /**
+     * Write the given feature.
+     *
+     * @param out output to write into
+     * @param feature feature to encode, must be of the codec feature type
+     * @throws IOException if writing failed or if an attribute value can not be encoded
+     */
+    void write(final DataOutput out, final SimpleFeature feature) throws IOException{
+        writeString(out, feature.getID());
+        final List<Object> values = feature.getAttributes();
+        final int nb = type.getAttributeCount();
+        if(values.size() != nb){
+            throw new IOException("Feature "+feature.getID()+" do not match codec feature type "+type.getTypeName());
+        }
+        for(int i=0;i<nb;i++){
+            writeValue(out, values.get(i));
+        }
+        final Map<Object,Object> userData = feature.getUserData();
+        out.writeInt(userData.size());
+        for(Map.Entry<Object,Object> entry : userData.entrySet()){
+            writeShared(out, entry.getKey());
+            writeShared(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Read the next feature.
+     *
+     * @param in input to read from
+     * @return decoded feature
+     * @throws IOException if reading failed
+     */
+    SimpleFeature read(final DataInput in) throws IOException{
+        final String id = readString(in);
+        final int nb = type.getAttributeCount();
+        for(int i=0;i<nb;i++){
+            builder.set(i, readValue(in));
+        }
+        final SimpleFeature feature = builder.buildFeature(id);
+        for(int i=in.readInt();i>0;i--){
+            final Object key = readShared(in);
+            feature.getUserData().put(key, readShared(in));
+        }
+        return feature;
+    }
+
+    private void writeValue(final DataOutput out, final Object value) throws IOException{
+        if(value == null){
+            out.writeByte(TYPE_NULL);
+        }else if(value instanceof String){
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String)value);
+        }else if(value instanceof Geometry){
+            final Geometry geom = (Geometry) value;
+            final Coordinate coord = geom.getCoordinate();
+            final WKBWriter writer = (coord != null && !Double.isNaN(coord.z)) ? wkbWriter3D : wkbWriter2D;
+            final byte[] wkb = writer.write(geom);
+            out.writeByte(TYPE_GEOMETRY);
+            writeShared(out, geom.getUserData());
+            out.writeInt(wkb.length);
+            out.write(wkb);
+        }else if(value.getClass() == Double.class){
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double)value);
+        }else if(value.getClass() == Integer.class){
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer)value);
+        }else if(value.getClass() == Long.class){
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long)value);
+        }else if(value.getClass() == Float.class){
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float)value);
+        }else if(value.getClass() == Short.class){
+            out.writeByte(TYPE_SHORT);
+            out.writeShort((Short)value);
+        }else if(value.getClass() == Byte.class){
+            out.writeByte(TYPE_BYTE);
+            out.writeByte((Byte)value);
+        }else if(value.getClass() == Boolean.class){
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        }else if(value.getClass() == Date.class){
+            out.writeByte(TYPE_DATE);
+            out.writeLong(((Date)value).getTime());
+        }else if(value instanceof Serializable){
+            out.writeByte(TYPE_SERIALIZABLE);
+            writeSerializable(out, value);
+        }else{
+            throw new NotSerializableException("Can not encode value of type "+value.getClass().getName());
+        }
+    }
+
+    private Object readValue(final DataInput in) throws IOException{
+        final byte tag = in.readByte();
+        switch(tag){
+            case TYPE_NULL :    return null;
+            case TYPE_STRING :  return readString(in);
+            case TYPE_INTEGER : return in.readInt();
+            case TYPE_LONG :    return in.readLong();
+            case TYPE_DOUBLE :  return in.readDouble();
+            case TYPE_FLOAT :   return in.readFloat();
+            case TYPE_SHORT :   return in.readShort();
+            case TYPE_BYTE :    return in.readByte();
+            case TYPE_BOOLEAN : return in.readBoolean();
+            case TYPE_DATE :    return new Date(in.readLong());
+            case TYPE_GEOMETRY : {
+                final Object userData = readShared(in);
+                final byte[] wkb = new byte[in.readInt()];
+                in.readFully(wkb);
+                final Geometry geom;
+                try {
+                    geom = wkbReader.read(wkb);
+                } catch (ParseException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+                geom.setUserData(userData);
+                return geom;
+            }
+            case TYPE_SERIALIZABLE : return readSerializable(in);
+            default : throw new IOException("Unknowned value tag : "+tag);
+        }
+    }
+
+    /**
+     * Write the index of the object in the shared table, the table is bounded,
+     * once full the object is serialized.
+     */
+    private void writeShared(final DataOutput out, final Object candidate) throws IOException{
+        if(candidate == null){
+            out.writeInt(NULL_OBJECT);
+            return;
+        }
+        Integer index = sharedIndex.get(candidate);
+        if(index == null){
+            if(shared.size() >= MAX_SHARED_OBJECTS){
+                if(!(candidate instanceof Serializable)){
+                    throw new NotSerializableException("Too many user datas, can not encode value of type "
+                            +candidate.getClass().getName());
+                }
+                out.writeInt(INLINE_OBJECT);
+                writeSerializable(out, candidate);
+                return;
+            }
+            index = shared.size();
+            shared.add(candidate);
+            sharedIndex.put(candidate, index);
+        }
+        out.writeInt(index);
+    }
+
+    private Object readShared(final DataInput in) throws IOException{
+        final int index = in.readInt();
+        switch(index){
+            case NULL_OBJECT :   return null;
+            case INLINE_OBJECT : return readSerializable(in);
+            default :            return shared.get(index);
+        }
+    }
+
+    private static void writeSerializable(final DataOutput out, final Object value) throws IOException{
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(buffer);
+        oos.writeObject(value);
+        oos.close();
+        final byte[] bytes = buffer.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Object readSerializable(final DataInput in) throws IOException{
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return ois.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            ois.close();
+        }
+    }
+
+    private static void writeString(final DataOutput out, final String str) throws IOException{
+        if(str == null){
+            out.writeInt(-1);
+        }else{
+            final byte[] bytes = str.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(final DataInput in) throws IOException{
+        final int length = in.readInt();
+        if(length < 0) return null;
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+}
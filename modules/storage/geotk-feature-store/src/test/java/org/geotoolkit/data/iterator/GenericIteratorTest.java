@@ -25,6 +25,7 @@ import com.vividsolutions.jts.geom.Point;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import junit.framework.TestCase;
@@ -717,6 +718,134 @@ public class GenericIteratorTest extends TestCase{
         assertTrue(checkIte.isClosed());
     }
 
+    @Test
+    public void testSortByIteratorOnDisk(){
+        SortBy[] sorts = new SortBy[]{
+            FF.sort("att_string", SortOrder.ASCENDING)
+        };
+
+        //force features to be written in sorted runs of one feature
+        final Hints hints = new Hints(HintsPending.SORT_MEMORY_FEATURE_LIMIT, 1);
+
+        FeatureIterator ite = GenericSortByFeatureIterator.wrap(collection.iterator(), sorts, -1, hints);
+        assertEquals(3, FeatureStoreUtilities.calculateCount(ite));
+
+        ite = GenericSortByFeatureIterator.wrap(collection.iterator(), sorts, -1, hints);
+        Feature f = ite.next();
+        assertEquals(id3,f.getIdentifier().getID());
+        assertEquals(sf3.getAttribute("att_geom"), f.getProperty("att_geom").getValue());
+        assertEquals(2d, f.getProperty("att_double").getValue());
+        assertEquals(id1,ite.next().getIdentifier().getID());
+        assertEquals(id2,ite.next().getIdentifier().getID());
+
+        try{
+            ite.next();
+            fail("Should have raise a no such element exception.");
+        }catch(NoSuchElementException ex){
+            //ok
+        }
+        ite.close();
+
+        //check has next do not iterate
+        ite = GenericSortByFeatureIterator.wrap(collection.iterator(), sorts, -1, hints);
+        testIterationOnNext(ite, 3);
+        ite.close();
+
+        //check sub iterator is properly closed
+        CheckCloseFeatureIterator checkIte = new CheckCloseFeatureIterator(collection.iterator());
+        assertFalse(checkIte.isClosed());
+        ite = GenericSortByFeatureIterator.wrap(checkIte, sorts, -1, hints);
+        while(ite.hasNext()) ite.next();
+        ite.close();
+        assertTrue(checkIte.isClosed());
+    }
+
+    @Test
+    public void testSortByIteratorOnDiskUserData(){
+        final int nb = 2000;
+        final FeatureCollection<SimpleFeature> col = FeatureStoreUtilities.collection("ud", originalType);
+        for(int i=0;i<nb;i++){
+            final SimpleFeature sf = FeatureUtilities.defaultFeature(originalType, "");
+            final Point pt = GF.createPoint(new Coordinate(i, 0));
+            //more distinct user datas than the codec shared table can hold
+            pt.setUserData("point-"+i);
+            sf.setAttribute("att_geom", pt);
+            sf.setAttribute("att_double", (double)(nb-i));
+            sf.getUserData().put("rank", i);
+            col.add(sf);
+        }
+
+        final SortBy[] sorts = new SortBy[]{
+            FF.sort("att_double", SortOrder.ASCENDING)
+        };
+        final Hints hints = new Hints(HintsPending.SORT_MEMORY_FEATURE_LIMIT, 100);
+        final FeatureIterator ite = GenericSortByFeatureIterator.wrap(col.iterator(), sorts, -1, hints);
+        try{
+            for(int i=nb-1;i>=0;i--){
+                final Feature f = ite.next();
+                assertEquals(i, f.getUserData().get("rank"));
+                assertEquals("point-"+i, ((Point)f.getProperty("att_geom").getValue()).getUserData());
+            }
+            assertFalse(ite.hasNext());
+        }finally{
+            ite.close();
+        }
+    }
+
+    @Test
+    public void testSortByIteratorOnDiskMixed(){
+        //complex features after the sorted runs are sorted in memory and merged
+        final List<Feature> features = new ArrayList<Feature>();
+        FeatureIterator ite = collection.iterator();
+        while(ite.hasNext()) features.add(ite.next());
+        ite.close();
+        ite = collectionComplex.iterator();
+        while(ite.hasNext()) features.add(ite.next());
+        ite.close();
+
+        final SortBy[] sorts = new SortBy[]{
+            FF.sort("att_double", SortOrder.ASCENDING)
+        };
+        final Hints hints = new Hints(HintsPending.SORT_MEMORY_FEATURE_LIMIT, 1);
+        ite = GenericSortByFeatureIterator.wrap(GenericWrapFeatureIterator.wrapToIterator(features.iterator()), sorts, -1, hints);
+        try{
+            assertEquals(id2,ite.next().getIdentifier().getID());
+            assertEquals(id3,ite.next().getIdentifier().getID());
+            assertEquals(id1,ite.next().getIdentifier().getID());
+            assertEquals(cid2,ite.next().getIdentifier().getID());
+            assertEquals(cid1,ite.next().getIdentifier().getID());
+            assertFalse(ite.hasNext());
+        }finally{
+            ite.close();
+        }
+    }
+
+    @Test
+    public void testSortByIteratorLimit(){
+        SortBy[] sorts = new SortBy[]{
+            FF.sort("att_double", SortOrder.DESCENDING)
+        };
+
+        FeatureIterator ite = GenericSortByFeatureIterator.wrap(collection.iterator(), sorts, 2, null);
+        assertEquals(2, FeatureStoreUtilities.calculateCount(ite));
+
+        ite = GenericSortByFeatureIterator.wrap(collection.iterator(), sorts, 2, null);
+        assertEquals(id1,ite.next().getIdentifier().getID());
+        assertEquals(id3,ite.next().getIdentifier().getID());
+
+        try{
+            ite.next();
+            fail("Should have raise a no such element exception.");
+        }catch(NoSuchElementException ex){
+            //ok
+        }
+        ite.close();
+
+        ite = GenericSortByFeatureIterator.wrap(collection.iterator(), sorts, 0, null);
+        assertFalse(ite.hasNext());
+        ite.close();
+    }
+
     @Test
     public void testStartIndexIterator(){
         FeatureIterator ite = GenericStartIndexFeatureIterator.wrap(collection.iterator(), 0);
@@ -18,6 +18,11 @@
 
 package org.geotoolkit.data.query;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import junit.framework.TestCase;
 
 import org.geotoolkit.data.FeatureCollection;
@@ -39,6 +44,7 @@ import org.geotoolkit.feature.simple.SimpleFeatureType;
 import org.geotoolkit.feature.type.Name;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
+import org.opengis.filter.MatchAction;
 import org.opengis.filter.identity.FeatureId;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
@@ -420,6 +426,114 @@ public class QueryTest extends TestCase{
         ite.close();
     }
 
+    /**
+     * Test join on properties of different types, values can not be matched
+     * in the hash table and are searched with a query.
+     */
+    @Test
+    public void testInnerJoinQueryMixedTypes() throws Exception{
+        final Session session = store.createSession(false);
+
+        final QueryBuilder qb = new QueryBuilder();
+        final Join join = new DefaultJoin(
+                new DefaultSelector(session, name1, "s1"),
+                new DefaultSelector(session, name2, "s2"),
+                JoinType.INNER,
+                FF.equals(FF.property("att1"), FF.property("att3")));
+        qb.setSource(join);
+
+        final FeatureCollection col = session.getFeatureCollection(qb.buildQuery());
+
+        final FeatureIterator ite = col.iterator();
+        int count = 0;
+        while(ite.hasNext()){
+            ite.next();
+            count++;
+        }
+        ite.close();
+        assertEquals(0, count);
+    }
+
+    /**
+     * Test the pairs matched by the hash join when values must be normalized :
+     * strings of different case with a case insensitive condition and numbers
+     * of different classes.
+     */
+    @Test
+    public void testInnerJoinQueryNormalizedValues() throws Exception{
+        final Name name3 = new DefaultName("http://type3.com", "Type3");
+        final FeatureTypeBuilder builder = new FeatureTypeBuilder();
+        builder.setName(name3);
+        builder.add(new DefaultName("http://type3.com", "att5"), String.class);
+        builder.add(new DefaultName("http://type3.com", "att6"), Double.class);
+        store.createFeatureType(name3,builder.buildSimpleFeatureType());
+
+        final String[] fid3 = new String[3];
+        final FeatureWriter fw = store.getFeatureWriterAppend(name3);
+        SimpleFeature sf = (SimpleFeature) fw.next();
+        sf.setAttribute("att5", "STR1");
+        sf.setAttribute("att6", 2d);
+        fw.write();
+        fid3[0] = sf.getIdentifier().getID();
+
+        sf = (SimpleFeature) fw.next();
+        sf.setAttribute("att5", "Str2");
+        sf.setAttribute("att6", 3d);
+        fw.write();
+        fid3[1] = sf.getIdentifier().getID();
+
+        sf = (SimpleFeature) fw.next();
+        sf.setAttribute("att5", "str3");
+        sf.setAttribute("att6", 3.5d);
+        fw.write();
+        fid3[2] = sf.getIdentifier().getID();
+        fw.close();
+
+        final Session session = store.createSession(false);
+
+        //case insensitive strings
+        Join join = new DefaultJoin(
+                new DefaultSelector(session, name1, "s1"),
+                new DefaultSelector(session, name3, "s3"),
+                JoinType.INNER,
+                FF.equal(FF.property("att1"), FF.property("att5"), false, MatchAction.ANY));
+        assertEquals(new HashSet<String>(Arrays.asList(
+                fid_1_0+" "+fid3[0], fid_1_1+" "+fid3[1], fid_1_2+" "+fid3[2])), joinIdentifiers(session, join));
+
+        //case sensitive strings
+        join = new DefaultJoin(
+                new DefaultSelector(session, name1, "s1"),
+                new DefaultSelector(session, name3, "s3"),
+                JoinType.INNER,
+                FF.equal(FF.property("att1"), FF.property("att5"), true, MatchAction.ANY));
+        assertEquals(Collections.singleton(fid_1_2+" "+fid3[2]), joinIdentifiers(session, join));
+
+        //integers and doubles
+        join = new DefaultJoin(
+                new DefaultSelector(session, name1, "s1"),
+                new DefaultSelector(session, name3, "s3"),
+                JoinType.INNER,
+                FF.equals(FF.property("att2"), FF.property("att6")));
+        assertEquals(new HashSet<String>(Arrays.asList(
+                fid_1_1+" "+fid3[0], fid_1_2+" "+fid3[1])), joinIdentifiers(session, join));
+    }
+
+    private static Set<String> joinIdentifiers(final Session session, final Join join) throws Exception{
+        final QueryBuilder qb = new QueryBuilder();
+        qb.setSource(join);
+        final FeatureCollection col = session.getFeatureCollection(qb.buildQuery());
+        final Set<String> ids = new HashSet<String>();
+        final FeatureIterator ite = col.iterator();
+        try{
+            while(ite.hasNext()){
+                assertTrue(ids.add(ite.next().getIdentifier().getID()));
+            }
+        }finally{
+            ite.close();
+        }
+        return ids;
+    }
+
     /**
      * Test that cross featurestore queries works correctly.
      */
@@ -16,6 +16,8 @@
  */
 package org.geotoolkit.factory;
 
+import org.opengis.geometry.Envelope;
+
 /**
  * Additional hints that are using in geotoolkit-pending.
  *
@@ -83,6 +85,15 @@ public final class HintsPending extends Hints {
      */
     public static final Key UPDATE_ID_ON_INSERT = new Key(Boolean.class);
 
+    /**
+     * When features are inserted in batch mode (see {@link #UPDATE_ID_ON_INSERT}),
+     * the number of features sent to the datastore at once. Larger values reduce
+     * the number of round trips at the cost of memory.
+     *
+     * Default value is 1000.
+     */
+    public static final Key INSERT_BATCH_SIZE = new Key(Integer.class);
+
     /**
      * An implementation of featurestore might use some properties of the feature type
      * to generate the feature id. To avoid some unexpected modification it
@@ -113,6 +124,43 @@ public final class HintsPending extends Hints {
      */
     public static final Key KEY_IGNORE_SMALL_FEATURES = new Key(double[].class);
 
+    /**
+     * This flag indicates that only the part of the geometries inside the given
+     * envelope is used, the featurestore can clip the geometries to it.
+     * The envelope is expressed in the feature type crs, a featurestore should
+     * not clip geometries in another crs.
+     *
+     * Default value is null.
+     */
+    public static final Key KEY_CLIP_ENVELOPE = new Key(Envelope.class);
+
+    /**
+     * This flag indicates that the featurestore can snap the geometry coordinates
+     * on a grid of the query resolution and remove the repeated points.
+     * Geometries smaller than the resolution may collapse and be returned empty or null.
+     * It has no effect if the query has no resolution.
+     *
+     * Default value is false.
+     */
+    public static final Key KEY_SNAP_TO_RESOLUTION = new Key(Boolean.class);
+
+    /**
+     * Maximum number of features the generic sort iterator can hold in memory.
+     * Above this number, features are sorted by blocks written in temporary
+     * files and merged back while iterating.
+     *
+     * Default value is 100 000.
+     */
+    public static final Key SORT_MEMORY_FEATURE_LIMIT = new Key(Integer.class);
+
+    /**
+     * Fraction of the maximum heap size the generic sort iterator can use
+     * before writing sorted blocks in temporary files.
+     *
+     * Default value is 0.5 .
+     */
+    public static final Key SORT_MEMORY_HEAP_RATIO = new Key(Double.class);
+
     private HintsPending(){}
 
 }